@@ -2,9 +2,11 @@ package com.selimhorri.app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 
-@SpringBootApplication
+// R2DBC is only used by the reactive read path, which builds its own pool (see ReactiveReadConfig)
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @EnableEurekaClient
 public class UserServiceApplication {
 
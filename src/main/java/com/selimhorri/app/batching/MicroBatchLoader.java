@@ -0,0 +1,146 @@
+package com.selimhorri.app.batching;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gathers the keys requested by concurrent callers for up to {@code window}, or until {@code maxBatchSize}
+ * distinct keys are pending, and resolves them with one call to the batch function. Each caller gets its own
+ * key back; keys missing from the batch result come back empty. Batches run on the given scheduler, outside
+ * of the callers' transactions, so the batch function must open its own. A disabled loader is never called:
+ * callers check {@link #isEnabled()} and keep their single-key lookup.
+ */
+@Slf4j
+public class MicroBatchLoader<K, V> {
+
+	private static final String METRIC_PREFIX = "micro.batch";
+
+	private final String name;
+	private final boolean enabled;
+	private final Function<Set<K>, Map<K, V>> batchFunction;
+	private final Duration window;
+	private final int maxBatchSize;
+	private final Duration waitTimeout;
+	private final ScheduledExecutorService scheduler;
+	private final Timer latency;
+	private final DistributionSummary batchSize;
+
+	private final Object lock = new Object();
+	private Batch current;
+
+	public MicroBatchLoader(final String name, final boolean enabled, final Function<Set<K>, Map<K, V>> batchFunction,
+			final Duration window, final int maxBatchSize, final Duration waitTimeout, 
+			final ScheduledExecutorService scheduler, final MeterRegistry meterRegistry) {
+		this.name = name;
+		this.enabled = enabled;
+		this.batchFunction = batchFunction;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.waitTimeout = waitTimeout;
+		this.scheduler = scheduler;
+		this.latency = Timer.builder(METRIC_PREFIX + ".latency")
+				.description("Time from a key being requested until its batch completed")
+				.tag("name", name)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		this.batchSize = DistributionSummary.builder(METRIC_PREFIX + ".size")
+				.description("Distinct keys resolved per batch")
+				.tag("name", name)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public Optional<V> load(final K key) {
+		final Timer.Sample sample = Timer.start();
+		final CompletableFuture<V> future = this.enqueue(key);
+		try {
+			return Optional.ofNullable(future.get(this.waitTimeout.toMillis(), TimeUnit.MILLISECONDS));
+		}
+		catch (TimeoutException e) {
+			throw new QueryTimeoutException(String.format("%s batch did not complete within %s", this.name, this.waitTimeout));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a " + this.name + " batch", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		finally {
+			sample.stop(this.latency);
+		}
+	}
+
+	private CompletableFuture<V> enqueue(final K key) {
+		final Batch full;
+		final CompletableFuture<V> future;
+		synchronized (this.lock) {
+			if (this.current == null) {
+				final Batch batch = new Batch();
+				this.current = batch;
+				this.scheduler.schedule(() -> this.dispatch(batch), this.window.toNanos(), TimeUnit.NANOSECONDS);
+			}
+			future = this.current.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+			full = this.current.futures.size() >= this.maxBatchSize ? this.current : null;
+			if (full != null)
+				this.current = null;
+		}
+		// el lote lleno sale ya, sin esperar a que venza la ventana
+		if (full != null)
+			this.scheduler.execute(() -> this.dispatch(full));
+		return future;
+	}
+
+	private void dispatch(final Batch batch) {
+		synchronized (this.lock) {
+			if (batch.dispatched)
+				return;
+			batch.dispatched = true;
+			if (this.current == batch)
+				this.current = null;
+		}
+		this.batchSize.record(batch.futures.size());
+		try {
+			final Map<K, V> results = this.batchFunction.apply(Collections.unmodifiableSet(batch.futures.keySet()));
+			batch.futures.forEach((key, future) -> future.complete(results.get(key)));
+		}
+		catch (RuntimeException | Error e) {
+			log.warn("*** MicroBatchLoader, batching; {} batch of {} keys failed *", this.name, batch.futures.size(), e);
+			batch.futures.values().forEach(future -> future.completeExceptionally(e));
+		}
+	}
+
+	private final class Batch {
+
+		private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+		private boolean dispatched;
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.selimhorri.app.cache;
+
+import java.io.Serializable;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CacheInvalidationMessage implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public enum EntityType {
+		USER, CREDENTIAL, ADDRESS, VERIFICATION_TOKEN
+	}
+	
+	/**
+	 * Instance id of the replica that committed the write; that replica ignores its own messages.
+	 */
+	private String origin;
+	
+	/**
+	 * Hybrid logical clock of the sender, used to discard messages older than one already applied for the same entity.
+	 */
+	private long version;
+	
+	private EntityType entityType;
+	
+	private Integer entityId;
+	
+	private Integer userId;
+	
+	private List<String> usernames;
+	
+	/**
+	 * The write did not read its keys: the near-caches are cleared whole, and the entity id, user id and usernames
+	 * are unset.
+	 */
+	private boolean all;
+	
+}
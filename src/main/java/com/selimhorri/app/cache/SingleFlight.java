@@ -0,0 +1,105 @@
+package com.selimhorri.app.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collapses concurrent lookups of the same key into a single call: the first caller runs the loader, the
+ * others wait for its result (or its exception) instead of issuing the same query. Waiters give up after the
+ * wait timeout and run the loader themselves, so a slow query degrades to uncoalesced reads rather than a
+ * queue of stuck requests. Nothing is kept once the call completes; caching stays with the cache layer.
+ */
+@Component
+@Slf4j
+public class SingleFlight {
+
+	private static final String METRIC_PREFIX = "single.flight";
+
+	private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+	private final Duration waitTimeout;
+	private final MeterRegistry meterRegistry;
+
+	public SingleFlight(@Value("${app.single-flight.wait-timeout:2s}") final Duration waitTimeout,
+			final MeterRegistry meterRegistry) {
+		this.waitTimeout = waitTimeout;
+		this.meterRegistry = meterRegistry;
+		meterRegistry.gaugeMapSize(METRIC_PREFIX + ".in.flight", List.of(), this.inFlight);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T execute(final String name, final Object key, final Supplier<T> loader) {
+		final List<Object> flightKey = List.of(name, key);
+		final CompletableFuture<Object> flight = new CompletableFuture<>();
+		final CompletableFuture<Object> leader = this.inFlight.putIfAbsent(flightKey, flight);
+		if (leader == null)
+			return (T) this.lead(name, flightKey, flight, loader);
+		return (T) this.await(name, leader, loader);
+	}
+
+	private Object lead(final String name, final List<Object> flightKey, final CompletableFuture<Object> flight,
+			final Supplier<?> loader) {
+		this.counter(name, "executed").increment();
+		try {
+			final Object result = loader.get();
+			flight.complete(result);
+			return result;
+		}
+		catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			this.inFlight.remove(flightKey, flight);
+		}
+	}
+
+	private Object await(final String name, final CompletableFuture<Object> leader, final Supplier<?> loader) {
+		try {
+			final Object result = leader.get(this.waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+			this.counter(name, "coalesced").increment();
+			return result;
+		}
+		catch (TimeoutException e) {
+			log.warn("*** SingleFlight, cache; {} still in flight after {}, loading directly *", name, this.waitTimeout);
+			this.counter(name, "timed_out").increment();
+			return loader.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for an in-flight " + name, e);
+		}
+		catch (ExecutionException e) {
+			// the leader's failure is the answer for every caller of the same key
+			this.counter(name, "coalesced").increment();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private Counter counter(final String name, final String result) {
+		return Counter.builder(METRIC_PREFIX + ".calls")
+				.description("Lookups run by a leader, shared with one, or run directly after the wait timed out")
+				.tag("name", name)
+				.tag("result", result)
+				.register(this.meterRegistry);
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.selimhorri.app.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+import com.selimhorri.app.cache.transport.CacheInvalidationTransport;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.domain.VerificationToken;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invalidates, on every replica, the near-cache views of an entity and its Hibernate second-level cache entries
+ * (which are as local to the replica as the near-cache, and would otherwise refill it with the old row).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserCacheInvalidator {
+
+	private final CacheManager cacheManager;
+	private final CacheInvalidationTransport cacheInvalidationTransport;
+	private final ReplicaLagGuard replicaLagGuard;
+	private final EntityManagerFactory entityManagerFactory;
+
+	@Getter
+	private final String instanceId = UUID.randomUUID().toString();
+	private final AtomicLong clock = new AtomicLong();
+
+	/**
+	 * Highest version applied per entity; kept longer than any cache TTL so late duplicates are still recognised.
+	 */
+	private final com.github.benmanes.caffeine.cache.Cache<String, Long> appliedVersions = Caffeine.newBuilder()
+			.maximumSize(100_000)
+			.expireAfterWrite(Duration.ofMinutes(30))
+			.build();
+
+	@PostConstruct
+	public void subscribe() {
+		this.cacheInvalidationTransport.subscribe(this::apply);
+	}
+
+	public void evictUser(final Integer userId, final String... usernames) {
+		this.evict(EntityType.USER, userId, userId, usernames);
+	}
+
+	public void evictCredential(final Integer credentialId, final Integer userId, final String... usernames) {
+		this.evict(EntityType.CREDENTIAL, credentialId, userId, usernames);
+	}
+
+	public void evictAddress(final Integer addressId) {
+		this.evict(EntityType.ADDRESS, addressId, null);
+	}
+
+	public void evictVerificationToken(final Integer verificationTokenId) {
+		this.evict(EntityType.VERIFICATION_TOKEN, verificationTokenId, null);
+	}
+
+	/**
+	 * For credential deletes that did not read their keys: clears the near-caches instead of evicting by user id
+	 * and username. Only valid while {@link #needsKeys()} is false.
+	 */
+	public void evictAllCredentials() {
+		this.evict(CacheInvalidationMessage.builder()
+				.origin(this.instanceId)
+				.version(this.tick())
+				.entityType(EntityType.CREDENTIAL)
+				.usernames(List.of())
+				.all(true)
+				.build());
+	}
+
+	/**
+	 * Whether an eviction needs the exact keys of what was written: the second-level cache and the read-your-writes
+	 * window are keyed by id and username, the near-cache alone can be cleared whole.
+	 */
+	public boolean needsKeys() {
+		return this.replicaLagGuard.isEnabled()
+				|| this.entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().isSecondLevelCacheEnabled();
+	}
+
+	/**
+	 * Drops the cached views of one entity. Inside a transaction the entries are dropped
+	 * right away and once more after commit, so a read racing the write cannot leave the old row cached;
+	 * the other replicas are told only once the write is committed.
+	 */
+	private void evict(final EntityType entityType, final Integer entityId, final Integer userId, final String... usernames) {
+		this.evict(CacheInvalidationMessage.builder()
+				.origin(this.instanceId)
+				.version(this.tick())
+				.entityType(entityType)
+				.entityId(entityId)
+				.userId(userId)
+				.usernames(Stream.of(usernames)
+						.filter(Objects::nonNull)
+						.distinct()
+						.collect(Collectors.toUnmodifiableList()))
+				.build());
+	}
+
+	private void evict(final CacheInvalidationMessage message) {
+		this.evictLocally(message);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					evictLocally(message);
+					cacheInvalidationTransport.publish(message);
+				}
+			});
+		}
+		else {
+			this.cacheInvalidationTransport.publish(message);
+		}
+	}
+
+	/**
+	 * Applies a message from another replica, unless a newer one for the same entity was already applied.
+	 */
+	void apply(final CacheInvalidationMessage message) {
+		if (this.instanceId.equals(message.getOrigin()))
+			return;
+		this.clock.accumulateAndGet(message.getVersion(), Math::max);
+		final String key = message.getEntityType() + ":" + (message.isAll() ? "*" : message.getEntityId());
+		final long version = message.getVersion();
+		final Long applied = this.appliedVersions.asMap()
+				.merge(key, version, Math::max);
+		if (applied != version) {
+			log.debug("*** Void, cache; skip stale invalidation {} v{} (applied v{}) *", key, version, applied);
+			return;
+		}
+		this.evictLocally(message);
+	}
+
+	private long tick() {
+		return this.clock.updateAndGet(previous -> Math.max(previous + 1, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Also opens the read-your-writes window: until it closes, a lookup refilling these entries reads the primary.
+	 */
+	private void evictLocally(final CacheInvalidationMessage message) {
+		final Integer userId = message.getUserId();
+		final List<String> usernames = message.getUsernames();
+		log.debug("*** Void, cache; evict {} {} of user {} / {} *", message.getEntityType(), message.getEntityId(), 
+				userId, usernames);
+		this.replicaLagGuard.recordWrite(message);
+		this.evictSecondLevel(message);
+		if (message.isAll()) {
+			Stream.of(AppConstant.CacheNames.USERS_BY_ID, AppConstant.CacheNames.USERS_BY_USERNAME, 
+					AppConstant.CacheNames.CREDENTIALS_BY_USERNAME)
+				.forEach(name -> this.cache(name).ifPresent(Cache::clear));
+			return;
+		}
+		if (userId != null)
+			this.cache(AppConstant.CacheNames.USERS_BY_ID).ifPresent(cache -> cache.evict(userId));
+		usernames.forEach(username -> {
+			this.cache(AppConstant.CacheNames.USERS_BY_USERNAME).ifPresent(cache -> cache.evict(username));
+			this.cache(AppConstant.CacheNames.CREDENTIALS_BY_USERNAME).ifPresent(cache -> cache.evict(username));
+		});
+	}
+
+	/**
+	 * A no-op unless {@code app.second-level-cache.enabled}. Natural ids cannot be evicted one by one, so a credential
+	 * write drops the whole username to id region.
+	 */
+	private void evictSecondLevel(final CacheInvalidationMessage message) {
+		final org.hibernate.Cache cache = this.entityManagerFactory.unwrap(SessionFactory.class).getCache();
+		final Integer entityId = message.getEntityId();
+		if (message.isAll()) {
+			cache.evictEntityData(Credential.class);
+			cache.evictNaturalIdData(Credential.class);
+			return;
+		}
+		switch (message.getEntityType()) {
+		case USER:
+			cache.evictEntityData(User.class, entityId);
+			break;
+		case CREDENTIAL:
+			cache.evictEntityData(Credential.class, entityId);
+			cache.evictNaturalIdData(Credential.class);
+			break;
+		case ADDRESS:
+			cache.evictEntityData(Address.class, entityId);
+			break;
+		case VERIFICATION_TOKEN:
+			cache.evictEntityData(VerificationToken.class, entityId);
+			break;
+		}
+	}
+
+	private Optional<Cache> cache(final String name) {
+		return Optional.ofNullable(this.cacheManager.getCache(name));
+	}
+
+}
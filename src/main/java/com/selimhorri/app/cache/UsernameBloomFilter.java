@@ -0,0 +1,99 @@
+package com.selimhorri.app.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lock-free Bloom filter over every username ever stored. A negative answer is definite, a positive one
+ * must be confirmed against the database. Until the startup load completes every username is a possible hit.
+ * Usernames are lower-cased so the filter never disagrees with a case-insensitive collation.
+ */
+@Component
+@Slf4j
+public class UsernameBloomFilter {
+	
+	private final AtomicLongArray words;
+	private final long bitCount;
+	private final int hashCount;
+	private volatile boolean ready;
+	
+	public UsernameBloomFilter(
+			@Value("${app.username-filter.expected-insertions:1000000}") final long expectedInsertions, 
+			@Value("${app.username-filter.false-positive-probability:0.01}") final double falsePositiveProbability) {
+		final double ln2 = Math.log(2);
+		final long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+		this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+		this.bitCount = this.words.length() * 64L;
+		this.hashCount = (int) Math.max(1, Math.round((double) this.bitCount / expectedInsertions * ln2));
+		log.info("*** UsernameBloomFilter, cache; {} bits, {} hash functions *", this.bitCount, this.hashCount);
+	}
+	
+	public void put(final String username) {
+		if (username == null)
+			return;
+		final long[] hashes = hashes(username);
+		for (int i = 0; i < this.hashCount; i++) {
+			final long bit = this.index(hashes, i);
+			final int word = (int) (bit >>> 6);
+			final long mask = 1L << bit;
+			long current;
+			while (((current = this.words.get(word)) & mask) == 0 
+					&& !this.words.compareAndSet(word, current, current | mask)) {
+				// retry until set by us or by a concurrent writer
+			}
+		}
+	}
+	
+	/**
+	 * A {@code null} username is a possible hit: the database (or the DTO validation behind it) decides.
+	 */
+	public boolean mightContain(final String username) {
+		if (!this.ready || username == null)
+			return true;
+		final long[] hashes = hashes(username);
+		for (int i = 0; i < this.hashCount; i++) {
+			final long bit = this.index(hashes, i);
+			if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	public void markReady() {
+		this.ready = true;
+	}
+	
+	private long index(final long[] hashes, final int i) {
+		return Math.floorMod(hashes[0] + i * hashes[1], this.bitCount);
+	}
+	
+	/**
+	 * FNV-1a over the UTF-8 bytes, split into two independent hashes with the murmur3 finalizer (double hashing).
+	 */
+	private static long[] hashes(final String username) {
+		long hash = 0xcbf29ce484222325L;
+		for (final byte b : username.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		final long h1 = fmix64(hash);
+		final long h2 = fmix64(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+		return new long[] {h1, h2};
+	}
+	
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+	
+}
@@ -0,0 +1,65 @@
+package com.selimhorri.app.cache;
+
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.selimhorri.app.cache.transport.CacheInvalidationTransport;
+import com.selimhorri.app.repository.CredentialRepository;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UsernameBloomFilterLoader {
+	
+	private final CredentialRepository credentialRepository;
+	private final UsernameBloomFilter usernameBloomFilter;
+	private final CacheInvalidationTransport cacheInvalidationTransport;
+	private final ShardRouter shardRouter;
+	
+	/**
+	 * Usernames written on other replicas arrive with their cache invalidations.
+	 */
+	@PostConstruct
+	public void subscribe() {
+		this.cacheInvalidationTransport.subscribe(message -> message.getUsernames().forEach(this.usernameBloomFilter::put));
+	}
+	
+	/**
+	 * Streams the username column once; writes happening meanwhile add their own usernames to the filter,
+	 * so nothing is lost between the read and {@link UsernameBloomFilter#markReady()}. Sharded, every shard streams
+	 * its own usernames, in parallel.
+	 */
+	@Transactional
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		log.info("*** Void, cache; load username bloom filter *");
+		final long loaded = this.shardRouter.scatter(true, this::loadShard)
+				.stream()
+				.mapToLong(Long::longValue)
+				.sum();
+		this.usernameBloomFilter.markReady();
+		log.info("*** Void, cache; username bloom filter ready with {} usernames *", loaded);
+	}
+	
+	private long loadShard() {
+		long loaded = 0;
+		try (final Stream<String> usernames = this.credentialRepository.streamAllUsernames()) {
+			for (final String username : (Iterable<String>) usernames::iterator) {
+				this.usernameBloomFilter.put(username);
+				loaded++;
+			}
+		}
+		return loaded;
+	}
+	
+}
@@ -0,0 +1,16 @@
+package com.selimhorri.app.cache.transport;
+
+import java.util.function.Consumer;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+
+public interface CacheInvalidationTransport {
+	
+	/**
+	 * Best effort delivery to every replica, the sender included; must not block the calling thread on the network.
+	 */
+	void publish(final CacheInvalidationMessage message);
+	
+	void subscribe(final Consumer<CacheInvalidationMessage> listener);
+	
+}
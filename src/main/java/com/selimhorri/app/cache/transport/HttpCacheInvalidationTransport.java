@@ -0,0 +1,121 @@
+package com.selimhorri.app.cache.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fans each message out to every instance of this service registered in Eureka,
+ * through {@code POST /api/internal/cache-invalidations}. The replicas share {@code app.cache.invalidation.secret},
+ * sent in {@link #SECRET_HEADER}; a message without it is refused, so no other caller can flush the caches.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.transport", havingValue = "http")
+@Slf4j
+public class HttpCacheInvalidationTransport implements CacheInvalidationTransport {
+	
+	public static final String PATH = "/api/internal/cache-invalidations";
+	public static final String SECRET_HEADER = "X-Cache-Invalidation-Secret";
+	
+	private final DiscoveryClient discoveryClient;
+	private final RestTemplate restTemplate;
+	private final String serviceId;
+	private final String contextPath;
+	private final String secret;
+	private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(10_000), runnable -> {
+				final Thread thread = new Thread(runnable, "cache-invalidation-publisher");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	public HttpCacheInvalidationTransport(final DiscoveryClient discoveryClient, 
+			final RestTemplateBuilder restTemplateBuilder, 
+			@Value("${spring.application.name}") final String serviceId, 
+			@Value("${server.servlet.context-path:}") final String contextPath, 
+			@Value("${app.cache.invalidation.secret}") final String secret) {
+		if (secret.isBlank())
+			throw new IllegalArgumentException("app.cache.invalidation.secret must not be blank");
+		this.discoveryClient = discoveryClient;
+		// deliberately not the @LoadBalanced bean: every instance is targeted by its own uri
+		this.restTemplate = restTemplateBuilder
+				.setConnectTimeout(Duration.ofMillis(500))
+				.setReadTimeout(Duration.ofSeconds(1))
+				.build();
+		this.serviceId = serviceId;
+		this.contextPath = contextPath;
+		this.secret = secret;
+	}
+	
+	@Override
+	public void publish(final CacheInvalidationMessage message) {
+		try {
+			this.executor.execute(() -> this.discoveryClient.getInstances(this.serviceId)
+					.forEach(instance -> this.send(instance, message)));
+		}
+		catch (RejectedExecutionException e) {
+			// the local cache TTL still bounds how long the other replicas stay stale
+			log.warn("*** Void, cache; invalidation backlog full, dropping {} *", message);
+		}
+	}
+	
+	private void send(final ServiceInstance instance, final CacheInvalidationMessage message) {
+		try {
+			final HttpHeaders headers = new HttpHeaders();
+			headers.set(SECRET_HEADER, this.secret);
+			this.restTemplate.postForEntity(instance.getUri() + this.contextPath + PATH, new HttpEntity<>(message, headers), 
+					Void.class);
+		}
+		catch (RestClientException e) {
+			log.warn("*** Void, cache; invalidation to {} failed: {} *", instance.getUri(), e.getMessage());
+		}
+	}
+	
+	@Override
+	public void subscribe(final Consumer<CacheInvalidationMessage> listener) {
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * Constant-time comparison with the shared secret.
+	 */
+	public boolean isTrusted(final String secret) {
+		return secret != null && MessageDigest.isEqual(this.secret.getBytes(StandardCharsets.UTF_8), 
+				secret.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	public void receive(final CacheInvalidationMessage message) {
+		this.listeners.forEach(listener -> listener.accept(message));
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+	
+}
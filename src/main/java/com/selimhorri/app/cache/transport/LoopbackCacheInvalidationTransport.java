@@ -0,0 +1,31 @@
+package com.selimhorri.app.cache.transport;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+
+/**
+ * In-JVM transport: single instance deployments, and tests wiring several invalidators to one transport.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.transport", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+	
+	private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+	
+	@Override
+	public void publish(final CacheInvalidationMessage message) {
+		this.listeners.forEach(listener -> listener.accept(message));
+	}
+	
+	@Override
+	public void subscribe(final Consumer<CacheInvalidationMessage> listener) {
+		this.listeners.add(listener);
+	}
+	
+}
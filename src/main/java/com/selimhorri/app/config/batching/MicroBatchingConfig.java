@@ -0,0 +1,119 @@
+package com.selimhorri.app.config.batching;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.repository.AddressRepository;
+import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Opt-in with {@code app.micro-batching.enabled=true}: single-id reads of users and addresses arriving within
+ * {@code window} of each other are resolved with one {@code IN (...)} query. Tune the window against the
+ * {@code micro.batch.size} and {@code micro.batch.latency} histograms. Sharded, a batch is split by shard and the
+ * shards are queried in parallel.
+ */
+@Configuration
+public class MicroBatchingConfig {
+	
+	private final boolean enabled;
+	private final Duration window;
+	private final int maxBatchSize;
+	private final Duration waitTimeout;
+	
+	/**
+	 * Not a bean: an exposed {@link ScheduledExecutorService} would be picked up as the {@code @Scheduled} executor
+	 * and make Boot back off its own task scheduler. Core threads start with the first batch, so a disabled
+	 * replica never creates them.
+	 */
+	private final ScheduledExecutorService scheduler;
+	
+	public MicroBatchingConfig(
+			@Value("${app.micro-batching.enabled:false}") final boolean enabled, 
+			@Value("${app.micro-batching.window:2ms}") final Duration window, 
+			@Value("${app.micro-batching.max-batch-size:100}") final int maxBatchSize, 
+			@Value("${app.micro-batching.wait-timeout:2s}") final Duration waitTimeout, 
+			@Value("${app.micro-batching.pool-size:2}") final int poolSize) {
+		if (maxBatchSize < 1 || maxBatchSize > AppConstant.MAX_BATCH_GET_SIZE)
+			throw new IllegalArgumentException(String.format("app.micro-batching.max-batch-size must be between 1 and %d, got: %d", 
+					AppConstant.MAX_BATCH_GET_SIZE, maxBatchSize));
+		this.enabled = enabled;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.waitTimeout = waitTimeout;
+		final AtomicInteger threads = new AtomicInteger();
+		this.scheduler = Executors.newScheduledThreadPool(poolSize, runnable -> {
+			final Thread thread = new Thread(runnable, "micro-batch-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		this.scheduler.shutdown();
+	}
+	
+	@Bean
+	public MicroBatchLoader<Integer, User> userBatchLoader(final UserRepository userRepository, 
+			final PlatformTransactionManager transactionManager, final ShardRouter shardRouter, 
+			final MeterRegistry meterRegistry) {
+		final TransactionTemplate readOnly = readOnly(transactionManager);
+		return new MicroBatchLoader<>("users", this.enabled, 
+				userIds -> readOnly.execute(status -> merge(shardRouter.scatter(userIds, true, 
+						ids -> index(userRepository.findAllWithCredentialByIdIn(ids), User::getUserId)))), 
+				this.window, this.maxBatchSize, this.waitTimeout, this.scheduler, meterRegistry);
+	}
+	
+	@Bean
+	public MicroBatchLoader<Integer, Address> addressBatchLoader(final AddressRepository addressRepository, 
+			final PlatformTransactionManager transactionManager, final ShardRouter shardRouter, 
+			final MeterRegistry meterRegistry) {
+		final TransactionTemplate readOnly = readOnly(transactionManager);
+		return new MicroBatchLoader<>("addresses", this.enabled, 
+				addressIds -> readOnly.execute(status -> merge(shardRouter.scatter(addressIds, true, 
+						ids -> index(addressRepository.findAllByAddressIdIn(ids), Address::getAddressId)))), 
+				this.window, this.maxBatchSize, this.waitTimeout, this.scheduler, meterRegistry);
+	}
+	
+	private static TransactionTemplate readOnly(final PlatformTransactionManager transactionManager) {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		return transactionTemplate;
+	}
+	
+	private static <T> Map<Integer, T> index(final List<T> entities, final Function<T, Integer> id) {
+		return entities.stream()
+				.collect(Collectors.toMap(id, Function.identity()));
+	}
+	
+	private static <T> Map<Integer, T> merge(final List<Map<Integer, T>> shards) {
+		if (shards.size() == 1)
+			return shards.get(0);
+		final Map<Integer, T> merged = new HashMap<>();
+		shards.forEach(merged::putAll);
+		return merged;
+	}
+	
+}
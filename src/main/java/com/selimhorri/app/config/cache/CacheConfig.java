@@ -0,0 +1,20 @@
+package com.selimhorri.app.config.cache;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * The Caffeine cache manager itself is auto-configured from {@code spring.cache.*};
+ * its hit/miss/eviction statistics are bound to the Prometheus registry by actuator.
+ * <p>
+ * The cache advice runs outside the transaction advice, so a cache hit is answered without beginning a transaction
+ * and a miss is only cached once its transaction has completed. Beginning one is not free even when no statement
+ * follows: it opens an EntityManager and, to mark it read-only, takes a pooled connection. With read/write routing
+ * the {@code LazyConnectionDataSourceProxy} defers that physical connection to the first statement, since the
+ * replica is only chosen then, but the rest of the transaction setup still happens.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+}
@@ -0,0 +1,90 @@
+package com.selimhorri.app.config.cache;
+
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.SharedCacheMode;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Hibernate second-level cache, backed by Caffeine through JCache. Regions are created here from
+ * {@code app.second-level-cache.regions}, so each profile sizes them in its own yml. Entries are
+ * local to the replica: the writes of other replicas evict them through the
+ * {@link com.selimhorri.app.cache.UserCacheInvalidator} messages, the expiry only bounds a lost message.
+ */
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+@ConditionalOnProperty(name = "app.second-level-cache.enabled", havingValue = "true")
+public class SecondLevelCacheConfig {
+	
+	@Bean(destroyMethod = "close")
+	public CacheManager secondLevelCacheManager(final SecondLevelCacheProperties properties) {
+		final CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+		// a manager of its own rather than the provider default, each application context creates its regions afresh
+		final CacheManager cacheManager = provider.getCacheManager(
+				URI.create("second-level-cache:" + UUID.randomUUID()), provider.getDefaultClassLoader());
+		properties.getRegions().forEach((name, region) -> {
+			final CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+			configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+			configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+			// Hibernate stores its own disassembled entries; the JCache default would copy each one through Java serialization
+			configuration.setStoreByValue(false);
+			cacheManager.createCache(name, configuration);
+		});
+		return cacheManager;
+	}
+	
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCacheCustomizer(final CacheManager secondLevelCacheManager) {
+		return hibernateProperties -> {
+			hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+			hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+			hibernateProperties.put(AvailableSettings.JPA_SHARED_CACHE_MODE, SharedCacheMode.ENABLE_SELECTIVE);
+			hibernateProperties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+			hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+			// region statistics feed the hit ratio gauges below
+			hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+		};
+	}
+	
+	@Bean
+	public MeterBinder secondLevelCacheMetrics(final EntityManagerFactory entityManagerFactory, 
+			final SecondLevelCacheProperties properties) {
+		return meterRegistry -> {
+			final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+			properties.getRegions().keySet().forEach(region -> Gauge
+					.builder("hibernate.second.level.cache.hit.ratio", statistics, stats -> hitRatio(stats, region))
+					.tag("region", region)
+					.description("Share of second-level cache lookups answered by the region")
+					.register(meterRegistry));
+		};
+	}
+	
+	private static double hitRatio(final Statistics statistics, final String region) {
+		final CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+		final long lookups = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+		return lookups == 0 ? 0.0 : (double) regionStatistics.getHitCount() / lookups;
+	}
+	
+}
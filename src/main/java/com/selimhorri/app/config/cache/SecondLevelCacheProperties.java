@@ -0,0 +1,30 @@
+package com.selimhorri.app.config.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * One entry per {@link com.selimhorri.app.constant.AppConstant.CacheRegions region}; a region missing here fails
+ * the startup instead of silently growing without bound.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.second-level-cache")
+public class SecondLevelCacheProperties {
+	
+	private boolean enabled;
+	private Map<String, Region> regions = new LinkedHashMap<>();
+	
+	@Data
+	public static class Region {
+		
+		private long maximumSize = 10_000;
+		private Duration expireAfterWrite = Duration.ofMinutes(10);
+		
+	}
+	
+}
@@ -0,0 +1,106 @@
+package com.selimhorri.app.config.datasource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.selimhorri.app.datasource.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in with {@code app.datasource.routing.enabled=true}: read-only transactions (the query methods of the
+ * services) read from {@code app.datasource.routing.replicas}, everything else goes to the primary. Replaces Boot's
+ * {@code DataSource}; JPA, Flyway and JdbcTemplate all go through the routing one.
+ * <p>
+ * Every pool is exported as {@code hikaricp.*} tagged with its pool name ({@code primary}, {@code replica-1}, ...),
+ * and {@code datasource.routing.connections} counts the connections handed out per target.
+ */
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(ReadWriteRoutingProperties.class)
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadWriteRoutingConfig {
+
+	/**
+	 * Not beans: Boot would find several {@code DataSource}s, and JPA must only see the routing one.
+	 */
+	private final List<HikariDataSource> pools = new ArrayList<>();
+	private final ReadWriteRoutingDataSource routingDataSource;
+
+	public ReadWriteRoutingConfig(final ReadWriteRoutingProperties properties,
+			final DataSourceProperties dataSourceProperties, final Environment environment) {
+		final Binder binder = Binder.get(environment);
+		final HikariDataSource primary = this.pool(binder, dataSourceProperties, ReadWriteRoutingDataSource.PRIMARY,
+				dataSourceProperties.determineUrl(), dataSourceProperties.determineUsername(),
+				dataSourceProperties.determinePassword());
+
+		final Map<String, DataSource> replicas = new LinkedHashMap<>();
+		for (final ReadWriteRoutingProperties.Replica replica : properties.getReplicas()) {
+			final String name = "replica-" + (replicas.size() + 1);
+			// sin credenciales propias, las del primario
+			replicas.put(name, this.pool(binder, dataSourceProperties, name, replica.getUrl(),
+					replica.getUsername() == null ? dataSourceProperties.determineUsername() : replica.getUsername(),
+					replica.getPassword() == null ? dataSourceProperties.determinePassword() : replica.getPassword()));
+		}
+		this.routingDataSource = new ReadWriteRoutingDataSource(primary, replicas);
+		log.info("*** ReadWriteRoutingConfig, config; read-only transactions routed to {} replica(s) *", replicas.size());
+	}
+
+	private HikariDataSource pool(final Binder binder, final DataSourceProperties dataSourceProperties, final String name,
+			final String url, final String username, final String password) {
+		final HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.url(url)
+				.username(username)
+				.password(password)
+				.build();
+		binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+		pool.setPoolName(name);
+		this.pools.add(pool);
+		return pool;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.pools.forEach(HikariDataSource::close);
+	}
+
+	@Bean
+	public DataSource dataSource() {
+		return new LazyConnectionDataSourceProxy(this.routingDataSource);
+	}
+
+	@Bean
+	public MeterBinder readWriteRoutingMetrics() {
+		return registry -> {
+			this.pools.stream()
+					.filter(pool -> pool.getMetricsTrackerFactory() == null)
+					.forEach(pool -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+			this.routingDataSource.getTargets().forEach(target -> FunctionCounter
+					.builder("datasource.routing.connections", this.routingDataSource, routing -> routing.getRoutedCount(target))
+					.tag("target", target)
+					.description("Connections handed out by the routing data source")
+					.register(registry));
+		};
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.selimhorri.app.config.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * The primary is {@code spring.datasource.*}; each replica gets a pool of its own with the same
+ * {@code spring.datasource.hikari.*} settings, and the primary's credentials unless it names its own. The
+ * read-your-writes window is read by {@link com.selimhorri.app.datasource.ReplicaLagGuard}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class ReadWriteRoutingProperties {
+
+	private boolean enabled;
+	private List<Replica> replicas = new ArrayList<>();
+
+	@Data
+	public static class Replica {
+
+		private String url;
+		private String username;
+		private String password;
+
+	}
+
+}
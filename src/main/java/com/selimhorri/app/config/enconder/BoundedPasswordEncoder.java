@@ -0,0 +1,116 @@
+package com.selimhorri.app.config.enconder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.selimhorri.app.exception.wrapper.PasswordHashingUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Runs the delegate on a fixed-size pool with a bounded queue. When the queue is full, or the hash is not
+ * done within the timeout, callers get a {@link PasswordHashingUnavailableException} (503) instead of
+ * more threads piling up behind the CPU.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+	
+	private static final String METRIC_PREFIX = "password.hashing";
+	
+	private final PasswordEncoder delegate;
+	private final ThreadPoolExecutor threadPoolExecutor;
+	private final ExecutorService executor;
+	private final Duration timeout;
+	private final Timer latency;
+	private final Counter rejected;
+	
+	public BoundedPasswordEncoder(final PasswordEncoder delegate, final int poolSize, final int queueCapacity, 
+			final Duration timeout, final MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+		final AtomicInteger threads = new AtomicInteger();
+		this.threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					final Thread thread = new Thread(runnable, "password-hashing-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		// queue depth, active threads and time spent queued come from the executor binder
+		this.executor = ExecutorServiceMetrics.monitor(meterRegistry, this.threadPoolExecutor, METRIC_PREFIX, List.<Tag>of());
+		this.timeout = timeout;
+		this.latency = Timer.builder(METRIC_PREFIX + ".latency")
+				.description("Queueing plus hashing time seen by the caller")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		this.rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+				.description("Hash requests refused because the pool was saturated or timed out")
+				.register(meterRegistry);
+	}
+	
+	@Override
+	public String encode(final CharSequence rawPassword) {
+		return this.call(() -> this.delegate.encode(rawPassword));
+	}
+	
+	@Override
+	public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+		return this.call(() -> this.delegate.matches(rawPassword, encodedPassword));
+	}
+	
+	@Override
+	public boolean upgradeEncoding(final String encodedPassword) {
+		return this.delegate.upgradeEncoding(encodedPassword);
+	}
+	
+	private <T> T call(final Callable<T> task) {
+		final Timer.Sample sample = Timer.start();
+		final Future<T> future;
+		try {
+			future = this.executor.submit(task);
+		}
+		catch (RejectedExecutionException e) {
+			this.rejected.increment();
+			throw new PasswordHashingUnavailableException("Password hashing is saturated, retry later");
+		}
+		try {
+			return future.get(this.timeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			future.cancel(true);
+			this.rejected.increment();
+			throw new PasswordHashingUnavailableException("Password hashing timed out, retry later");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			throw new PasswordHashingUnavailableException("Interrupted while waiting for password hashing");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		finally {
+			sample.stop(this.latency);
+		}
+	}
+	
+	public void shutdown() {
+		this.threadPoolExecutor.shutdown();
+	}
+	
+}
@@ -1,16 +1,24 @@
 package com.selimhorri.app.config.enconder;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class EncoderConfig {
     
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(final MeterRegistry meterRegistry, 
+            @Value("${app.password-hashing.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") final int poolSize, 
+            @Value("${app.password-hashing.queue-capacity:64}") final int queueCapacity, 
+            @Value("${app.password-hashing.timeout:2s}") final Duration timeout) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, timeout, meterRegistry);
     }
     
 }
@@ -0,0 +1,123 @@
+package com.selimhorri.app.config.reactive;
+
+import static io.r2dbc.spi.ConnectionFactoryOptions.PASSWORD;
+import static io.r2dbc.spi.ConnectionFactoryOptions.USER;
+
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.reactive.ReactiveReadHandler;
+import com.selimhorri.app.reactive.ReactiveReadRepository;
+import com.selimhorri.app.reactive.ReactiveReadServer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in with {@code app.reactive-read.enabled=true}: the user and credential lookups by id and username are also
+ * served by a Netty server on {@code app.reactive-read.port}, reading through R2DBC, so slow database round trips
+ * park no thread and the number of open client connections is bounded by memory rather than by Tomcat workers.
+ * Concurrency against the database is bounded by the pool; past {@code max-pending-acquire} waiting lookups, or
+ * after {@code max-acquire-time}, requests are answered with 503.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "app.reactive-read.enabled", havingValue = "true")
+public class ReactiveReadConfig {
+
+	private static final String METRIC_PREFIX = "reactive.read.pool";
+
+	/**
+	 * Not a bean: a {@code ConnectionFactory} in the context makes Boot back off its JDBC {@code DataSource}, and
+	 * JPA with it.
+	 */
+	private final ConnectionPool connectionPool;
+
+	public ReactiveReadConfig(
+			@Value("${app.reactive-read.url}") final String url,
+			@Value("${app.reactive-read.username:}") final String username,
+			@Value("${app.reactive-read.password:}") final String password,
+			@Value("${app.reactive-read.pool.initial-size:2}") final int initialSize,
+			@Value("${app.reactive-read.pool.max-size:20}") final int maxSize,
+			@Value("${app.reactive-read.pool.max-acquire-time:3s}") final Duration maxAcquireTime,
+			@Value("${app.reactive-read.pool.max-pending-acquire:10000}") final int maxPendingAcquire) {
+		final ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+		if (!username.isBlank())
+			options.option(USER, username).option(PASSWORD, password);
+		this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+				.name("reactive-read")
+				.initialSize(initialSize)
+				.maxSize(maxSize)
+				.maxAcquireTime(maxAcquireTime)
+				.customizer(pool -> pool.maxPendingAcquire(maxPendingAcquire))
+				.build());
+		log.info("*** ReactiveReadConfig, config; reactive lookups through a pool of {} connections *", maxSize);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.connectionPool.dispose();
+	}
+
+	@Bean
+	public ReactiveReadRepository reactiveReadRepository() {
+		return new ReactiveReadRepository(DatabaseClient.create(this.connectionPool));
+	}
+
+	@Bean
+	public ReactiveReadHandler reactiveReadHandler(final ReactiveReadRepository reactiveReadRepository) {
+		return new ReactiveReadHandler(reactiveReadRepository);
+	}
+
+	@Bean
+	public ReactiveReadServer reactiveReadServer(final ReactiveReadHandler reactiveReadHandler,
+			final ObjectMapper objectMapper,
+			@Value("${app.reactive-read.port:8701}") final int port,
+			@Value("${app.reactive-read.base-path:}") final String basePath) {
+		// el mismo ObjectMapper que usa MVC, para que los cuerpos sean idénticos
+		final HandlerStrategies strategies = HandlerStrategies.builder()
+				.codecs(codecs -> {
+					codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+					codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+				})
+				.build();
+		return new ReactiveReadServer(new NettyReactiveWebServerFactory(port)
+				.getWebServer(RouterFunctions.toHttpHandler(reactiveReadHandler.routes(basePath), strategies)));
+	}
+
+	@Bean
+	public MeterBinder reactiveReadPoolMetrics() {
+		return registry -> {
+			this.gauge("acquired", "Connections handed out to running lookups", PoolMetrics::acquiredSize).register(registry);
+			this.gauge("idle", "Connections ready to be acquired", PoolMetrics::idleSize).register(registry);
+			this.gauge("pending", "Lookups waiting for a connection", PoolMetrics::pendingAcquireSize).register(registry);
+		};
+	}
+
+	private Gauge.Builder<ConnectionPool> gauge(final String name, final String description, final ToIntFunction<PoolMetrics> metric) {
+		return Gauge.builder(METRIC_PREFIX + "." + name, this.connectionPool,
+					pool -> pool.getMetrics().map(metric::applyAsInt).orElse(0))
+				.description(description);
+	}
+
+}
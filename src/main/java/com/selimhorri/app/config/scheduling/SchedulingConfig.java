@@ -0,0 +1,15 @@
+package com.selimhorri.app.config.scheduling;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs can be switched off per replica with {@code app.scheduling.enabled=false};
+ * the leader lock already keeps enabled replicas from running the same job concurrently.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,193 @@
+package com.selimhorri.app.config.sharding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.selimhorri.app.sharding.ShardAwareTableGenerator;
+import com.selimhorri.app.sharding.ShardLayout;
+import com.selimhorri.app.sharding.ShardRouter;
+import com.selimhorri.app.sharding.ShardRoutingDataSource;
+import com.selimhorri.app.sharding.UsernameShardDirectory;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in with {@code app.sharding.enabled=true}: users, their credentials, addresses and verification tokens are
+ * spread over the home database and {@code app.sharding.shards}, by user id. Replaces Boot's {@code DataSource}
+ * with one routing on the shard bound by {@link ShardRouter}, and runs the Flyway migrations on every shard
+ * ({@code V19} then drops the seed rows belonging to other shards).
+ * <p>
+ * Sharding can only be turned on, or shards added, against empty databases (seed rows aside): a database holding
+ * rows of other shards stops the start ({@link ShardLayout}) until they are moved, offline, by starting once with
+ * {@code app.sharding.rebalance=true}. Turning it off, or dropping shards, is not supported.
+ * <p>
+ * Disabled, only an {@link ShardRouter#unsharded() unsharded} router is exposed and nothing else changes. Cannot
+ * be combined with replica routing ({@code app.datasource.routing}) nor with the R2DBC read path, both of which
+ * read a single database.
+ * <p>
+ * Every pool is exported as {@code hikaricp.*} tagged with its pool name ({@code shard-0}, {@code shard-1}, ...),
+ * and {@code sharding.connections} counts the connections handed out per shard.
+ */
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+	static final String SHARD_INDEX_PLACEHOLDER = "shard_index";
+	static final String SHARD_COUNT_PLACEHOLDER = "shard_count";
+
+	private final ShardingProperties properties;
+	/**
+	 * Not beans, for the same reason as the pools of
+	 * {@link com.selimhorri.app.config.datasource.ReadWriteRoutingConfig}.
+	 */
+	private final List<HikariDataSource> pools = new ArrayList<>();
+	private final ShardRoutingDataSource routingDataSource;
+	private final ExecutorService scatterExecutor;
+
+	public ShardingConfig(final ShardingProperties properties, final DataSourceProperties dataSourceProperties,
+			final Environment environment) {
+		this.properties = properties;
+		if (!properties.isEnabled()) {
+			this.routingDataSource = null;
+			this.scatterExecutor = null;
+			return;
+		}
+		if (environment.getProperty("app.datasource.routing.enabled", Boolean.class, false)
+				|| environment.getProperty("app.reactive-read.enabled", Boolean.class, false))
+			throw new IllegalStateException(
+					"app.sharding cannot be combined with app.datasource.routing nor app.reactive-read");
+
+		final Binder binder = Binder.get(environment);
+		this.pool(binder, dataSourceProperties, dataSourceProperties.determineUrl(),
+				dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+		// sin credenciales propias, las del shard de origen
+		properties.getShards().forEach(shard -> this.pool(binder, dataSourceProperties, shard.getUrl(),
+				shard.getUsername() == null ? dataSourceProperties.determineUsername() : shard.getUsername(),
+				shard.getPassword() == null ? dataSourceProperties.determinePassword() : shard.getPassword()));
+		this.routingDataSource = new ShardRoutingDataSource(this.pools);
+
+		final AtomicInteger threads = new AtomicInteger();
+		this.scatterExecutor = Executors.newFixedThreadPool(properties.getScatterPoolSize(), runnable -> {
+			final Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		log.info("*** ShardingConfig, config; users spread over {} shard(s) *", this.pools.size());
+	}
+
+	private void pool(final Binder binder, final DataSourceProperties dataSourceProperties, final String url,
+			final String username, final String password) {
+		final HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.url(url)
+				.username(username)
+				.password(password)
+				.build();
+		binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+		pool.setPoolName("shard-" + this.pools.size());
+		this.pools.add(pool);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (this.scatterExecutor != null)
+			this.scatterExecutor.shutdown();
+		this.pools.forEach(HikariDataSource::close);
+	}
+
+	@Bean
+	public ShardRouter shardRouter(final ObjectProvider<PlatformTransactionManager> transactionManager) {
+		if (!this.properties.isEnabled())
+			return ShardRouter.unsharded();
+		return ShardRouter.sharded(
+				new UsernameShardDirectory(new ArrayList<>(this.pools), this.properties.getReservationTimeout()),
+				transactionManager.getObject(), this.scatterExecutor);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+	public DataSource dataSource() {
+		return new LazyConnectionDataSourceProxy(this.routingDataSource);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+	public HibernatePropertiesCustomizer shardingHibernateCustomizer() {
+		return hibernateProperties -> hibernateProperties.put(ShardAwareTableGenerator.SHARD_COUNT, this.pools.size());
+	}
+
+	/**
+	 * Replaces Boot's single {@code migrate()}: the same configuration, once per shard, each told which shard it
+	 * is through the {@code shard_index} and {@code shard_count} placeholders. Then, sharded or not, every database
+	 * is checked to be laid out for its shard ({@link ShardLayout}).
+	 */
+	@Bean
+	public FlywayMigrationStrategy shardingMigrationStrategy() {
+		return flyway -> {
+			if (!this.properties.isEnabled()) {
+				flyway.migrate();
+				new ShardLayout(List.of(flyway.getConfiguration().getDataSource())).check(false);
+				return;
+			}
+			for (int shard = 0; shard < this.pools.size(); shard++) {
+				final Map<String, String> placeholders = new HashMap<>(flyway.getConfiguration().getPlaceholders());
+				placeholders.put(SHARD_INDEX_PLACEHOLDER, String.valueOf(shard));
+				placeholders.put(SHARD_COUNT_PLACEHOLDER, String.valueOf(this.pools.size()));
+				Flyway.configure()
+						.configuration(flyway.getConfiguration())
+						.dataSource(this.pools.get(shard))
+						.placeholders(placeholders)
+						.load()
+						.migrate();
+			}
+			new ShardLayout(this.pools).check(this.properties.isRebalance());
+		};
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+	public MeterBinder shardingMetrics() {
+		return registry -> {
+			this.pools.stream()
+					.filter(pool -> pool.getMetricsTrackerFactory() == null)
+					.forEach(pool -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+			for (int shard = 0; shard < this.pools.size(); shard++) {
+				final int index = shard;
+				FunctionCounter.builder("sharding.connections", this.routingDataSource,
+								routing -> routing.getRoutedCount(index))
+						.tag("shard", String.valueOf(shard))
+						.description("Connections handed out by the shard routing data source")
+						.register(registry);
+			}
+		};
+	}
+
+}
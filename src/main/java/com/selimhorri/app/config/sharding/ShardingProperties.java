@@ -0,0 +1,45 @@
+package com.selimhorri.app.config.sharding;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * The home shard (0) is {@code spring.datasource.*}; each entry of {@code shards} adds one more, numbered in order,
+ * with the same {@code spring.datasource.hikari.*} settings and the home credentials unless it names its own. The
+ * shard count is fixed by this list: adding shards moves rows between them, only done with {@code rebalance}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+	private boolean enabled;
+	private List<Shard> shards = new ArrayList<>();
+	/**
+	 * Threads running the per-shard queries of listings, batch gets and bulk deletes.
+	 */
+	private int scatterPoolSize = 8;
+	/**
+	 * How long a username reservation is kept while its credential is on no shard (a save still in flight).
+	 */
+	private Duration reservationTimeout = Duration.ofMinutes(1);
+	/**
+	 * Moves the rows found on the wrong shard on start (an existing database turned sharded, or shards added)
+	 * instead of refusing to start. Only with no other instance running.
+	 */
+	private boolean rebalance;
+
+	@Data
+	public static class Shard {
+
+		private String url;
+		private String username;
+		private String password;
+
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.selimhorri.app.config.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * With {@code app.threads.virtual=true} (the {@code virtual-threads} profile) every request, {@code @Async} task
+ * and scheduled job runs on its own virtual thread, so a request blocked on JDBC no longer holds one of a fixed
+ * number of Tomcat workers; the Hikari pool becomes the only limit on concurrent database work. The code is still
+ * compiled for Java 11, so virtual threads are reached reflectively and startup fails on an older runtime.
+ * The CPU-bound password hashing pool keeps its platform threads.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+	
+	public VirtualThreadsConfig() {
+		log.info("*** VirtualThreadsConfig, config; request handling, async and scheduled work on virtual threads *");
+	}
+	
+	@Bean
+	public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+		final Executor executor = threadPerTask(virtualThreadFactory("tomcat-handler-"));
+		return protocolHandler -> protocolHandler.setExecutor(executor);
+	}
+	
+	@Bean(name = {
+			TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, 
+			AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+	})
+	public AsyncTaskExecutor applicationTaskExecutor() {
+		return new SimpleAsyncTaskExecutor(virtualThreadFactory("task-"));
+	}
+	
+	@Bean
+	public TaskSchedulerCustomizer virtualThreadsTaskSchedulerCustomizer() {
+		return taskScheduler -> taskScheduler.setThreadFactory(virtualThreadFactory("scheduling-"));
+	}
+	
+	private static Executor threadPerTask(final ThreadFactory threadFactory) {
+		return task -> threadFactory.newThread(task).start();
+	}
+	
+	/**
+	 * {@code Thread.ofVirtual().name(prefix, 0).factory()}, resolved at runtime.
+	 */
+	static ThreadFactory virtualThreadFactory(final String prefix) {
+		try {
+			final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			final Method name = builderType.getMethod("name", String.class, long.class);
+			final Method factory = builderType.getMethod("factory");
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) factory.invoke(name.invoke(builder, prefix, 0L));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(String.format(
+					"app.threads.virtual=true needs a Java 21 runtime, running on %s", Runtime.version()), e);
+		}
+	}
+	
+}
@@ -11,6 +11,40 @@ public abstract class AppConstant {
 	public static final String ZONED_DATE_TIME_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
 	public static final String INSTANT_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
 	
+	public static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+	
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAX_PAGE_SIZE = 500;
+	public static final int MAX_BATCH_GET_SIZE = 500;
+	public static final int MAX_BULK_IMPORT_SIZE = 10_000;
+	public static final int MAX_BULK_DELETE_SIZE = 1000;
+	
+	/**
+	 * Must match {@code spring.cache.cache-names} so the caches exist, and get their metrics bound, at startup.
+	 */
+	@NoArgsConstructor(access = AccessLevel.PRIVATE)
+	public abstract class CacheNames {
+		
+		public static final String USERS_BY_ID = "usersById";
+		public static final String USERS_BY_USERNAME = "usersByUsername";
+		public static final String CREDENTIALS_BY_USERNAME = "credentialsByUsername";
+		
+	}
+	
+	/**
+	 * Hibernate second-level cache regions; each one must be configured under {@code app.second-level-cache.regions}.
+	 */
+	@NoArgsConstructor(access = AccessLevel.PRIVATE)
+	public abstract class CacheRegions {
+		
+		public static final String USERS = "users";
+		public static final String CREDENTIALS = "credentials";
+		public static final String CREDENTIALS_BY_USERNAME = "credentialsNaturalId";
+		public static final String ADDRESSES = "addresses";
+		public static final String VERIFICATION_TOKENS = "verificationTokens";
+		
+	}
+	
 	@NoArgsConstructor(access = AccessLevel.PRIVATE)
 	public abstract class DiscoveredDomainsApi {
 		
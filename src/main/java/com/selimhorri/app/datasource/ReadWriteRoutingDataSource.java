@@ -0,0 +1,71 @@
+package com.selimhorri.app.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the connections of read-only transactions to the replicas, round robin, and everything else to the
+ * primary: read-write transactions, work outside a transaction (Flyway, Hibernate bootstrap) and read-only
+ * transactions {@link ReplicaLagGuard#isPinned() pinned} for read-your-writes.
+ * <p>
+ * The decision is taken when a physical connection is fetched, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the transaction manager asks for its
+ * connection before the read-only flag of the new transaction is published.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	public static final String PRIMARY = "primary";
+
+	private final List<String> replicas;
+	private final AtomicInteger next = new AtomicInteger();
+	private final Map<String, AtomicLong> routed = new LinkedHashMap<>();
+
+	public ReadWriteRoutingDataSource(final DataSource primary, final Map<String, DataSource> replicas) {
+		this.replicas = List.copyOf(replicas.keySet());
+		final Map<Object, Object> targets = new HashMap<>(replicas);
+		targets.put(PRIMARY, primary);
+		this.setTargetDataSources(targets);
+		this.setDefaultTargetDataSource(primary);
+		this.setLenientFallback(false);
+		this.routed.put(PRIMARY, new AtomicLong());
+		this.replicas.forEach(replica -> this.routed.put(replica, new AtomicLong()));
+		this.afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		final String target = this.isReplicaRead()
+				? this.replicas.get(Math.floorMod(this.next.getAndIncrement(), this.replicas.size()))
+				: PRIMARY;
+		this.routed.get(target).incrementAndGet();
+		return target;
+	}
+
+	private boolean isReplicaRead() {
+		return !this.replicas.isEmpty()
+				&& TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				&& !ReplicaLagGuard.isPinned();
+	}
+
+	public List<String> getTargets() {
+		return new ArrayList<>(this.routed.keySet());
+	}
+
+	/**
+	 * Connections fetched from the target since startup.
+	 */
+	public long getRoutedCount(final String target) {
+		return this.routed.get(target).get();
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.selimhorri.app.datasource;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-your-writes on top of {@link ReadWriteRoutingDataSource}: for {@code app.datasource.routing.read-your-writes-window}
+ * after an entity is written (here or, through the cache invalidation messages, on another replica of the service)
+ * its lookups read from the primary. Without it a lookup right after the write could read the row from a
+ * replica that has not applied it yet, and put it back in the near-cache that was just invalidated.
+ * <p>
+ * A no-op unless {@code app.datasource.routing.enabled}.
+ */
+@Component
+@Slf4j
+public class ReplicaLagGuard {
+
+	private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+	private final boolean enabled;
+	private final Cache<String, Boolean> recentWrites;
+
+	@Autowired
+	public ReplicaLagGuard(@Value("${app.datasource.routing.enabled:false}") final boolean enabled,
+			@Value("${app.datasource.routing.read-your-writes-window:2s}") final Duration window) {
+		this(enabled, window, Ticker.systemTicker());
+	}
+
+	ReplicaLagGuard(final boolean enabled, final Duration window, final Ticker ticker) {
+		this.enabled = enabled;
+		this.recentWrites = Caffeine.newBuilder()
+				.expireAfterWrite(window)
+				.ticker(ticker)
+				.maximumSize(100_000)
+				.build();
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public static String user(final Integer userId) {
+		return "user:" + userId;
+	}
+
+	public static String username(final String username) {
+		return "username:" + username;
+	}
+
+	public static String credential(final Integer credentialId) {
+		return "credential:" + credentialId;
+	}
+
+	public static String address(final Integer addressId) {
+		return "address:" + addressId;
+	}
+
+	public static String verificationToken(final Integer verificationTokenId) {
+		return "verification-token:" + verificationTokenId;
+	}
+
+	/**
+	 * Whether the connections of the current transaction must come from the primary.
+	 */
+	public static boolean isPinned() {
+		return PINNED.get() != null;
+	}
+
+	/**
+	 * Records a write, opening (or extending) the window of every key it touches.
+	 */
+	public void recordWrite(final CacheInvalidationMessage message) {
+		if (!this.enabled)
+			return;
+		if (message.getUserId() != null)
+			this.recentWrites.put(user(message.getUserId()), Boolean.TRUE);
+		if (message.getEntityId() != null)
+			this.recentWrites.put(key(message.getEntityType(), message.getEntityId()), Boolean.TRUE);
+		message.getUsernames().forEach(username -> this.recentWrites.put(username(username), Boolean.TRUE));
+	}
+
+	private static String key(final EntityType entityType, final Integer entityId) {
+		switch (entityType) {
+		case USER:
+			return user(entityId);
+		case CREDENTIAL:
+			return credential(entityId);
+		case ADDRESS:
+			return address(entityId);
+		default:
+			return verificationToken(entityId);
+		}
+	}
+
+	/**
+	 * Reads the rest of the current transaction from the primary if the key was written within the window. Must be
+	 * called inside the transaction, before its first statement; the pin is dropped when the transaction completes.
+	 * @return whether the transaction was pinned to the primary
+	 */
+	public boolean pinIfRecentlyWritten(final String key) {
+		if (!this.enabled || !TransactionSynchronizationManager.isSynchronizationActive()
+				|| this.recentWrites.getIfPresent(key) == null)
+			return false;
+		if (!isPinned()) {
+			PINNED.set(Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(final int status) {
+					PINNED.remove();
+				}
+			});
+		}
+		log.debug("*** Boolean, datasource; {} written within the window, reading from the primary *", key);
+		return true;
+	}
+
+}
@@ -2,15 +2,23 @@ package com.selimhorri.app.domain;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import com.selimhorri.app.constant.AppConstant;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +26,9 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = AppConstant.CacheRegions.ADDRESSES)
+@DynamicUpdate
 @Table(name = "address")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,7 +40,15 @@ public final class Address extends AbstractMappedEntity implements Serializable
 	private static final long serialVersionUID = 1L;
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = "address_id_generator")
+	@GenericGenerator(name = "address_id_generator", strategy = "com.selimhorri.app.sharding.ShardAwareTableGenerator", parameters = {
+			@Parameter(name = "table_name", value = "id_generators"),
+			@Parameter(name = "segment_column_name", value = "sequence_name"),
+			@Parameter(name = "value_column_name", value = "next_val"),
+			@Parameter(name = "segment_value", value = "address"),
+			@Parameter(name = "increment_size", value = "100"),
+			@Parameter(name = "optimizer", value = "pooled-lo")
+	})
 	@Column(name = "address_id", unique = true, nullable = false, updatable = false)
 	private Integer addressId;
 	
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Set;
 
 import javax.annotation.Generated;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -11,14 +12,22 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.selimhorri.app.constant.AppConstant;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -27,6 +36,10 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = AppConstant.CacheRegions.CREDENTIALS)
+@NaturalIdCache(region = AppConstant.CacheRegions.CREDENTIALS_BY_USERNAME)
+@DynamicUpdate
 @Table(name = "credentials")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,10 +50,19 @@ public final class Credential extends AbstractMappedEntity implements Serializab
 	
 	private static final long serialVersionUID = 1L;
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = "credentials_id_generator")
+	@GenericGenerator(name = "credentials_id_generator", strategy = "com.selimhorri.app.sharding.ShardAwareTableGenerator", parameters = {
+			@Parameter(name = "table_name", value = "id_generators"),
+			@Parameter(name = "segment_column_name", value = "sequence_name"),
+			@Parameter(name = "value_column_name", value = "next_val"),
+			@Parameter(name = "segment_value", value = "credentials"),
+			@Parameter(name = "increment_size", value = "100"),
+			@Parameter(name = "optimizer", value = "pooled-lo")
+	})
 	@Column(name = "credential_id", unique = true, nullable = false, updatable = false)
 	private Integer credentialId;
 	
+	@NaturalId(mutable = true)
 	@Column(unique = true)
 	private String username;
 	
@@ -68,7 +90,7 @@ public final class Credential extends AbstractMappedEntity implements Serializab
 	private User user;
 	
 	@JsonIgnore
-	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, mappedBy = "credential")
+	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, mappedBy = "credential")
 	private Set<VerificationToken> verificationTokens;
 	
 }
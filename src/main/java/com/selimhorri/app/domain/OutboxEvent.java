@@ -0,0 +1,72 @@
+package com.selimhorri.app.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A committed change to a user or to something hanging from one, written in the same transaction as the change
+ * and removed once relayed. Only keys and the new version: consumers read the current state by id if they need it.
+ * <p>
+ * The id is local to the shard the row was written on; sharded, every shard has its own outbox.
+ */
+@Entity
+@Table(name = "outbox_events")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public final class OutboxEvent implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public enum AggregateType {
+		USER, CREDENTIAL, ADDRESS, VERIFICATION_TOKEN
+	}
+	
+	public enum EventType {
+		CREATED, UPDATED, DELETED
+	}
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "outbox_event_id", unique = true, nullable = false, updatable = false)
+	private Long outboxEventId;
+	
+	@Enumerated(EnumType.STRING)
+	@Column(name = "aggregate_type", nullable = false, updatable = false)
+	private AggregateType aggregateType;
+	
+	@Column(name = "aggregate_id", nullable = false, updatable = false)
+	private Integer aggregateId;
+	
+	@Column(name = "user_id", updatable = false)
+	private Integer userId;
+	
+	@Enumerated(EnumType.STRING)
+	@Column(name = "event_type", nullable = false, updatable = false)
+	private EventType eventType;
+	
+	/**
+	 * Version of the aggregate after the change, {@code null} for a deletion.
+	 */
+	@Column(name = "aggregate_version", updatable = false)
+	private Long aggregateVersion;
+	
+	@Column(name = "created_at", nullable = false, updatable = false)
+	private Instant createdAt;
+	
+}
@@ -0,0 +1,39 @@
+package com.selimhorri.app.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row per scheduled job; whoever holds an unexpired lease is the only replica running that job.
+ */
+@Entity
+@Table(name = "scheduler_locks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public final class SchedulerLock implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@Id
+	@Column(name = "lock_name", unique = true, nullable = false, updatable = false)
+	private String lockName;
+	
+	@Column(name = "locked_until", nullable = false)
+	private Instant lockedUntil;
+	
+	@Column(name = "locked_by")
+	private String lockedBy;
+	
+}
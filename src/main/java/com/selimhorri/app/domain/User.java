@@ -3,19 +3,26 @@ package com.selimhorri.app.domain;
 import java.io.Serializable;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.Email;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.selimhorri.app.constant.AppConstant;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -24,6 +31,9 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = AppConstant.CacheRegions.USERS)
+@DynamicUpdate
 @Table(name = "users")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,7 +45,15 @@ public final class User extends AbstractMappedEntity implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = "users_id_generator")
+	@GenericGenerator(name = "users_id_generator", strategy = "com.selimhorri.app.sharding.ShardAwareTableGenerator", parameters = {
+			@Parameter(name = "table_name", value = "id_generators"),
+			@Parameter(name = "segment_column_name", value = "sequence_name"),
+			@Parameter(name = "value_column_name", value = "next_val"),
+			@Parameter(name = "segment_value", value = "users"),
+			@Parameter(name = "increment_size", value = "100"),
+			@Parameter(name = "optimizer", value = "pooled-lo")
+	})
 	@Column(name = "user_id", unique = true, nullable = false, updatable = false)
 	private Integer userId;
 	
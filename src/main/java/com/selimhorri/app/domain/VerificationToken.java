@@ -3,16 +3,22 @@ package com.selimhorri.app.domain;
 import java.io.Serializable;
 import java.time.LocalDate;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import org.springframework.format.annotation.DateTimeFormat;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
@@ -26,6 +32,9 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = AppConstant.CacheRegions.VERIFICATION_TOKENS)
+@DynamicUpdate
 @Table(name = "verification_tokens")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,11 +46,19 @@ public final class VerificationToken extends AbstractMappedEntity implements Ser
 	private static final long serialVersionUID = 1L;
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = "verification_tokens_id_generator")
+	@GenericGenerator(name = "verification_tokens_id_generator", strategy = "com.selimhorri.app.sharding.ShardAwareTableGenerator", parameters = {
+			@Parameter(name = "table_name", value = "id_generators"),
+			@Parameter(name = "segment_column_name", value = "sequence_name"),
+			@Parameter(name = "value_column_name", value = "next_val"),
+			@Parameter(name = "segment_value", value = "verification_tokens"),
+			@Parameter(name = "increment_size", value = "100"),
+			@Parameter(name = "optimizer", value = "pooled-lo")
+	})
 	@Column(name = "verification_token_id", unique = true, nullable = false, updatable = false)
 	private Integer verificationTokenId;
 	
-	@Column(name = "verif_token")
+	@Column(name = "verif_token", unique = true)
 	private String token;
 	
 	@JsonFormat(pattern = AppConstant.LOCAL_DATE_FORMAT, shape = Shape.STRING)
@@ -49,7 +66,7 @@ public final class VerificationToken extends AbstractMappedEntity implements Ser
 	@Column(name = "expire_date")
 	private LocalDate expireDate;
 	
-	@ManyToOne(fetch = FetchType.EAGER)
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "credential_id")
 	private Credential credential;
 	
@@ -1,6 +1,7 @@
 package com.selimhorri.app.dto;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -15,12 +16,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
-public class AddressDto implements Serializable {
+public class AddressDto implements Serializable, EntityState {
 	
 	private static final long serialVersionUID = 1L;
 	
 	private Integer addressId;
 	
+	private Long version;
+	
+	private Instant updatedAt;
+	
 	private String fullAddress;
 	
 	private String postalCode;
@@ -31,14 +36,14 @@ public class AddressDto implements Serializable {
 	@JsonInclude(value = Include.NON_NULL)
 	private UserDto userDto;
 	
+	@Override
+	public Long getEmbeddedVersion() {
+		return this.userDto == null ? null : this.userDto.getVersion();
+	}
+	
+	@Override
+	public Instant getEmbeddedUpdatedAt() {
+		return this.userDto == null ? null : this.userDto.getUpdatedAt();
+	}
+	
 }
-
-
-
-
-
-
-
-
-
-
@@ -1,6 +1,7 @@
 package com.selimhorri.app.dto;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -17,12 +18,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
-public class CredentialDto implements Serializable {
+public class CredentialDto implements Serializable, EntityState {
 	
 	private static final long serialVersionUID = 1L;
 	
 	private Integer credentialId;
 	
+	private Long version;
+	
+	private Instant updatedAt;
+	
 	private String username;
 	
 	private String password;
@@ -44,14 +49,14 @@ public class CredentialDto implements Serializable {
 	@JsonInclude(value = Include.NON_NULL)
 	private Set<VerificationTokenDto> verificationTokenDtos;
 	
+	@Override
+	public Long getEmbeddedVersion() {
+		return this.userDto == null ? null : this.userDto.getVersion();
+	}
+	
+	@Override
+	public Instant getEmbeddedUpdatedAt() {
+		return this.userDto == null ? null : this.userDto.getUpdatedAt();
+	}
+	
 }
-
-
-
-
-
-
-
-
-
-
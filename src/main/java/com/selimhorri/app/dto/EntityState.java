@@ -0,0 +1,43 @@
+package com.selimhorri.app.dto;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * What conditional requests are evaluated against. A representation embeds one related row (the credential of a user, 
+ * the user of an address...), so its validators cover that row too: otherwise a change to the embedded row alone 
+ * would be answered with a stale 304. Repositories return it as a projection, read without loading the entities.
+ */
+public interface EntityState {
+	
+	Long getVersion();
+	
+	Instant getUpdatedAt();
+	
+	@JsonIgnore
+	Long getEmbeddedVersion();
+	
+	@JsonIgnore
+	Instant getEmbeddedUpdatedAt();
+	
+	/**
+	 * {@code <version>.<embedded version>}; only the first part is checked against {@code If-Match}, as writes go to the root row only.
+	 */
+	@JsonIgnore
+	default String getEntityTag() {
+		if (this.getVersion() == null)
+			return null;
+		return this.getEmbeddedVersion() == null 
+				? String.valueOf(this.getVersion()) 
+				: this.getVersion() + "." + this.getEmbeddedVersion();
+	}
+	
+	@JsonIgnore
+	default Instant getLastModified() {
+		if (this.getUpdatedAt() == null || this.getEmbeddedUpdatedAt() == null)
+			return this.getUpdatedAt() == null ? this.getEmbeddedUpdatedAt() : this.getUpdatedAt();
+		return this.getUpdatedAt().isAfter(this.getEmbeddedUpdatedAt()) ? this.getUpdatedAt() : this.getEmbeddedUpdatedAt();
+	}
+	
+}
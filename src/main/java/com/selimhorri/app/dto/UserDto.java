@@ -1,6 +1,7 @@
 package com.selimhorri.app.dto;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -16,12 +17,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
-public class UserDto implements Serializable {
+public class UserDto implements Serializable, EntityState {
 	
 	private static final long serialVersionUID = 1L;
 	
 	private Integer userId;
 	
+	private Long version;
+	
+	private Instant updatedAt;
+	
 	private String firstName;
 	
 	private String lastName;
@@ -39,4 +44,14 @@ public class UserDto implements Serializable {
 	@JsonInclude(value = Include.NON_NULL)
 	private CredentialDto credentialDto;
 	
-}
\ No newline at end of file
+	@Override
+	public Long getEmbeddedVersion() {
+		return this.credentialDto == null ? null : this.credentialDto.getVersion();
+	}
+	
+	@Override
+	public Instant getEmbeddedUpdatedAt() {
+		return this.credentialDto == null ? null : this.credentialDto.getUpdatedAt();
+	}
+	
+}
@@ -1,6 +1,7 @@
 package com.selimhorri.app.dto;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 
 import org.springframework.format.annotation.DateTimeFormat;
@@ -21,12 +22,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
-public class VerificationTokenDto implements Serializable {
+public class VerificationTokenDto implements Serializable, EntityState {
 	
 	private static final long serialVersionUID = 1L;
 	
 	private Integer verificationTokenId;
 	
+	private Long version;
+	
+	private Instant updatedAt;
+	
 	private String token;
 	
 	@JsonFormat(pattern = AppConstant.LOCAL_DATE_FORMAT, shape = Shape.STRING)
@@ -37,14 +42,14 @@ public class VerificationTokenDto implements Serializable {
 	@JsonInclude(value = Include.NON_NULL)
 	private CredentialDto credentialDto;
 	
+	@Override
+	public Long getEmbeddedVersion() {
+		return this.credentialDto == null ? null : this.credentialDto.getVersion();
+	}
+	
+	@Override
+	public Instant getEmbeddedUpdatedAt() {
+		return this.credentialDto == null ? null : this.credentialDto.getUpdatedAt();
+	}
+	
 }
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,24 @@
+package com.selimhorri.app.dto.response;
+
+import java.util.Collection;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class BatchGetResponse<T> {
+	
+	private Collection<T> found;
+	
+	/**
+	 * Requested ids that do not exist, or exist without credentials, in request order.
+	 */
+	private List<Integer> missingIds;
+	
+}
@@ -2,6 +2,9 @@ package com.selimhorri.app.dto.response.collection;
 
 import java.util.Collection;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,14 +18,15 @@ public class DtoCollectionResponse<T> {
 	
 	private Collection<T> collection;
 	
+	/**
+	 * Id of the last element of this page, to be sent back as {@code after} to fetch the next one;
+	 * absent when this is the last page.
+	 */
+	@JsonInclude(value = Include.NON_NULL)
+	private Integer nextCursor;
+	
+	public DtoCollectionResponse(final Collection<T> collection) {
+		this.collection = collection;
+	}
+	
 }
-
-
-
-
-
-
-
-
-
-
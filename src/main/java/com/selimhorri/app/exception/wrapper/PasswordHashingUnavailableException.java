@@ -0,0 +1,7 @@
+package com.selimhorri.app.exception.wrapper;
+
+public class PasswordHashingUnavailableException extends RuntimeException {
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+}
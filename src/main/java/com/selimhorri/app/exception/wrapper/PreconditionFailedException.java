@@ -0,0 +1,7 @@
+package com.selimhorri.app.exception.wrapper;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
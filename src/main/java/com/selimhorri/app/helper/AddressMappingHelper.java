@@ -4,18 +4,23 @@ import com.selimhorri.app.domain.Address;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.AddressDto;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.repository.projection.AddressView;
 
 public interface AddressMappingHelper {
 	
 	public static AddressDto map(final Address address) {
 		return AddressDto.builder()
 				.addressId(address.getAddressId())
+				.version(address.getVersion())
+				.updatedAt(address.getUpdatedAt())
 				.fullAddress(address.getFullAddress())
 				.postalCode(address.getPostalCode())
 				.city(address.getCity())
 				.userDto(
 					UserDto.builder()
 						.userId(address.getUser().getUserId())
+						.version(address.getUser().getVersion())
+						.updatedAt(address.getUser().getUpdatedAt())
 						.firstName(address.getUser().getFirstName())
 						.lastName(address.getUser().getLastName())
 						.imageUrl(address.getUser().getImageUrl())
@@ -24,6 +29,28 @@ public interface AddressMappingHelper {
 						.build())
 				.build();
 	}
+
+	public static AddressDto map(final AddressView view) {
+		return AddressDto.builder()
+				.addressId(view.getAddressId())
+				.version(view.getVersion())
+				.updatedAt(view.getUpdatedAt())
+				.fullAddress(view.getFullAddress())
+				.postalCode(view.getPostalCode())
+				.city(view.getCity())
+				.userDto(
+					UserDto.builder()
+						.userId(view.getUserId())
+						.version(view.getUserVersion())
+						.updatedAt(view.getUserUpdatedAt())
+						.firstName(view.getFirstName())
+						.lastName(view.getLastName())
+						.imageUrl(view.getImageUrl())
+						.email(view.getEmail())
+						.phone(view.getPhone())
+						.build())
+				.build();
+	}
 	
 	public static Address map(final AddressDto addressDto) {
 		return Address.builder()
@@ -43,6 +70,15 @@ public interface AddressMappingHelper {
 				.build();
 	}
 	
+	public static Address mapOnlyAddress(final AddressDto addressDto) {
+		return Address.builder()
+				.addressId(addressDto.getAddressId())
+				.fullAddress(addressDto.getFullAddress())
+				.postalCode(addressDto.getPostalCode())
+				.city(addressDto.getCity())
+				.build();
+	}
+	
 	
 	
 }
@@ -4,12 +4,15 @@ import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.repository.projection.UserCredentialView;
 
 public interface CredentialMappingHelper {
 	
 	public static CredentialDto map(final Credential credential) {
 		return CredentialDto.builder()
 				.credentialId(credential.getCredentialId())
+				.version(credential.getVersion())
+				.updatedAt(credential.getUpdatedAt())
 				.username(credential.getUsername())
 				.password(credential.getPassword())
 				.roleBasedAuthority(credential.getRoleBasedAuthority())
@@ -20,6 +23,8 @@ public interface CredentialMappingHelper {
 				.userDto(
 						UserDto.builder()
 							.userId(credential.getUser().getUserId())
+							.version(credential.getUser().getVersion())
+							.updatedAt(credential.getUser().getUpdatedAt())
 							.firstName(credential.getUser().getFirstName())
 							.lastName(credential.getUser().getLastName())
 							.imageUrl(credential.getUser().getImageUrl())
@@ -28,6 +33,32 @@ public interface CredentialMappingHelper {
 							.build())
 				.build();
 	}
+
+	public static CredentialDto map(final UserCredentialView view) {
+		return CredentialDto.builder()
+				.credentialId(view.getCredentialId())
+				.version(view.getCredentialVersion())
+				.updatedAt(view.getCredentialUpdatedAt())
+				.username(view.getUsername())
+				.password(view.getPassword())
+				.roleBasedAuthority(view.getRoleBasedAuthority())
+				.isEnabled(view.getIsEnabled())
+				.isAccountNonExpired(view.getIsAccountNonExpired())
+				.isAccountNonLocked(view.getIsAccountNonLocked())
+				.isCredentialsNonExpired(view.getIsCredentialsNonExpired())
+				.userDto(
+						UserDto.builder()
+							.userId(view.getUserId())
+							.version(view.getUserVersion())
+							.updatedAt(view.getUserUpdatedAt())
+							.firstName(view.getFirstName())
+							.lastName(view.getLastName())
+							.imageUrl(view.getImageUrl())
+							.email(view.getEmail())
+							.phone(view.getPhone())
+							.build())
+				.build();
+	}
 	
 	public static Credential map(final CredentialDto credentialDto) {
 		return Credential.builder()
@@ -0,0 +1,93 @@
+package com.selimhorri.app.helper;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.exception.wrapper.PreconditionFailedException;
+
+/**
+ * Entity tags are the quoted {@code @Version} of the entity, followed by the version of the row it embeds, 
+ * e.g. {@code "3.1"}. Only strong comparison is done for {@code If-Match}, so a weak or unparseable tag 
+ * can never match and fails the precondition.
+ */
+public interface EntityTagHelper {
+	
+	public static <T extends EntityState> ResponseEntity<T> ok(final T body) {
+		if (body == null)
+			return ResponseEntity.ok(body);
+		return withValidators(ResponseEntity.ok(), body)
+				.body(body);
+	}
+	
+	/**
+	 * Answers a conditional GET from the validators alone. The lookup only runs when the request carries 
+	 * {@code If-None-Match} or {@code If-Modified-Since}; {@code If-None-Match} wins when both are sent.
+	 * 
+	 * @return the 304 response, or empty when the full representation must be sent
+	 */
+	public static <T> Optional<ResponseEntity<T>> notModified(final HttpHeaders requestHeaders, 
+			final Supplier<Optional<EntityState>> stateLookup) {
+		final List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+		final long ifModifiedSince = requestHeaders.getIfModifiedSince();
+		if (ifNoneMatch.isEmpty() && ifModifiedSince < 0)
+			return Optional.empty();
+		return stateLookup.get()
+				.filter(state -> ifNoneMatch.isEmpty() 
+						? isNotModifiedSince(state, ifModifiedSince) 
+						: matchesAny(state, ifNoneMatch))
+				.map(state -> withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), state).build());
+	}
+	
+	/**
+	 * @return the expected version, or {@code null} when there is no precondition ({@code If-Match} absent or {@code *})
+	 */
+	public static Long parseIfMatch(final String ifMatch) {
+		if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.strip()))
+			return null;
+		final String tag = ifMatch.strip();
+		if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\""))
+			throw new PreconditionFailedException("If-Match must be a single strong entity tag, got: " + tag);
+		final String value = tag.substring(1, tag.length() - 1);
+		final int embedded = value.indexOf('.');
+		try {
+			return Long.parseLong(embedded < 0 ? value : value.substring(0, embedded));
+		}
+		catch (NumberFormatException e) {
+			throw new PreconditionFailedException("If-Match does not match any version: " + tag);
+		}
+	}
+	
+	public static void checkVersion(final Long expectedVersion, final long currentVersion) {
+		if (expectedVersion != null && expectedVersion != currentVersion)
+			throw new PreconditionFailedException(String.format(
+					"Entity was modified: If-Match version %d, current version %d", expectedVersion, currentVersion));
+	}
+	
+	private static ResponseEntity.BodyBuilder withValidators(final ResponseEntity.BodyBuilder builder, final EntityState state) {
+		if (state.getEntityTag() != null)
+			builder.eTag(state.getEntityTag());
+		if (state.getLastModified() != null)
+			builder.lastModified(state.getLastModified());
+		return builder;
+	}
+	
+	private static boolean matchesAny(final EntityState state, final List<String> ifNoneMatch) {
+		final String entityTag = state.getEntityTag();
+		return ifNoneMatch.stream()
+				.map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+				.anyMatch(tag -> "*".equals(tag) || tag.equals("\"" + entityTag + "\""));
+	}
+	
+	// HTTP dates have second precision
+	private static boolean isNotModifiedSince(final EntityState state, final long ifModifiedSince) {
+		return state.getLastModified() != null 
+				&& state.getLastModified().getEpochSecond() <= ifModifiedSince / 1000;
+	}
+	
+}
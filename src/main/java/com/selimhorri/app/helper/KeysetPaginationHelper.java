@@ -0,0 +1,49 @@
+package com.selimhorri.app.helper;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+
+/**
+ * Seek-based pagination: pages are addressed by the last id seen ({@code after}) instead of an OFFSET,
+ * so every page is a primary-key range scan of constant cost.
+ */
+public interface KeysetPaginationHelper {
+	
+	public static int resolveLimit(final Integer limit) {
+		if (limit == null || limit <= 0)
+			return AppConstant.DEFAULT_PAGE_SIZE;
+		return Math.min(limit, AppConstant.MAX_PAGE_SIZE);
+	}
+	
+	public static int resolveCursor(final Integer after) {
+		return after == null || after < 0 ? 0 : after;
+	}
+	
+	/**
+	 * Always the first "page" of the seek query, one row larger than requested so that
+	 * the presence of a next page can be detected without a count query.
+	 */
+	public static Pageable firstRows(final int limit) {
+		return PageRequest.of(0, limit + 1);
+	}
+	
+	public static <E, D> DtoCollectionResponse<D> toResponse(final List<E> rows, final int limit,
+			final Function<E, D> mapper, final Function<E, Integer> idExtractor) {
+		final boolean hasNext = rows.size() > limit;
+		final List<E> page = hasNext ? rows.subList(0, limit) : rows;
+		return DtoCollectionResponse.<D>builder()
+				.collection(page.stream()
+						.map(mapper)
+						.collect(Collectors.toUnmodifiableList()))
+				.nextCursor(hasNext ? idExtractor.apply(page.get(page.size() - 1)) : null)
+				.build();
+	}
+	
+}
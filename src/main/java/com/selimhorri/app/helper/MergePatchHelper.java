@@ -0,0 +1,55 @@
+package com.selimhorri.app.helper;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * JSON Merge Patch (RFC 7386): members of the patch replace those of the target, {@code null} removes them,
+ * nested objects are merged recursively and anything absent from the patch is left untouched.
+ */
+public interface MergePatchHelper {
+	
+	public static <T> T apply(final ObjectMapper objectMapper, final T target, final JsonNode patch, final Class<T> type) {
+		if (patch == null || !patch.isObject())
+			throw new IllegalArgumentException("A merge patch must be a JSON object");
+		try {
+			return objectMapper.treeToValue(merge(objectMapper.valueToTree(target), patch), type);
+		}
+		catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("Invalid merge patch: " + e.getOriginalMessage());
+		}
+	}
+	
+	/**
+	 * A merge patch may only change the members the service copies back onto the entity; a change anywhere else
+	 * (ids, versions, nested documents) would be answered as applied and then dropped, so it is rejected.
+	 * @param expected the current document with the editable members of the patched one
+	 */
+	public static <T> void checkOnlyEditableChanged(final T expected, final T patched, final String editableMembers) {
+		if (!expected.equals(patched))
+			throw new IllegalArgumentException("Only " + editableMembers + " can be changed by a merge patch");
+	}
+	
+	public static JsonNode merge(final JsonNode target, final JsonNode patch) {
+		if (!patch.isObject())
+			return patch;
+		final ObjectNode merged = target != null && target.isObject() 
+				? ((ObjectNode) target).deepCopy() 
+				: ((ObjectNode) patch).objectNode();
+		final Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+		while (fields.hasNext()) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			if (field.getValue().isNull())
+				merged.remove(field.getKey());
+			else
+				merged.set(field.getKey(), merge(merged.get(field.getKey()), field.getValue()));
+		}
+		return merged;
+	}
+	
+}
@@ -4,6 +4,7 @@ import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.repository.projection.UserCredentialView;
 
 public interface UserMappingHelper {
 
@@ -15,6 +16,8 @@ public interface UserMappingHelper {
 		if (cred != null) {
 			credDto = CredentialDto.builder()
 					.credentialId(cred.getCredentialId())
+					.version(cred.getVersion())
+					.updatedAt(cred.getUpdatedAt())
 					.username(cred.getUsername())
 					.password(cred.getPassword())
 					.roleBasedAuthority(cred.getRoleBasedAuthority())
@@ -26,6 +29,8 @@ public interface UserMappingHelper {
 		}
 		return UserDto.builder()
 				.userId(user.getUserId())
+				.version(user.getVersion())
+				.updatedAt(user.getUpdatedAt())
 				.firstName(user.getFirstName())
 				.lastName(user.getLastName())
 				.imageUrl(user.getImageUrl())
@@ -35,6 +40,32 @@ public interface UserMappingHelper {
 				.build();
 	}
 
+	public static UserDto map(final UserCredentialView view) {
+		return UserDto.builder()
+				.userId(view.getUserId())
+				.version(view.getUserVersion())
+				.updatedAt(view.getUserUpdatedAt())
+				.firstName(view.getFirstName())
+				.lastName(view.getLastName())
+				.imageUrl(view.getImageUrl())
+				.email(view.getEmail())
+				.phone(view.getPhone())
+				.credentialDto(
+						CredentialDto.builder()
+							.credentialId(view.getCredentialId())
+							.version(view.getCredentialVersion())
+							.updatedAt(view.getCredentialUpdatedAt())
+							.username(view.getUsername())
+							.password(view.getPassword())
+							.roleBasedAuthority(view.getRoleBasedAuthority())
+							.isEnabled(view.getIsEnabled())
+							.isAccountNonExpired(view.getIsAccountNonExpired())
+							.isAccountNonLocked(view.getIsAccountNonLocked())
+							.isCredentialsNonExpired(view.getIsCredentialsNonExpired())
+							.build())
+				.build();
+	}
+
 	public static User mapOnlyUser(final UserDto userDto) {
 		if (userDto == null)
 			return null;
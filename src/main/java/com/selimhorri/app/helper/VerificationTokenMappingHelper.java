@@ -4,17 +4,22 @@ import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.VerificationToken;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.VerificationTokenDto;
+import com.selimhorri.app.repository.projection.VerificationTokenView;
 
 public interface VerificationTokenMappingHelper {
 
 	public static VerificationTokenDto map(final VerificationToken verificationToken) {
 		return VerificationTokenDto.builder()
 				.verificationTokenId(verificationToken.getVerificationTokenId())
+				.version(verificationToken.getVersion())
+				.updatedAt(verificationToken.getUpdatedAt())
 				.token(verificationToken.getToken())
 				.expireDate(verificationToken.getExpireDate())
 				.credentialDto(
 						CredentialDto.builder()
 								.credentialId(verificationToken.getCredential().getCredentialId())
+								.version(verificationToken.getCredential().getVersion())
+								.updatedAt(verificationToken.getCredential().getUpdatedAt())
 								.username(verificationToken.getCredential().getUsername())
 								.password(verificationToken.getCredential().getPassword())
 								.roleBasedAuthority(verificationToken.getCredential().getRoleBasedAuthority())
@@ -26,6 +31,29 @@ public interface VerificationTokenMappingHelper {
 				.build();
 	}
 
+	public static VerificationTokenDto map(final VerificationTokenView view) {
+		return VerificationTokenDto.builder()
+				.verificationTokenId(view.getVerificationTokenId())
+				.version(view.getVersion())
+				.updatedAt(view.getUpdatedAt())
+				.token(view.getToken())
+				.expireDate(view.getExpireDate())
+				.credentialDto(
+						CredentialDto.builder()
+								.credentialId(view.getCredentialId())
+								.version(view.getCredentialVersion())
+								.updatedAt(view.getCredentialUpdatedAt())
+								.username(view.getUsername())
+								.password(view.getPassword())
+								.roleBasedAuthority(view.getRoleBasedAuthority())
+								.isEnabled(view.getIsEnabled())
+								.isAccountNonExpired(view.getIsAccountNonExpired())
+								.isAccountNonLocked(view.getIsAccountNonLocked())
+								.isCredentialsNonExpired(view.getIsCredentialsNonExpired())
+								.build())
+				.build();
+	}
+
 	public static VerificationToken map(final VerificationTokenDto verificationTokenDto) {
 		return VerificationToken.builder()
 				.verificationTokenId(verificationTokenDto.getVerificationTokenId())
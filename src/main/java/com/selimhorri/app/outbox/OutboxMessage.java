@@ -0,0 +1,56 @@
+package com.selimhorri.app.outbox;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import com.selimhorri.app.domain.OutboxEvent;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.OutboxEvent.EventType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An {@link OutboxEvent} as handed to the publisher. Delivery is at least once: {@code (shard, eventId)} identifies
+ * a redelivery, and {@code version} an event overtaken by a later one for the same aggregate.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OutboxMessage implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private int shard;
+	
+	private Long eventId;
+	
+	private AggregateType aggregateType;
+	
+	private Integer aggregateId;
+	
+	private Integer userId;
+	
+	private EventType eventType;
+	
+	private Long version;
+	
+	private Instant occurredAt;
+	
+	public static OutboxMessage of(final int shard, final OutboxEvent event) {
+		return OutboxMessage.builder()
+				.shard(shard)
+				.eventId(event.getOutboxEventId())
+				.aggregateType(event.getAggregateType())
+				.aggregateId(event.getAggregateId())
+				.userId(event.getUserId())
+				.eventType(event.getEventType())
+				.version(event.getAggregateVersion())
+				.occurredAt(event.getCreatedAt())
+				.build();
+	}
+	
+}
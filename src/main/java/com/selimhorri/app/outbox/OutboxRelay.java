@@ -0,0 +1,159 @@
+package com.selimhorri.app.outbox;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.selimhorri.app.domain.OutboxEvent;
+import com.selimhorri.app.outbox.publisher.OutboxPublisher;
+import com.selimhorri.app.repository.OutboxEventRepository;
+import com.selimhorri.app.scheduler.LeaderLock;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drains the outbox to the {@link OutboxPublisher}, oldest first, in batches: a batch is deleted only after it was
+ * published, so a crash in between delivers it again (at least once). A failed publish stops the run and backs off
+ * exponentially, from {@code initial-backoff} up to {@code max-backoff}; the next success resets it.
+ * <p>
+ * Ids are handed out before commit, so a slow transaction can commit an event after a later one was relayed: it is
+ * relayed on the next batch, and consumers order the events of one aggregate by its version. Only the replica
+ * holding the {@link LeaderLock} relays; sharded, it drains the shards one after the other.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.enabled", havingValue = "true")
+@Slf4j
+public class OutboxRelay {
+	
+	static final String LOCK_NAME = "outbox-relay";
+	private static final String METRIC_PREFIX = "outbox.relay";
+	
+	private final OutboxEventRepository outboxEventRepository;
+	private final OutboxPublisher outboxPublisher;
+	private final LeaderLock leaderLock;
+	private final ShardRouter shardRouter;
+	private final int batchSize;
+	private final Duration lease;
+	private final Duration initialBackoff;
+	private final Duration maxBackoff;
+	private final Counter relayed;
+	private final Counter failures;
+	private final Timer batchDuration;
+	
+	private int consecutiveFailures;
+	private Instant retryAt = Instant.MIN;
+	
+	public OutboxRelay(final OutboxEventRepository outboxEventRepository, final OutboxPublisher outboxPublisher, 
+			final LeaderLock leaderLock, final ShardRouter shardRouter, final MeterRegistry meterRegistry, 
+			@Value("${app.outbox.relay.batch-size:200}") final int batchSize, 
+			@Value("${app.outbox.relay.lease:1m}") final Duration lease, 
+			@Value("${app.outbox.relay.initial-backoff:1s}") final Duration initialBackoff, 
+			@Value("${app.outbox.relay.max-backoff:5m}") final Duration maxBackoff) {
+		this.outboxEventRepository = outboxEventRepository;
+		this.outboxPublisher = outboxPublisher;
+		this.leaderLock = leaderLock;
+		this.shardRouter = shardRouter;
+		this.batchSize = batchSize;
+		this.lease = lease;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+		this.relayed = Counter.builder(METRIC_PREFIX + ".events")
+				.description("Outbox events published and removed from the outbox")
+				.register(meterRegistry);
+		this.failures = Counter.builder(METRIC_PREFIX + ".failures")
+				.description("Outbox batches the publisher failed to deliver")
+				.register(meterRegistry);
+		this.batchDuration = Timer.builder(METRIC_PREFIX + ".batch")
+				.description("Time spent publishing one batch of outbox events")
+				.register(meterRegistry);
+	}
+	
+	@Scheduled(fixedDelayString = "${app.outbox.relay.interval:PT1S}")
+	public synchronized void run() {
+		if (Instant.now().isBefore(this.retryAt))
+			return;
+		if (!this.leaderLock.tryAcquire(LOCK_NAME, this.lease)) {
+			log.debug("*** Void, outbox; relay held by another replica *");
+			return;
+		}
+		try {
+			this.relay();
+		}
+		finally {
+			this.leaderLock.release(LOCK_NAME);
+		}
+	}
+	
+	/**
+	 * @return number of events relayed
+	 */
+	synchronized long relay() {
+		long total = 0;
+		shards:
+		for (final Integer shard : this.shardRouter.getShards()) {
+			while (true) {
+				final List<OutboxEvent> batch = this.onShard(shard, 
+						() -> this.outboxEventRepository.findOldest(PageRequest.of(0, this.batchSize)));
+				if (batch.isEmpty())
+					break;
+				final List<OutboxMessage> messages = batch.stream()
+						.map(event -> OutboxMessage.of(shard, event))
+						.collect(Collectors.toUnmodifiableList());
+				try {
+					this.batchDuration.record(() -> this.outboxPublisher.publish(messages));
+				}
+				catch (RuntimeException e) {
+					this.backOff(e);
+					break shards;
+				}
+				final List<Long> ids = batch.stream()
+						.map(OutboxEvent::getOutboxEventId)
+						.collect(Collectors.toUnmodifiableList());
+				this.onShard(shard, () -> this.outboxEventRepository.deleteByOutboxEventIdIn(ids));
+				this.consecutiveFailures = 0;
+				this.relayed.increment(batch.size());
+				total += batch.size();
+				
+				if (batch.size() < this.batchSize)
+					break;
+				if (!this.leaderLock.tryAcquire(LOCK_NAME, this.lease))
+					break shards;
+			}
+		}
+		if (total > 0)
+			log.info("*** Long, outbox; relayed {} events *", total);
+		return total;
+	}
+	
+	private void backOff(final RuntimeException e) {
+		this.failures.increment();
+		this.consecutiveFailures++;
+		final Duration delay = this.backoffDelay(this.consecutiveFailures);
+		this.retryAt = Instant.now().plus(delay);
+		log.warn("*** Void, outbox; publish failed ({} in a row), retrying in {}: {} *", 
+				this.consecutiveFailures, delay, e.getMessage());
+	}
+	
+	Duration backoffDelay(final int failures) {
+		// 2^n, capped: past 30 failures in a row it stops growing
+		final Duration delay = this.initialBackoff.multipliedBy(1L << Math.min(failures - 1, 30));
+		return delay.compareTo(this.maxBackoff) > 0 ? this.maxBackoff : delay;
+	}
+	
+	private <T> T onShard(final int shard, final Supplier<T> work) {
+		return this.shardRouter.withShard(shard, work);
+	}
+	
+}
@@ -0,0 +1,75 @@
+package com.selimhorri.app.outbox;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.domain.OutboxEvent;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.OutboxEvent.EventType;
+import com.selimhorri.app.repository.OutboxEventRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends change events to the outbox, in the transaction (and so on the shard) of the write they describe: the
+ * event is committed if and only if the change is. Does nothing unless {@code app.outbox.enabled=true}, so the
+ * table does not grow without a {@link OutboxRelay} draining it.
+ */
+@Component
+@Slf4j
+public class OutboxWriter {
+	
+	private final OutboxEventRepository outboxEventRepository;
+	private final boolean enabled;
+	
+	public OutboxWriter(final OutboxEventRepository outboxEventRepository, 
+			@Value("${app.outbox.enabled:false}") final boolean enabled) {
+		this.outboxEventRepository = outboxEventRepository;
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Writers look up what only the event needs (e.g. the user of a deleted row) behind this check, so that without
+	 * the outbox a delete stays a single statement, and the purge job skips reading the keys of what it removes.
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+	
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void created(final AggregateType aggregateType, final Integer aggregateId, final Integer userId, 
+			final long version) {
+		this.append(aggregateType, aggregateId, userId, EventType.CREATED, version);
+	}
+	
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void updated(final AggregateType aggregateType, final Integer aggregateId, final Integer userId, 
+			final long version) {
+		this.append(aggregateType, aggregateId, userId, EventType.UPDATED, version);
+	}
+	
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void deleted(final AggregateType aggregateType, final Integer aggregateId, final Integer userId) {
+		this.append(aggregateType, aggregateId, userId, EventType.DELETED, null);
+	}
+	
+	private void append(final AggregateType aggregateType, final Integer aggregateId, final Integer userId, 
+			final EventType eventType, final Long version) {
+		if (!this.enabled)
+			return;
+		log.debug("*** Void, outbox; {} {} {} v{} *", eventType, aggregateType, aggregateId, version);
+		this.outboxEventRepository.save(OutboxEvent.builder()
+				.aggregateType(aggregateType)
+				.aggregateId(aggregateId)
+				.userId(userId)
+				.eventType(eventType)
+				.aggregateVersion(version)
+				.createdAt(Instant.now())
+				.build());
+	}
+	
+}
@@ -0,0 +1,68 @@
+package com.selimhorri.app.outbox.publisher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.outbox.OutboxMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends each batch to a local file, one JSON message per line, and syncs it to disk before returning: once
+ * {@link #publish} returns the batch survives a crash, and the relay may drop it from the outbox.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.publisher", havingValue = "file")
+@Slf4j
+public class FileOutboxPublisher implements OutboxPublisher {
+	
+	private final ObjectMapper objectMapper;
+	private final Path path;
+	
+	public FileOutboxPublisher(final ObjectMapper objectMapper, 
+			@Value("${app.outbox.file.path:outbox-events.ndjson}") final Path path) {
+		this.objectMapper = objectMapper;
+		this.path = path;
+		log.info("*** FileOutboxPublisher, outbox; appending events to {} *", path.toAbsolutePath());
+	}
+	
+	@Override
+	public synchronized void publish(final List<OutboxMessage> messages) {
+		final StringBuilder lines = new StringBuilder();
+		for (final OutboxMessage message : messages)
+			lines.append(this.toJson(message)).append('\n');
+		
+		try (final FileChannel channel = FileChannel.open(this.path, 
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot append outbox events to " + this.path, e);
+		}
+	}
+	
+	private String toJson(final OutboxMessage message) {
+		try {
+			return this.objectMapper.writeValueAsString(message);
+		}
+		catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+}
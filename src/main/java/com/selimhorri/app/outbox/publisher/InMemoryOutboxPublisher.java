@@ -0,0 +1,31 @@
+package com.selimhorri.app.outbox.publisher;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.selimhorri.app.outbox.OutboxMessage;
+
+/**
+ * Hands each batch to in-JVM listeners: tests, and consumers living in this service. A listener that throws fails
+ * the batch, which is then redelivered to every listener.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.publisher", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryOutboxPublisher implements OutboxPublisher {
+	
+	private final List<Consumer<List<OutboxMessage>>> listeners = new CopyOnWriteArrayList<>();
+	
+	@Override
+	public void publish(final List<OutboxMessage> messages) {
+		this.listeners.forEach(listener -> listener.accept(messages));
+	}
+	
+	public void subscribe(final Consumer<List<OutboxMessage>> listener) {
+		this.listeners.add(listener);
+	}
+	
+}
@@ -0,0 +1,15 @@
+package com.selimhorri.app.outbox.publisher;
+
+import java.util.List;
+
+import com.selimhorri.app.outbox.OutboxMessage;
+
+public interface OutboxPublisher {
+	
+	/**
+	 * Delivers the batch, in order, or throws; a batch that throws is delivered again later, as a whole, so part of
+	 * it may reach consumers twice.
+	 */
+	void publish(final List<OutboxMessage> messages);
+	
+}
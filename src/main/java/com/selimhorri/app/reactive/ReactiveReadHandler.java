@@ -0,0 +1,125 @@
+package com.selimhorri.app.reactive;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.helper.EntityTagHelper;
+
+import io.r2dbc.spi.R2dbcTimeoutException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquirePendingLimitException;
+
+/**
+ * The lookup endpoints of {@code UserResource} and {@code CredentialResource} as functional WebFlux routes: same
+ * paths, bodies, validators and error statuses. When the connection pool is saturated (too many pending acquires,
+ * or none acquired within the pool's timeout) the request is shed with a 503 instead of queueing without bound.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveReadHandler {
+
+	private final ReactiveReadRepository reactiveReadRepository;
+
+	public RouterFunction<ServerResponse> routes(final String basePath) {
+		return RouterFunctions.route()
+				.path(basePath + "/api", api -> api
+						.GET("/users/username/{username}", this::findUserByUsername)
+						.GET("/users/{userId}", this::findUserById)
+						.GET("/credentials/username/{username}", this::findCredentialByUsername)
+						.GET("/credentials/{credentialId}", this::findCredentialById))
+				.onError(IllegalArgumentException.class, (e, request) -> error(HttpStatus.BAD_REQUEST, e.getMessage()))
+				.onError(ReactiveReadHandler::isSaturated, (e, request) -> {
+					log.warn("*** ReactiveReadHandler, reactive; connection pool saturated, shedding {} *", request.path());
+					return error(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent lookups, retry later");
+				})
+				.build();
+	}
+
+	public Mono<ServerResponse> findUserById(final ServerRequest request) {
+		log.debug("*** UserDto, reactive; fetch user by id *");
+		return id(request, "userId", userId -> this.reactiveReadRepository.findUserById(userId)
+				.flatMap(userDto -> respond(request, userDto))
+				.switchIfEmpty(notFound(String.format("User with id: %d not found or has no credentials", userId))));
+	}
+
+	public Mono<ServerResponse> findUserByUsername(final ServerRequest request) {
+		log.debug("*** UserDto, reactive; fetch user with username *");
+		final String username = request.pathVariable("username");
+		return this.reactiveReadRepository.findUserByUsername(username)
+				.flatMap(userDto -> respond(request, userDto))
+				.switchIfEmpty(notFound(String.format("User with username: %s not found", username)));
+	}
+
+	public Mono<ServerResponse> findCredentialById(final ServerRequest request) {
+		log.debug("*** CredentialDto, reactive; fetch credential by id *");
+		return id(request, "credentialId", credentialId -> this.reactiveReadRepository.findCredentialById(credentialId)
+				.flatMap(credentialDto -> respond(request, credentialDto))
+				.switchIfEmpty(notFound(String.format("#### Credential with id: %d not found! ####", credentialId))));
+	}
+
+	public Mono<ServerResponse> findCredentialByUsername(final ServerRequest request) {
+		log.debug("*** CredentialDto, reactive; fetch credential by username *");
+		final String username = request.pathVariable("username");
+		return this.reactiveReadRepository.findCredentialByUsername(username)
+				.flatMap(credentialDto -> respond(request, credentialDto))
+				.switchIfEmpty(notFound(String.format("#### Credential with username: %s not found! ####", username)));
+	}
+
+	// el parseo va dentro del Mono para que un id no numérico llegue al onError como 400
+	private static Mono<ServerResponse> id(final ServerRequest request, final String variable,
+			final Function<Integer, Mono<ServerResponse>> lookup) {
+		return Mono.fromSupplier(() -> Integer.parseInt(request.pathVariable(variable).strip()))
+				.flatMap(lookup);
+	}
+
+	/**
+	 * The row is read either way, so the conditional GET is answered from it, with the rules of {@link EntityTagHelper}.
+	 */
+	private static Mono<ServerResponse> respond(final ServerRequest request, final EntityState state) {
+		final boolean notModified = EntityTagHelper.<Object>notModified(request.headers().asHttpHeaders(), () -> Optional.of(state))
+				.isPresent();
+		final ServerResponse.BodyBuilder builder = ServerResponse.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK);
+		if (state.getEntityTag() != null)
+			builder.eTag(state.getEntityTag());
+		if (state.getLastModified() != null)
+			builder.lastModified(state.getLastModified());
+		return notModified
+				? builder.build()
+				: builder.contentType(MediaType.APPLICATION_JSON).bodyValue(state);
+	}
+
+	private static Mono<ServerResponse> notFound(final String message) {
+		return Mono.defer(() -> error(HttpStatus.NOT_FOUND, message));
+	}
+
+	private static boolean isSaturated(final Throwable e) {
+		return e instanceof R2dbcTimeoutException || e instanceof PoolAcquirePendingLimitException
+				|| e.getCause() instanceof PoolAcquirePendingLimitException;
+	}
+
+	// mismo cuerpo que GlobalExceptionHandler
+	private static Mono<ServerResponse> error(final HttpStatus status, final String message) {
+		final Map<String, Object> body = new HashMap<>();
+		body.put("timestamp", Instant.now().toEpochMilli());
+		body.put("status", status.value());
+		body.put("error", status.getReasonPhrase());
+		body.put("message", message);
+		return ServerResponse.status(status)
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(body);
+	}
+
+}
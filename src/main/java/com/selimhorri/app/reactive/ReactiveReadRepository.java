@@ -0,0 +1,106 @@
+package com.selimhorri.app.reactive;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC counterparts of the single-row lookups of {@code UserService} and {@code CredentialService}, mapped to the
+ * same DTOs. Every lookup is one query joining the user and its credential; like the JPA path, a user without
+ * credentials is not found.
+ */
+@RequiredArgsConstructor
+public class ReactiveReadRepository {
+
+	private static final String SELECT_USER_WITH_CREDENTIAL = "SELECT u.user_id, u.version, u.updated_at, u.first_name, "
+			+ "u.last_name, u.image_url, u.email, u.phone, c.credential_id, c.version AS credential_version, "
+			+ "c.updated_at AS credential_updated_at, c.username, c.password, c.role, c.is_enabled, "
+			+ "c.is_account_non_expired, c.is_account_non_locked, c.is_credentials_non_expired "
+			+ "FROM users u INNER JOIN credentials c ON c.user_id = u.user_id ";
+
+	private final DatabaseClient databaseClient;
+
+	public Mono<UserDto> findUserById(final Integer userId) {
+		return this.databaseClient.sql(SELECT_USER_WITH_CREDENTIAL + "WHERE u.user_id = :userId")
+				.bind("userId", userId)
+				.map(ReactiveReadRepository::mapUser)
+				.one();
+	}
+
+	public Mono<UserDto> findUserByUsername(final String username) {
+		return this.databaseClient.sql(SELECT_USER_WITH_CREDENTIAL + "WHERE c.username = :username")
+				.bind("username", username)
+				.map(ReactiveReadRepository::mapUser)
+				.one();
+	}
+
+	public Mono<CredentialDto> findCredentialById(final Integer credentialId) {
+		return this.databaseClient.sql(SELECT_USER_WITH_CREDENTIAL + "WHERE c.credential_id = :credentialId")
+				.bind("credentialId", credentialId)
+				.map(ReactiveReadRepository::mapCredential)
+				.one();
+	}
+
+	public Mono<CredentialDto> findCredentialByUsername(final String username) {
+		return this.databaseClient.sql(SELECT_USER_WITH_CREDENTIAL + "WHERE c.username = :username")
+				.bind("username", username)
+				.map(ReactiveReadRepository::mapCredential)
+				.one();
+	}
+
+	private static UserDto mapUser(final Row row) {
+		return userBuilder(row)
+				.credentialDto(credentialBuilder(row).build())
+				.build();
+	}
+
+	private static CredentialDto mapCredential(final Row row) {
+		return credentialBuilder(row)
+				.userDto(userBuilder(row).build())
+				.build();
+	}
+
+	private static UserDto.UserDtoBuilder userBuilder(final Row row) {
+		return UserDto.builder()
+				.userId(row.get("user_id", Integer.class))
+				.version(row.get("version", Long.class))
+				.updatedAt(instant(row, "updated_at"))
+				.firstName(row.get("first_name", String.class))
+				.lastName(row.get("last_name", String.class))
+				.imageUrl(row.get("image_url", String.class))
+				.email(row.get("email", String.class))
+				.phone(row.get("phone", String.class));
+	}
+
+	private static CredentialDto.CredentialDtoBuilder credentialBuilder(final Row row) {
+		final String role = row.get("role", String.class);
+		return CredentialDto.builder()
+				.credentialId(row.get("credential_id", Integer.class))
+				.version(row.get("credential_version", Long.class))
+				.updatedAt(instant(row, "credential_updated_at"))
+				.username(row.get("username", String.class))
+				.password(row.get("password", String.class))
+				.roleBasedAuthority(role == null ? null : RoleBasedAuthority.valueOf(role))
+				.isEnabled(row.get("is_enabled", Boolean.class))
+				.isAccountNonExpired(row.get("is_account_non_expired", Boolean.class))
+				.isAccountNonLocked(row.get("is_account_non_locked", Boolean.class))
+				.isCredentialsNonExpired(row.get("is_credentials_non_expired", Boolean.class));
+	}
+
+	private static Instant instant(final Row row, final String column) {
+		final LocalDateTime timestamp = row.get(column, LocalDateTime.class);
+		// mismo criterio que Hibernate: el TIMESTAMP se interpreta en la zona de la JVM
+		return timestamp == null ? null : timestamp.atZone(ZoneId.systemDefault()).toInstant();
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.selimhorri.app.reactive;
+
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.SmartLifecycle;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the reactive read routes on their own Netty server next to Tomcat, started and stopped with the context.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveReadServer implements SmartLifecycle {
+
+	private final WebServer webServer;
+	private volatile boolean running;
+
+	@Override
+	public void start() {
+		this.webServer.start();
+		this.running = true;
+		log.info("*** ReactiveReadServer, reactive; lookups served on port {} *", this.webServer.getPort());
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.webServer.stop();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	public int getPort() {
+		return this.webServer.getPort();
+	}
+
+}
@@ -1,11 +1,47 @@
 package com.selimhorri.app.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.repository.projection.AddressView;
 
 public interface AddressRepository extends JpaRepository<Address, Integer> {
 	
+	@Override
+	@EntityGraph(attributePaths = {"user", "user.credential"})
+	List<Address> findAll();
+	
+	@Override
+	@EntityGraph(attributePaths = {"user", "user.credential"})
+	Optional<Address> findById(final Integer addressId);
+	
+	@EntityGraph(attributePaths = {"user", "user.credential"})
+	List<Address> findAllByAddressIdIn(final Collection<Integer> addressIds);
+	
+	@Query("SELECT a.version AS version, a.updatedAt AS updatedAt, u.version AS embeddedVersion, u.updatedAt AS embeddedUpdatedAt "
+			+ "FROM Address a JOIN a.user u WHERE a.addressId = :addressId")
+	Optional<EntityState> findStateByAddressId(@Param("addressId") final Integer addressId);
+	
+	@Query("SELECT a.user.userId FROM Address a WHERE a.addressId = :addressId")
+	Optional<Integer> findUserIdByAddressId(@Param("addressId") final Integer addressId);
+	
+	@Query(AddressView.SELECT + "FROM Address a JOIN a.user u WHERE a.addressId > :after ORDER BY a.addressId ASC")
+	List<AddressView> findViewPageAfter(@Param("after") final Integer after, final Pageable pageable);
 	
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM Address a WHERE a.addressId = :addressId")
+	int deleteByAddressId(@Param("addressId") final Integer addressId);
 	
 }
@@ -0,0 +1,19 @@
+package com.selimhorri.app.repository;
+
+import java.util.Optional;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.domain.Credential;
+
+public interface CredentialNaturalIdRepository {
+	
+	/**
+	 * Resolves the credential through its {@code username} natural id, so that with the second-level cache
+	 * enabled a repeated login or profile lookup skips the username query and the row loads; only the inverse
+	 * {@code User.credential} side is still read by its foreign key.
+	 */
+	@Transactional(readOnly = true)
+	Optional<Credential> loadByUsername(final String username);
+	
+}
@@ -0,0 +1,35 @@
+package com.selimhorri.app.repository;
+
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import com.selimhorri.app.domain.Credential;
+
+class CredentialNaturalIdRepositoryImpl implements CredentialNaturalIdRepository {
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Override
+	public Optional<Credential> loadByUsername(final String username) {
+		final Session session = this.entityManager.unwrap(Session.class);
+		if (this.isSecondLevelCacheEnabled(session.getSessionFactory()))
+			return session.bySimpleNaturalId(Credential.class).loadOptional(username);
+		// without the cache the natural id costs an extra round trip, a single fetch join is cheaper
+		return this.entityManager.createQuery("SELECT c FROM Credential c JOIN FETCH c.user u JOIN FETCH u.credential "
+					+ "WHERE c.username = :username", Credential.class)
+				.setParameter("username", username)
+				.getResultStream()
+				.findFirst();
+	}
+	
+	private boolean isSecondLevelCacheEnabled(final SessionFactory sessionFactory) {
+		return sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+	}
+	
+}
@@ -1,25 +1,86 @@
 package com.selimhorri.app.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.repository.projection.CredentialKeyView;
+import com.selimhorri.app.repository.projection.UserCredentialView;
+
+public interface CredentialRepository extends JpaRepository<Credential, Integer>, CredentialNaturalIdRepository {
 
-public interface CredentialRepository extends JpaRepository<Credential, Integer> {
+	@Override
+	@EntityGraph(attributePaths = {"user", "user.credential"})
+	List<Credential> findAll();
 
+	@Override
+	@EntityGraph(attributePaths = {"user", "user.credential"})
+	Optional<Credential> findById(final Integer credentialId);
+
+	@EntityGraph(attributePaths = {"user", "user.credential"})
 	Optional<Credential> findByUsername(final String username);
 
 	boolean existsByUsername(String username);
 
 	boolean existsByUserUserId(Integer userId);
 
+	@Query("SELECT c.version AS version, c.updatedAt AS updatedAt, u.version AS embeddedVersion, u.updatedAt AS embeddedUpdatedAt "
+			+ "FROM Credential c JOIN c.user u WHERE c.credentialId = :credentialId")
+	Optional<EntityState> findStateByCredentialId(@Param("credentialId") final Integer credentialId);
+
+	@Query("SELECT c.version AS version, c.updatedAt AS updatedAt, u.version AS embeddedVersion, u.updatedAt AS embeddedUpdatedAt "
+			+ "FROM Credential c JOIN c.user u WHERE c.username = :username")
+	Optional<EntityState> findStateByUsername(@Param("username") final String username);
+
+	@QueryHints(value = {
+			@QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+			@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	@Query("SELECT c.username FROM Credential c")
+	Stream<String> streamAllUsernames();
+
+	@Query(UserCredentialView.SELECT + "FROM Credential c JOIN c.user u WHERE c.credentialId = :credentialId")
+	Optional<UserCredentialView> findViewByCredentialId(@Param("credentialId") final Integer credentialId);
+
+	@Query(UserCredentialView.SELECT + "FROM Credential c JOIN c.user u WHERE c.credentialId > :after ORDER BY c.credentialId ASC")
+	List<UserCredentialView> findViewPageAfter(@Param("after") final Integer after, final Pageable pageable);
+
+	@Query("SELECT c.credentialId AS credentialId, c.user.userId AS userId, c.username AS username "
+			+ "FROM Credential c WHERE c.credentialId = :credentialId")
+	Optional<CredentialKeyView> findKeysByCredentialId(@Param("credentialId") final Integer credentialId);
+
+	@Query("SELECT c.credentialId AS credentialId, c.user.userId AS userId, c.username AS username "
+			+ "FROM Credential c WHERE c.user.userId IN :userIds")
+	List<CredentialKeyView> findKeysByUserIdIn(@Param("userIds") final Collection<Integer> userIds);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM Credential c WHERE c.credentialId = :credentialId")
-    void deleteByCredentialId(Integer credentialId);
+    int deleteByCredentialId(Integer credentialId);
+
+	/**
+	 * Verification tokens go with their credential through the ON DELETE CASCADE foreign key.
+	 */
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM Credential c WHERE c.user.userId IN :userIds")
+	int deleteByUserIdIn(@Param("userIds") final Collection<Integer> userIds);
 
 }
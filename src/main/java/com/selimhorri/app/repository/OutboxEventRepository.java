@@ -0,0 +1,29 @@
+package com.selimhorri.app.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.domain.OutboxEvent;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Read-write on purpose: with replica routing on, a lagging replica would hand back events already relayed.
+     */
+    @Transactional
+    @Query("SELECT oe FROM OutboxEvent oe ORDER BY oe.outboxEventId ASC")
+    List<OutboxEvent> findOldest(final Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent oe WHERE oe.outboxEventId IN :ids")
+    int deleteByOutboxEventIdIn(@Param("ids") final Collection<Long> ids);
+
+}
@@ -0,0 +1,30 @@
+package com.selimhorri.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.domain.SchedulerLock;
+
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Conditional update: succeeds (returns 1) only if the lease has expired or is already ours.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock sl SET sl.lockedUntil = :until, sl.lockedBy = :owner "
+            + "WHERE sl.lockName = :name AND (sl.lockedUntil <= :now OR sl.lockedBy = :owner)")
+    int tryAcquire(@Param("name") final String name, @Param("owner") final String owner, 
+            @Param("now") final Instant now, @Param("until") final Instant until);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock sl SET sl.lockedUntil = :now WHERE sl.lockName = :name AND sl.lockedBy = :owner")
+    int release(@Param("name") final String name, @Param("owner") final String owner, @Param("now") final Instant now);
+
+}
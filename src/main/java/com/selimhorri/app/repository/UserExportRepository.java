@@ -0,0 +1,16 @@
+package com.selimhorri.app.repository;
+
+import java.util.stream.Stream;
+
+import com.selimhorri.app.domain.User;
+
+public interface UserExportRepository {
+	
+	/**
+	 * Forward-only, read-only read of the whole users/credentials join; must be consumed inside a transaction
+	 * and closed. The JDBC fetch size is {@code app.export.fetch-size}: on MySQL, {@code Integer.MIN_VALUE}
+	 * streams the rows one by one instead of buffering the whole result, for this query only.
+	 */
+	Stream<User> streamAllWithCredential();
+	
+}
@@ -0,0 +1,31 @@
+package com.selimhorri.app.repository;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import com.selimhorri.app.domain.User;
+
+class UserExportRepositoryImpl implements UserExportRepository {
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Value("${app.export.fetch-size:1000}")
+	private int fetchSize;
+	
+	@Override
+	public Stream<User> streamAllWithCredential() {
+		return this.entityManager.createQuery("SELECT u FROM User u JOIN FETCH u.credential ORDER BY u.userId ASC", User.class)
+				.setHint(HINT_FETCH_SIZE, this.fetchSize)
+				.setHint(HINT_READONLY, true)
+				.getResultStream();
+	}
+	
+}
@@ -1,13 +1,44 @@
 package com.selimhorri.app.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.selimhorri.app.domain.User;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.repository.projection.UserCredentialView;
 
-public interface UserRepository extends JpaRepository<User, Integer> {
+public interface UserRepository extends JpaRepository<User, Integer>, UserExportRepository {
 	
-	Optional<User> findByCredentialUsername(final String username);
+	@Override
+	@EntityGraph(attributePaths = {"credential"})
+	List<User> findAll();
+	
+	@Override
+	@EntityGraph(attributePaths = {"credential"})
+	Optional<User> findById(final Integer userId);
+	
+	@Query(UserCredentialView.SELECT + "FROM User u JOIN u.credential c WHERE c.username = :username")
+	Optional<UserCredentialView> findViewByUsername(@Param("username") final String username);
+	
+	@Query("SELECT u.version AS version, u.updatedAt AS updatedAt, c.version AS embeddedVersion, c.updatedAt AS embeddedUpdatedAt "
+			+ "FROM User u JOIN u.credential c WHERE u.userId = :userId")
+	Optional<EntityState> findStateByUserId(@Param("userId") final Integer userId);
+	
+	@Query("SELECT u.version AS version, u.updatedAt AS updatedAt, c.version AS embeddedVersion, c.updatedAt AS embeddedUpdatedAt "
+			+ "FROM User u JOIN u.credential c WHERE c.username = :username")
+	Optional<EntityState> findStateByUsername(@Param("username") final String username);
+	
+	@Query(UserCredentialView.SELECT + "FROM User u JOIN u.credential c WHERE u.userId > :after ORDER BY u.userId ASC")
+	List<UserCredentialView> findViewPageAfter(@Param("after") final Integer after, final Pageable pageable);
+	
+	@Query("SELECT u FROM User u JOIN FETCH u.credential WHERE u.userId IN :ids")
+	List<User> findAllWithCredentialByIdIn(@Param("ids") final Collection<Integer> ids);
 	
 }
@@ -1,17 +1,90 @@
 package com.selimhorri.app.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.selimhorri.app.domain.VerificationToken;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
+import com.selimhorri.app.repository.projection.VerificationTokenView;
 
 public interface VerificationTokenRepository extends JpaRepository<VerificationToken, Integer> {
 
+    @Override
+    @EntityGraph(attributePaths = {"credential", "credential.user", "credential.user.credential"})
+    List<VerificationToken> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"credential", "credential.user", "credential.user.credential"})
+    Optional<VerificationToken> findById(final Integer verificationTokenId);
+
+    @Query("SELECT vt.version AS version, vt.updatedAt AS updatedAt, c.version AS embeddedVersion, c.updatedAt AS embeddedUpdatedAt "
+            + "FROM VerificationToken vt JOIN vt.credential c WHERE vt.verificationTokenId = :verificationTokenId")
+    Optional<EntityState> findStateByVerificationTokenId(@Param("verificationTokenId") final Integer verificationTokenId);
+
+    @Query(VerificationTokenView.SELECT + "FROM VerificationToken vt JOIN vt.credential c "
+            + "WHERE vt.verificationTokenId = :verificationTokenId")
+    Optional<VerificationTokenView> findViewByVerificationTokenId(@Param("verificationTokenId") final Integer verificationTokenId);
+
+    @Query(VerificationTokenView.SELECT + "FROM VerificationToken vt JOIN vt.credential c "
+            + "WHERE vt.verificationTokenId > :after ORDER BY vt.verificationTokenId ASC")
+    List<VerificationTokenView> findViewPageAfter(@Param("after") final Integer after, final Pageable pageable);
+
+    /**
+     * Owner of a token, for the outbox event of its deletion; joins credentials to reach the user id.
+     */
+    @Query("SELECT vt.credential.user.userId FROM VerificationToken vt WHERE vt.verificationTokenId = :verificationTokenId")
+    Optional<Integer> findUserIdByVerificationTokenId(@Param("verificationTokenId") final Integer verificationTokenId);
+
+    /**
+     * The tokens of these credentials; read before the credentials are deleted, as the ON DELETE CASCADE takes the
+     * tokens with them behind Hibernate's back.
+     */
+    @Query("SELECT vt.verificationTokenId AS verificationTokenId, c.user.userId AS userId "
+            + "FROM VerificationToken vt JOIN vt.credential c WHERE c.credentialId IN :credentialIds")
+    List<VerificationTokenKeyView> findKeysByCredentialIdIn(@Param("credentialIds") final Collection<Integer> credentialIds);
+
+    /**
+     * Unique index lookup on verif_token; the credential id is read from the foreign key column, no join.
+     */
+    @Query("SELECT vt.credential.credentialId FROM VerificationToken vt WHERE vt.token = :token AND vt.expireDate >= :today")
+    Optional<Integer> findCredentialIdByValidToken(@Param("token") final String token, @Param("today") final LocalDate today);
+
+    @Query("SELECT MIN(vt.verificationTokenId) FROM VerificationToken vt WHERE vt.expireDate < :today")
+    Optional<Integer> findMinExpiredId(@Param("today") final LocalDate today);
+
+    @Query("SELECT MAX(vt.verificationTokenId) FROM VerificationToken vt WHERE vt.expireDate < :today")
+    Optional<Integer> findMaxExpiredId(@Param("today") final LocalDate today);
+
+    @Query("SELECT vt.verificationTokenId AS verificationTokenId, c.user.userId AS userId "
+            + "FROM VerificationToken vt JOIN vt.credential c WHERE vt.verificationTokenId >= :from "
+            + "AND vt.verificationTokenId < :to AND vt.expireDate < :today")
+    List<VerificationTokenKeyView> findExpiredKeysInIdRange(@Param("from") final Integer from, @Param("to") final Integer to, 
+            @Param("today") final LocalDate today);
+
+    /**
+     * Deletes the expired tokens of one primary-key range [from, to), in the caller's transaction if there is one.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VerificationToken vt WHERE vt.verificationTokenId >= :from AND vt.verificationTokenId < :to "
+            + "AND vt.expireDate < :today")
+    int deleteExpiredInIdRange(@Param("from") final Integer from, @Param("to") final Integer to, 
+            @Param("today") final LocalDate today);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM VerificationToken vt WHERE vt.id = :id")
-    void deleteByIdCustom(Integer id);
+    int deleteByIdCustom(Integer id);
 
 }
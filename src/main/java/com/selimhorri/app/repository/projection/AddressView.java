@@ -0,0 +1,35 @@
+package com.selimhorri.app.repository.projection;
+
+import java.time.Instant;
+
+import lombok.Value;
+
+/**
+ * An address with the columns of its user that {@code AddressDto} embeds; the user's credential is not joined.
+ */
+@Value
+public class AddressView {
+	
+	/**
+	 * Select clause for {@code FROM Address a JOIN a.user u}.
+	 */
+	public static final String SELECT = "SELECT new com.selimhorri.app.repository.projection.AddressView("
+			+ "a.addressId, a.version, a.updatedAt, a.fullAddress, a.postalCode, a.city, "
+			+ "u.userId, u.version, u.updatedAt, u.firstName, u.lastName, u.imageUrl, u.email, u.phone) ";
+	
+	Integer addressId;
+	Long version;
+	Instant updatedAt;
+	String fullAddress;
+	String postalCode;
+	String city;
+	Integer userId;
+	Long userVersion;
+	Instant userUpdatedAt;
+	String firstName;
+	String lastName;
+	String imageUrl;
+	String email;
+	String phone;
+	
+}
@@ -0,0 +1,12 @@
+package com.selimhorri.app.repository.projection;
+
+/**
+ * The identifiers a credential is cached under, read without loading the entity.
+ */
+public interface CredentialKeyView {
+	
+	Integer getCredentialId();
+	Integer getUserId();
+	String getUsername();
+	
+}
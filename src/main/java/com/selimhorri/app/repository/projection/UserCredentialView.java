@@ -0,0 +1,43 @@
+package com.selimhorri.app.repository.projection;
+
+import java.time.Instant;
+
+import com.selimhorri.app.domain.RoleBasedAuthority;
+
+import lombok.Value;
+
+/**
+ * A user joined to its credential, with only the columns {@code UserDto} and {@code CredentialDto} expose. Read with
+ * a JPQL constructor expression, so nothing enters the persistence context.
+ */
+@Value
+public class UserCredentialView {
+	
+	/**
+	 * Select clause for {@code FROM User u JOIN u.credential c} or {@code FROM Credential c JOIN c.user u}.
+	 */
+	public static final String SELECT = "SELECT new com.selimhorri.app.repository.projection.UserCredentialView("
+			+ "u.userId, u.version, u.updatedAt, u.firstName, u.lastName, u.imageUrl, u.email, u.phone, "
+			+ "c.credentialId, c.version, c.updatedAt, c.username, c.password, c.roleBasedAuthority, "
+			+ "c.isEnabled, c.isAccountNonExpired, c.isAccountNonLocked, c.isCredentialsNonExpired) ";
+	
+	Integer userId;
+	Long userVersion;
+	Instant userUpdatedAt;
+	String firstName;
+	String lastName;
+	String imageUrl;
+	String email;
+	String phone;
+	Integer credentialId;
+	Long credentialVersion;
+	Instant credentialUpdatedAt;
+	String username;
+	String password;
+	RoleBasedAuthority roleBasedAuthority;
+	Boolean isEnabled;
+	Boolean isAccountNonExpired;
+	Boolean isAccountNonLocked;
+	Boolean isCredentialsNonExpired;
+	
+}
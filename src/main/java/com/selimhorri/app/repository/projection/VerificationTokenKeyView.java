@@ -0,0 +1,11 @@
+package com.selimhorri.app.repository.projection;
+
+/**
+ * The identifiers a verification token is cached and published under, read without loading the entity.
+ */
+public interface VerificationTokenKeyView {
+	
+	Integer getVerificationTokenId();
+	Integer getUserId();
+	
+}
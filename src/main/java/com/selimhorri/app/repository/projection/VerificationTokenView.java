@@ -0,0 +1,41 @@
+package com.selimhorri.app.repository.projection;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import com.selimhorri.app.domain.RoleBasedAuthority;
+
+import lombok.Value;
+
+/**
+ * A verification token with the columns of its credential that {@code VerificationTokenDto} embeds; the credential's
+ * user is not joined.
+ */
+@Value
+public class VerificationTokenView {
+	
+	/**
+	 * Select clause for {@code FROM VerificationToken vt JOIN vt.credential c}.
+	 */
+	public static final String SELECT = "SELECT new com.selimhorri.app.repository.projection.VerificationTokenView("
+			+ "vt.verificationTokenId, vt.version, vt.updatedAt, vt.token, vt.expireDate, "
+			+ "c.credentialId, c.version, c.updatedAt, c.username, c.password, c.roleBasedAuthority, "
+			+ "c.isEnabled, c.isAccountNonExpired, c.isAccountNonLocked, c.isCredentialsNonExpired) ";
+	
+	Integer verificationTokenId;
+	Long version;
+	Instant updatedAt;
+	String token;
+	LocalDate expireDate;
+	Integer credentialId;
+	Long credentialVersion;
+	Instant credentialUpdatedAt;
+	String username;
+	String password;
+	RoleBasedAuthority roleBasedAuthority;
+	Boolean isEnabled;
+	Boolean isAccountNonExpired;
+	Boolean isAccountNonLocked;
+	Boolean isCredentialsNonExpired;
+	
+}
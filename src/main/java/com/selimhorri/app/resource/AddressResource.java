@@ -4,18 +4,25 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.AddressDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.helper.EntityTagHelper;
 import com.selimhorri.app.service.AddressService;
 
 import lombok.RequiredArgsConstructor;
@@ -30,18 +37,23 @@ public class AddressResource {
 	private final AddressService addressService;
 	
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<AddressDto>> findAll() {
-		log.info("*** AddressDto List, controller; fetch all addresss *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.addressService.findAll()));
+	public ResponseEntity<DtoCollectionResponse<AddressDto>> findAll(
+			@RequestParam(value = "after", required = false) final Integer after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		log.info("*** AddressDto List, controller; fetch addresss page *");
+		return ResponseEntity.ok(this.addressService.findAll(after, limit));
 	}
 	
 	@GetMapping("/{addressId}")
 	public ResponseEntity<AddressDto> findById(
 			@PathVariable("addressId") 
 			@NotBlank(message = "Input must not blank") 
-			@Valid final String addressId) {
+			@Valid final String addressId, 
+			@RequestHeader final HttpHeaders requestHeaders) {
 		log.info("*** AddressDto, resource; fetch address by id *");
-		return ResponseEntity.ok(this.addressService.findById(Integer.parseInt(addressId.strip())));
+		final Integer id = Integer.parseInt(addressId.strip());
+		return EntityTagHelper.<AddressDto>notModified(requestHeaders, () -> this.addressService.findStateById(id))
+				.orElseGet(() -> EntityTagHelper.ok(this.addressService.findById(id)));
 	}
 	
 	@PostMapping
@@ -68,9 +80,23 @@ public class AddressResource {
 			@NotBlank(message = "Input must not blank") final String addressId, 
 			@RequestBody 
 			@NotNull(message = "Input must not NULL") 
-			@Valid final AddressDto addressDto) {
+			@Valid final AddressDto addressDto, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
 		log.info("*** AddressDto, resource; update address with addressId *");
-		return ResponseEntity.ok(this.addressService.update(Integer.parseInt(addressId.strip()), addressDto));
+		return EntityTagHelper.ok(this.addressService.update(Integer.parseInt(addressId.strip()), addressDto, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
+	}
+
+	@PatchMapping(value = "/{addressId}", consumes = AppConstant.MERGE_PATCH_JSON_VALUE)
+	public ResponseEntity<AddressDto> patch(
+			@PathVariable("addressId") 
+			@NotBlank(message = "Input must not blank") final String addressId, 
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") final JsonNode patch, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+		log.info("*** AddressDto, resource; patch address with addressId *");
+		return EntityTagHelper.ok(this.addressService.patch(Integer.parseInt(addressId.strip()), patch, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
 	}
 	
 	@DeleteMapping("/{addressId}")
@@ -0,0 +1,43 @@
+package com.selimhorri.app.resource;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+import com.selimhorri.app.cache.transport.HttpCacheInvalidationTransport;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping(value = {HttpCacheInvalidationTransport.PATH})
+@ConditionalOnProperty(name = "app.cache.invalidation.transport", havingValue = "http")
+@Slf4j
+@RequiredArgsConstructor
+public class CacheInvalidationResource {
+	
+	private final HttpCacheInvalidationTransport httpCacheInvalidationTransport;
+	
+	@PostMapping
+	public ResponseEntity<Void> receive(
+			@RequestHeader(value = HttpCacheInvalidationTransport.SECRET_HEADER, required = false) final String secret, 
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") final CacheInvalidationMessage message) {
+		log.debug("*** Void, resource; receive cache invalidation *");
+		if (!this.httpCacheInvalidationTransport.isTrusted(secret)) {
+			log.warn("*** Void, resource; refuse cache invalidation without the shared secret *");
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		this.httpCacheInvalidationTransport.receive(message);
+		return ResponseEntity.accepted().build();
+	}
+	
+}
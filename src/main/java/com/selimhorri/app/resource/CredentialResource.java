@@ -4,18 +4,25 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.helper.EntityTagHelper;
 import com.selimhorri.app.service.CredentialService;
 
 import lombok.RequiredArgsConstructor;
@@ -30,23 +37,37 @@ public class CredentialResource {
 	private final CredentialService credentialService;
 
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<CredentialDto>> findAll() {
-		log.info("*** CredentialDto List, controller; fetch all credentials *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.credentialService.findAll()));
+	public ResponseEntity<DtoCollectionResponse<CredentialDto>> findAll(
+			@RequestParam(value = "after", required = false) final Integer after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		log.info("*** CredentialDto List, controller; fetch credentials page *");
+		return ResponseEntity.ok(this.credentialService.findAll(after, limit));
 	}
 
 	@GetMapping("/username/{username}")
 	public ResponseEntity<CredentialDto> findByUsername(
-			@PathVariable("username") @NotBlank(message = "Input must not blank") @Valid final String username) {
+			@PathVariable("username") @NotBlank(message = "Input must not blank") @Valid final String username, 
+			@RequestHeader final HttpHeaders requestHeaders) {
 		log.info("*** CredentialDto, resource; update credential with credentialId *");
-		return ResponseEntity.ok(this.credentialService.findByUsername(username));
+		return EntityTagHelper.<CredentialDto>notModified(requestHeaders, () -> this.credentialService.findStateByUsername(username))
+				.orElseGet(() -> EntityTagHelper.ok(this.credentialService.findByUsername(username)));
+	}
+
+	@GetMapping("/username/{username}/available")
+	public ResponseEntity<Boolean> isUsernameAvailable(
+			@PathVariable("username") @NotBlank(message = "Input must not blank") @Valid final String username) {
+		log.info("*** Boolean, resource; check username availability *");
+		return ResponseEntity.ok(this.credentialService.isUsernameAvailable(username));
 	}
 
 	@GetMapping("/{credentialId}")
 	public ResponseEntity<CredentialDto> findById(
-			@PathVariable("credentialId") @NotBlank(message = "Input must not blank") @Valid final String credentialId) {
+			@PathVariable("credentialId") @NotBlank(message = "Input must not blank") @Valid final String credentialId, 
+			@RequestHeader final HttpHeaders requestHeaders) {
 		log.info("*** CredentialDto, resource; fetch credential by id *");
-		return ResponseEntity.ok(this.credentialService.findById(Integer.parseInt(credentialId.strip())));
+		final Integer id = Integer.parseInt(credentialId.strip());
+		return EntityTagHelper.<CredentialDto>notModified(requestHeaders, () -> this.credentialService.findStateById(id))
+				.orElseGet(() -> EntityTagHelper.ok(this.credentialService.findById(id)));
 	}
 
 	@PostMapping
@@ -66,9 +87,23 @@ public class CredentialResource {
 	@PutMapping("/{credentialId}")
 	public ResponseEntity<CredentialDto> update(
 			@PathVariable("credentialId") @NotBlank(message = "Input must not blank") final String credentialId,
-			@RequestBody @NotNull(message = "Input must not NULL") @Valid final CredentialDto credentialDto) {
+			@RequestBody @NotNull(message = "Input must not NULL") @Valid final CredentialDto credentialDto, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
 		log.info("*** CredentialDto, resource; update credential with credentialId *");
-		return ResponseEntity.ok(this.credentialService.update(Integer.parseInt(credentialId.strip()), credentialDto));
+		return EntityTagHelper.ok(this.credentialService.update(Integer.parseInt(credentialId.strip()), credentialDto, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
+	}
+
+	@PatchMapping(value = "/{credentialId}", consumes = AppConstant.MERGE_PATCH_JSON_VALUE)
+	public ResponseEntity<CredentialDto> patch(
+			@PathVariable("credentialId") 
+			@NotBlank(message = "Input must not blank") final String credentialId, 
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") final JsonNode patch, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+		log.info("*** CredentialDto, resource; patch credential with credentialId *");
+		return EntityTagHelper.ok(this.credentialService.patch(Integer.parseInt(credentialId.strip()), patch, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
 	}
 
 	@DeleteMapping("/{credentialId}")
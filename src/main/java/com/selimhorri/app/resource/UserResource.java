@@ -1,21 +1,36 @@
 package com.selimhorri.app.resource;
 
+import java.util.List;
+
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.request.IdBatchRequest;
+import com.selimhorri.app.dto.response.BatchGetResponse;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.helper.EntityTagHelper;
+import com.selimhorri.app.service.UserExportService;
+import com.selimhorri.app.service.UserImportService;
 import com.selimhorri.app.service.UserService;
 
 import lombok.RequiredArgsConstructor;
@@ -28,28 +43,54 @@ import lombok.extern.slf4j.Slf4j;
 public class UserResource {
 	
 	private final UserService userService;
+	private final UserExportService userExportService;
+	private final UserImportService userImportService;
 	
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<UserDto>> findAll() {
-		log.info("*** UserDto List, controller; fetch all users *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.userService.findAll()));
+	public ResponseEntity<DtoCollectionResponse<UserDto>> findAll(
+			@RequestParam(value = "after", required = false) final Integer after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		log.info("*** UserDto List, controller; fetch users page *");
+		return ResponseEntity.ok(this.userService.findAll(after, limit));
+	}
+	
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> exportAll() {
+		log.info("*** StreamingResponseBody, resource; export all users as ndjson *");
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(this.userExportService::exportAll);
 	}
 	
 	@GetMapping("/{userId}")
 	public ResponseEntity<UserDto> findById(
 			@PathVariable("userId") 
 			@NotBlank(message = "Input must not blank") 
-			@Valid final String userId) {
+			@Valid final String userId, 
+			@RequestHeader final HttpHeaders requestHeaders) {
 		log.info("*** UserDto, resource; fetch user by id *");
-		return ResponseEntity.ok(this.userService.findById(Integer.parseInt(userId.strip())));
+		final Integer id = Integer.parseInt(userId.strip());
+		return EntityTagHelper.<UserDto>notModified(requestHeaders, () -> this.userService.findStateById(id))
+				.orElseGet(() -> EntityTagHelper.ok(this.userService.findById(id)));
+	}
+	
+	@PostMapping("/batch-get")
+	public ResponseEntity<BatchGetResponse<UserDto>> findAllById(
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") 
+			@Valid final IdBatchRequest idBatchRequest) {
+		log.info("*** UserDto Batch, resource; fetch users by ids *");
+		return ResponseEntity.ok(this.userService.findAllById(idBatchRequest.getIds()));
 	}
 	
 	@GetMapping("/username/{username}")
 	public ResponseEntity<UserDto> findByUsername(
 			@PathVariable("username") 
 			@NotBlank(message = "Input must not blank") 
-			@Valid final String username) {
-		return ResponseEntity.ok(this.userService.findByUsername(username));
+			@Valid final String username, 
+			@RequestHeader final HttpHeaders requestHeaders) {
+		return EntityTagHelper.<UserDto>notModified(requestHeaders, () -> this.userService.findStateByUsername(username))
+				.orElseGet(() -> EntityTagHelper.ok(this.userService.findByUsername(username)));
 	}
 
 	@PostMapping
@@ -61,6 +102,21 @@ public class UserResource {
 		return ResponseEntity.ok(this.userService.save(userDto));
 	}
 	
+	/**
+	 * Users and addresses only (400 if a credential is included). The imported users have no credentials, so they
+	 * cannot be looked up by username nor fetched by id until one is created through {@code POST /api/credentials}.
+	 * All or nothing unless sharded, where each shard commits its share on its own; see
+	 * {@link UserImportService#importAll}.
+	 */
+	@PostMapping("/bulk")
+	public ResponseEntity<DtoCollectionResponse<UserDto>> importAll(
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") 
+			@Valid final List<UserDto> userDtos) {
+		log.info("*** UserDto List, resource; bulk import users *");
+		return ResponseEntity.ok(this.userImportService.importAll(userDtos));
+	}
+	
 	@PutMapping
 	public ResponseEntity<UserDto> update(
 			@RequestBody 
@@ -76,9 +132,32 @@ public class UserResource {
 			@NotBlank(message = "Input must not blank") final String userId, 
 			@RequestBody 
 			@NotNull(message = "Input must not NULL") 
-			@Valid final UserDto userDto) {
+			@Valid final UserDto userDto, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
 		log.info("*** UserDto, resource; update user with userId *");
-		return ResponseEntity.ok(this.userService.update(Integer.parseInt(userId.strip()), userDto));
+		return EntityTagHelper.ok(this.userService.update(Integer.parseInt(userId.strip()), userDto, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
+	}
+
+	@PatchMapping(value = "/{userId}", consumes = AppConstant.MERGE_PATCH_JSON_VALUE)
+	public ResponseEntity<UserDto> patch(
+			@PathVariable("userId") 
+			@NotBlank(message = "Input must not blank") final String userId, 
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") final JsonNode patch, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+		log.info("*** UserDto, resource; patch user with userId *");
+		return EntityTagHelper.ok(this.userService.patch(Integer.parseInt(userId.strip()), patch, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
+	}
+	
+	@DeleteMapping
+	public ResponseEntity<Integer> deleteAllById(
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") 
+			@Valid final IdBatchRequest idBatchRequest) {
+		log.info("*** Integer, resource; delete users by ids *");
+		return ResponseEntity.ok(this.userService.deleteAllById(idBatchRequest.getIds()));
 	}
 	
 	@DeleteMapping("/{userId}")
@@ -4,18 +4,25 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.VerificationTokenDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.helper.EntityTagHelper;
 import com.selimhorri.app.service.VerificationTokenService;
 
 import lombok.RequiredArgsConstructor;
@@ -30,18 +37,32 @@ public class VerificationTokenResource {
 	private final VerificationTokenService verificationTokenService;
 	
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<VerificationTokenDto>> findAll() {
-		log.info("*** VerificationTokenDto List, controller; fetch all verificationTokens *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.verificationTokenService.findAll()));
+	public ResponseEntity<DtoCollectionResponse<VerificationTokenDto>> findAll(
+			@RequestParam(value = "after", required = false) final Integer after,
+			@RequestParam(value = "limit", required = false) final Integer limit) {
+		log.info("*** VerificationTokenDto List, controller; fetch verificationTokens page *");
+		return ResponseEntity.ok(this.verificationTokenService.findAll(after, limit));
 	}
 	
 	@GetMapping("/{verificationTokenId}")
 	public ResponseEntity<VerificationTokenDto> findById(
 			@PathVariable("verificationTokenId") 
 			@NotBlank(message = "Input must not blank") 
-			@Valid final String verificationTokenId) {
+			@Valid final String verificationTokenId, 
+			@RequestHeader final HttpHeaders requestHeaders) {
 		log.info("*** VerificationTokenDto, resource; fetch verificationToken by id *");
-		return ResponseEntity.ok(this.verificationTokenService.findById(Integer.parseInt(verificationTokenId.strip())));
+		final Integer id = Integer.parseInt(verificationTokenId.strip());
+		return EntityTagHelper.<VerificationTokenDto>notModified(requestHeaders, () -> this.verificationTokenService.findStateById(id))
+				.orElseGet(() -> EntityTagHelper.ok(this.verificationTokenService.findById(id)));
+	}
+	
+	@GetMapping("/validate/{token}")
+	public ResponseEntity<Integer> validate(
+			@PathVariable("token") 
+			@NotBlank(message = "Input must not blank") 
+			@Valid final String token) {
+		log.info("*** Integer, resource; validate verificationToken *");
+		return ResponseEntity.ok(this.verificationTokenService.validate(token.strip()));
 	}
 	
 	@PostMapping
@@ -59,9 +80,23 @@ public class VerificationTokenResource {
 			@NotBlank(message = "Input must not blank") final String verificationTokenId, 
 			@RequestBody 
 			@NotNull(message = "Input must not NULL") 
-			@Valid final VerificationTokenDto verificationTokenDto) {
+			@Valid final VerificationTokenDto verificationTokenDto, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
 		log.info("*** VerificationTokenDto, resource; update verificationToken with verificationTokenId *");
-		return ResponseEntity.ok(this.verificationTokenService.update(Integer.parseInt(verificationTokenId.strip()), verificationTokenDto));
+		return EntityTagHelper.ok(this.verificationTokenService.update(Integer.parseInt(verificationTokenId.strip()), verificationTokenDto, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
+	}
+
+	@PatchMapping(value = "/{verificationTokenId}", consumes = AppConstant.MERGE_PATCH_JSON_VALUE)
+	public ResponseEntity<VerificationTokenDto> patch(
+			@PathVariable("verificationTokenId") 
+			@NotBlank(message = "Input must not blank") final String verificationTokenId, 
+			@RequestBody 
+			@NotNull(message = "Input must not NULL") final JsonNode patch, 
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+		log.info("*** VerificationTokenDto, resource; patch verificationToken with verificationTokenId *");
+		return EntityTagHelper.ok(this.verificationTokenService.patch(Integer.parseInt(verificationTokenId.strip()), patch, 
+				EntityTagHelper.parseIfMatch(ifMatch)));
 	}
 	
 	@DeleteMapping("/{verificationTokenId}")
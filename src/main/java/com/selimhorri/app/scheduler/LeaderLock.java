@@ -0,0 +1,45 @@
+package com.selimhorri.app.scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.selimhorri.app.repository.SchedulerLockRepository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lease-based lock on a {@code scheduler_locks} row. The lease expires on its own, so a replica that dies
+ * while holding it blocks the job for at most one lease; a holder that renews before expiry keeps it.
+ * Sharded, the row lives on the home shard: jobs bind only their per-shard work to a shard, never the lock calls.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LeaderLock {
+	
+	private final SchedulerLockRepository schedulerLockRepository;
+	
+	@Getter
+	private final String owner = UUID.randomUUID().toString();
+	
+	/**
+	 * Acquires the lock, or extends it when already held by this instance. Long jobs call it between batches to
+	 * renew the lease; {@code false} then means another replica took over, and the job must stop.
+	 */
+	public boolean tryAcquire(final String lockName, final Duration lease) {
+		final Instant now = Instant.now();
+		final boolean acquired = this.schedulerLockRepository.tryAcquire(lockName, this.owner, now, now.plus(lease)) == 1;
+		log.debug("*** Boolean, scheduler; lock {} acquired by {}: {} *", lockName, this.owner, acquired);
+		return acquired;
+	}
+	
+	public void release(final String lockName) {
+		this.schedulerLockRepository.release(lockName, this.owner, Instant.now());
+	}
+	
+}
@@ -0,0 +1,147 @@
+package com.selimhorri.app.scheduler;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Removes expired verification tokens. The expired id span is walked in fixed primary-key ranges, one short
+ * transaction per range with a pause in between, so row locks are only ever held on a small slice of the table
+ * and replication keeps up. Only the replica holding the {@link LeaderLock} runs it; sharded, it walks the shards
+ * one after the other while the lock stays on the home shard.
+ * <p>
+ * Each range publishes a deleted event per token through the outbox, in the transaction of its delete. Purged tokens
+ * are not evicted from the second-level cache one by one, which would mean an invalidation message per token; their
+ * entries, of tokens already expired, age out with the region.
+ */
+@Component
+@Slf4j
+public class VerificationTokenPurgeJob {
+	
+	static final String LOCK_NAME = "verification-token-purge";
+	private static final String METRIC_PREFIX = "verification.tokens.purge";
+	
+	private final VerificationTokenRepository verificationTokenRepository;
+	private final LeaderLock leaderLock;
+	private final ShardRouter shardRouter;
+	private final TransactionOperations transactionOperations;
+	private final OutboxWriter outboxWriter;
+	private final int chunkSize;
+	private final Duration pause;
+	private final Duration lease;
+	private final Counter purged;
+	private final Timer batchDuration;
+	
+	public VerificationTokenPurgeJob(final VerificationTokenRepository verificationTokenRepository, 
+			final LeaderLock leaderLock, final ShardRouter shardRouter, final TransactionOperations transactionOperations, 
+			final OutboxWriter outboxWriter, final MeterRegistry meterRegistry, 
+			@Value("${app.verification-token-purge.chunk-size:1000}") final int chunkSize, 
+			@Value("${app.verification-token-purge.pause:200ms}") final Duration pause, 
+			@Value("${app.verification-token-purge.lease:10m}") final Duration lease) {
+		this.verificationTokenRepository = verificationTokenRepository;
+		this.leaderLock = leaderLock;
+		this.shardRouter = shardRouter;
+		this.transactionOperations = transactionOperations;
+		this.outboxWriter = outboxWriter;
+		this.chunkSize = chunkSize;
+		this.pause = pause;
+		this.lease = lease;
+		this.purged = Counter.builder(METRIC_PREFIX + ".rows")
+				.description("Expired verification tokens deleted")
+				.register(meterRegistry);
+		this.batchDuration = Timer.builder(METRIC_PREFIX + ".batch")
+				.description("Time spent deleting one primary-key range")
+				.register(meterRegistry);
+	}
+	
+	@Scheduled(cron = "${app.verification-token-purge.cron:0 */15 * * * *}")
+	public void run() {
+		if (!this.leaderLock.tryAcquire(LOCK_NAME, this.lease)) {
+			log.debug("*** Void, scheduler; purge held by another replica *");
+			return;
+		}
+		try {
+			this.purge(LocalDate.now());
+		}
+		finally {
+			this.leaderLock.release(LOCK_NAME);
+		}
+	}
+	
+	/**
+	 * @return number of tokens deleted
+	 */
+	long purge(final LocalDate today) {
+		long total = 0;
+		shards:
+		for (final Integer shard : this.shardRouter.getShards()) {
+			final Optional<Integer> min = this.onShard(shard, () -> this.verificationTokenRepository.findMinExpiredId(today));
+			if (min.isEmpty())
+				continue;
+			final long max = this.onShard(shard, () -> this.verificationTokenRepository.findMaxExpiredId(today))
+					.orElse(min.get());
+			
+			for (long from = min.get(); from <= max; from += this.chunkSize) {
+				final int lower = (int) from;
+				final int upper = (int) Math.min(from + this.chunkSize, max + 1);
+				final int deleted = this.batchDuration.record(() -> this.onShard(shard, 
+						() -> this.deleteRange(lower, upper, today)));
+				this.purged.increment(deleted);
+				total += deleted;
+				
+				if (upper > max)
+					break;
+				if (!this.leaderLock.tryAcquire(LOCK_NAME, this.lease) || !this.pause())
+					break shards;
+			}
+		}
+		log.info("*** Long, scheduler; purged {} expired verification tokens *", total);
+		return total;
+	}
+	
+	private int deleteRange(final int from, final int to, final LocalDate today) {
+		return this.transactionOperations.execute(status -> {
+			final List<VerificationTokenKeyView> tokens = this.outboxWriter.isEnabled() 
+					? this.verificationTokenRepository.findExpiredKeysInIdRange(from, to, today) 
+					: List.of();
+			final int deleted = this.verificationTokenRepository.deleteExpiredInIdRange(from, to, today);
+			tokens.forEach(token -> this.outboxWriter.deleted(AggregateType.VERIFICATION_TOKEN, 
+					token.getVerificationTokenId(), token.getUserId()));
+			return deleted;
+		});
+	}
+	
+	private <T> T onShard(final int shard, final Supplier<T> work) {
+		return this.shardRouter.withShard(shard, work);
+	}
+	
+	private boolean pause() {
+		try {
+			Thread.sleep(this.pause.toMillis());
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+}
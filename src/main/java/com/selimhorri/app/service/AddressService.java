@@ -1,16 +1,22 @@
 package com.selimhorri.app.service;
 
-import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 
 public interface AddressService {
 	
-	List<AddressDto> findAll();
+	DtoCollectionResponse<AddressDto> findAll(final Integer after, final Integer limit);
 	AddressDto findById(final Integer addressId);
+	Optional<EntityState> findStateById(final Integer addressId);
 	AddressDto save(final AddressDto addressDto);
 	AddressDto update(final AddressDto addressDto);
 	AddressDto update(final Integer addressId, final AddressDto addressDto);
+	AddressDto update(final Integer addressId, final AddressDto addressDto, final Long expectedVersion);
+	AddressDto patch(final Integer addressId, final JsonNode patch, final Long expectedVersion);
 	void deleteById(final Integer addressId);
 	
 }
@@ -1,18 +1,26 @@
 package com.selimhorri.app.service;
 
-import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 
 public interface CredentialService {
 	
-	List<CredentialDto> findAll();
+	DtoCollectionResponse<CredentialDto> findAll(final Integer after, final Integer limit);
 	CredentialDto findById(final Integer credentialId);
+	Optional<EntityState> findStateById(final Integer credentialId);
 	CredentialDto save(final CredentialDto credentialDto);
 	CredentialDto update(final CredentialDto credentialDto);
 	CredentialDto update(final Integer credentialId, final CredentialDto credentialDto);
+	CredentialDto update(final Integer credentialId, final CredentialDto credentialDto, final Long expectedVersion);
+	CredentialDto patch(final Integer credentialId, final JsonNode patch, final Long expectedVersion);
 	void deleteById(final Integer credentialId);
 	CredentialDto findByUsername(final String username);
+	Optional<EntityState> findStateByUsername(final String username);
+	boolean isUsernameAvailable(final String username);
 	
 }
 
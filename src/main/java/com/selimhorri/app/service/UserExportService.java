@@ -0,0 +1,9 @@
+package com.selimhorri.app.service;
+
+import java.io.OutputStream;
+
+public interface UserExportService {
+	
+	long exportAll(final OutputStream outputStream);
+	
+}
@@ -0,0 +1,18 @@
+package com.selimhorri.app.service;
+
+import java.util.List;
+
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+
+public interface UserImportService {
+	
+	/**
+	 * Imports users with their addresses, never their credentials: a payload carrying a {@code credentialDto} is
+	 * rejected. An imported user, like any user without credentials, is invisible to the username lookups and the
+	 * username Bloom filter, and is not found by the user endpoints until a credential is created for it. The import
+	 * is atomic when unsharded; sharded, it is atomic per shard only.
+	 */
+	DtoCollectionResponse<UserDto> importAll(final List<UserDto> userDtos);
+	
+}
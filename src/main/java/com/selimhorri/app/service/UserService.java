@@ -1,18 +1,29 @@
 package com.selimhorri.app.service;
 
 import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.dto.EntityState;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.BatchGetResponse;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 
 public interface UserService {
 	
-	List<UserDto> findAll();
+	DtoCollectionResponse<UserDto> findAll(final Integer after, final Integer limit);
 	UserDto findById(final Integer userId);
+	Optional<EntityState> findStateById(final Integer userId);
+	BatchGetResponse<UserDto> findAllById(final List<Integer> userIds);
 	UserDto save(final UserDto userDto);
 	UserDto update(final UserDto userDto);
 	UserDto update(final Integer userId, final UserDto userDto);
+	UserDto update(final Integer userId, final UserDto userDto, final Long expectedVersion);
+	UserDto patch(final Integer userId, final JsonNode patch, final Long expectedVersion);
 	void deleteById(final Integer userId);
+	int deleteAllById(final List<Integer> userIds);
 	UserDto findByUsername(final String username);
+	Optional<EntityState> findStateByUsername(final String username);
 	
 }
 
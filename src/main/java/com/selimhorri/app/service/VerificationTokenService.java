@@ -1,16 +1,24 @@
 package com.selimhorri.app.service;
 
-import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selimhorri.app.dto.EntityState;
 import com.selimhorri.app.dto.VerificationTokenDto;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 
 public interface VerificationTokenService {
 	
-	List<VerificationTokenDto> findAll();
+	DtoCollectionResponse<VerificationTokenDto> findAll(final Integer after, final Integer limit);
 	VerificationTokenDto findById(final Integer verificationTokenId);
+	Optional<EntityState> findStateById(final Integer verificationTokenId);
+	Integer validate(final String token);
 	VerificationTokenDto save(final VerificationTokenDto verificationTokenDto);
 	VerificationTokenDto update(final VerificationTokenDto verificationTokenDto);
 	VerificationTokenDto update(final Integer verificationTokenId, final VerificationTokenDto verificationTokenDto);
+	VerificationTokenDto update(final Integer verificationTokenId, final VerificationTokenDto verificationTokenDto, 
+			final Long expectedVersion);
+	VerificationTokenDto patch(final Integer verificationTokenId, final JsonNode patch, final Long expectedVersion);
 	void deleteById(final Integer verificationTokenId);
 	
 }
@@ -1,18 +1,31 @@
 package com.selimhorri.app.service.impl;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
-import javax.transaction.Transactional;
+import java.util.Comparator;
+import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
 import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.AddressNotFoundException;
 import com.selimhorri.app.helper.AddressMappingHelper;
+import com.selimhorri.app.helper.EntityTagHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.MergePatchHelper;
+import com.selimhorri.app.outbox.OutboxWriter;
 import com.selimhorri.app.repository.AddressRepository;
+import com.selimhorri.app.repository.projection.AddressView;
 import com.selimhorri.app.service.AddressService;
+import com.selimhorri.app.sharding.ShardRouter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,30 +37,56 @@ import lombok.extern.slf4j.Slf4j;
 public class AddressServiceImpl implements AddressService {
 
 	private final AddressRepository addressRepository;
+	private final ObjectMapper objectMapper;
+	private final MicroBatchLoader<Integer, Address> addressBatchLoader;
+	private final ShardRouter shardRouter;
+	private final OutboxWriter outboxWriter;
+	private final UserCacheInvalidator userCacheInvalidator;
+	private final ReplicaLagGuard replicaLagGuard;
 
 	@Override
-	public List<AddressDto> findAll() {
-		log.info("*** AddressDto List, service; fetch all addresss *");
-		return this.addressRepository.findAll()
-				.stream()
-				.map(AddressMappingHelper::map)
-				.distinct()
-				.collect(Collectors.toUnmodifiableList());
+	@Transactional(readOnly = true)
+	public DtoCollectionResponse<AddressDto> findAll(final Integer after, final Integer limit) {
+		log.info("*** AddressDto Page, service; fetch addresses page by cursor *");
+		final int pageSize = KeysetPaginationHelper.resolveLimit(limit);
+		return KeysetPaginationHelper.toResponse(
+				this.shardRouter.scatterGather(() -> this.addressRepository.findViewPageAfter(
+						KeysetPaginationHelper.resolveCursor(after), KeysetPaginationHelper.firstRows(pageSize)),
+						Comparator.comparing(AddressView::getAddressId)),
+				pageSize,
+				AddressMappingHelper::map,
+				AddressView::getAddressId);
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public AddressDto findById(final Integer addressId) {
 		log.info("*** AddressDto, service; fetch address by id *");
-		return this.addressRepository.findById(addressId)
+		this.shardRouter.bindShardOf(addressId);
+		return this.findAddress(addressId)
 				.map(AddressMappingHelper::map)
 				.orElseThrow(() -> new AddressNotFoundException(
 						String.format("#### Address with id: %d not found! ####", addressId)));
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<EntityState> findStateById(final Integer addressId) {
+		log.info("*** EntityState, service; fetch address state by id *");
+		this.shardRouter.bindShardOf(addressId);
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.address(addressId));
+		return this.addressRepository.findStateByAddressId(addressId);
+	}
+
 	@Override
 	public AddressDto save(final AddressDto addressDto) {
 		log.info("*** AddressDto, service; save address *");
-		return AddressMappingHelper.map(this.addressRepository.save(AddressMappingHelper.map(addressDto)));
+		// la dirección vive en el shard de su usuario
+		final Integer userId = addressDto.getUserDto() == null ? null : addressDto.getUserDto().getUserId();
+		this.shardRouter.bind(userId == null ? this.shardRouter.nextShard() : this.shardRouter.shardOf(userId));
+		final Address savedAddress = this.addressRepository.save(AddressMappingHelper.map(addressDto));
+		this.outboxWriter.created(AggregateType.ADDRESS, savedAddress.getAddressId(), userId, savedAddress.getVersion());
+		return AddressMappingHelper.map(savedAddress);
 	}
 
 	@Override
@@ -55,6 +94,7 @@ public class AddressServiceImpl implements AddressService {
 		log.info("*** AddressDto, service; update address *");
 
 		// Buscar la dirección existente
+		this.shardRouter.bindShardOf(addressDto.getAddressId());
 		Address existingAddress = this.addressRepository.findById(addressDto.getAddressId())
 				.orElseThrow(() -> new AddressNotFoundException("Address not found"));
 
@@ -65,16 +105,22 @@ public class AddressServiceImpl implements AddressService {
 
 		// NO se cambia el usuario aquí, para mantener la asociación original
 
-		Address updatedAddress = this.addressRepository.save(existingAddress);
-		return AddressMappingHelper.map(updatedAddress);
+		return this.saveAndMap(existingAddress);
 	}
 
 	@Override
 	public AddressDto update(final Integer addressId, final AddressDto addressDto) {
+		return this.update(addressId, addressDto, null);
+	}
+
+	@Override
+	public AddressDto update(final Integer addressId, final AddressDto addressDto, final Long expectedVersion) {
 		log.info("*** AddressDto, service; update address with addressId *");
+		this.shardRouter.bindShardOf(addressId);
 
 		Address existingAddress = addressRepository.findById(addressId)
 				.orElseThrow(() -> new AddressNotFoundException("Address not found"));
+		EntityTagHelper.checkVersion(expectedVersion, existingAddress.getVersion());
 
 		// Actualizar campos permitidos
 		existingAddress.setFullAddress(addressDto.getFullAddress());
@@ -85,14 +131,75 @@ public class AddressServiceImpl implements AddressService {
 		// del DTO)
 		// NO hacer: existingAddress.setUser(mappedUserFromDto);
 
-		Address updatedAddress = addressRepository.save(existingAddress);
-		return AddressMappingHelper.map(updatedAddress);
+		return this.saveAndMap(existingAddress);
+	}
+
+	@Override
+	public AddressDto patch(final Integer addressId, final JsonNode patch, final Long expectedVersion) {
+		log.info("*** AddressDto, service; patch address with addressId *");
+		this.shardRouter.bindShardOf(addressId);
+
+		Address existingAddress = this.addressRepository.findById(addressId)
+				.orElseThrow(() -> new AddressNotFoundException(
+						String.format("#### Address with id: %d not found! ####", addressId)));
+		EntityTagHelper.checkVersion(expectedVersion, existingAddress.getVersion());
+
+		final AddressDto currentAddress = AddressMappingHelper.map(existingAddress);
+		final AddressDto patchedAddress = MergePatchHelper.apply(this.objectMapper, currentAddress, patch, AddressDto.class);
+		MergePatchHelper.checkOnlyEditableChanged(withEditableFields(currentAddress, patchedAddress), patchedAddress,
+				"fullAddress, postalCode and city");
+		if (patchedAddress.equals(currentAddress))
+			return currentAddress;
+
+		// el usuario de la dirección no se puede cambiar por PATCH
+		existingAddress.setFullAddress(patchedAddress.getFullAddress());
+		existingAddress.setPostalCode(patchedAddress.getPostalCode());
+		existingAddress.setCity(patchedAddress.getCity());
+
+		return this.saveAndMap(existingAddress);
 	}
 
 	@Override
 	public void deleteById(final Integer addressId) {
 		log.info("*** Void, service; delete address by id *");
-		this.addressRepository.deleteById(addressId);
+		this.shardRouter.bindShardOf(addressId);
+		final Optional<Integer> userId = this.outboxWriter.isEnabled()
+				? this.addressRepository.findUserIdByAddressId(addressId)
+				: Optional.empty();
+		if (this.addressRepository.deleteByAddressId(addressId) == 0)
+			throw new AddressNotFoundException(String.format("#### Address with id: %d not found! ####", addressId));
+		this.userCacheInvalidator.evictAddress(addressId);
+		this.outboxWriter.deleted(AggregateType.ADDRESS, addressId, userId.orElse(null));
+	}
+
+	// a recently written address is read from the primary, outside the micro-batch
+	private Optional<Address> findAddress(final Integer addressId) {
+		if (this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.address(addressId)))
+			return this.addressRepository.findById(addressId);
+		if (this.addressBatchLoader.isEnabled())
+			return this.addressBatchLoader.load(addressId);
+		return this.addressRepository.findById(addressId);
+	}
+
+	private AddressDto saveAndMap(final Address address) {
+		final Address savedAddress = this.addressRepository.save(address);
+		this.addressRepository.flush();
+		this.userCacheInvalidator.evictAddress(savedAddress.getAddressId());
+		this.outboxWriter.updated(AggregateType.ADDRESS, savedAddress.getAddressId(), 
+				savedAddress.getUser() == null ? null : savedAddress.getUser().getUserId(), savedAddress.getVersion());
+		return AddressMappingHelper.map(savedAddress);
+	}
+
+	private static AddressDto withEditableFields(final AddressDto current, final AddressDto patched) {
+		return AddressDto.builder()
+				.addressId(current.getAddressId())
+				.version(current.getVersion())
+				.updatedAt(current.getUpdatedAt())
+				.fullAddress(patched.getFullAddress())
+				.postalCode(patched.getPostalCode())
+				.city(patched.getCity())
+				.userDto(current.getUserDto())
+				.build();
 	}
 
 }
@@ -1,23 +1,46 @@
 package com.selimhorri.app.service.impl;
 
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import javax.transaction.Transactional;
+import java.util.Optional;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.cache.UsernameBloomFilter;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.CredentialNotFoundException;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
 import com.selimhorri.app.exception.wrapper.UsernameAlreadyExistsException;
 import com.selimhorri.app.helper.CredentialMappingHelper;
+import com.selimhorri.app.helper.EntityTagHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.MergePatchHelper;
+import com.selimhorri.app.outbox.OutboxWriter;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.CredentialKeyView;
+import com.selimhorri.app.repository.projection.UserCredentialView;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
 import com.selimhorri.app.service.CredentialService;
+import com.selimhorri.app.sharding.ShardRouter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,110 +53,269 @@ public class CredentialServiceImpl implements CredentialService {
 
 	private final CredentialRepository credentialRepository;
 	private final UserRepository userRepository;
+	private final VerificationTokenRepository verificationTokenRepository;
 	private final PasswordEncoder passwordEncoder;
+	private final UserCacheInvalidator userCacheInvalidator;
+	private final UsernameBloomFilter usernameBloomFilter;
+	private final TransactionOperations transactionOperations;
+	private final ObjectMapper objectMapper;
+	private final ReplicaLagGuard replicaLagGuard;
+	private final ShardRouter shardRouter;
+	private final OutboxWriter outboxWriter;
 
 	@Override
-	public List<CredentialDto> findAll() {
-		log.info("*** CredentialDto List, service; fetch all credentials *");
-		return this.credentialRepository.findAll()
-				.stream()
-				.map(CredentialMappingHelper::map)
-				.distinct()
-				.collect(Collectors.toUnmodifiableList());
+	@Transactional(readOnly = true)
+	public DtoCollectionResponse<CredentialDto> findAll(final Integer after, final Integer limit) {
+		log.info("*** CredentialDto Page, service; fetch credentials page by cursor *");
+		final int pageSize = KeysetPaginationHelper.resolveLimit(limit);
+		return KeysetPaginationHelper.toResponse(
+				this.shardRouter.scatterGather(() -> this.credentialRepository.findViewPageAfter(
+						KeysetPaginationHelper.resolveCursor(after), KeysetPaginationHelper.firstRows(pageSize)),
+						Comparator.comparing(UserCredentialView::getCredentialId)),
+				pageSize,
+				CredentialMappingHelper::map,
+				UserCredentialView::getCredentialId);
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public CredentialDto findById(final Integer credentialId) {
 		log.info("*** CredentialDto, service; fetch credential by ids *");
-		return this.credentialRepository.findById(credentialId)
+		this.shardRouter.bindShardOf(credentialId);
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.credential(credentialId));
+		return this.credentialRepository.findViewByCredentialId(credentialId)
 				.map(CredentialMappingHelper::map)
 				.orElseThrow(() -> new CredentialNotFoundException(
 						String.format("#### Credential with id: %d not found! ####", credentialId)));
 	}
 
 	@Override
+	@Transactional(readOnly = true)
+	public Optional<EntityState> findStateById(final Integer credentialId) {
+		log.info("*** EntityState, service; fetch credential state by id *");
+		this.shardRouter.bindShardOf(credentialId);
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.credential(credentialId));
+		return this.credentialRepository.findStateByCredentialId(credentialId);
+	}
+
+	@Override
+	@Cacheable(cacheNames = AppConstant.CacheNames.CREDENTIALS_BY_USERNAME)
+	@Transactional(readOnly = true)
 	public CredentialDto findByUsername(final String username) {
-		return CredentialMappingHelper.map(this.credentialRepository.findByUsername(username)
+		if (!this.shardRouter.bindShardOfUsername(username))
+			throw new UserObjectNotFoundException(
+					String.format("#### Credential with username: %s not found! ####", username));
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.username(username));
+		return CredentialMappingHelper.map(this.credentialRepository.loadByUsername(username)
 				.orElseThrow(() -> new UserObjectNotFoundException(
 						String.format("#### Credential with username: %s not found! ####", username))));
 	}
 
 	@Override
+	@Transactional(readOnly = true)
+	public Optional<EntityState> findStateByUsername(final String username) {
+		log.info("*** EntityState, service; fetch credential state by username *");
+		if (!this.shardRouter.bindShardOfUsername(username))
+			return Optional.empty();
+		return this.credentialRepository.findStateByUsername(username);
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public boolean isUsernameAvailable(final String username) {
+		log.info("*** Boolean, service; check username availability *");
+		// la gran mayoría de las consultas se resuelve aquí sin tocar la base de datos
+		if (!this.usernameBloomFilter.mightContain(username))
+			return true;
+		// con shards, el índice único de cada uno no basta: manda el directorio de usernames
+		if (this.shardRouter.isEnabled())
+			return this.shardRouter.findShardOfUsername(username).isEmpty();
+		return !this.credentialRepository.existsByUsername(username);
+	}
+
+	/**
+	 * Not transactional itself: the BCrypt hash is computed first, on the bounded hashing pool,
+	 * and a connection is only taken for the checks and the insert.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public CredentialDto save(final CredentialDto credentialDto) {
 		log.info("*** CredentialDto, service; save credential *");
 		credentialDto.setCredentialId(null);
-		if (credentialRepository.existsByUsername(credentialDto.getUsername())) {
+		if (!this.isUsernameAvailable(credentialDto.getUsername())) {
 			throw new UsernameAlreadyExistsException("Username already exists: " + credentialDto.getUsername());
 		}
 
-		Integer userId = credentialDto.getUserDto().getUserId();
-		User user = userRepository.findById(userId)
-				.orElseThrow(() -> new UserObjectNotFoundException("User not found with id: " + userId));
-
-		if (credentialRepository.existsByUserUserId(userId)) {
-			throw new IllegalArgumentException(
-					"User with ID " + userId + " already has credentials. You may update them instead.");
-		}
-
 		String rawPassword = credentialDto.getPassword();
 		String encodedPassword = passwordEncoder.encode(rawPassword);
 		credentialDto.setPassword(encodedPassword);
 
-		Credential credential = CredentialMappingHelper.map(credentialDto);
-		credential.setUser(user);
-
-		Credential saved = credentialRepository.save(credential);
-		return CredentialMappingHelper.map(saved);
+		return this.transactionOperations.execute(status -> {
+			Integer userId = credentialDto.getUserDto().getUserId();
+			final int shard = this.shardRouter.shardOf(userId);
+			this.shardRouter.bind(shard);
+			User user = userRepository.findById(userId)
+					.orElseThrow(() -> new UserObjectNotFoundException("User not found with id: " + userId));
+
+			if (credentialRepository.existsByUserUserId(userId)) {
+				throw new IllegalArgumentException(
+						"User with ID " + userId + " already has credentials. You may update them instead.");
+			}
+
+			if (!this.shardRouter.reserveUsername(credentialDto.getUsername(), shard))
+				throw new UsernameAlreadyExistsException("Username already exists: " + credentialDto.getUsername());
+
+			Credential credential = CredentialMappingHelper.map(credentialDto);
+			credential.setUser(user);
+
+			final Credential saved = this.saveAndFlushUsername(credential);
+			this.usernameBloomFilter.put(saved.getUsername());
+			this.userCacheInvalidator.evictCredential(saved.getCredentialId(), userId, saved.getUsername());
+			this.outboxWriter.created(AggregateType.CREDENTIAL, saved.getCredentialId(), userId, saved.getVersion());
+			return CredentialMappingHelper.map(saved);
+		});
 	}
 
 	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public CredentialDto update(final CredentialDto credentialDto) {
 		log.info("*** CredentialDto, service; update credential *");
-
-		Credential existingCredential = credentialRepository.findById(credentialDto.getCredentialId())
-				.orElseThrow(() -> new CredentialNotFoundException(
-						"Credential not found with id: " + credentialDto.getCredentialId()));
-
-		existingCredential.setUsername(credentialDto.getUsername());
-
-		// Codifica la nueva contraseña
-		String encodedPassword = passwordEncoder.encode(credentialDto.getPassword());
-		existingCredential.setPassword(encodedPassword);
-
-		existingCredential.setRoleBasedAuthority(credentialDto.getRoleBasedAuthority());
-		existingCredential.setIsEnabled(credentialDto.getIsEnabled());
-		existingCredential.setIsAccountNonExpired(credentialDto.getIsAccountNonExpired());
-		existingCredential.setIsAccountNonLocked(credentialDto.getIsAccountNonLocked());
-		existingCredential.setIsCredentialsNonExpired(credentialDto.getIsCredentialsNonExpired());
-
-		Credential updatedCredential = credentialRepository.save(existingCredential);
-
-		return CredentialMappingHelper.map(updatedCredential);
+		return this.update(credentialDto.getCredentialId(), credentialDto, null, 
+				"Credential not found with id: " + credentialDto.getCredentialId());
 	}
 
 	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public CredentialDto update(final Integer credentialId, final CredentialDto credentialDto) {
+		return this.update(credentialId, credentialDto, (Long) null);
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public CredentialDto update(final Integer credentialId, final CredentialDto credentialDto, final Long expectedVersion) {
 		log.info("*** CredentialDto, service; update credential with credentialId *");
+		return this.update(credentialId, credentialDto, expectedVersion, 
+				"Credential not found with id: " + credentialDto.getCredentialId());
+	}
 
-		Credential existingCredential = credentialRepository.findById(credentialId)
-				.orElseThrow(() -> new CredentialNotFoundException(
-						"Credential not found with id: " + credentialDto.getCredentialId()));
+	private CredentialDto update(final Integer credentialId, final CredentialDto credentialDto, final Long expectedVersion, 
+			final String notFoundMessage) {
+		// Codifica la nueva contraseña antes de abrir la transacción
+		final String encodedPassword = passwordEncoder.encode(credentialDto.getPassword());
+
+		return this.transactionOperations.execute(status -> {
+			this.shardRouter.bindShardOf(credentialId);
+			Credential existingCredential = credentialRepository.findById(credentialId)
+					.orElseThrow(() -> new CredentialNotFoundException(notFoundMessage));
+			EntityTagHelper.checkVersion(expectedVersion, existingCredential.getVersion());
+
+			final String previousUsername = existingCredential.getUsername();
+			this.moveUsername(credentialId, previousUsername, credentialDto.getUsername());
+			existingCredential.setUsername(credentialDto.getUsername());
+			existingCredential.setPassword(encodedPassword);
+			existingCredential.setRoleBasedAuthority(credentialDto.getRoleBasedAuthority());
+			existingCredential.setIsEnabled(credentialDto.getIsEnabled());
+			existingCredential.setIsAccountNonExpired(credentialDto.getIsAccountNonExpired());
+			existingCredential.setIsAccountNonLocked(credentialDto.getIsAccountNonLocked());
+			existingCredential.setIsCredentialsNonExpired(credentialDto.getIsCredentialsNonExpired());
+
+			Credential updatedCredential = this.saveAndFlushUsername(existingCredential);
+			this.usernameBloomFilter.put(updatedCredential.getUsername());
+			this.userCacheInvalidator.evictCredential(updatedCredential.getCredentialId(), 
+					updatedCredential.getUser().getUserId(), previousUsername, updatedCredential.getUsername());
+			this.outboxWriter.updated(AggregateType.CREDENTIAL, updatedCredential.getCredentialId(), 
+					updatedCredential.getUser().getUserId(), updatedCredential.getVersion());
+
+			return CredentialMappingHelper.map(updatedCredential);
+		});
+	}
 
-		existingCredential.setUsername(credentialDto.getUsername());
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public CredentialDto patch(final Integer credentialId, final JsonNode patch, final Long expectedVersion) {
+		log.info("*** CredentialDto, service; patch credential with credentialId *");
+		// igual que en update: si viene contraseña, se codifica antes de abrir la transacción
+		final JsonNode encodedPatch = this.encodePassword(patch);
+
+		return this.transactionOperations.execute(status -> {
+			this.shardRouter.bindShardOf(credentialId);
+			Credential existingCredential = credentialRepository.findById(credentialId)
+					.orElseThrow(() -> new CredentialNotFoundException("Credential not found with id: " + credentialId));
+			EntityTagHelper.checkVersion(expectedVersion, existingCredential.getVersion());
+
+			final CredentialDto currentCredential = CredentialMappingHelper.map(existingCredential);
+			final CredentialDto patchedCredential = MergePatchHelper.apply(this.objectMapper, currentCredential, 
+					encodedPatch, CredentialDto.class);
+			MergePatchHelper.checkOnlyEditableChanged(withEditableFields(currentCredential, patchedCredential), 
+					patchedCredential, "username, password, roleBasedAuthority and the account flags");
+			if (patchedCredential.equals(currentCredential))
+				return currentCredential;
+			if (patchedCredential.getUsername() == null || patchedCredential.getPassword() == null)
+				throw new IllegalArgumentException("username and password cannot be removed");
+
+			final String previousUsername = existingCredential.getUsername();
+			if (!previousUsername.equals(patchedCredential.getUsername()) 
+					&& !this.isUsernameAvailable(patchedCredential.getUsername()))
+				throw new UsernameAlreadyExistsException("Username already exists: " + patchedCredential.getUsername());
+			this.moveUsername(credentialId, previousUsername, patchedCredential.getUsername());
+
+			existingCredential.setUsername(patchedCredential.getUsername());
+			existingCredential.setPassword(patchedCredential.getPassword());
+			existingCredential.setRoleBasedAuthority(patchedCredential.getRoleBasedAuthority());
+			existingCredential.setIsEnabled(patchedCredential.getIsEnabled());
+			existingCredential.setIsAccountNonExpired(patchedCredential.getIsAccountNonExpired());
+			existingCredential.setIsAccountNonLocked(patchedCredential.getIsAccountNonLocked());
+			existingCredential.setIsCredentialsNonExpired(patchedCredential.getIsCredentialsNonExpired());
+
+			Credential patchedEntity = this.saveAndFlushUsername(existingCredential);
+			this.usernameBloomFilter.put(patchedEntity.getUsername());
+			this.userCacheInvalidator.evictCredential(patchedEntity.getCredentialId(), 
+					patchedEntity.getUser().getUserId(), previousUsername, patchedEntity.getUsername());
+			this.outboxWriter.updated(AggregateType.CREDENTIAL, patchedEntity.getCredentialId(), 
+					patchedEntity.getUser().getUserId(), patchedEntity.getVersion());
+			return CredentialMappingHelper.map(patchedEntity);
+		});
+	}
 
-		// Codifica la nueva contraseña
-		String encodedPassword = passwordEncoder.encode(credentialDto.getPassword());
-		existingCredential.setPassword(encodedPassword);
+	/**
+	 * Sharded, the unique index only covers the credential's own shard: the new username is claimed in the
+	 * directory first, and the previous one freed once the change commits.
+	 */
+	private void moveUsername(final Integer credentialId, final String previousUsername, final String username) {
+		if (username == null || username.equals(previousUsername))
+			return;
+		final int shard = this.shardRouter.shardOf(credentialId);
+		if (!this.shardRouter.reserveUsername(username, shard))
+			throw new UsernameAlreadyExistsException("Username already exists: " + username);
+		this.shardRouter.releaseUsername(previousUsername, shard);
+	}
 
-		existingCredential.setRoleBasedAuthority(credentialDto.getRoleBasedAuthority());
-		existingCredential.setIsEnabled(credentialDto.getIsEnabled());
-		existingCredential.setIsAccountNonExpired(credentialDto.getIsAccountNonExpired());
-		existingCredential.setIsAccountNonLocked(credentialDto.getIsAccountNonLocked());
-		existingCredential.setIsCredentialsNonExpired(credentialDto.getIsCredentialsNonExpired());
+	private Credential saveAndFlush(final Credential credential) {
+		final Credential savedCredential = this.credentialRepository.save(credential);
+		this.credentialRepository.flush();
+		return savedCredential;
+	}
 
-		Credential updatedCredential = this.credentialRepository.save(existingCredential);
+	/**
+	 * The username checks before the write can miss a name just taken on another replica; the unique index
+	 * still rejects it, and the flush makes it do so here rather than at commit.
+	 */
+	private Credential saveAndFlushUsername(final Credential credential) {
+		try {
+			return this.saveAndFlush(credential);
+		}
+		catch (DataIntegrityViolationException e) {
+			throw new UsernameAlreadyExistsException("Username already exists: " + credential.getUsername());
+		}
+	}
 
-		return CredentialMappingHelper.map(updatedCredential);
+	private JsonNode encodePassword(final JsonNode patch) {
+		final JsonNode password = patch == null ? null : patch.get("password");
+		if (password == null || !password.isTextual())
+			return patch;
+		final ObjectNode encodedPatch = ((ObjectNode) patch).deepCopy();
+		encodedPatch.put("password", this.passwordEncoder.encode(password.asText()));
+		return encodedPatch;
 	}
 
 	@Transactional
@@ -141,12 +323,55 @@ public class CredentialServiceImpl implements CredentialService {
 	public void deleteById(final Integer credentialId) {
 		log.info("*** Void, service; delete credential by id *");
 
-		boolean exists = credentialRepository.existsById(credentialId);
-		if (!exists) {
-			throw new CredentialNotFoundException("Credential with id: "+credentialId+" not found");
+		// solo las claves de caché; el DELETE decide el 404 y los tokens caen por ON DELETE CASCADE
+		this.shardRouter.bindShardOf(credentialId);
+		if (!this.needsKeys()) {
+			if (this.credentialRepository.deleteByCredentialId(credentialId) == 0)
+				throw new CredentialNotFoundException("Credential with id: " + credentialId + " not found");
+			this.userCacheInvalidator.evictAllCredentials();
+			return;
 		}
+		final Optional<CredentialKeyView> keys = this.credentialRepository.findKeysByCredentialId(credentialId);
+		final List<VerificationTokenKeyView> tokens = keys.isEmpty() 
+				? List.of() 
+				: this.verificationTokenRepository.findKeysByCredentialIdIn(List.of(credentialId));
+		if (this.credentialRepository.deleteByCredentialId(credentialId) == 0)
+			throw new CredentialNotFoundException("Credential with id: " + credentialId + " not found");
+
+		keys.ifPresent(key -> {
+			this.shardRouter.releaseUsername(key.getUsername(), this.shardRouter.shardOf(credentialId));
+			this.userCacheInvalidator.evictCredential(credentialId, key.getUserId(), key.getUsername());
+			this.outboxWriter.deleted(AggregateType.CREDENTIAL, credentialId, key.getUserId());
+		});
+		tokens.forEach(token -> {
+			this.userCacheInvalidator.evictVerificationToken(token.getVerificationTokenId());
+			this.outboxWriter.deleted(AggregateType.VERIFICATION_TOKEN, token.getVerificationTokenId(), token.getUserId());
+		});
+	}
+
+	/**
+	 * Whether a delete reads the keys of what it removes first; by default (no outbox, second-level cache, sharding
+	 * or read/write routing) it is a single DELETE and the near-caches are cleared instead.
+	 */
+	private boolean needsKeys() {
+		return this.outboxWriter.isEnabled() || this.shardRouter.isEnabled() || this.userCacheInvalidator.needsKeys();
+	}
 
-		this.credentialRepository.deleteByCredentialId(credentialId);
+	private static CredentialDto withEditableFields(final CredentialDto current, final CredentialDto patched) {
+		return CredentialDto.builder()
+				.credentialId(current.getCredentialId())
+				.version(current.getVersion())
+				.updatedAt(current.getUpdatedAt())
+				.username(patched.getUsername())
+				.password(patched.getPassword())
+				.roleBasedAuthority(patched.getRoleBasedAuthority())
+				.isEnabled(patched.getIsEnabled())
+				.isAccountNonExpired(patched.getIsAccountNonExpired())
+				.isAccountNonLocked(patched.getIsAccountNonLocked())
+				.isCredentialsNonExpired(patched.getIsCredentialsNonExpired())
+				.userDto(current.getUserDto())
+				.verificationTokenDtos(current.getVerificationTokenDtos())
+				.build();
 	}
 
 }
@@ -0,0 +1,84 @@
+package com.selimhorri.app.service.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.service.UserExportService;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+@RequiredArgsConstructor
+public class UserExportServiceImpl implements UserExportService {
+	
+	private static final int FLUSH_EVERY_ROWS = 500;
+	
+	private final UserRepository userRepository;
+	private final EntityManager entityManager;
+	private final ObjectMapper objectMapper;
+	private final ShardRouter shardRouter;
+	
+	/**
+	 * Writes every user having credentials as one JSON document per line (NDJSON).
+	 * Rows are read through a forward-only cursor and detached once written,
+	 * so memory stays flat regardless of the table size. Sharded, the shards are read one after the other.
+	 */
+	@Override
+	public long exportAll(final OutputStream outputStream) {
+		log.info("*** Long, service; export all users with credentials as ndjson *");
+		final ObjectWriter writer = this.objectMapper.writer()
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		long exported = 0;
+		try (final JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(new SerializedString("\n"));
+			for (final Integer shard : this.shardRouter.getShards())
+				exported += this.shardRouter.onShard(shard, true, () -> this.export(writer, generator));
+			generator.writeRaw('\n');
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("*** Long, service; exported {} users *", exported);
+		return exported;
+	}
+	
+	private long export(final ObjectWriter writer, final JsonGenerator generator) {
+		long exported = 0;
+		try (final Stream<User> users = this.userRepository.streamAllWithCredential()) {
+			final Iterator<User> iterator = users.iterator();
+			while (iterator.hasNext()) {
+				final User user = iterator.next();
+				writer.writeValue(generator, UserMappingHelper.map(user));
+				this.entityManager.detach(user);
+				if (++exported % FLUSH_EVERY_ROWS == 0)
+					generator.flush();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return exported;
+	}
+	
+}
@@ -0,0 +1,129 @@
+package com.selimhorri.app.service.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.helper.AddressMappingHelper;
+import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.service.UserImportService;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Transactional
+@Slf4j
+public class UserImportServiceImpl implements UserImportService {
+	
+	private final EntityManager entityManager;
+	private final ShardRouter shardRouter;
+	private final OutboxWriter outboxWriter;
+	private final int batchSize;
+	
+	public UserImportServiceImpl(final EntityManager entityManager, final ShardRouter shardRouter, 
+			final OutboxWriter outboxWriter, 
+			@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") final int batchSize) {
+		this.entityManager = entityManager;
+		this.shardRouter = shardRouter;
+		this.outboxWriter = outboxWriter;
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Inserts users with their addresses. Ids come from the pooled table generator, so inserts stay queued until
+	 * each flush, where Hibernate sends them as JDBC batches; the persistence context is cleared after every batch
+	 * to keep memory flat. Flushing a batch does not commit it: unsharded, the whole import is one transaction and
+	 * either every user is inserted or none is. Sharded, the users are spread round robin over the shards and each
+	 * shard imports its share in a transaction of its own, in parallel, so the import is atomic per shard only:
+	 * a failure on one shard does not undo the others. The outbox events of the users and addresses are inserted
+	 * in the same transaction, batched with them.
+	 * <p>
+	 * Payloads carrying credentials are rejected, so imported users have none: they are not found by username, are
+	 * not added to the username Bloom filter, and are not returned by the user endpoints until a credential is
+	 * created for them through {@code POST /api/credentials}.
+	 */
+	@Override
+	public DtoCollectionResponse<UserDto> importAll(final List<UserDto> userDtos) {
+		log.info("*** UserDto List, service; bulk import users with addresses *");
+		if (userDtos == null || userDtos.isEmpty())
+			return new DtoCollectionResponse<>(List.of());
+		if (userDtos.size() > AppConstant.MAX_BULK_IMPORT_SIZE)
+			throw new IllegalArgumentException(String.format("At most %d users can be imported at once, got: %d", 
+					AppConstant.MAX_BULK_IMPORT_SIZE, userDtos.size()));
+		// sin hash de contraseña ni reserva de username aquí: las credenciales van por POST /api/credentials
+		if (userDtos.stream().anyMatch(userDto -> userDto.getCredentialDto() != null))
+			throw new IllegalArgumentException(
+					"Credentials cannot be imported in bulk, create them through POST /api/credentials");
+		
+		// sharded, reparto round robin: cada shard importa su parte en su propia transacción
+		final List<List<UserDto>> userDtosByShard = this.shardRouter.getShards().stream()
+				.map(shard -> new ArrayList<UserDto>())
+				.collect(Collectors.toList());
+		final List<Integer> shards = new ArrayList<>(userDtos.size());
+		for (final UserDto userDto : userDtos) {
+			final int shard = this.shardRouter.nextShard();
+			shards.add(shard);
+			userDtosByShard.get(shard).add(userDto);
+		}
+		final List<Iterator<User>> usersByShard = this.shardRouter.scatter(false, () -> {
+					final Integer current = ShardRouter.currentShard();
+					return this.importShard(userDtosByShard.get(current == null ? ShardRouter.HOME_SHARD : current));
+				})
+				.stream()
+				.map(List::iterator)
+				.collect(Collectors.toList());
+		
+		log.info("*** UserDto List, service; imported {} users *", userDtos.size());
+		return new DtoCollectionResponse<>(shards.stream()
+				.map(shard -> UserMappingHelper.map(usersByShard.get(shard).next()))
+				.collect(Collectors.toUnmodifiableList()));
+	}
+	
+	private List<User> importShard(final List<UserDto> userDtos) {
+		final List<User> users = new ArrayList<>(userDtos.size());
+		int pending = 0;
+		for (final UserDto userDto : userDtos) {
+			final User user = UserMappingHelper.mapOnlyUser(userDto);
+			user.setUserId(null); // para evitar sobrescribir
+			this.entityManager.persist(user);
+			this.outboxWriter.created(AggregateType.USER, user.getUserId(), user.getUserId(), user.getVersion());
+			users.add(user);
+			if (userDto.getAddressDtos() != null) {
+				for (final AddressDto addressDto : userDto.getAddressDtos()) {
+					final Address address = AddressMappingHelper.mapOnlyAddress(addressDto);
+					address.setAddressId(null);
+					address.setUser(user);
+					this.entityManager.persist(address);
+					this.outboxWriter.created(AggregateType.ADDRESS, address.getAddressId(), user.getUserId(), 
+							address.getVersion());
+				}
+			}
+			if (++pending % this.batchSize == 0)
+				this.flushAndClear();
+		}
+		this.flushAndClear();
+		return users;
+	}
+	
+	private void flushAndClear() {
+		this.entityManager.flush();
+		this.entityManager.clear();
+	}
+	
+}
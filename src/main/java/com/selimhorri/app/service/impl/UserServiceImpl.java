@@ -1,20 +1,52 @@
 package com.selimhorri.app.service.impl;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityNotFoundException;
-import javax.transaction.Transactional;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.cache.SingleFlight;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
 import com.selimhorri.app.domain.User;
+import com.selimhorri.app.dto.EntityState;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.BatchGetResponse;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
+import com.selimhorri.app.helper.EntityTagHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.MergePatchHelper;
 import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.outbox.OutboxWriter;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.CredentialKeyView;
+import com.selimhorri.app.repository.projection.UserCredentialView;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
 import com.selimhorri.app.service.UserService;
+import com.selimhorri.app.sharding.ShardRouter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,42 +59,148 @@ public class UserServiceImpl implements UserService {
 
 	private final UserRepository userRepository;
 	private final CredentialRepository credentialRepository;
+	private final VerificationTokenRepository verificationTokenRepository;
+	private final UserCacheInvalidator userCacheInvalidator;
+	private final ObjectMapper objectMapper;
+	private final CacheManager cacheManager;
+	private final SingleFlight singleFlight;
+	private final MicroBatchLoader<Integer, User> userBatchLoader;
+	private final ReplicaLagGuard replicaLagGuard;
+	private final ShardRouter shardRouter;
+	private final OutboxWriter outboxWriter;
 
 	@Override
-	public List<UserDto> findAll() {
-		log.info("*** UserDto List, service; fetch all users with credentials *");
-		return this.userRepository.findAll()
-				.stream()
-				.filter(user -> user.getCredential() != null) // Asumiendo que hay un getCredentials()
-				.map(UserMappingHelper::map)
-				.distinct()
-				.collect(Collectors.toUnmodifiableList());
+	@Transactional(readOnly = true)
+	public DtoCollectionResponse<UserDto> findAll(final Integer after, final Integer limit) {
+		log.info("*** UserDto Page, service; fetch users page by cursor *");
+		final int pageSize = KeysetPaginationHelper.resolveLimit(limit);
+		// cada shard aporta su primera página; la mezcla ordenada por id contiene la primera página global
+		return KeysetPaginationHelper.toResponse(
+				this.shardRouter.scatterGather(() -> this.userRepository.findViewPageAfter(
+						KeysetPaginationHelper.resolveCursor(after), KeysetPaginationHelper.firstRows(pageSize)),
+						Comparator.comparing(UserCredentialView::getUserId)),
+				pageSize,
+				UserMappingHelper::map,
+				UserCredentialView::getUserId);
 	}
 
 	@Override
+	@Cacheable(cacheNames = AppConstant.CacheNames.USERS_BY_ID)
+	@Transactional(readOnly = true)
 	public UserDto findById(final Integer userId) {
 		log.info("*** UserDto, service; fetch user by id with credentials *");
-		return this.userRepository.findById(userId)
-				.filter(user -> user.getCredential() != null) // Filtramos que tenga credenciales
+		this.shardRouter.bindShardOf(userId);
+		// escrito hace poco: se lee del primario, sin unirse a una lectura de réplica en curso ni al micro-batch
+		if (this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.user(userId)))
+			return this.toUserDto(userId, this.userRepository.findById(userId));
+		// las consultas concurrentes del mismo id comparten una sola ida a la base de datos
+		return this.singleFlight.execute(AppConstant.CacheNames.USERS_BY_ID, userId, 
+				() -> this.toUserDto(userId, this.findUser(userId)));
+	}
+
+	private UserDto toUserDto(final Integer userId, final Optional<User> user) {
+		return user
+				.filter(candidate -> candidate.getCredential() != null) // Filtramos que tenga credenciales
 				.map(UserMappingHelper::map)
 				.orElseThrow(
 						() -> new UserObjectNotFoundException(
 								String.format("User with id: %d not found or has no credentials", userId)));
 	}
 
+	/**
+	 * A profile cached by {@link #findById} is evicted on every write, so it answers as well as the database does.
+	 */
 	@Override
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public Optional<EntityState> findStateById(final Integer userId) {
+		log.info("*** EntityState, service; fetch user state by id *");
+		return this.cached(AppConstant.CacheNames.USERS_BY_ID, userId)
+				.or(() -> {
+					this.shardRouter.bindShardOf(userId);
+					this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.user(userId));
+					return this.userRepository.findStateByUserId(userId);
+				});
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public BatchGetResponse<UserDto> findAllById(final List<Integer> userIds) {
+		log.info("*** UserDto Batch, service; fetch users by ids with credentials *");
+		if (userIds == null || userIds.isEmpty())
+			return new BatchGetResponse<>(List.of(), List.of());
+		if (userIds.stream().anyMatch(Objects::isNull))
+			throw new IllegalArgumentException("User ids must not contain null");
+		
+		final Set<Integer> distinctIds = new LinkedHashSet<>(userIds);
+		if (distinctIds.size() > AppConstant.MAX_BATCH_GET_SIZE)
+			throw new IllegalArgumentException(String.format("At most %d distinct user ids can be fetched at once, got: %d",
+					AppConstant.MAX_BATCH_GET_SIZE, distinctIds.size()));
+		
+		// inner join fetch: users without credentials are reported as missing, like findById
+		final Map<Integer, UserDto> usersById = new HashMap<>();
+		this.shardRouter.scatter(distinctIds, true, ids -> this.userRepository.findAllWithCredentialByIdIn(ids)
+						.stream()
+						.collect(Collectors.toMap(User::getUserId, UserMappingHelper::map)))
+				.forEach(usersById::putAll);
+		
+		return new BatchGetResponse<>(
+				distinctIds.stream()
+						.map(usersById::get)
+						.filter(Objects::nonNull)
+						.collect(Collectors.toUnmodifiableList()),
+				distinctIds.stream()
+						.filter(userId -> !usersById.containsKey(userId))
+						.collect(Collectors.toUnmodifiableList()));
+	}
+
+	@Override
+	@Cacheable(cacheNames = AppConstant.CacheNames.USERS_BY_USERNAME)
+	@Transactional(readOnly = true)
 	public UserDto findByUsername(final String username) {
 		log.info("*** UserDto, service; fetch user with username *");
-		return UserMappingHelper.map(this.userRepository.findByCredentialUsername(username)
+		if (!this.shardRouter.bindShardOfUsername(username))
+			throw new UserObjectNotFoundException(String.format("User with username: %s not found", username));
+		if (this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.username(username)))
+			return this.findViewByUsername(username);
+		return this.singleFlight.execute(AppConstant.CacheNames.USERS_BY_USERNAME, username, 
+				() -> this.findViewByUsername(username));
+	}
+
+	private UserDto findViewByUsername(final String username) {
+		return UserMappingHelper.map(this.userRepository.findViewByUsername(username)
 				.orElseThrow(() -> new UserObjectNotFoundException(
 						String.format("User with username: %s not found", username))));
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public Optional<EntityState> findStateByUsername(final String username) {
+		log.info("*** EntityState, service; fetch user state by username *");
+		return this.cached(AppConstant.CacheNames.USERS_BY_USERNAME, username)
+				.or(() -> this.shardRouter.bindShardOfUsername(username)
+						? this.userRepository.findStateByUsername(username)
+						: Optional.empty());
+	}
+
+	private Optional<User> findUser(final Integer userId) {
+		if (this.userBatchLoader.isEnabled())
+			return this.userBatchLoader.load(userId);
+		return this.userRepository.findById(userId);
+	}
+
+	private Optional<EntityState> cached(final String cacheName, final Object key) {
+		final Cache cache = this.cacheManager.getCache(cacheName);
+		return Optional.ofNullable(cache == null ? null : cache.get(key, UserDto.class));
+	}
+
 	@Override
 	public UserDto save(final UserDto userDto) {
 		log.info("*** UserDto, service; save user *");
 		userDto.setUserId(null); // para evitar sobrescribir
-		return UserMappingHelper.map(this.userRepository.save(UserMappingHelper.mapOnlyUser(userDto)));
+		this.shardRouter.bind(this.shardRouter.nextShard());
+		final User savedUser = this.userRepository.save(UserMappingHelper.mapOnlyUser(userDto));
+		this.outboxWriter.created(AggregateType.USER, savedUser.getUserId(), savedUser.getUserId(), savedUser.getVersion());
+		return UserMappingHelper.map(savedUser);
 	}
 
 	@Override
@@ -70,6 +208,7 @@ public class UserServiceImpl implements UserService {
 		log.info("*** UserDto, service; update user ***");
 
 		// Buscar el usuario y verificar que tenga credenciales
+		this.shardRouter.bindShardOf(userDto.getUserId());
 		User existingUser = this.userRepository.findById(userDto.getUserId())
 				.filter(user -> user.getCredential() != null) // Solo si tiene credenciales
 				.orElseThrow(() -> new EntityNotFoundException(
@@ -82,18 +221,26 @@ public class UserServiceImpl implements UserService {
 		existingUser.setEmail(userDto.getEmail());
 		existingUser.setPhone(userDto.getPhone());
 
-		return UserMappingHelper.map(this.userRepository.save(existingUser));
+		this.userCacheInvalidator.evictUser(existingUser.getUserId(), existingUser.getCredential().getUsername());
+		return this.saveAndMap(existingUser);
 	}
 
 	@Override
 	public UserDto update(final Integer userId, final UserDto userDto) {
+		return this.update(userId, userDto, null);
+	}
+
+	@Override
+	public UserDto update(final Integer userId, final UserDto userDto, final Long expectedVersion) {
 		log.info("*** UserDto, service; update user with userId ***");
 
 		// Verificar que el usuario existe y tiene credenciales
+		this.shardRouter.bindShardOf(userId);
 		User existingUser = this.userRepository.findById(userId)
 				.filter(user -> user.getCredential() != null) // Solo si tiene credenciales
 				.orElseThrow(() -> new EntityNotFoundException(
 						"User not found with id: " + userId + " or has no credentials (cannot update)"));
+		EntityTagHelper.checkVersion(expectedVersion, existingUser.getVersion());
 
 		// Actualizar campos permitidos
 		existingUser.setFirstName(userDto.getFirstName());
@@ -102,31 +249,132 @@ public class UserServiceImpl implements UserService {
 		existingUser.setEmail(userDto.getEmail());
 		existingUser.setPhone(userDto.getPhone());
 
-		return UserMappingHelper.map(this.userRepository.save(existingUser));
+		this.userCacheInvalidator.evictUser(existingUser.getUserId(), existingUser.getCredential().getUsername());
+		return this.saveAndMap(existingUser);
+	}
+
+	@Override
+	public UserDto patch(final Integer userId, final JsonNode patch, final Long expectedVersion) {
+		log.info("*** UserDto, service; patch user with userId ***");
+		this.shardRouter.bindShardOf(userId);
+		User existingUser = this.userRepository.findById(userId)
+				.filter(user -> user.getCredential() != null)
+				.orElseThrow(() -> new UserObjectNotFoundException(
+						String.format("User with id: %d not found or has no credentials", userId)));
+		EntityTagHelper.checkVersion(expectedVersion, existingUser.getVersion());
+
+		final UserDto currentUser = UserMappingHelper.map(existingUser);
+		final UserDto patchedUser = MergePatchHelper.apply(this.objectMapper, currentUser, patch, UserDto.class);
+		MergePatchHelper.checkOnlyEditableChanged(withEditableFields(currentUser, patchedUser), patchedUser,
+				"firstName, lastName, imageUrl, email and phone");
+		if (patchedUser.equals(currentUser))
+			return currentUser; // nada cambió: ni UPDATE ni invalidación
+
+		// solo los campos editables; @DynamicUpdate escribe únicamente las columnas modificadas
+		existingUser.setFirstName(patchedUser.getFirstName());
+		existingUser.setLastName(patchedUser.getLastName());
+		existingUser.setImageUrl(patchedUser.getImageUrl());
+		existingUser.setEmail(patchedUser.getEmail());
+		existingUser.setPhone(patchedUser.getPhone());
+
+		this.userCacheInvalidator.evictUser(existingUser.getUserId(), existingUser.getCredential().getUsername());
+		return this.saveAndMap(existingUser);
 	}
 
 	@Override
-	@Transactional // Asegura que sea una transacción atómica
 	public void deleteById(final Integer userId) {
 		log.info("*** Void, service; delete credentials from user by id ***");
+		if (this.deleteAccounts(List.of(userId)) == 0)
+			throw new UserObjectNotFoundException("User with id: " + userId + " not found or has no credentials to delete");
+	}
 
-		// 1. Buscar el usuario y verificar que existe y tiene credenciales
-		User user = userRepository.findById(userId)
-				.orElseThrow(() -> new EntityNotFoundException("User not found with id: " + userId));
+	@Override
+	public int deleteAllById(final List<Integer> userIds) {
+		log.info("*** Integer, service; delete credentials from users by ids ***");
+		if (userIds == null || userIds.isEmpty())
+			return 0;
+		if (userIds.stream().anyMatch(Objects::isNull))
+			throw new IllegalArgumentException("User ids must not contain null");
+		
+		final Set<Integer> distinctIds = new LinkedHashSet<>(userIds);
+		if (distinctIds.size() > AppConstant.MAX_BULK_DELETE_SIZE)
+			throw new IllegalArgumentException(String.format("At most %d distinct user ids can be deleted at once, got: %d",
+					AppConstant.MAX_BULK_DELETE_SIZE, distinctIds.size()));
+		return this.deleteAccounts(distinctIds);
+	}
 
-		if (user.getCredential() == null) {
-			throw new UserObjectNotFoundException("User with id: " + userId + " has no credentials to delete");
-		}
+	/**
+	 * Flushed right away so the returned DTO carries the incremented version (the next ETag), and a
+	 * concurrent modification surfaces here as an optimistic locking failure.
+	 */
+	private UserDto saveAndMap(final User user) {
+		final User savedUser = this.userRepository.save(user);
+		this.userRepository.flush();
+		this.outboxWriter.updated(AggregateType.USER, savedUser.getUserId(), savedUser.getUserId(), savedUser.getVersion());
+		return UserMappingHelper.map(savedUser);
+	}
+
+	/**
+	 * One DELETE on credentials per shard; verification tokens follow through the foreign key cascade. The user row
+	 * and its addresses stay, as before, and a user without credentials is not found anywhere in this service.
+	 * Sharded, each shard commits on its own.
+	 * @return number of users whose credentials were deleted
+	 */
+	private int deleteAccounts(final Collection<Integer> userIds) {
+		return this.shardRouter.scatter(userIds, false, this::deleteAccountsOfShard)
+				.stream()
+				.mapToInt(Integer::intValue)
+				.sum();
+	}
 
-		// 2. Obtener el ID de las credenciales para borrarlas
-		Integer credentialsId = user.getCredential().getCredentialId();
+	private int deleteAccountsOfShard(final Collection<Integer> userIds) {
+		if (!this.needsKeys()) {
+			final int deleted = this.credentialRepository.deleteByUserIdIn(userIds);
+			if (deleted > 0)
+				this.userCacheInvalidator.evictAllCredentials();
+			return deleted;
+		}
+		// lectura de solo claves (sin entidades) para poder invalidar las cachés por username
+		final List<CredentialKeyView> keys = this.credentialRepository.findKeysByUserIdIn(userIds);
+		final List<VerificationTokenKeyView> tokens = keys.isEmpty() 
+				? List.of() 
+				: this.verificationTokenRepository.findKeysByCredentialIdIn(keys.stream()
+						.map(CredentialKeyView::getCredentialId)
+						.collect(Collectors.toUnmodifiableList()));
+		final int deleted = this.credentialRepository.deleteByUserIdIn(userIds);
+		keys.forEach(key -> {
+			this.shardRouter.releaseUsername(key.getUsername(), this.shardRouter.shardOf(key.getUserId()));
+			this.userCacheInvalidator.evictCredential(key.getCredentialId(), key.getUserId(), key.getUsername());
+			this.outboxWriter.deleted(AggregateType.CREDENTIAL, key.getCredentialId(), key.getUserId());
+		});
+		tokens.forEach(token -> {
+			this.userCacheInvalidator.evictVerificationToken(token.getVerificationTokenId());
+			this.outboxWriter.deleted(AggregateType.VERIFICATION_TOKEN, token.getVerificationTokenId(), token.getUserId());
+		});
+		return deleted;
+	}
 
-		// 3. Desvincular las credenciales del usuario (para evitar inconsistencias)
-		user.setCredential(null);
-		userRepository.save(user); // Guardar el cambio
+	/**
+	 * Whether a delete reads the keys of what it removes first; by default (no outbox, second-level cache, sharding
+	 * or read/write routing) it is a single DELETE and the near-caches are cleared instead.
+	 */
+	private boolean needsKeys() {
+		return this.outboxWriter.isEnabled() || this.shardRouter.isEnabled() || this.userCacheInvalidator.needsKeys();
+	}
 
-		// 4. Borrar las credenciales de la base de datos
-		credentialRepository.deleteByCredentialId(credentialsId);
+	private static UserDto withEditableFields(final UserDto current, final UserDto patched) {
+		return UserDto.builder()
+				.userId(current.getUserId())
+				.version(current.getVersion())
+				.updatedAt(current.getUpdatedAt())
+				.firstName(patched.getFirstName())
+				.lastName(patched.getLastName())
+				.imageUrl(patched.getImageUrl())
+				.email(patched.getEmail())
+				.phone(patched.getPhone())
+				.addressDtos(current.getAddressDtos())
+				.credentialDto(current.getCredentialDto())
+				.build();
 	}
 
 }
@@ -1,21 +1,34 @@
 package com.selimhorri.app.service.impl;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
-import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
 import com.selimhorri.app.domain.VerificationToken;
+import com.selimhorri.app.dto.EntityState;
 import com.selimhorri.app.dto.VerificationTokenDto;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.CredentialNotFoundException;
 import com.selimhorri.app.exception.wrapper.VerificationTokenNotFoundException;
+import com.selimhorri.app.helper.EntityTagHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.MergePatchHelper;
 import com.selimhorri.app.helper.VerificationTokenMappingHelper;
+import com.selimhorri.app.outbox.OutboxWriter;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.VerificationTokenView;
 import com.selimhorri.app.service.VerificationTokenService;
+import com.selimhorri.app.sharding.ShardRouter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,26 +41,61 @@ public class VerificationTokenServiceImpl implements VerificationTokenService{
 
 	private final VerificationTokenRepository verificationTokenRepository;
 	private final CredentialRepository credentialRepository;
+	private final ObjectMapper objectMapper;
+	private final ShardRouter shardRouter;
+	private final OutboxWriter outboxWriter;
+	private final UserCacheInvalidator userCacheInvalidator;
+	private final ReplicaLagGuard replicaLagGuard;
 
 	@Override
-	public List<VerificationTokenDto> findAll() {
-		log.info("*** VerificationTokenDto List, service; fetch all verificationTokens *");
-		return this.verificationTokenRepository.findAll()
-				.stream()
-				.map(VerificationTokenMappingHelper::map)
-				.distinct()
-				.collect(Collectors.toUnmodifiableList());
+	@Transactional(readOnly = true)
+	public DtoCollectionResponse<VerificationTokenDto> findAll(final Integer after, final Integer limit) {
+		log.info("*** VerificationTokenDto Page, service; fetch verificationTokens page by cursor *");
+		final int pageSize = KeysetPaginationHelper.resolveLimit(limit);
+		return KeysetPaginationHelper.toResponse(
+				this.shardRouter.scatterGather(() -> this.verificationTokenRepository.findViewPageAfter(
+						KeysetPaginationHelper.resolveCursor(after), KeysetPaginationHelper.firstRows(pageSize)),
+						Comparator.comparing(VerificationTokenView::getVerificationTokenId)),
+				pageSize,
+				VerificationTokenMappingHelper::map,
+				VerificationTokenView::getVerificationTokenId);
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public VerificationTokenDto findById(final Integer verificationTokenId) {
 		log.info("*** VerificationTokenDto, service; fetch verificationToken by ids *");
-		return this.verificationTokenRepository.findById(verificationTokenId)
+		this.shardRouter.bindShardOf(verificationTokenId);
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.verificationToken(verificationTokenId));
+		return this.verificationTokenRepository.findViewByVerificationTokenId(verificationTokenId)
 				.map(VerificationTokenMappingHelper::map)
 				.orElseThrow(() -> new VerificationTokenNotFoundException(String
 						.format("#### VerificationToken with id: %d not found! ####", verificationTokenId)));
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<EntityState> findStateById(final Integer verificationTokenId) {
+		log.info("*** EntityState, service; fetch verificationToken state by id *");
+		this.shardRouter.bindShardOf(verificationTokenId);
+		this.replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.verificationToken(verificationTokenId));
+		return this.verificationTokenRepository.findStateByVerificationTokenId(verificationTokenId);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Integer validate(final String token) {
+		log.info("*** Integer, service; validate verificationToken *");
+		final LocalDate today = LocalDate.now();
+		// el token no dice a qué shard pertenece: se busca en todos
+		return this.shardRouter.scatter(true, () -> this.verificationTokenRepository.findCredentialIdByValidToken(token, today))
+				.stream()
+				.flatMap(Optional::stream)
+				.findFirst()
+				.orElseThrow(() -> new VerificationTokenNotFoundException(
+						"#### VerificationToken not found or expired! ####"));
+	}
+
 	@Override
 	public VerificationTokenDto save(final VerificationTokenDto verificationTokenDto) {
 		log.info("*** VerificationTokenDto, service; save verificationToken *");
@@ -61,7 +109,8 @@ public class VerificationTokenServiceImpl implements VerificationTokenService{
 			throw new IllegalArgumentException("Credential ID must not be null");
 		}
 
-		// Verificar que la credencial exista en la base de datos
+		// Verificar que la credencial exista en la base de datos (el token vive en el shard de su credencial)
+		this.shardRouter.bindShardOf(credentialId);
 		final Credential credential = credentialRepository.findById(credentialId)
 				.orElseThrow(() -> new CredentialNotFoundException("Credential not found with ID: " + credentialId));
 
@@ -71,6 +120,8 @@ public class VerificationTokenServiceImpl implements VerificationTokenService{
 
 		// Guardar el token
 		final VerificationToken savedToken = verificationTokenRepository.save(verificationToken);
+		this.outboxWriter.created(AggregateType.VERIFICATION_TOKEN, savedToken.getVerificationTokenId(), 
+				userIdOf(credential), savedToken.getVersion());
 
 		// Retornar el DTO
 		return VerificationTokenMappingHelper.map(savedToken);
@@ -81,56 +132,110 @@ public class VerificationTokenServiceImpl implements VerificationTokenService{
 		log.info("*** VerificationTokenDto, service; update verificationToken *");
 
 		// Obtener el token actual desde la base de datos
+		this.shardRouter.bindShardOf(verificationTokenDto.getVerificationTokenId());
 		VerificationToken existingToken = verificationTokenRepository
 				.findById(verificationTokenDto.getVerificationTokenId())
 				.orElseThrow(() -> new VerificationTokenNotFoundException("Token not found"));
 
-		// Mapear el DTO sin cambiar la credencial
-		VerificationToken updatedToken = VerificationTokenMappingHelper.mapOnlyVerificationToken(verificationTokenDto);
-
-		// Restaurar la relación original con la Credential
-		updatedToken.setCredential(existingToken.getCredential());
+		// Copiar los campos sobre la entidad gestionada (mantiene credencial y versión)
+		existingToken.setToken(verificationTokenDto.getToken());
+		existingToken.setExpireDate(verificationTokenDto.getExpireDate());
 
-		// Guardar y retornar
-		return VerificationTokenMappingHelper.map(verificationTokenRepository.save(updatedToken));
+		return this.saveAndMap(existingToken);
 	}
 
 	@Override
 	public VerificationTokenDto update(final Integer verificationTokenId,
 			final VerificationTokenDto verificationTokenDto) {
+		return this.update(verificationTokenId, verificationTokenDto, null);
+	}
+
+	@Override
+	public VerificationTokenDto update(final Integer verificationTokenId,
+			final VerificationTokenDto verificationTokenDto, final Long expectedVersion) {
 		log.info("*** VerificationTokenDto, service; update verificationToken with verificationTokenId *");
 
 		// Obtener el token actual desde la base de datos
+		this.shardRouter.bindShardOf(verificationTokenId);
 		VerificationToken existingToken = verificationTokenRepository
 				.findById(verificationTokenId)
 				.orElseThrow(() -> new VerificationTokenNotFoundException("Token not found"));
+		EntityTagHelper.checkVersion(expectedVersion, existingToken.getVersion());
+
+		// Copiar los campos sobre la entidad gestionada: un objeto nuevo con el mismo ID
+		// se fusionaría con versión 0 y fallaría el bloqueo optimista
+		existingToken.setToken(verificationTokenDto.getToken());
+		existingToken.setExpireDate(verificationTokenDto.getExpireDate());
+
+		return this.saveAndMap(existingToken);
+	}
 
-		// Mapear el DTO sin cambiar la credencial
-		VerificationToken updatedToken = VerificationTokenMappingHelper.mapOnlyVerificationToken(verificationTokenDto);
+	@Override
+	public VerificationTokenDto patch(final Integer verificationTokenId, final JsonNode patch, 
+			final Long expectedVersion) {
+		log.info("*** VerificationTokenDto, service; patch verificationToken with verificationTokenId *");
+		this.shardRouter.bindShardOf(verificationTokenId);
+
+		VerificationToken existingToken = this.verificationTokenRepository.findById(verificationTokenId)
+				.orElseThrow(() -> new VerificationTokenNotFoundException("Token not found"));
+		EntityTagHelper.checkVersion(expectedVersion, existingToken.getVersion());
 
-		// Restaurar la relación original con la Credential
-		updatedToken.setCredential(existingToken.getCredential());
+		final VerificationTokenDto currentToken = VerificationTokenMappingHelper.map(existingToken);
+		final VerificationTokenDto patchedToken = MergePatchHelper.apply(this.objectMapper, currentToken, patch, 
+				VerificationTokenDto.class);
+		MergePatchHelper.checkOnlyEditableChanged(withEditableFields(currentToken, patchedToken), patchedToken,
+				"token and expireDate");
+		if (patchedToken.equals(currentToken))
+			return currentToken;
 
-		// Asegurarse de que se mantenga el mismo ID
-		updatedToken.setVerificationTokenId(existingToken.getVerificationTokenId());
+		// la credencial asociada se mantiene
+		existingToken.setToken(patchedToken.getToken());
+		existingToken.setExpireDate(patchedToken.getExpireDate());
 
-		// Guardar y retornar
-		return VerificationTokenMappingHelper.map(verificationTokenRepository.save(updatedToken));
+		return this.saveAndMap(existingToken);
 	}
 
 	@Transactional
 	@Override
 	public void deleteById(final Integer verificationTokenId) {
 		log.info("*** Void, service; delete verificationToken by id with query ***");
+		this.shardRouter.bindShardOf(verificationTokenId);
+		final Optional<Integer> userId = this.outboxWriter.isEnabled()
+				? this.verificationTokenRepository.findUserIdByVerificationTokenId(verificationTokenId)
+				: Optional.empty();
 
-		boolean exists = verificationTokenRepository.existsById(verificationTokenId);
-		if (!exists) {
+		if (this.verificationTokenRepository.deleteByIdCustom(verificationTokenId) == 0) {
 			log.warn("VerificationToken with id {} not found", verificationTokenId);
 			throw new VerificationTokenNotFoundException(
 					"VerificationToken with id " + verificationTokenId + " not found");
 		}
+		this.userCacheInvalidator.evictVerificationToken(verificationTokenId);
+		this.outboxWriter.deleted(AggregateType.VERIFICATION_TOKEN, verificationTokenId, userId.orElse(null));
+	}
+
+	private VerificationTokenDto saveAndMap(final VerificationToken verificationToken) {
+		final VerificationToken savedToken = this.verificationTokenRepository.save(verificationToken);
+		this.verificationTokenRepository.flush();
+		this.userCacheInvalidator.evictVerificationToken(savedToken.getVerificationTokenId());
+		this.outboxWriter.updated(AggregateType.VERIFICATION_TOKEN, savedToken.getVerificationTokenId(), 
+				userIdOf(savedToken.getCredential()), savedToken.getVersion());
+		return VerificationTokenMappingHelper.map(savedToken);
+	}
+
+	private static Integer userIdOf(final Credential credential) {
+		return credential == null || credential.getUser() == null ? null : credential.getUser().getUserId();
+	}
 
-		this.verificationTokenRepository.deleteByIdCustom(verificationTokenId);
+	private static VerificationTokenDto withEditableFields(final VerificationTokenDto current, 
+			final VerificationTokenDto patched) {
+		return VerificationTokenDto.builder()
+				.verificationTokenId(current.getVerificationTokenId())
+				.version(current.getVersion())
+				.updatedAt(current.getUpdatedAt())
+				.token(patched.getToken())
+				.expireDate(patched.getExpireDate())
+				.credentialDto(current.getCredentialDto())
+				.build();
 	}
 
 }
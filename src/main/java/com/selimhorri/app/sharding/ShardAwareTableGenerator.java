@@ -0,0 +1,72 @@
+package com.selimhorri.app.sharding;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * The pooled table generator, with the shard folded into the id: {@code value * shardCount + shard}, so that
+ * {@link ShardRouter#shardOf(Integer)} finds the row again from its id alone.
+ * <p>
+ * Each shard keeps its own {@code id_generators} row, read on the shard the current transaction is bound to, and
+ * here its own optimizer (a block fetched from one shard is never handed out on another). With a single shard
+ * (the default) this is exactly the {@link TableGenerator} it extends.
+ */
+public class ShardAwareTableGenerator extends TableGenerator {
+
+	/**
+	 * Hibernate setting, put by {@link com.selimhorri.app.config.sharding.ShardingConfig}.
+	 */
+	public static final String SHARD_COUNT = "app.sharding.shard-count";
+
+	private int shardCount;
+	private final List<TableGenerator> otherShards = new ArrayList<>();
+
+	@Override
+	public void configure(final Type type, final Properties params, final ServiceRegistry serviceRegistry)
+			throws MappingException {
+		super.configure(type, params, serviceRegistry);
+		this.shardCount = ConfigurationHelper.getInt(SHARD_COUNT,
+				serviceRegistry.getService(ConfigurationService.class).getSettings(), 1);
+		for (int shard = 1; shard < this.shardCount; shard++) {
+			final TableGenerator generator = new TableGenerator();
+			generator.configure(type, params, serviceRegistry);
+			this.otherShards.add(generator);
+		}
+	}
+
+	@Override
+	public void registerExportables(final Database database) {
+		super.registerExportables(database);
+		this.otherShards.forEach(generator -> generator.registerExportables(database));
+	}
+
+	@Override
+	public Serializable generate(final SharedSessionContractImplementor session, final Object object) {
+		if (this.shardCount == 1)
+			return super.generate(session, object);
+		final Integer shard = ShardRouter.currentShard();
+		if (shard == null)
+			throw new HibernateException("Cannot generate an id for " + object.getClass().getSimpleName()
+					+ " outside a transaction bound to a shard");
+		final Serializable value = shard == ShardRouter.HOME_SHARD
+				? super.generate(session, object)
+				: this.otherShards.get(shard - 1).generate(session, object);
+		final long id = ((Number) value).longValue() * this.shardCount + shard;
+		if (value instanceof Integer)
+			return Math.toIntExact(id);
+		return id;
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.selimhorri.app.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Which slot of how many shards each database was laid out for, in its {@code shard_layout} table, checked on
+ * every start once the migrations ran. A database not laid out for its slot is accepted (and stamped) only if it
+ * holds no row belonging to another shard: rows of an existing database would otherwise be routed to shards that
+ * do not have them. Sharding can thus only be turned on, or shards added, against empty databases, unless the
+ * rows are moved first with {@code app.sharding.rebalance=true} (see {@link ShardRebalancer}).
+ * <p>
+ * Fewer shards than a database was laid out for (sharding turned off, or shards dropped) is always refused: the
+ * rows of the dropped shards would be lost.
+ */
+@Slf4j
+public class ShardLayout {
+
+	private final List<DataSource> dataSources;
+	private final List<JdbcTemplate> shards;
+
+	public ShardLayout(final List<? extends DataSource> shards) {
+		this.dataSources = List.copyOf(shards);
+		this.shards = shards.stream()
+				.map(JdbcTemplate::new)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * @param rebalance whether rows found on the wrong shard are moved (offline: no other instance may be writing)
+	 * rather than refused
+	 * @throws IllegalStateException if a shard holds rows of another one, or of a shard no longer configured
+	 */
+	public void check(final boolean rebalance) {
+		final int shardCount = this.shards.size();
+		final List<Integer> unstamped = new ArrayList<>();
+		final List<Integer> misplaced = new ArrayList<>();
+		for (int shard = 0; shard < shardCount; shard++) {
+			final Optional<int[]> layout = this.layoutOf(shard);
+			if (layout.isPresent() && layout.get()[1] > shardCount)
+				throw new IllegalStateException(String.format(
+						"Shard %d was laid out as shard %d of %d, only %d configured: the rows of the missing shards have to be merged back first",
+						shard, layout.get()[0], layout.get()[1], shardCount));
+			if (layout.isPresent() && layout.get()[0] == shard && layout.get()[1] == shardCount)
+				continue;
+			unstamped.add(shard);
+			if (!ShardRebalancer.misplacedUsers(this.shards.get(shard), shard, shardCount).isEmpty())
+				misplaced.add(shard);
+		}
+		if (!misplaced.isEmpty()) {
+			if (!rebalance)
+				throw new IllegalStateException(String.format(
+						"Shard(s) %s hold rows belonging to other shards of %d: sharding can only be turned on against empty databases, "
+								+ "move the rows first with app.sharding.rebalance=true (with no other instance running)",
+						misplaced, shardCount));
+			new ShardRebalancer(this.dataSources).rebalance();
+		}
+		unstamped.forEach(shard -> this.stamp(shard, shardCount));
+	}
+
+	private Optional<int[]> layoutOf(final int shard) {
+		return this.shards.get(shard)
+				.query("SELECT shard_index, shard_count FROM shard_layout",
+						(rs, rowNum) -> new int[] { rs.getInt("shard_index"), rs.getInt("shard_count") })
+				.stream()
+				.findFirst();
+	}
+
+	private void stamp(final int shard, final int shardCount) {
+		final JdbcTemplate jdbcTemplate = this.shards.get(shard);
+		jdbcTemplate.update("DELETE FROM shard_layout");
+		jdbcTemplate.update("INSERT INTO shard_layout (shard_index, shard_count) VALUES (?, ?)", shard, shardCount);
+		log.info("*** ShardLayout, sharding; database laid out as shard {} of {} *", shard, shardCount);
+	}
+
+}
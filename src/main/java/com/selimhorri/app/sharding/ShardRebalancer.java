@@ -0,0 +1,193 @@
+package com.selimhorri.app.sharding;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves every user found on a shard other than {@code floorMod(user_id, shardCount)}, with its addresses,
+ * credential and verification tokens, to that shard: one transaction writes the user on its shard (replacing
+ * whatever copy is already there), a second one deletes it from where it was. Run offline, with no instance
+ * writing; interrupted, it is simply run again.
+ * <p>
+ * A row owned by a user but whose own id maps to another shard (looked up by id, it would not be found) gets a new
+ * id, above every id in use; the change is logged. Afterwards the id generators of every shard are moved past the
+ * ids now on it, and the username directory is rebuilt from the credentials of every shard. Outbox events stay on
+ * the shard that recorded them.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+	private static final String[][] TABLES = {
+			{ "users", "user_id" },
+			{ "address", "address_id" },
+			{ "credentials", "credential_id" },
+			{ "verification_tokens", "verification_token_id" } };
+
+	private final List<JdbcTemplate> shards;
+	private final List<TransactionTemplate> transactions;
+	/**
+	 * Per table, the next generator value handed out by {@link #idOn}, shared by all shards.
+	 */
+	private final Map<String, Long> nextValues = new HashMap<>();
+
+	public ShardRebalancer(final List<? extends DataSource> shards) {
+		this.shards = shards.stream()
+				.map(JdbcTemplate::new)
+				.collect(Collectors.toUnmodifiableList());
+		this.transactions = shards.stream()
+				.map(shard -> new TransactionTemplate(new DataSourceTransactionManager(shard)))
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * Users with a row on the shard that does not map to it.
+	 */
+	static List<Integer> misplacedUsers(final JdbcTemplate shard, final int shardIndex, final int shardCount) {
+		return shard.queryForList("SELECT user_id FROM users WHERE MOD(user_id, ?) <> ? "
+						+ "UNION SELECT user_id FROM address WHERE user_id IS NOT NULL AND MOD(address_id, ?) <> ? "
+						+ "UNION SELECT user_id FROM credentials WHERE user_id IS NOT NULL AND MOD(credential_id, ?) <> ? "
+						+ "UNION SELECT c.user_id FROM verification_tokens vt JOIN credentials c ON c.credential_id = vt.credential_id "
+						+ "WHERE c.user_id IS NOT NULL AND MOD(vt.verification_token_id, ?) <> ?",
+				Integer.class, shardCount, shardIndex, shardCount, shardIndex, shardCount, shardIndex, shardCount, shardIndex);
+	}
+
+	public void rebalance() {
+		final int shardCount = this.shards.size();
+		for (final String[] table : TABLES)
+			this.nextValues.put(table[0], this.maxId(table[0], table[1]) / shardCount + 1);
+
+		int moved = 0;
+		for (int source = 0; source < shardCount; source++) {
+			for (final Integer userId : misplacedUsers(this.shards.get(source), source, shardCount)) {
+				final int target = Math.floorMod(userId, shardCount);
+				if (target == source)
+					this.renumber(source, userId);
+				else
+					this.move(source, target, userId);
+				moved++;
+			}
+		}
+		this.advanceIdGenerators();
+		this.rebuildUsernameDirectory();
+		log.info("*** ShardRebalancer, sharding; {} user(s) rebalanced over {} shard(s) *", moved, shardCount);
+	}
+
+	/**
+	 * Same shard, only some owned rows get new ids; the tokens follow their credential by {@code ON UPDATE CASCADE}.
+	 */
+	private void renumber(final int shard, final int userId) {
+		final JdbcTemplate jdbcTemplate = this.shards.get(shard);
+		this.transactions.get(shard).executeWithoutResult(status -> {
+			for (final Map<String, Object> address : jdbcTemplate.queryForList("SELECT address_id FROM address WHERE user_id = ?", userId))
+				this.renumber(jdbcTemplate, shard, "address", "address_id", ((Number) address.get("address_id")).intValue());
+			for (final Map<String, Object> credential : jdbcTemplate.queryForList("SELECT credential_id FROM credentials WHERE user_id = ?", userId))
+				this.renumber(jdbcTemplate, shard, "credentials", "credential_id", ((Number) credential.get("credential_id")).intValue());
+			for (final Map<String, Object> token : jdbcTemplate.queryForList("SELECT vt.verification_token_id FROM verification_tokens vt "
+					+ "JOIN credentials c ON c.credential_id = vt.credential_id WHERE c.user_id = ?", userId))
+				this.renumber(jdbcTemplate, shard, "verification_tokens", "verification_token_id",
+						((Number) token.get("verification_token_id")).intValue());
+		});
+	}
+
+	private void renumber(final JdbcTemplate jdbcTemplate, final int shard, final String table, final String idColumn,
+			final int id) {
+		final int newId = this.idOn(shard, table, id);
+		if (newId != id)
+			jdbcTemplate.update("UPDATE " + table + " SET " + idColumn + " = ? WHERE " + idColumn + " = ?", newId, id);
+	}
+
+	private void move(final int source, final int target, final int userId) {
+		final JdbcTemplate from = this.shards.get(source);
+		final JdbcTemplate to = this.shards.get(target);
+		this.transactions.get(target).executeWithoutResult(status -> {
+			// una copia anterior (seed, o un intento interrumpido) se sustituye: manda el shard de origen
+			to.update("DELETE FROM users WHERE user_id = ?", userId);
+			insert(to, "users", from.queryForMap("SELECT * FROM users WHERE user_id = ?", userId));
+			for (final Map<String, Object> address : from.queryForList("SELECT * FROM address WHERE user_id = ?", userId)) {
+				address.put("address_id", this.idOn(target, "address", ((Number) address.get("address_id")).intValue()));
+				insert(to, "address", address);
+			}
+			for (final Map<String, Object> credential : from.queryForList("SELECT * FROM credentials WHERE user_id = ?", userId)) {
+				final int credentialId = ((Number) credential.get("credential_id")).intValue();
+				credential.put("credential_id", this.idOn(target, "credentials", credentialId));
+				insert(to, "credentials", credential);
+				for (final Map<String, Object> token : from.queryForList("SELECT * FROM verification_tokens WHERE credential_id = ?", credentialId)) {
+					token.put("verification_token_id", this.idOn(target, "verification_tokens",
+							((Number) token.get("verification_token_id")).intValue()));
+					token.put("credential_id", credential.get("credential_id"));
+					insert(to, "verification_tokens", token);
+				}
+			}
+		});
+		this.transactions.get(source).executeWithoutResult(status -> from.update("DELETE FROM users WHERE user_id = ?", userId));
+		log.info("*** ShardRebalancer, sharding; user {} moved from shard {} to shard {} *", userId, source, target);
+	}
+
+	/**
+	 * The id the row keeps on the shard, or a new one mapping to it.
+	 */
+	private int idOn(final int shard, final String table, final int id) {
+		final int shardCount = this.shards.size();
+		if (Math.floorMod(id, shardCount) == shard)
+			return id;
+		final long value = this.nextValues.merge(table, 1L, Long::sum) - 1;
+		final int newId = Math.toIntExact(value * shardCount + shard);
+		log.info("*** ShardRebalancer, sharding; {} {} renumbered {} on shard {} *", table, id, newId, shard);
+		return newId;
+	}
+
+	private long maxId(final String table, final String idColumn) {
+		return this.shards.stream()
+				.map(shard -> shard.queryForObject("SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table, Long.class))
+				.max(Long::compare)
+				.orElse(0L);
+	}
+
+	/**
+	 * A shard hands out {@code value * shardCount + shard} from {@code next_val} on: it has to start past the
+	 * largest id now on the shard.
+	 */
+	private void advanceIdGenerators() {
+		final int shardCount = this.shards.size();
+		for (final JdbcTemplate shard : this.shards) {
+			for (final String[] table : TABLES) {
+				final long nextValue = shard.queryForObject("SELECT COALESCE(MAX(" + table[1] + "), 0) FROM " + table[0],
+						Long.class) / shardCount + 1;
+				shard.update("UPDATE id_generators SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+						nextValue, table[0], nextValue);
+			}
+		}
+	}
+
+	private void rebuildUsernameDirectory() {
+		final JdbcTemplate home = this.shards.get(ShardRouter.HOME_SHARD);
+		final Timestamp now = Timestamp.from(Instant.now());
+		this.transactions.get(ShardRouter.HOME_SHARD).executeWithoutResult(status -> {
+			home.update("DELETE FROM username_shards");
+			for (int shard = 0; shard < this.shards.size(); shard++) {
+				for (final String username : this.shards.get(shard)
+						.queryForList("SELECT username FROM credentials WHERE username IS NOT NULL", String.class))
+					home.update("INSERT INTO username_shards (username, shard_index, reserved_at) VALUES (?, ?, ?)",
+							username, shard, now);
+			}
+		});
+	}
+
+	private static void insert(final JdbcTemplate jdbcTemplate, final String table, final Map<String, Object> row) {
+		jdbcTemplate.update(String.format("INSERT INTO %s (%s) VALUES (%s)", table, String.join(", ", row.keySet()),
+				row.keySet().stream().map(column -> "?").collect(Collectors.joining(", "))), row.values().toArray());
+	}
+
+}
@@ -0,0 +1,302 @@
+package com.selimhorri.app.sharding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.sharding.UsernameShardDirectory.Reservation;
+
+/**
+ * Which shard a piece of work runs on. Users, and everything hanging from them, live on the shard given by their
+ * id ({@code floorMod(id, shardCount)}, see {@link ShardAwareTableGenerator}); a username is found through the
+ * {@link UsernameShardDirectory}.
+ * <p>
+ * The shard is bound to the current thread and read by {@link ShardRoutingDataSource} when the transaction
+ * fetches its connection, which happens on its first statement: a service binds the shard at the start of its
+ * transaction and everything it reads or writes goes there. Work over several shards (listings, batch gets, bulk
+ * deletes) runs as one transaction per shard, in parallel, and is gathered here.
+ * <p>
+ * {@link #unsharded() Unsharded} (the default) every method runs its work in place, in the caller's transaction.
+ */
+public class ShardRouter {
+
+	public static final int HOME_SHARD = 0;
+
+	private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+	private final int shardCount;
+	private final UsernameShardDirectory directory;
+	private final TransactionTemplate readOnly;
+	private final TransactionTemplate readWrite;
+	private final Executor executor;
+	private final AtomicInteger next = new AtomicInteger();
+
+	ShardRouter(final int shardCount, final UsernameShardDirectory directory,
+			final PlatformTransactionManager transactionManager, final Executor executor) {
+		this.shardCount = shardCount;
+		this.directory = directory;
+		this.readOnly = transactionTemplate(transactionManager, true);
+		this.readWrite = transactionTemplate(transactionManager, false);
+		this.executor = executor;
+	}
+
+	private ShardRouter() {
+		this.shardCount = 1;
+		this.directory = null;
+		this.readOnly = null;
+		this.readWrite = null;
+		this.executor = null;
+	}
+
+	public static ShardRouter unsharded() {
+		return new ShardRouter();
+	}
+
+	public static ShardRouter sharded(final UsernameShardDirectory directory,
+			final PlatformTransactionManager transactionManager, final Executor executor) {
+		return new ShardRouter(directory.getShardCount(), directory, transactionManager, executor);
+	}
+
+	private static TransactionTemplate transactionTemplate(final PlatformTransactionManager transactionManager,
+			final boolean readOnly) {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		// cada shard con su propia transacción (y su propia conexión), aunque haya una abierta en el hilo
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		transactionTemplate.setReadOnly(readOnly);
+		return transactionTemplate;
+	}
+
+	/**
+	 * The shard the current thread is bound to, {@code null} for none (the home shard).
+	 */
+	public static Integer currentShard() {
+		return CURRENT.get();
+	}
+
+	public boolean isEnabled() {
+		return this.directory != null;
+	}
+
+	public int getShardCount() {
+		return this.shardCount;
+	}
+
+	public List<Integer> getShards() {
+		return IntStream.range(0, this.shardCount)
+				.boxed()
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * The shard of a user, or of a row owned by one, from its id. A missing id maps to the home shard and is left
+	 * for the repository to reject.
+	 */
+	public int shardOf(final Integer id) {
+		if (id == null)
+			return HOME_SHARD;
+		return Math.floorMod(id, this.shardCount);
+	}
+
+	/**
+	 * Shard for a new user, round robin.
+	 */
+	public int nextShard() {
+		return Math.floorMod(this.next.getAndIncrement(), this.shardCount);
+	}
+
+	/**
+	 * Runs the rest of the current transaction on the given shard. Must be called before its first statement; a
+	 * transaction never spans two shards.
+	 */
+	public void bind(final int shard) {
+		if (!this.isEnabled())
+			return;
+		final Integer current = CURRENT.get();
+		if (current != null) {
+			if (current != shard)
+				throw new IllegalStateException(String.format("Transaction bound to shard %d cannot use shard %d", current, shard));
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			throw new IllegalStateException("A shard can only be bound inside a transaction");
+		CURRENT.set(shard);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(final int status) {
+				CURRENT.remove();
+			}
+		});
+	}
+
+	public void bindShardOf(final Integer id) {
+		this.bind(this.shardOf(id));
+	}
+
+	/**
+	 * Binds the current transaction to the shard holding the username.
+	 * @return {@code false} if no shard holds it
+	 */
+	public boolean bindShardOfUsername(final String username) {
+		if (!this.isEnabled())
+			return true;
+		final Optional<Integer> shard = this.directory.find(username);
+		shard.ifPresent(this::bind);
+		return shard.isPresent();
+	}
+
+	public Optional<Integer> findShardOfUsername(final String username) {
+		if (!this.isEnabled())
+			return Optional.of(HOME_SHARD);
+		return this.directory.find(username);
+	}
+
+	/**
+	 * Claims the username for the shard across all shards. Inside a transaction, a claim written by this call is
+	 * dropped again if it rolls back; one the shard already held (the credential's own, or a concurrent save's) is
+	 * left alone.
+	 * @return {@code false} if another shard holds it
+	 */
+	public boolean reserveUsername(final String username, final int shard) {
+		if (!this.isEnabled())
+			return true;
+		final Reservation reservation = this.directory.reserve(username, shard);
+		if (reservation == Reservation.REFUSED)
+			return false;
+		if (reservation == Reservation.CLAIMED && TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(final int status) {
+					if (status == STATUS_ROLLED_BACK)
+						directory.release(username, shard);
+				}
+			});
+		return true;
+	}
+
+	/**
+	 * Frees the username of the shard, once the current transaction (if any) commits.
+	 */
+	public void releaseUsername(final String username, final int shard) {
+		if (!this.isEnabled())
+			return;
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			this.directory.release(username, shard);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				directory.release(username, shard);
+			}
+		});
+	}
+
+	/**
+	 * Runs the work with the thread bound to the shard, without a transaction of its own: what it calls opens its
+	 * transactions there.
+	 */
+	public <T> T withShard(final int shard, final Supplier<T> work) {
+		if (!this.isEnabled())
+			return work.get();
+		final Integer previous = CURRENT.get();
+		CURRENT.set(shard);
+		try {
+			return work.get();
+		}
+		finally {
+			if (previous == null)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Runs the work in a transaction of its own on the shard.
+	 */
+	public <T> T onShard(final int shard, final boolean readOnly, final Supplier<T> work) {
+		if (!this.isEnabled())
+			return work.get();
+		final TransactionTemplate transactionTemplate = readOnly ? this.readOnly : this.readWrite;
+		return this.withShard(shard, () -> transactionTemplate.execute(status -> work.get()));
+	}
+
+	/**
+	 * Runs the work on every shard, one transaction each.
+	 * @return the result of each shard, in shard order
+	 */
+	public <T> List<T> scatter(final boolean readOnly, final Supplier<T> work) {
+		if (!this.isEnabled())
+			return Collections.singletonList(work.get());
+		return this.join(this.getShards().stream()
+				.map(shard -> this.submit(shard, readOnly, work))
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * Runs the work once per shard holding some of the ids, with those ids.
+	 * @return the result of each shard involved
+	 */
+	public <T> List<T> scatter(final Collection<Integer> ids, final boolean readOnly,
+			final Function<Collection<Integer>, T> work) {
+		if (!this.isEnabled())
+			return Collections.singletonList(work.apply(ids));
+		final Map<Integer, List<Integer>> idsByShard = ids.stream()
+				.collect(Collectors.groupingBy(this::shardOf, LinkedHashMap::new, Collectors.toList()));
+		return this.join(idsByShard.entrySet().stream()
+				.map(shardIds -> this.submit(shardIds.getKey(), readOnly, () -> work.apply(shardIds.getValue())))
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * Lists from every shard merged into one; sharded, the merge is sorted by {@code order}.
+	 */
+	public <T> List<T> scatterGather(final Supplier<List<T>> work, final Comparator<? super T> order) {
+		if (!this.isEnabled())
+			return work.get();
+		final List<T> gathered = new ArrayList<>();
+		this.scatter(true, work).forEach(gathered::addAll);
+		gathered.sort(order);
+		return gathered;
+	}
+
+	private <T> CompletableFuture<T> submit(final int shard, final boolean readOnly, final Supplier<T> work) {
+		return CompletableFuture.supplyAsync(() -> this.onShard(shard, readOnly, work), this.executor);
+	}
+
+	private <T> List<T> join(final List<CompletableFuture<T>> futures) {
+		try {
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+		return futures.stream()
+				.map(CompletableFuture::join)
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.selimhorri.app.sharding;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the shard the current thread is {@link ShardRouter#currentShard() bound to}, or of the
+ * home shard when unbound (Flyway, Hibernate bootstrap, the scheduler locks).
+ * <p>
+ * Like {@link com.selimhorri.app.datasource.ReadWriteRoutingDataSource} it must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so the shard bound at the start of a
+ * transaction is the one its connection comes from.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+	private final AtomicLongArray routed;
+
+	public ShardRoutingDataSource(final List<? extends DataSource> shards) {
+		final Map<Object, Object> targets = new HashMap<>();
+		for (int shard = 0; shard < shards.size(); shard++)
+			targets.put(shard, shards.get(shard));
+		this.setTargetDataSources(targets);
+		this.setDefaultTargetDataSource(shards.get(ShardRouter.HOME_SHARD));
+		this.setLenientFallback(false);
+		this.routed = new AtomicLongArray(shards.size());
+		this.afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		final Integer current = ShardRouter.currentShard();
+		final int shard = current == null ? ShardRouter.HOME_SHARD : current;
+		this.routed.incrementAndGet(shard);
+		return shard;
+	}
+
+	/**
+	 * Connections fetched from the shard since startup.
+	 */
+	public long getRoutedCount(final int shard) {
+		return this.routed.get(shard);
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.selimhorri.app.sharding;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Username to shard, in the {@code username_shards} table of the home shard. Goes straight to the shard pools, in
+ * auto-commit, so it can be read and written from inside a transaction bound to any shard.
+ * <p>
+ * The entry is written before the credential (its primary key is what keeps usernames unique across shards) and
+ * dropped after the credential is gone. A username found on a shard but not here (rows older than the directory,
+ * or a reservation dropped too early) is looked up on every shard and recorded again; an entry whose username is
+ * on no shard (a save that died before rolling its reservation back) is taken over by the next reservation once
+ * older than {@code staleAfter}.
+ */
+@Slf4j
+public class UsernameShardDirectory {
+
+	private final List<JdbcTemplate> shards;
+	private final Duration staleAfter;
+	private final Clock clock;
+
+	public UsernameShardDirectory(final List<DataSource> shards, final Duration staleAfter) {
+		this(shards, staleAfter, Clock.systemUTC());
+	}
+
+	UsernameShardDirectory(final List<DataSource> shards, final Duration staleAfter, final Clock clock) {
+		this.shards = shards.stream()
+				.map(JdbcTemplate::new)
+				.collect(Collectors.toUnmodifiableList());
+		this.staleAfter = staleAfter;
+		this.clock = clock;
+	}
+
+	public int getShardCount() {
+		return this.shards.size();
+	}
+
+	private JdbcTemplate home() {
+		return this.shards.get(ShardRouter.HOME_SHARD);
+	}
+
+	public Optional<Integer> find(final String username) {
+		final Optional<Integer> shard = this.entry(username).map(Entry::getShard);
+		if (shard.isPresent())
+			return shard;
+		// sin entrada: se busca en todos los shards y se apunta para la próxima vez
+		for (int candidate = 0; candidate < this.shards.size(); candidate++) {
+			if (this.existsOn(candidate, username)) {
+				log.info("*** Integer, sharding; username {} found on shard {} without a directory entry *", username, candidate);
+				this.insert(username, candidate);
+				return Optional.of(candidate);
+			}
+		}
+		return Optional.empty();
+	}
+
+	public Reservation reserve(final String username, final int shard) {
+		if (this.insert(username, shard))
+			return Reservation.CLAIMED;
+		final Optional<Entry> entry = this.entry(username);
+		if (entry.isEmpty())
+			return this.insert(username, shard) ? Reservation.CLAIMED : Reservation.REFUSED;
+		if (entry.get().getShard() == shard)
+			return Reservation.HELD;
+		if (entry.get().getReservedAt().isAfter(this.clock.instant().minus(this.staleAfter))
+				|| this.existsOn(entry.get().getShard(), username))
+			return Reservation.REFUSED;
+		// reserva abandonada: solo una de las reservas concurrentes se la queda
+		return this.home().update("UPDATE username_shards SET shard_index = ?, reserved_at = ? "
+				+ "WHERE username = ? AND shard_index = ? AND reserved_at = ?", shard, this.now(), username,
+				entry.get().getShard(), Timestamp.from(entry.get().getReservedAt())) == 1
+						? Reservation.CLAIMED
+						: Reservation.REFUSED;
+	}
+
+	public void release(final String username, final int shard) {
+		this.home().update("DELETE FROM username_shards WHERE username = ? AND shard_index = ?", username, shard);
+	}
+
+	private boolean insert(final String username, final int shard) {
+		try {
+			this.home().update("INSERT INTO username_shards (username, shard_index, reserved_at) VALUES (?, ?, ?)",
+					username, shard, this.now());
+			return true;
+		}
+		catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	private Optional<Entry> entry(final String username) {
+		return this.home().query("SELECT shard_index, reserved_at FROM username_shards WHERE username = ?",
+				(rs, rowNum) -> new Entry(rs.getInt("shard_index"), rs.getTimestamp("reserved_at").toInstant()), username)
+				.stream()
+				.findFirst();
+	}
+
+	private boolean existsOn(final int shard, final String username) {
+		return !this.shards.get(shard)
+				.queryForList("SELECT 1 FROM credentials WHERE username = ?", Integer.class, username)
+				.isEmpty();
+	}
+
+	private Timestamp now() {
+		return Timestamp.from(this.clock.instant());
+	}
+
+	public enum Reservation {
+
+		/**
+		 * Written by this reservation, new or taken over: it is this one's to drop if its save fails.
+		 */
+		CLAIMED,
+		/**
+		 * Already held for the same shard, by the credential itself or by a concurrent save: not this one's to drop.
+		 */
+		HELD,
+		/**
+		 * Held for another shard.
+		 */
+		REFUSED
+
+	}
+
+	@lombok.Value
+	private static class Entry {
+
+		int shard;
+		Instant reservedAt;
+
+	}
+
+}
@@ -0,0 +1,61 @@
+package db.migration;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Every shard runs the same migrations, seed rows included; this keeps on each one only the seed rows it owns,
+ * those whose ids all map to it ({@code MOD(id, shard_count)}, as {@link com.selimhorri.app.sharding.ShardRouter}
+ * does). A seed row whose own id and user id map to different shards could not be found by id and is dropped.
+ * <p>
+ * Only a database holding nothing but the seed rows is pruned: anything else is left as it is, and
+ * {@link com.selimhorri.app.sharding.ShardLayout} refuses to start on it unless its rows are rebalanced.
+ * <p>
+ * The placeholders are only set by {@link com.selimhorri.app.config.sharding.ShardingConfig}: unsharded this
+ * migration does nothing.
+ */
+public class V19__Keep_only_rows_of_this_shard extends BaseJavaMigration {
+
+	/**
+	 * Rows added after the seed migrations ({@code V2}, {@code V4}, {@code V6} and {@code V8}).
+	 */
+	public static final String NON_SEED_ROWS = "SELECT COUNT(*) FROM ("
+			+ "SELECT user_id FROM users WHERE user_id > 4 "
+			+ "UNION ALL SELECT address_id FROM address WHERE address_id > 6 "
+			+ "UNION ALL SELECT credential_id FROM credentials WHERE credential_id > 4 "
+			+ "UNION ALL SELECT verification_token_id FROM verification_tokens WHERE verification_token_id > 4"
+			+ ") non_seed";
+
+	@Override
+	public void migrate(final Context context) throws Exception {
+		final Map<String, String> placeholders = context.getConfiguration().getPlaceholders();
+		final int shardCount = Integer.parseInt(placeholders.getOrDefault("shard_count", "1"));
+		final int shardIndex = Integer.parseInt(placeholders.getOrDefault("shard_index", "0"));
+		if (shardCount == 1)
+			return;
+		try (final Statement statement = context.getConnection().createStatement()) {
+			// una base con datos propios no se toca: sus filas se mueven con app.sharding.rebalance
+			try (final ResultSet nonSeedRows = statement.executeQuery(NON_SEED_ROWS)) {
+				nonSeedRows.next();
+				if (nonSeedRows.getLong(1) > 0)
+					return;
+			}
+			statement.executeUpdate(notOnThisShard("verification_tokens", shardCount, shardIndex,
+					"verification_token_id", "credential_id"));
+			statement.executeUpdate(notOnThisShard("credentials", shardCount, shardIndex, "credential_id", "user_id"));
+			statement.executeUpdate(notOnThisShard("address", shardCount, shardIndex, "address_id", "user_id"));
+			statement.executeUpdate(notOnThisShard("users", shardCount, shardIndex, "user_id", "user_id"));
+		}
+	}
+
+	private static String notOnThisShard(final String table, final int shardCount, final int shardIndex,
+			final String idColumn, final String ownerColumn) {
+		return String.format("DELETE FROM %1$s WHERE MOD(%2$s, %4$d) <> %5$d OR MOD(%3$s, %4$d) <> %5$d",
+				table, idColumn, ownerColumn, shardCount, shardIndex);
+	}
+
+}
@@ -0,0 +1,6 @@
+CREATE TABLE id_generators (
+  sequence_name VARCHAR(255) NOT NULL PRIMARY KEY,
+  next_val BIGINT NOT NULL
+);
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'users', COALESCE(MAX(user_id), 0) + 1 FROM users;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'address', COALESCE(MAX(address_id), 0) + 1 FROM address;
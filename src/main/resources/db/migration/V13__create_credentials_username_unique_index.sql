@@ -0,0 +1 @@
+CREATE UNIQUE INDEX uk_credentials_username ON credentials (username);
@@ -0,0 +1,2 @@
+UPDATE verification_tokens SET verif_token = NULL WHERE verif_token = '';
+CREATE UNIQUE INDEX uk_verification_tokens_verif_token ON verification_tokens (verif_token);
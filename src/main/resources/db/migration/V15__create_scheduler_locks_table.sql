@@ -0,0 +1,7 @@
+CREATE TABLE scheduler_locks (
+  lock_name VARCHAR(64) NOT NULL PRIMARY KEY,
+  locked_until TIMESTAMP NOT NULL,
+  locked_by VARCHAR(255)
+);
+INSERT INTO scheduler_locks (lock_name, locked_until, locked_by) VALUES ('verification-token-purge', CURRENT_TIMESTAMP, NULL);
+CREATE INDEX idx_verification_tokens_expire_date ON verification_tokens (expire_date);
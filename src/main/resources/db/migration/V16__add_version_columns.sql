@@ -0,0 +1,4 @@
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE credentials ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE address ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE verification_tokens ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'credentials', COALESCE(MAX(credential_id), 0) + 1 FROM credentials;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'verification_tokens', COALESCE(MAX(verification_token_id), 0) + 1 FROM verification_tokens;
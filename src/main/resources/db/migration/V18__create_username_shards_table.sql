@@ -0,0 +1,5 @@
+CREATE TABLE username_shards (
+  username VARCHAR(255) NOT NULL PRIMARY KEY,
+  shard_index INT NOT NULL,
+  reserved_at TIMESTAMP NOT NULL
+);
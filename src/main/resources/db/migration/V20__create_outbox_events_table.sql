@@ -0,0 +1,10 @@
+CREATE TABLE outbox_events (
+  outbox_event_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  aggregate_type VARCHAR(32) NOT NULL,
+  aggregate_id INT NOT NULL,
+  user_id INT,
+  event_type VARCHAR(16) NOT NULL,
+  aggregate_version BIGINT,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO scheduler_locks (lock_name, locked_until, locked_by) VALUES ('outbox-relay', CURRENT_TIMESTAMP, NULL);
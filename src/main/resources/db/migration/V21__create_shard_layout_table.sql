@@ -0,0 +1,4 @@
+CREATE TABLE shard_layout (
+  shard_index INT NOT NULL,
+  shard_count INT NOT NULL
+);
@@ -0,0 +1,136 @@
+package com.selimhorri.app.batching;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MicroBatchLoaderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final List<Set<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    private MicroBatchLoader<Integer, String> loader(final Duration window, final int maxBatchSize,
+            final Function<Set<Integer>, Map<Integer, String>> batchFunction) {
+        return new MicroBatchLoader<>("users", true, keys -> {
+            batches.add(Set.copyOf(keys));
+            return batchFunction.apply(keys);
+        }, window, maxBatchSize, Duration.ofSeconds(5), scheduler, meterRegistry);
+    }
+
+    private static Map<Integer, String> evenKeysOnly(final Set<Integer> keys) {
+        return keys.stream()
+                .filter(key -> key % 2 == 0)
+                .collect(Collectors.toMap(Function.identity(), key -> "user" + key));
+    }
+
+    private List<Future<Optional<String>>> loadConcurrently(final MicroBatchLoader<Integer, String> loader,
+            final List<Integer> keys) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<String>>> futures = keys.stream()
+                .map(key -> callers.submit(() -> {
+                    start.await();
+                    return loader.load(key);
+                }))
+                .collect(Collectors.toList());
+        start.countDown();
+        return futures;
+    }
+
+    @Test
+    void load_shouldResolveConcurrentKeysWithOneBatch() throws Exception {
+        MicroBatchLoader<Integer, String> loader = loader(Duration.ofMillis(200), 100, MicroBatchLoaderTest::evenKeysOnly);
+        List<Integer> keys = List.of(1, 2, 3, 4, 4);
+
+        List<Future<Optional<String>>> futures = loadConcurrently(loader, keys);
+
+        for (int i = 0; i < keys.size(); i++) {
+            Optional<String> expected = keys.get(i) % 2 == 0 ? Optional.of("user" + keys.get(i)) : Optional.empty();
+            assertEquals(expected, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(Set.of(1, 2, 3, 4)), batches);
+        assertEquals(1, meterRegistry.get("micro.batch.size").summary().count());
+        assertEquals(4, meterRegistry.get("micro.batch.size").summary().totalAmount());
+        assertEquals(5, meterRegistry.get("micro.batch.latency").timer().count());
+    }
+
+    @Test
+    void load_shouldDispatchAsSoonAsTheBatchIsFull() throws Exception {
+        MicroBatchLoader<Integer, String> loader = loader(Duration.ofSeconds(30), 3, MicroBatchLoaderTest::evenKeysOnly);
+
+        List<Future<Optional<String>>> futures = loadConcurrently(loader, List.of(2, 4, 6));
+
+        for (Future<Optional<String>> future : futures)
+            assertTrue(future.get(5, TimeUnit.SECONDS).isPresent());
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void load_shouldStartANewBatchAfterTheWindow() {
+        MicroBatchLoader<Integer, String> loader = loader(Duration.ofMillis(1), 100, MicroBatchLoaderTest::evenKeysOnly);
+
+        assertEquals(Optional.of("user2"), loader.load(2));
+        assertEquals(Optional.of("user4"), loader.load(4));
+
+        assertEquals(List.of(Set.of(2), Set.of(4)), batches);
+    }
+
+    @Test
+    void load_shouldFailEveryCallerOfAFailedBatch() throws Exception {
+        MicroBatchLoader<Integer, String> loader = loader(Duration.ofMillis(50), 100, keys -> {
+            throw new IllegalStateException("database down");
+        });
+
+        List<Future<Optional<String>>> futures = loadConcurrently(loader, IntStream.range(0, 4).boxed().collect(Collectors.toList()));
+
+        for (Future<Optional<String>> future : futures) {
+            Exception failure = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void load_shouldGiveUpAfterTheWaitTimeout() {
+        CountDownLatch release = new CountDownLatch(1);
+        MicroBatchLoader<Integer, String> loader = new MicroBatchLoader<>("users", true, keys -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of();
+        }, Duration.ofMillis(1), 100, Duration.ofMillis(50), scheduler, meterRegistry);
+
+        assertThrows(QueryTimeoutException.class, () -> loader.load(1));
+        release.countDown();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.config.cache.SecondLevelCacheConfig;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.repository.CredentialRepository;
+
+/**
+ * Two replicas sharing one database. This context is replica B, with the second-level cache on; replica A changes
+ * the credential row behind B's back, as only its own Hibernate sees the write, and sends the invalidation through
+ * the shared transport.
+ */
+@DataJpaTest(properties = "app.second-level-cache.enabled=true")
+@Import({SecondLevelCacheConfig.class, UserCacheInvalidator.class, LoopbackCacheInvalidationTransport.class,
+        ReplicaLagGuard.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheInvalidationTest {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+    }
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CredentialRepository credentialRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoopbackCacheInvalidationTransport transport;
+
+    @Autowired
+    private ReplicaLagGuard replicaLagGuard;
+
+    private UserCacheInvalidator replicaA;
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.getCache().evictAll();
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.getCache()).thenReturn(mock(org.hibernate.Cache.class));
+        EntityManagerFactory replicaAEntityManagerFactory = mock(EntityManagerFactory.class);
+        when(replicaAEntityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        replicaA = new UserCacheInvalidator(new ConcurrentMapCacheManager(), transport, replicaLagGuard,
+                replicaAEntityManagerFactory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("UPDATE credentials SET username = 'selimhorri', is_enabled = TRUE WHERE credential_id = 1");
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    private <T> T inNewSession(final Function<EntityManager, T> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return work.apply(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private boolean isEnabled() {
+        return inNewSession(entityManager -> entityManager.find(Credential.class, 1).getIsEnabled());
+    }
+
+    @Test
+    void remoteWrite_shouldBeReadOnceInvalidated() {
+        assertTrue(isEnabled());
+        jdbcTemplate.update("UPDATE credentials SET is_enabled = FALSE WHERE credential_id = 1");
+        assertTrue(isEnabled(), "served from the region until invalidated");
+
+        replicaA.evictCredential(1, 1, "selimhorri");
+
+        assertFalse(isEnabled());
+    }
+
+    @Test
+    void remoteUsernameMove_shouldNotResolveTheOldUsernameOnceInvalidated() {
+        credentialRepository.loadByUsername("selimhorri").orElseThrow();
+        jdbcTemplate.update("UPDATE credentials SET username = 'selimhorri2' WHERE credential_id = 1");
+
+        replicaA.evictCredential(1, 1, "selimhorri", "selimhorri2");
+
+        assertTrue(credentialRepository.loadByUsername("selimhorri").isEmpty());
+        assertEquals(1, credentialRepository.loadByUsername("selimhorri2").orElseThrow().getCredentialId());
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SingleFlightTest {
+
+    private static final int WAITERS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable);
+        threads.add(thread);
+        return thread;
+    });
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private double calls(final String result) {
+        return meterRegistry.get("single.flight.calls").tag("name", "users").tag("result", result).counter().count();
+    }
+
+    /**
+     * Blocks the leader until every waiter has joined its flight.
+     */
+    private List<Future<String>> startWaiters(final SingleFlight singleFlight, final CountDownLatch leaderStarted,
+            final CountDownLatch release, final AtomicInteger loads, final String answer) throws Exception {
+        Future<String> leader = executor.submit(() -> singleFlight.execute("users", 1, () -> {
+            loads.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return answer;
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        List<Future<String>> futures = IntStream.range(0, WAITERS)
+                .mapToObj(i -> executor.submit(() -> singleFlight.execute("users", 1, () -> {
+                    loads.incrementAndGet();
+                    return "direct";
+                })))
+                .collect(Collectors.toList());
+        futures.add(0, leader);
+        return futures;
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitWaiters(final double expected) throws InterruptedException {
+        // waiters park on the leader's future, which the in-flight gauge cannot show; poll until all have joined
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threads.stream().filter(thread -> thread.getState() == Thread.State.TIMED_WAITING).count() < expected
+                && System.nanoTime() < deadline)
+            Thread.sleep(5);
+    }
+
+    @Test
+    void execute_shouldShareOneLoadBetweenConcurrentCallers() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> futures = startWaiters(singleFlight, new CountDownLatch(1), release, loads, "shared");
+        awaitWaiters(WAITERS + 1);
+        release.countDown();
+
+        for (Future<String> future : futures)
+            assertEquals("shared", future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, calls("executed"));
+        assertEquals(WAITERS, calls("coalesced"));
+        assertEquals(0, meterRegistry.get("single.flight.in.flight").gauge().value());
+    }
+
+    @Test
+    void execute_shouldShareTheLeadersFailure() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("users", 1, () -> {
+            leaderStarted.countDown();
+            await(release);
+            throw new IllegalArgumentException("boom");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> singleFlight.execute("users", 1, () -> "direct"));
+        awaitWaiters(2);
+        release.countDown();
+
+        Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception waiterFailure = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderFailure.getCause() instanceof IllegalArgumentException);
+        assertTrue(waiterFailure.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void execute_shouldLoadDirectlyOnceTheWaitTimesOut() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofMillis(50), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> futures = startWaiters(singleFlight, new CountDownLatch(1), release, loads, "slow");
+        for (Future<String> waiter : futures.subList(1, futures.size()))
+            assertEquals("direct", waiter.get(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals("slow", futures.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(WAITERS + 1, loads.get());
+        assertEquals(WAITERS, calls("timed_out"));
+    }
+
+    @Test
+    void execute_shouldNotRememberCompletedCalls() {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(1), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("users", 1, loads::incrementAndGet);
+        singleFlight.execute("users", 1, loads::incrementAndGet);
+        singleFlight.execute("users", 2, loads::incrementAndGet);
+
+        assertEquals(3, loads.get());
+        assertEquals(3, calls("executed"));
+    }
+
+}
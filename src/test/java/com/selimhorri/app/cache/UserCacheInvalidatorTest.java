@@ -0,0 +1,179 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.domain.VerificationToken;
+
+/**
+ * Two replicas, each with its own local caches, sharing one loopback transport.
+ */
+public class UserCacheInvalidatorTest {
+
+    private CacheManager localCaches;
+    private CacheManager remoteCaches;
+    private UserCacheInvalidator local;
+    private UserCacheInvalidator remote;
+    private ReplicaLagGuard remoteGuard;
+    private Cache remoteSecondLevelCache;
+    
+    @BeforeEach
+    void setUp() {
+        LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport();
+        localCaches = cacheManager();
+        remoteCaches = cacheManager();
+        remoteGuard = new ReplicaLagGuard(true, Duration.ofMinutes(1));
+        remoteSecondLevelCache = mock(Cache.class);
+        local = new UserCacheInvalidator(localCaches, transport, new ReplicaLagGuard(true, Duration.ofMinutes(1)), 
+                entityManagerFactory(mock(Cache.class)));
+        remote = new UserCacheInvalidator(remoteCaches, transport, remoteGuard, entityManagerFactory(remoteSecondLevelCache));
+        local.subscribe();
+        remote.subscribe();
+        
+        List.of(localCaches, remoteCaches).forEach(caches -> {
+            caches.getCache(AppConstant.CacheNames.USERS_BY_ID).put(1, "user");
+            caches.getCache(AppConstant.CacheNames.USERS_BY_USERNAME).put("johndoe", "user");
+            caches.getCache(AppConstant.CacheNames.CREDENTIALS_BY_USERNAME).put("johndoe", "credential");
+        });
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    private static CacheManager cacheManager() {
+        return new ConcurrentMapCacheManager(
+                AppConstant.CacheNames.USERS_BY_ID,
+                AppConstant.CacheNames.USERS_BY_USERNAME,
+                AppConstant.CacheNames.CREDENTIALS_BY_USERNAME);
+    }
+    
+    private static EntityManagerFactory entityManagerFactory(final Cache secondLevelCache) {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        return entityManagerFactory;
+    }
+    
+    private static boolean isCached(final CacheManager caches) {
+        return caches.getCache(AppConstant.CacheNames.USERS_BY_ID).get(1) != null
+                || caches.getCache(AppConstant.CacheNames.USERS_BY_USERNAME).get("johndoe") != null
+                || caches.getCache(AppConstant.CacheNames.CREDENTIALS_BY_USERNAME).get("johndoe") != null;
+    }
+    
+    @Test
+    void evictUser_shouldInvalidateEveryReplica() {
+        local.evictUser(1, "johndoe");
+        
+        assertFalse(isCached(localCaches));
+        assertFalse(isCached(remoteCaches));
+    }
+    
+    @Test
+    void evict_shouldReachOtherReplicasOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        
+        local.evictCredential(1, 1, "johndoe");
+        
+        assertFalse(isCached(localCaches));
+        assertTrue(isCached(remoteCaches));
+        
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        
+        assertFalse(isCached(remoteCaches));
+    }
+    
+    @Test
+    void evictCredential_shouldDropSecondLevelEntriesOnOtherReplicas() {
+        local.evictCredential(1, 1, "johndoe");
+        
+        verify(remoteSecondLevelCache).evictEntityData(Credential.class, 1);
+        verify(remoteSecondLevelCache).evictNaturalIdData(Credential.class);
+    }
+    
+    @Test
+    void evictAllCredentials_shouldClearTheNearCachesOfEveryReplica() {
+        remoteCaches.getCache(AppConstant.CacheNames.USERS_BY_USERNAME).put("other", "user");
+        
+        local.evictAllCredentials();
+        
+        assertFalse(isCached(localCaches));
+        assertFalse(isCached(remoteCaches));
+        assertNull(remoteCaches.getCache(AppConstant.CacheNames.USERS_BY_USERNAME).get("other"));
+    }
+    
+    @Test
+    void evictVerificationToken_shouldDropSecondLevelEntryOnOtherReplicas() {
+        local.evictVerificationToken(7);
+        
+        verify(remoteSecondLevelCache).evictEntityData(VerificationToken.class, 7);
+        assertTrue(isCached(remoteCaches));
+    }
+    
+    @Test
+    void apply_shouldIgnoreMessagesOlderThanTheLastApplied() {
+        remote.apply(message(local.getInstanceId(), 200));
+        remoteCaches.getCache(AppConstant.CacheNames.USERS_BY_ID).put(1, "fresh user");
+        
+        remote.apply(message(local.getInstanceId(), 100));
+        
+        assertNotNull(remoteCaches.getCache(AppConstant.CacheNames.USERS_BY_ID).get(1));
+        verify(remoteSecondLevelCache, times(1)).evictEntityData(User.class, 1);
+    }
+    
+    @Test
+    void apply_shouldIgnoreOwnMessages() {
+        remote.apply(message(remote.getInstanceId(), Long.MAX_VALUE));
+        
+        assertTrue(isCached(remoteCaches));
+    }
+    
+    @Test
+    void apply_shouldOpenTheReadYourWritesWindowOnOtherReplicas() {
+        local.evictUser(1, "johndoe");
+        
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(remoteGuard.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+        assertTrue(remoteGuard.pinIfRecentlyWritten(ReplicaLagGuard.username("johndoe")));
+        assertFalse(remoteGuard.pinIfRecentlyWritten(ReplicaLagGuard.user(2)));
+    }
+    
+    private static CacheInvalidationMessage message(final String origin, final long version) {
+        return CacheInvalidationMessage.builder()
+                .origin(origin)
+                .version(version)
+                .entityType(EntityType.USER)
+                .entityId(1)
+                .userId(1)
+                .usernames(List.of("johndoe"))
+                .build();
+    }
+    
+}
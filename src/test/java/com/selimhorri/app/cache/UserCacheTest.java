@@ -0,0 +1,230 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.repository.CredentialRepository;
+import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.UserCredentialView;
+import com.selimhorri.app.service.CredentialService;
+import com.selimhorri.app.service.UserService;
+import com.selimhorri.app.service.impl.CredentialServiceImpl;
+import com.selimhorri.app.service.impl.UserServiceImpl;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringJUnitConfig
+public class UserCacheTest {
+
+    @Configuration
+    @EnableCaching
+    @Import({UserServiceImpl.class, CredentialServiceImpl.class, UserCacheInvalidator.class, UsernameBloomFilter.class,
+            LoopbackCacheInvalidationTransport.class, SingleFlight.class, ReplicaLagGuard.class})
+    static class Config {
+        
+        @Bean
+        CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                    AppConstant.CacheNames.USERS_BY_ID,
+                    AppConstant.CacheNames.USERS_BY_USERNAME,
+                    AppConstant.CacheNames.CREDENTIALS_BY_USERNAME);
+            cacheManager.setCacheSpecification("maximumSize=100,recordStats");
+            return cacheManager;
+        }
+        
+        @Bean
+        TransactionOperations transactionOperations() {
+            return TransactionOperations.withoutTransaction();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+        
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+        
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+        
+        @Bean
+        ShardRouter shardRouter() {
+            return ShardRouter.unsharded();
+        }
+        
+        @Bean
+        EntityManagerFactory entityManagerFactory() {
+            SessionFactory sessionFactory = mock(SessionFactory.class);
+            when(sessionFactory.getCache()).thenReturn(mock(org.hibernate.Cache.class));
+            EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+            when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+            return entityManagerFactory;
+        }
+        
+    }
+    
+    @MockBean
+    private UserRepository userRepository;
+    
+    @MockBean
+    private CredentialRepository credentialRepository;
+    
+    @MockBean
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+    
+    @MockBean
+    private MicroBatchLoader<Integer, User> userBatchLoader;
+    
+    @MockBean
+    private OutboxWriter outboxWriter;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CredentialService credentialService;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    private User user;
+    private Credential credential;
+    
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        
+        user = new User();
+        user.setUserId(1);
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        
+        credential = new Credential();
+        credential.setCredentialId(1);
+        credential.setUsername("johndoe");
+        credential.setRoleBasedAuthority(RoleBasedAuthority.ROLE_USER);
+        credential.setUser(user);
+        user.setCredential(credential);
+    }
+    
+    private static UserCredentialView view(final User user, final Credential credential) {
+        return new UserCredentialView(user.getUserId(), user.getVersion(), user.getUpdatedAt(), user.getFirstName(),
+                user.getLastName(), user.getImageUrl(), user.getEmail(), user.getPhone(), credential.getCredentialId(),
+                credential.getVersion(), credential.getUpdatedAt(), credential.getUsername(), credential.getPassword(),
+                credential.getRoleBasedAuthority(), credential.getIsEnabled(), credential.getIsAccountNonExpired(),
+                credential.getIsAccountNonLocked(), credential.getIsCredentialsNonExpired());
+    }
+    
+    @Test
+    void findById_shouldHitDatabaseOnceAndRecordStats() {
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(AppConstant.CacheNames.USERS_BY_ID);
+        CacheStats before = cache.getNativeCache().stats();
+        
+        userService.findById(1);
+        UserDto cached = userService.findById(1);
+        
+        assertEquals(1, cached.getUserId());
+        verify(userRepository, times(1)).findById(1);
+        CacheStats stats = cache.getNativeCache().stats().minus(before);
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+    
+    @Test
+    void userUpdate_shouldInvalidateByIdAndByUsername() {
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        // built on each call, so the view reflects the update
+        when(userRepository.findViewByUsername("johndoe")).thenAnswer(invocation -> Optional.of(view(user, credential)));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        userService.findById(1);
+        userService.findByUsername("johndoe");
+        
+        userService.update(1, UserDto.builder().firstName("Jane").lastName("Doe").build());
+        
+        assertEquals("Jane", userService.findById(1).getFirstName());
+        assertEquals("Jane", userService.findByUsername("johndoe").getFirstName());
+        verify(userRepository, times(2)).findViewByUsername("johndoe");
+    }
+    
+    @Test
+    void credentialRename_shouldInvalidateOldAndNewUsername() {
+        when(credentialRepository.loadByUsername("johndoe")).thenReturn(Optional.of(credential));
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.save(any(Credential.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CredentialDto before = credentialService.findByUsername("johndoe");
+        assertSame(before, credentialService.findByUsername("johndoe"));
+        
+        credentialService.update(1, CredentialDto.builder().username("jdoe").password("secret").build());
+        
+        assertNull(cacheManager.getCache(AppConstant.CacheNames.CREDENTIALS_BY_USERNAME).get("johndoe"));
+        assertNull(cacheManager.getCache(AppConstant.CacheNames.USERS_BY_ID).get(1));
+        verify(credentialRepository, times(1)).loadByUsername("johndoe");
+    }
+    
+@Test
+    void findStateById_shouldAnswerFromCachedProfile() {
+        user.setVersion(3L);
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        userService.findById(1);
+        
+        assertEquals("3.0", userService.findStateById(1).orElseThrow().getEntityTag());
+        verify(userRepository, never()).findStateByUserId(anyInt());
+    }
+    
+    @Test
+    void findStateById_shouldFallBackToStateQueryWhenNotCached() {
+        when(userRepository.findStateByUserId(1)).thenReturn(Optional.empty());
+        
+        assertTrue(userService.findStateById(1).isEmpty());
+        verify(userRepository, times(1)).findStateByUserId(1);
+        verify(userRepository, never()).findById(anyInt());
+    }
+    
+}
@@ -0,0 +1,50 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.config.sharding.ShardingConfig;
+
+@DataJpaTest
+@Import({UsernameBloomFilterLoader.class, UsernameBloomFilter.class, LoopbackCacheInvalidationTransport.class,
+        ShardingConfig.class})
+public class UsernameBloomFilterLoaderTest {
+
+    @Autowired
+    private UsernameBloomFilterLoader usernameBloomFilterLoader;
+    
+    @Autowired
+    private UsernameBloomFilter usernameBloomFilter;
+    
+    @Autowired
+    private LoopbackCacheInvalidationTransport transport;
+    
+    @Test
+    void load_shouldStreamEveryStoredUsername() {
+        usernameBloomFilterLoader.load();
+        
+        assertTrue(usernameBloomFilter.mightContain("selimhorri"));
+        assertTrue(usernameBloomFilter.mightContain("admin"));
+        assertFalse(usernameBloomFilter.mightContain("nobody-registered-this-name"));
+    }
+    
+    @Test
+    void subscribe_shouldLearnUsernamesWrittenOnOtherReplicas() {
+        usernameBloomFilterLoader.load();
+        
+        transport.publish(CacheInvalidationMessage.builder()
+                .origin("other-replica")
+                .usernames(List.of("registered-elsewhere"))
+                .build());
+        
+        assertTrue(usernameBloomFilter.mightContain("registered-elsewhere"));
+    }
+    
+}
@@ -0,0 +1,52 @@
+package com.selimhorri.app.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class UsernameBloomFilterTest {
+
+    private static final int USERNAMES = 10_000;
+    
+    @Test
+    void mightContain_shouldBeTrueForEveryUsernameBeforeLoadCompletes() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(USERNAMES, 0.01);
+        
+        assertTrue(filter.mightContain("anything"));
+    }
+    
+    @Test
+    void mightContain_shouldNeverMissAStoredUsername() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(USERNAMES, 0.01);
+        IntStream.range(0, USERNAMES).parallel().forEach(i -> filter.put("user" + i));
+        filter.markReady();
+        
+        assertTrue(IntStream.range(0, USERNAMES).allMatch(i -> filter.mightContain("user" + i)));
+        assertTrue(filter.mightContain("USER42"), "lookups are case-insensitive");
+    }
+    
+    @Test
+    void mightContain_shouldLeaveANullUsernameToTheDatabase() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(USERNAMES, 0.01);
+        filter.put(null);
+        filter.markReady();
+        
+        assertTrue(filter.mightContain(null));
+    }
+    
+    @Test
+    void mightContain_shouldKeepFalsePositivesNearTheConfiguredRate() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(USERNAMES, 0.01);
+        IntStream.range(0, USERNAMES).forEach(i -> filter.put("user" + i));
+        filter.markReady();
+        
+        long falsePositives = IntStream.range(0, USERNAMES)
+                .filter(i -> filter.mightContain("absent" + i))
+                .count();
+        
+        assertTrue(falsePositives < USERNAMES * 0.03, () -> falsePositives + " false positives");
+    }
+    
+}
@@ -0,0 +1,95 @@
+package com.selimhorri.app.config.enconder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.selimhorri.app.exception.wrapper.PasswordHashingUnavailableException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BoundedPasswordEncoder encoder;
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (encoder != null)
+            encoder.shutdown();
+    }
+    
+    /**
+     * Delegate that blocks until released, standing in for a slow BCrypt round.
+     */
+    private PasswordEncoder blockingDelegate() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(final CharSequence rawPassword) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hashed:" + rawPassword;
+            }
+            
+            @Override
+            public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+                return encodedPassword.equals(encode(rawPassword));
+            }
+        };
+    }
+    
+    @Test
+    void encode_shouldRunOnPoolAndRecordLatency() {
+        encoder = new BoundedPasswordEncoder(blockingDelegate(), 1, 1, Duration.ofSeconds(5), meterRegistry);
+        release.countDown();
+        
+        assertEquals("hashed:secret", encoder.encode("secret"));
+        assertEquals(1, meterRegistry.get("password.hashing.latency").timer().count());
+        assertNotNull(meterRegistry.find("executor.queued").tag("name", "password.hashing").gauge());
+    }
+    
+    @Test
+    void encode_shouldRejectWhenPoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(blockingDelegate(), 1, 1, Duration.ofSeconds(5), meterRegistry);
+        // one running on the single thread, one waiting in the single queue slot
+        callers.submit(() -> encoder.encode("first"));
+        callers.submit(() -> encoder.encode("second"));
+        waitUntilQueued(1);
+        
+        assertThrows(PasswordHashingUnavailableException.class, () -> encoder.encode("third"));
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+    }
+    
+    @Test
+    void encode_shouldGiveUpAfterTimeout() {
+        encoder = new BoundedPasswordEncoder(blockingDelegate(), 1, 1, Duration.ofMillis(50), meterRegistry);
+        
+        assertThrows(PasswordHashingUnavailableException.class, () -> encoder.encode("slow"));
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+    }
+    
+    private void waitUntilQueued(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("executor.queued").tag("name", "password.hashing").gauge().value() < expected) {
+            assertTrue(System.nanoTime() < deadline, "task never queued");
+            Thread.sleep(5);
+        }
+    }
+    
+}
@@ -0,0 +1,103 @@
+package com.selimhorri.app.config.reactive;
+
+import java.time.Duration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.reactive.ReactiveReadServer;
+
+/**
+ * The reactive read path end to end: Netty, R2DBC and the seed rows of the Flyway migrations in an in-memory H2.
+ */
+public class ReactiveReadConfigTest {
+
+    private static final String DATABASE = "reactive_read_test";
+
+    private ReactiveReadConfig reactiveReadConfig;
+    private ReactiveReadServer reactiveReadServer;
+    private WebTestClient webTestClient;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource("jdbc:h2:mem:" + DATABASE + ";DB_CLOSE_DELAY=-1", "sa", "")
+                .load()
+                .migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        reactiveReadConfig = new ReactiveReadConfig("r2dbc:h2:mem:///" + DATABASE, "sa", "", 1, 4, Duration.ofSeconds(3), 100);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        reactiveReadServer = reactiveReadConfig.reactiveReadServer(
+                reactiveReadConfig.reactiveReadHandler(reactiveReadConfig.reactiveReadRepository()), objectMapper, 0, "/user-service");
+        reactiveReadServer.start();
+        webTestClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + reactiveReadServer.getPort() + "/user-service")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveReadServer.stop();
+        reactiveReadConfig.shutdown();
+    }
+
+    @Test
+    void findUserById_shouldReadTheUserAndItsCredential() {
+        webTestClient.get().uri("/api/users/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0.0\"")
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(1)
+                .jsonPath("$.firstName").isEqualTo("selim")
+                .jsonPath("$.credential.username").isEqualTo("selimhorri")
+                .jsonPath("$.credential.roleBasedAuthority").isNotEmpty()
+                .jsonPath("$.credential.user").doesNotExist();
+    }
+
+    @Test
+    void findUserByUsername_shouldReadTheUser() {
+        webTestClient.get().uri("/api/users/username/selimhorri")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(1);
+    }
+
+    @Test
+    void findCredentialById_shouldReadTheCredentialAndItsUser() {
+        webTestClient.get().uri("/api/credentials/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.credentialId").isEqualTo(1)
+                .jsonPath("$.user.firstName").isEqualTo("selim")
+                .jsonPath("$.user.credential").doesNotExist();
+    }
+
+    @Test
+    void findCredentialByUsername_shouldReturnNotFoundForUnknownUsernames() {
+        webTestClient.get().uri("/api/credentials/username/nobody")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void findUserById_shouldAnswerNotModifiedFromTheDatabaseRow() {
+        webTestClient.get().uri("/api/users/2")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0.0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+}
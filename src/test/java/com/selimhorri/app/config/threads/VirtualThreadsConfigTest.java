@@ -0,0 +1,63 @@
+package com.selimhorri.app.config.threads;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class VirtualThreadsConfigTest {
+
+    private static boolean isVirtual(final Thread thread) throws Exception {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void virtualThreadFactory_shouldRefuseRuntimesWithoutVirtualThreads() {
+        assumeTrue(Runtime.version().feature() < 21);
+
+        assertThrows(IllegalStateException.class, () -> VirtualThreadsConfig.virtualThreadFactory("test-"));
+    }
+
+    @Test
+    void virtualThreadFactory_shouldCreateNamedVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+
+        Thread thread = VirtualThreadsConfig.virtualThreadFactory("test-").newThread(() -> { });
+
+        assertTrue(isVirtual(thread));
+        assertEquals("test-0", thread.getName());
+    }
+
+    @Test
+    void protocolHandlerCustomizer_shouldRunRequestsOnVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+        ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+        ArgumentCaptor<Executor> executor = ArgumentCaptor.forClass(Executor.class);
+
+        new VirtualThreadsConfig().virtualThreadsProtocolHandlerCustomizer().customize(protocolHandler);
+
+        verify(protocolHandler).setExecutor(executor.capture());
+        CompletableFuture<Thread> worker = new CompletableFuture<>();
+        executor.getValue().execute(() -> worker.complete(Thread.currentThread()));
+        assertTrue(isVirtual(worker.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void applicationTaskExecutor_shouldRunTasksOnVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+
+        Thread worker = new VirtualThreadsConfig().applicationTaskExecutor()
+                .submit(Thread::currentThread)
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(isVirtual(worker));
+    }
+
+}
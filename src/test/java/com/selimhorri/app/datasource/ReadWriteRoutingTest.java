@@ -0,0 +1,128 @@
+package com.selimhorri.app.datasource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+import com.selimhorri.app.config.datasource.ReadWriteRoutingConfig;
+import com.selimhorri.app.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Two H2 databases with the same schema standing in for the MySQL primary and its replica; the replica's copy of
+ * user 1 is renamed so every read tells where it came from.
+ */
+@DataJpaTest(properties = {
+        "app.datasource.routing.enabled=true",
+        "spring.datasource.url=" + ReadWriteRoutingTest.PRIMARY_URL,
+        "app.datasource.routing.replicas[0].url=" + ReadWriteRoutingTest.REPLICA_URL })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReadWriteRoutingConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReadWriteRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterBinder readWriteRoutingMetrics;
+
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeAll
+    static void setUpReplica() {
+        DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(replica).load().migrate();
+        new JdbcTemplate(replica).update("UPDATE users SET first_name = 'replica' WHERE user_id = 1");
+    }
+
+    @BeforeEach
+    void setUp() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    private String firstName(final TransactionTemplate transactionTemplate) {
+        return transactionTemplate.execute(status -> userRepository.findById(1).orElseThrow().getFirstName());
+    }
+
+    @Test
+    void readOnlyTransaction_shouldReadFromTheReplica() {
+        assertEquals("replica", firstName(readOnly));
+    }
+
+    @Test
+    void readWriteTransaction_shouldReadFromThePrimary() {
+        assertEquals("selim", firstName(readWrite));
+    }
+
+    @Test
+    void readOutsideATransaction_shouldReadFromThePrimary() {
+        assertEquals("selim", jdbcTemplate.queryForObject("SELECT first_name FROM users WHERE user_id = 1", String.class));
+    }
+
+    @Test
+    void readOnlyTransaction_shouldReadFromThePrimaryRightAfterAWrite() {
+        ReplicaLagGuard guard = new ReplicaLagGuard(true, Duration.ofSeconds(2));
+        guard.recordWrite(CacheInvalidationMessage.builder()
+                .entityType(EntityType.USER)
+                .entityId(1)
+                .userId(1)
+                .usernames(List.of("selimhorri"))
+                .build());
+
+        assertEquals("selim", readOnly.execute(status -> {
+            assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+            return userRepository.findById(1).orElseThrow().getFirstName();
+        }));
+        assertFalse(ReplicaLagGuard.isPinned());
+        assertEquals("replica", firstName(readOnly));
+    }
+
+    @Test
+    void metrics_shouldBeExportedPerPool() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        readWriteRoutingMetrics.bindTo(registry);
+        firstName(readOnly);
+        firstName(readWrite);
+
+        List.of("primary", "replica-1").forEach(pool -> {
+            assertNotNull(registry.find("hikaricp.connections").tag("pool", pool).gauge(), pool);
+            assertTrue(registry.get("datasource.routing.connections").tag("target", pool).functionCounter().count() > 0,
+                    pool);
+        });
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.selimhorri.app.datasource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+
+public class ReplicaLagGuardTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private ReplicaLagGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new ReplicaLagGuard(true, Duration.ofSeconds(2), nanos::get);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static CacheInvalidationMessage credentialWritten() {
+        return CacheInvalidationMessage.builder()
+                .entityType(EntityType.CREDENTIAL)
+                .entityId(3)
+                .userId(1)
+                .usernames(List.of("johndoe"))
+                .build();
+    }
+
+    @Test
+    void pinIfRecentlyWritten_shouldPinEveryKeyOfTheWriteWithinTheWindow() {
+        guard.recordWrite(credentialWritten());
+
+        assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+        assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.credential(3)));
+        assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.username("johndoe")));
+        assertTrue(ReplicaLagGuard.isPinned());
+    }
+
+    @Test
+    void pinIfRecentlyWritten_shouldNotPinKeysNotWritten() {
+        guard.recordWrite(credentialWritten());
+
+        assertFalse(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(2)));
+        assertFalse(guard.pinIfRecentlyWritten(ReplicaLagGuard.credential(1)));
+        assertFalse(ReplicaLagGuard.isPinned());
+    }
+
+    @Test
+    void pinIfRecentlyWritten_shouldPinAddressesAndVerificationTokensToo() {
+        guard.recordWrite(CacheInvalidationMessage.builder()
+                .entityType(EntityType.ADDRESS)
+                .entityId(5)
+                .usernames(List.of())
+                .build());
+        guard.recordWrite(CacheInvalidationMessage.builder()
+                .entityType(EntityType.VERIFICATION_TOKEN)
+                .entityId(5)
+                .usernames(List.of())
+                .build());
+
+        assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.address(5)));
+        assertTrue(guard.pinIfRecentlyWritten(ReplicaLagGuard.verificationToken(5)));
+        assertFalse(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(5)));
+    }
+
+    @Test
+    void pinIfRecentlyWritten_shouldReadFromReplicasAgainOnceTheWindowIsOver() {
+        guard.recordWrite(credentialWritten());
+
+        nanos.addAndGet(Duration.ofSeconds(2).plusMillis(1).toNanos());
+
+        assertFalse(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+    }
+
+    @Test
+    void pin_shouldBeDroppedWhenTheTransactionCompletes() {
+        guard.recordWrite(credentialWritten());
+        guard.pinIfRecentlyWritten(ReplicaLagGuard.user(1));
+        guard.pinIfRecentlyWritten(ReplicaLagGuard.username("johndoe"));
+
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertFalse(ReplicaLagGuard.isPinned());
+    }
+
+    @Test
+    void pinIfRecentlyWritten_shouldNotPinOutsideATransaction() {
+        guard.recordWrite(credentialWritten());
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertFalse(guard.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+        assertFalse(ReplicaLagGuard.isPinned());
+    }
+
+    @Test
+    void recordWrite_shouldDoNothingWhenRoutingIsDisabled() {
+        ReplicaLagGuard disabled = new ReplicaLagGuard(false, Duration.ofSeconds(2), nanos::get);
+
+        disabled.recordWrite(credentialWritten());
+
+        assertFalse(disabled.pinIfRecentlyWritten(ReplicaLagGuard.user(1)));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.selimhorri.app.load;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.repository.UserRepository;
+
+/**
+ * Heap allocated and CPU time spent per listing request ({@code UserServiceImpl#findAll}: every user fetched with
+ * its credential and mapped), the same query and mapping run in a read-write and in a read-only transaction: the
+ * read-only one skips the loaded-state snapshot of every entity and the dirty-checking flush at commit.
+ * <p>
+ * Excluded from the regular build; run it with {@code mvn -Pload-test test}. Tune with {@code -Dload.rows},
+ * {@code -Dload.warm-up} and {@code -Dload.iterations}.
+ */
+@Tag("load")
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql=WARN" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReadOnlyTransactionAllocationLoadTest {
+
+    private static final int ROWS = Integer.getInteger("load.rows", 1000);
+    private static final int WARM_UP = Integer.getInteger("load.warm-up", 200);
+    private static final int ITERATIONS = Integer.getInteger("load.iterations", 500);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private static final class Result {
+
+        private final String mode;
+        private final long bytesPerRequest;
+        private final long cpuMicrosPerRequest;
+
+        private Result(final String mode, final long bytesPerRequest, final long cpuMicrosPerRequest) {
+            this.mode = mode;
+            this.bytesPerRequest = bytesPerRequest;
+            this.cpuMicrosPerRequest = cpuMicrosPerRequest;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %10d KiB/request  %8d us CPU/request", mode, bytesPerRequest / 1024,
+                    cpuMicrosPerRequest);
+        }
+
+    }
+
+    private int seed() {
+        int from = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Integer.class) + 1;
+        List<Object[]> users = IntStream.range(from, from + ROWS)
+                .mapToObj(userId -> new Object[] { userId, "first" + userId, "last" + userId })
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate("INSERT INTO users (user_id, first_name, last_name) VALUES (?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("INSERT INTO credentials (user_id, username, password, role, is_enabled) "
+                + "VALUES (?, ?, 'secret', 'ROLE_USER', TRUE)", users.stream()
+                        .map(user -> new Object[] { user[0], "user" + user[0] })
+                        .collect(Collectors.toList()));
+        return from;
+    }
+
+    private Result measure(final String mode, final int expectedRows, final Supplier<List<UserDto>> request) {
+        for (int i = 0; i < WARM_UP; i++)
+            assertEquals(expectedRows, request.get().size());
+
+        long threadId = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(threadId);
+        long cpu = THREADS.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            request.get();
+        return new Result(mode, (THREADS.getThreadAllocatedBytes(threadId) - bytes) / ITERATIONS,
+                (THREADS.getCurrentThreadCpuTime() - cpu) / ITERATIONS / 1000);
+    }
+
+    private Supplier<List<UserDto>> listing(final boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return () -> transactionTemplate.execute(status -> userRepository.findAll()
+                .stream()
+                .filter(user -> user.getCredential() != null)
+                .map(UserMappingHelper::map)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void compareAllocationPerRequest() {
+        int from = seed();
+        try {
+            int rows = userRepository.findAll().size();
+            Result readWrite = measure("read-write", rows, listing(false));
+            Result readOnly = measure("read-only", rows, listing(true));
+
+            System.out.printf("%n%d users with credentials per request, %d requests%n%s%n%s%n%n",
+                    rows, ITERATIONS, readWrite, readOnly);
+            assertTrue(readOnly.bytesPerRequest < readWrite.bytesPerRequest);
+        }
+        finally {
+            jdbcTemplate.update("DELETE FROM credentials WHERE user_id >= ?", from);
+            jdbcTemplate.update("DELETE FROM users WHERE user_id >= ?", from);
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package com.selimhorri.app.load;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.selimhorri.app.UserServiceApplication;
+
+/**
+ * Compares request throughput and tail latency of platform-thread and virtual-thread Tomcat while every
+ * transaction spends {@code load.db-latency} holding its connection, the way it does when MySQL slows down.
+ * The Tomcat worker limit is scaled down with the client count so both runs are bounded by something real:
+ * the worker pool in platform mode, the Hikari pool in virtual mode.
+ * <p>
+ * Excluded from the regular build; run it on a JDK 21 with {@code mvn -Pjava21,load-test test}. Tune with
+ * {@code -Dload.clients}, {@code -Dload.duration}, {@code -Dload.db-latency}, {@code -Dload.platform-threads}
+ * and {@code -Dload.pool-size}.
+ */
+@Tag("load")
+public class VirtualThreadsLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 200);
+    private static final Duration WARM_UP = Duration.ofSeconds(3);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration", 10));
+    private static final long DB_LATENCY_MILLIS = Long.getLong("load.db-latency", 50);
+    private static final int PLATFORM_THREADS = Integer.getInteger("load.platform-threads", 20);
+    private static final int POOL_SIZE = Integer.getInteger("load.pool-size", 40);
+
+    /**
+     * The test classes share the application's packages; keep their nested configurations out of the scan.
+     */
+    private static final TypeExcludeFilter TEST_CLASSES = new TypeExcludeFilter() {
+        @Override
+        public boolean match(final MetadataReader metadataReader, final MetadataReaderFactory metadataReaderFactory) {
+            String className = metadataReader.getClassMetadata().getClassName();
+            return className.endsWith("Test") || className.contains("Test$") || className.endsWith("Tests");
+        }
+    };
+
+    @Configuration
+    static class SlowDatabaseConfig {
+
+        @Bean
+        static BeanPostProcessor slowDatabase() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+                    if (!(bean instanceof DataSource) || bean instanceof DelegatingDataSource)
+                        return bean;
+                    return new DelegatingDataSource((DataSource) bean) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            Connection connection = super.getConnection();
+                            try {
+                                Thread.sleep(DB_LATENCY_MILLIS);
+                            }
+                            catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return connection;
+                        }
+                    };
+                }
+            };
+        }
+
+    }
+
+    private static final class Result {
+
+        private final String mode;
+        private final long requests;
+        private final long errors;
+        private final long[] latenciesMicros;
+
+        private Result(final String mode, final long requests, final long errors, final long[] latenciesMicros) {
+            this.mode = mode;
+            this.requests = requests;
+            this.errors = errors;
+            this.latenciesMicros = latenciesMicros;
+            Arrays.sort(this.latenciesMicros);
+        }
+
+        private double percentileMillis(final double percentile) {
+            if (latenciesMicros.length == 0)
+                return Double.NaN;
+            int index = (int) Math.ceil(percentile / 100 * latenciesMicros.length) - 1;
+            return latenciesMicros[Math.max(0, index)] / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %10.1f req/s  p50 %8.1f ms  p99 %8.1f ms  p99.9 %8.1f ms  errors %d",
+                    mode, requests / (double) DURATION.toSeconds(), percentileMillis(50), percentileMillis(99),
+                    percentileMillis(99.9), errors);
+        }
+
+    }
+
+    private static ConfigurableApplicationContext start(final boolean virtualThreads) {
+        // command-line arguments, so they win over the profile yml
+        return new SpringApplicationBuilder(UserServiceApplication.class, SlowDatabaseConfig.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("testTypeExcludeFilter", TEST_CLASSES))
+                .run("--server.port=0",
+                        "--app.threads.virtual=" + virtualThreads,
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--spring.datasource.hikari.connection-timeout=30000",
+                        // every request must reach the database
+                        "--spring.cache.type=none",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.zipkin.enabled=false",
+                        "--eureka.client.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.springframework=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.org.springframework.data=WARN",
+                        "--logging.level.com.selimhorri=WARN");
+    }
+
+    private static Result run(final String mode, final boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = start(virtualThreads)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient httpClient = HttpClient.newHttpClient();
+            List<HttpRequest> requests = IntStream.rangeClosed(1, 4)
+                    .mapToObj(userId -> HttpRequest.newBuilder(
+                            URI.create(String.format("http://localhost:%d/user-service/api/users/%d", port, userId)))
+                            .timeout(Duration.ofSeconds(30))
+                            .build())
+                    .collect(Collectors.toList());
+
+            drive(httpClient, requests, WARM_UP, null, null);
+            AtomicLong errors = new AtomicLong();
+            long[][] latencies = new long[CLIENTS][];
+            drive(httpClient, requests, DURATION, latencies, errors);
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).toArray();
+            return new Result(mode, all.length, errors.get(), all);
+        }
+    }
+
+    /**
+     * Closed model: each client sends its next request as soon as the previous one is answered.
+     */
+    private static void drive(final HttpClient httpClient, final List<HttpRequest> requests, final Duration duration,
+            final long[][] latencies, final AtomicLong errors) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.nanoTime() + duration.toNanos();
+        for (int client = 0; client < CLIENTS; client++) {
+            int id = client;
+            clients.execute(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                for (int i = id; System.nanoTime() < deadline; i++) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(requests.get(i % requests.size()),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200 && errors != null)
+                            errors.incrementAndGet();
+                    }
+                    catch (Exception e) {
+                        if (errors != null)
+                            errors.incrementAndGet();
+                    }
+                    if (count == samples.length)
+                        samples = Arrays.copyOf(samples, count * 2);
+                    samples[count++] = (System.nanoTime() - start) / 1000;
+                }
+                if (latencies != null)
+                    latencies[id] = Arrays.copyOf(samples, count);
+            });
+        }
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void compareThroughputAndTailLatency() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need a Java 21 runtime");
+
+        Result platform = run("platform", false);
+        Result virtual = run("virtual", true);
+
+        System.out.printf("%n%d clients, %d ms per transaction, %d Tomcat workers, %d pooled connections, %ds%n%s%n%s%n%n",
+                CLIENTS, DB_LATENCY_MILLIS, PLATFORM_THREADS, POOL_SIZE, DURATION.toSeconds(), platform, virtual);
+        assertEquals(0, platform.errors);
+        assertEquals(0, virtual.errors);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.selimhorri.app.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import com.selimhorri.app.domain.OutboxEvent;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.OutboxEvent.EventType;
+import com.selimhorri.app.outbox.publisher.OutboxPublisher;
+import com.selimhorri.app.repository.OutboxEventRepository;
+import com.selimhorri.app.scheduler.LeaderLock;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Mock
+    private OutboxPublisher outboxPublisher;
+    
+    @Mock
+    private LeaderLock leaderLock;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private OutboxRelay outboxRelay;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxRelay = new OutboxRelay(outboxEventRepository, outboxPublisher, leaderLock, ShardRouter.unsharded(), 
+                meterRegistry, 2, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+    
+    private static OutboxEvent event(long id) {
+        return OutboxEvent.builder()
+                .outboxEventId(id)
+                .aggregateType(AggregateType.USER)
+                .aggregateId((int) id)
+                .userId((int) id)
+                .eventType(EventType.UPDATED)
+                .aggregateVersion(1L)
+                .createdAt(Instant.now())
+                .build();
+    }
+    
+    @Test
+    void relay_shouldPublishOldestFirstAndDeleteOnlyAfterPublishing() {
+        when(outboxEventRepository.findOldest(any(Pageable.class)))
+                .thenReturn(List.of(event(1), event(2)), List.of(event(3)));
+        when(leaderLock.tryAcquire(eq(OutboxRelay.LOCK_NAME), any(Duration.class))).thenReturn(true);
+        
+        long relayed = outboxRelay.relay();
+        
+        assertEquals(3, relayed);
+        InOrder inOrder = inOrder(outboxPublisher, outboxEventRepository);
+        inOrder.verify(outboxPublisher).publish(argThat(messages -> messages.size() == 2 
+                && messages.get(0).getEventId() == 1L && messages.get(1).getEventId() == 2L));
+        inOrder.verify(outboxEventRepository).deleteByOutboxEventIdIn(List.of(1L, 2L));
+        inOrder.verify(outboxPublisher).publish(argThat(messages -> messages.size() == 1 
+                && messages.get(0).getEventId() == 3L));
+        inOrder.verify(outboxEventRepository).deleteByOutboxEventIdIn(List.of(3L));
+        // lote incompleto: no se vuelve a consultar
+        verify(outboxEventRepository, times(2)).findOldest(any(Pageable.class));
+        assertEquals(3, meterRegistry.counter("outbox.relay.events").count());
+        assertEquals(2, meterRegistry.timer("outbox.relay.batch").count());
+    }
+    
+    @Test
+    void relay_shouldKeepTheBatchWhenPublishFails() {
+        when(outboxEventRepository.findOldest(any(Pageable.class))).thenReturn(List.of(event(1), event(2)));
+        doThrow(new IllegalStateException("broker down")).when(outboxPublisher).publish(anyList());
+        
+        long relayed = outboxRelay.relay();
+        
+        assertEquals(0, relayed);
+        verify(outboxEventRepository, never()).deleteByOutboxEventIdIn(anyCollection());
+        assertEquals(1, meterRegistry.counter("outbox.relay.failures").count());
+    }
+    
+    @Test
+    void run_shouldBackOffAfterAFailedPublish() {
+        when(leaderLock.tryAcquire(eq(OutboxRelay.LOCK_NAME), any(Duration.class))).thenReturn(true);
+        when(outboxEventRepository.findOldest(any(Pageable.class))).thenReturn(List.of(event(1)));
+        doThrow(new IllegalStateException("broker down")).when(outboxPublisher).publish(anyList());
+        
+        outboxRelay.run();
+        outboxRelay.run();
+        
+        verify(outboxPublisher, times(1)).publish(anyList());
+        verify(leaderLock, times(1)).tryAcquire(eq(OutboxRelay.LOCK_NAME), any(Duration.class));
+        verify(leaderLock).release(OutboxRelay.LOCK_NAME);
+    }
+    
+    @Test
+    void run_shouldSkipWhenAnotherReplicaHoldsTheLock() {
+        when(leaderLock.tryAcquire(eq(OutboxRelay.LOCK_NAME), any(Duration.class))).thenReturn(false);
+        
+        outboxRelay.run();
+        
+        verifyNoInteractions(outboxEventRepository, outboxPublisher);
+        verify(leaderLock, never()).release(anyString());
+    }
+    
+    @Test
+    void backoffDelay_shouldDoubleUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(1), outboxRelay.backoffDelay(1));
+        assertEquals(Duration.ofSeconds(2), outboxRelay.backoffDelay(2));
+        assertEquals(Duration.ofSeconds(16), outboxRelay.backoffDelay(5));
+        assertEquals(Duration.ofSeconds(30), outboxRelay.backoffDelay(6));
+        assertEquals(Duration.ofSeconds(30), outboxRelay.backoffDelay(1_000));
+    }
+    
+}
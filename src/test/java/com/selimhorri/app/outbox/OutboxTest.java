@@ -0,0 +1,218 @@
+package com.selimhorri.app.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.cache.SingleFlight;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.cache.UsernameBloomFilter;
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.config.batching.MicroBatchingConfig;
+import com.selimhorri.app.config.sharding.ShardingConfig;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.OutboxEvent;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.OutboxEvent.EventType;
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.outbox.publisher.InMemoryOutboxPublisher;
+import com.selimhorri.app.repository.OutboxEventRepository;
+import com.selimhorri.app.scheduler.LeaderLock;
+import com.selimhorri.app.service.AddressService;
+import com.selimhorri.app.service.CredentialService;
+import com.selimhorri.app.service.UserService;
+import com.selimhorri.app.service.impl.AddressServiceImpl;
+import com.selimhorri.app.service.impl.CredentialServiceImpl;
+import com.selimhorri.app.service.impl.UserServiceImpl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest(properties = {
+        "app.outbox.enabled=true",
+        "app.outbox.relay.batch-size=2",
+        "app.outbox.relay.initial-backoff=0s",
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ShardingConfig.class, UserServiceImpl.class, CredentialServiceImpl.class, AddressServiceImpl.class,
+        MicroBatchingConfig.class, UserCacheInvalidator.class, UsernameBloomFilter.class,
+        LoopbackCacheInvalidationTransport.class, SingleFlight.class, ReplicaLagGuard.class, LeaderLock.class,
+        OutboxWriter.class, OutboxRelay.class, InMemoryOutboxPublisher.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OutboxTest {
+
+    @TestConfiguration
+    static class Config {
+        
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+        
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+        
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+        
+    }
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CredentialService credentialService;
+    
+    @Autowired
+    private AddressService addressService;
+    
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Autowired
+    private OutboxRelay outboxRelay;
+    
+    @Autowired
+    private InMemoryOutboxPublisher inMemoryOutboxPublisher;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+    }
+    
+    private List<OutboxEvent> events() {
+        return outboxEventRepository.findOldest(PageRequest.of(0, 100));
+    }
+    
+    private List<String> outbox() {
+        return events().stream()
+                .map(event -> event.getEventType() + " " + event.getAggregateType() + " " + event.getAggregateId())
+                .collect(Collectors.toList());
+    }
+    
+    private UserDto newUser() {
+        return userService.save(UserDto.builder()
+                .firstName("outbox")
+                .lastName("user")
+                .build());
+    }
+    
+    @Test
+    void writes_shouldAppendOneEventEachInTheirTransaction() {
+        UserDto user = newUser();
+        CredentialDto credential = credentialService.save(CredentialDto.builder()
+                .username("outbox-" + user.getUserId())
+                .password("secret")
+                .roleBasedAuthority(RoleBasedAuthority.ROLE_USER)
+                .isEnabled(true)
+                .isAccountNonExpired(true)
+                .isAccountNonLocked(true)
+                .isCredentialsNonExpired(true)
+                .userDto(UserDto.builder().userId(user.getUserId()).build())
+                .build());
+        userService.update(user.getUserId(), UserDto.builder().firstName("renamed").lastName("user").build());
+        AddressDto address = addressService.save(AddressDto.builder()
+                .fullAddress("1 Outbox Street")
+                .postalCode("1000")
+                .city("Tunis")
+                .userDto(UserDto.builder().userId(user.getUserId()).build())
+                .build());
+        addressService.deleteById(address.getAddressId());
+        userService.deleteById(user.getUserId());
+        
+        assertEquals(List.of(
+                "CREATED USER " + user.getUserId(),
+                "CREATED CREDENTIAL " + credential.getCredentialId(),
+                "UPDATED USER " + user.getUserId(),
+                "CREATED ADDRESS " + address.getAddressId(),
+                "DELETED ADDRESS " + address.getAddressId(),
+                "DELETED CREDENTIAL " + credential.getCredentialId()), outbox());
+        OutboxEvent updated = events().get(2);
+        assertEquals(user.getUserId(), updated.getUserId());
+        assertEquals(1L, updated.getAggregateVersion());
+        assertEquals(user.getUserId(), events().get(4).getUserId());
+    }
+    
+    @Test
+    void rolledBackWrite_shouldLeaveNoEvent() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.update(3, UserDto.builder().firstName("never").build());
+            status.setRollbackOnly();
+        });
+        
+        assertEquals(List.of(), outbox());
+    }
+    
+    @Test
+    void relay_shouldDeliverInIdOrderAndEmptyTheOutbox() {
+        List<Integer> userIds = List.of(newUser().getUserId(), newUser().getUserId(), newUser().getUserId());
+        List<OutboxMessage> delivered = new ArrayList<>();
+        inMemoryOutboxPublisher.subscribe(delivered::addAll);
+        
+        assertEquals(3, outboxRelay.relay());
+        
+        assertEquals(userIds, delivered.stream()
+                .map(OutboxMessage::getAggregateId)
+                .collect(Collectors.toList()));
+        assertTrue(delivered.stream().allMatch(message -> message.getEventType() == EventType.CREATED
+                && message.getAggregateType() == AggregateType.USER && message.getShard() == 0));
+        assertEquals(List.of(), outbox());
+    }
+    
+    @Test
+    void relay_shouldRedeliverABatchWhosePublishFailed() {
+        Integer userId = newUser().getUserId();
+        List<OutboxMessage> delivered = new ArrayList<>();
+        boolean[] failNext = { true };
+        inMemoryOutboxPublisher.subscribe(messages -> {
+            if (failNext[0]) {
+                failNext[0] = false;
+                throw new IllegalStateException("consumer down");
+            }
+            delivered.addAll(messages);
+        });
+        
+        assertEquals(0, outboxRelay.relay());
+        assertEquals(List.of("CREATED USER " + userId), outbox());
+        
+        assertEquals(1, outboxRelay.relay());
+        assertEquals(userId, delivered.get(0).getAggregateId());
+        assertEquals(List.of(), outbox());
+    }
+    
+}
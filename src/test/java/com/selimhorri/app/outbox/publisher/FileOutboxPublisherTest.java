@@ -0,0 +1,51 @@
+package com.selimhorri.app.outbox.publisher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.OutboxEvent.EventType;
+import com.selimhorri.app.outbox.OutboxMessage;
+
+public class FileOutboxPublisherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    private static OutboxMessage message(long eventId, EventType eventType) {
+        return OutboxMessage.builder()
+                .shard(0)
+                .eventId(eventId)
+                .aggregateType(AggregateType.CREDENTIAL)
+                .aggregateId(7)
+                .userId(3)
+                .eventType(eventType)
+                .version(eventType == EventType.DELETED ? null : eventId)
+                .occurredAt(Instant.parse("2022-01-01T00:00:00Z"))
+                .build();
+    }
+    
+    @Test
+    void publish_shouldAppendOneJsonLinePerMessage(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("outbox.ndjson");
+        FileOutboxPublisher publisher = new FileOutboxPublisher(objectMapper, file);
+        
+        publisher.publish(List.of(message(1, EventType.CREATED), message(2, EventType.UPDATED)));
+        publisher.publish(List.of(message(3, EventType.DELETED)));
+        
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals(message(1, EventType.CREATED), objectMapper.readValue(lines.get(0), OutboxMessage.class));
+        assertEquals(message(2, EventType.UPDATED), objectMapper.readValue(lines.get(1), OutboxMessage.class));
+        assertEquals(message(3, EventType.DELETED), objectMapper.readValue(lines.get(2), OutboxMessage.class));
+    }
+    
+}
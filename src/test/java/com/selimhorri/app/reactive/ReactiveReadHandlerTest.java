@@ -0,0 +1,154 @@
+package com.selimhorri.app.reactive;
+
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+
+import io.r2dbc.spi.R2dbcTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquirePendingLimitException;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveReadHandlerTest {
+
+    private WebTestClient webTestClient;
+
+    @Mock
+    private ReactiveReadRepository reactiveReadRepository;
+
+    @InjectMocks
+    private ReactiveReadHandler reactiveReadHandler;
+
+    private UserDto userDto;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToRouterFunction(reactiveReadHandler.routes("/user-service")).build();
+        userDto = UserDto.builder()
+                .userId(1)
+                .version(3L)
+                .updatedAt(Instant.parse("2024-01-01T10:00:00Z"))
+                .firstName("John")
+                .credentialDto(CredentialDto.builder()
+                        .credentialId(1)
+                        .version(1L)
+                        .username("johndoe")
+                        .build())
+                .build();
+    }
+
+    @Test
+    void findUserById_shouldReturnUserWithValidators() {
+        when(reactiveReadRepository.findUserById(1)).thenReturn(Mono.just(userDto));
+
+        webTestClient.get().uri("/user-service/api/users/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3.1\"")
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(1)
+                .jsonPath("$.firstName").isEqualTo("John")
+                .jsonPath("$.credential.username").isEqualTo("johndoe");
+    }
+
+    @Test
+    void findUserById_shouldAnswerNotModifiedWhenTheTagMatches() {
+        when(reactiveReadRepository.findUserById(1)).thenReturn(Mono.just(userDto));
+
+        webTestClient.get().uri("/user-service/api/users/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3.1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3.1\"")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void findUserById_shouldSendTheBodyWhenTheEmbeddedVersionChanged() {
+        when(reactiveReadRepository.findUserById(1)).thenReturn(Mono.just(userDto));
+
+        webTestClient.get().uri("/user-service/api/users/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3.0\"")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void findUserById_shouldReturnNotFound() {
+        when(reactiveReadRepository.findUserById(99)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/user-service/api/users/99")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(404)
+                .jsonPath("$.message").isEqualTo("User with id: 99 not found or has no credentials");
+    }
+
+    @Test
+    void findUserById_shouldRejectNonNumericIds() {
+        webTestClient.get().uri("/user-service/api/users/abc")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400);
+
+        verifyNoInteractions(reactiveReadRepository);
+    }
+
+    @Test
+    void findUserByUsername_shouldReturnUser() {
+        when(reactiveReadRepository.findUserByUsername("johndoe")).thenReturn(Mono.just(userDto));
+
+        webTestClient.get().uri("/user-service/api/users/username/johndoe")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(1);
+    }
+
+    @Test
+    void findCredentialByUsername_shouldReturnNotFound() {
+        when(reactiveReadRepository.findCredentialByUsername("ghost")).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/user-service/api/credentials/username/ghost")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("#### Credential with username: ghost not found! ####");
+    }
+
+    @Test
+    void findCredentialById_shouldShedLoadWhenNoConnectionIsAcquiredInTime() {
+        when(reactiveReadRepository.findCredentialById(1)).thenReturn(Mono.error(new R2dbcTimeoutException("acquire timed out")));
+
+        webTestClient.get().uri("/user-service/api/credentials/1")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(503);
+    }
+
+    @Test
+    void findCredentialById_shouldShedLoadWhenTooManyLookupsArePending() {
+        when(reactiveReadRepository.findCredentialById(1)).thenReturn(Mono.error(new PoolAcquirePendingLimitException(10)));
+
+        webTestClient.get().uri("/user-service/api/credentials/1")
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+
+}
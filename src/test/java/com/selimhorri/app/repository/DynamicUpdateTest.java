@@ -0,0 +1,73 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.selimhorri.app.domain.User;
+
+/**
+ * Entity updates write only the columns that changed, and nothing at all when no column changed.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.selimhorri.app.repository.DynamicUpdateTest$RecordingStatementInspector")
+public class DynamicUpdateTest {
+
+    public static class RecordingStatementInspector implements StatementInspector {
+        
+        private static final long serialVersionUID = 1L;
+        
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public String inspect(final String sql) {
+            STATEMENTS.add(sql.toLowerCase());
+            return sql;
+        }
+    }
+    
+    @Autowired
+    private TestEntityManager testEntityManager;
+    
+    @BeforeEach
+    void setUp() {
+        testEntityManager.clear();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+    
+    private List<String> updates() {
+        return RecordingStatementInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains("update users set"))
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    void update_shouldOnlyWriteChangedColumns() {
+        User user = testEntityManager.find(User.class, 1);
+        user.setImageUrl("https://cdn/avatar.png");
+        testEntityManager.flush();
+        
+        assertEquals(1, updates().size());
+        assertTrue(updates().get(0).contains("image_url"));
+        assertFalse(updates().get(0).contains("first_name"));
+        assertFalse(updates().get(0).contains("phone"));
+    }
+    
+    @Test
+    void update_shouldNotWriteWhenNothingChanged() {
+        User user = testEntityManager.find(User.class, 1);
+        user.setFirstName(user.getFirstName());
+        testEntityManager.flush();
+        
+        assertTrue(updates().isEmpty());
+    }
+}
@@ -0,0 +1,92 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.dto.EntityState;
+import com.selimhorri.app.helper.UserMappingHelper;
+
+/**
+ * Conditional GETs are answered from a one-statement projection that agrees with the mapped representation.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class EntityStateLookupTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private CredentialRepository credentialRepository;
+    
+    @Autowired
+    private AddressRepository addressRepository;
+    
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        testEntityManager.clear();
+    }
+    
+    @Test
+    void userState_shouldMatchMappedRepresentation() {
+        EntityState state = userRepository.findStateByUserId(1).orElseThrow();
+        EntityState mapped = UserMappingHelper.map(userRepository.findById(1).orElseThrow());
+        
+        assertEquals(mapped.getEntityTag(), state.getEntityTag());
+        assertEquals(mapped.getLastModified(), state.getLastModified());
+        assertEquals(state.getEntityTag(), userRepository.findStateByUsername("selimhorri").orElseThrow().getEntityTag());
+    }
+    
+    @Test
+    void userState_shouldChangeWhenOnlyTheCredentialChanges() {
+        final String before = userRepository.findStateByUserId(1).orElseThrow().getEntityTag();
+        
+        Credential credential = testEntityManager.find(Credential.class, 1);
+        credential.setIsEnabled(!credential.getIsEnabled());
+        testEntityManager.flush();
+        testEntityManager.clear();
+        
+        assertNotEquals(before, userRepository.findStateByUserId(1).orElseThrow().getEntityTag());
+    }
+    
+    @Test
+    void state_shouldBeReadWithOneStatementWithoutLoadingEntities() {
+        statistics.clear();
+        
+        userRepository.findStateByUserId(1);
+        credentialRepository.findStateByCredentialId(1);
+        addressRepository.findStateByAddressId(1);
+        verificationTokenRepository.findStateByVerificationTokenId(1);
+        
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+    
+    @Test
+    void state_shouldBeEmptyForUnknownRows() {
+        assertTrue(userRepository.findStateByUserId(-1).isEmpty());
+        assertTrue(credentialRepository.findStateByUsername("nobody").isEmpty());
+    }
+    
+}
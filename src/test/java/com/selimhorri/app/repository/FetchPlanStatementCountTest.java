@@ -0,0 +1,203 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.domain.VerificationToken;
+import com.selimhorri.app.helper.AddressMappingHelper;
+import com.selimhorri.app.helper.CredentialMappingHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.helper.VerificationTokenMappingHelper;
+
+/**
+ * Every read path must issue the same number of statements whatever the number of rows it returns.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class FetchPlanStatementCountTest {
+
+    private static final int PAGE = KeysetPaginationHelper.resolveLimit(Integer.MAX_VALUE);
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private CredentialRepository credentialRepository;
+    
+    @Autowired
+    private AddressRepository addressRepository;
+    
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    @Test
+    void secondLevelCache_shouldBeOffUnlessEnabled() {
+        assertFalse(entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().isSecondLevelCacheEnabled());
+    }
+    
+    private void seed(final int count) {
+        IntStream.range(0, count).forEach(i -> {
+            User user = User.builder()
+                    .firstName("first" + i)
+                    .lastName("last" + i)
+                    .phone("000" + i)
+                    .build();
+            testEntityManager.persist(user);
+            Credential credential = Credential.builder()
+                    .username("seeded-" + System.nanoTime() + "-" + i)
+                    .password("secret")
+                    .roleBasedAuthority(RoleBasedAuthority.ROLE_USER)
+                    .user(user)
+                    .build();
+            testEntityManager.persist(credential);
+            testEntityManager.persist(VerificationToken.builder()
+                    .token("token-" + System.nanoTime() + "-" + i)
+                    .expireDate(LocalDate.now().plusDays(1))
+                    .credential(credential)
+                    .build());
+            testEntityManager.persist(Address.builder()
+                    .fullAddress("street-" + System.nanoTime() + "-" + i)
+                    .city("city")
+                    .user(user)
+                    .build());
+        });
+        testEntityManager.flush();
+    }
+    
+    private long countStatements(final Runnable readPath) {
+        testEntityManager.clear();
+        statistics.clear();
+        readPath.run();
+        return statistics.getPrepareStatementCount();
+    }
+    
+    private void assertConstantStatementCount(final Runnable readPath) {
+        final long few = countStatements(readPath);
+        seed(10);
+        final long many = countStatements(readPath);
+        assertEquals(few, many, "statement count grew with the number of rows");
+    }
+    
+    @Test
+    void usersPage_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> userRepository
+                .findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE))
+                .forEach(UserMappingHelper::map));
+    }
+    
+    @Test
+    void usersFindAll_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> userRepository.findAll()
+                .forEach(UserMappingHelper::map));
+    }
+    
+    @Test
+    void usersExport_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> {
+            try (var users = userRepository.streamAllWithCredential()) {
+                users.forEach(UserMappingHelper::map);
+            }
+        });
+    }
+    
+    @Test
+    void usersBatchGet_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> userRepository
+                .findAllWithCredentialByIdIn(IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toList()))
+                .forEach(UserMappingHelper::map));
+    }
+    
+    @Test
+    void credentialsPage_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> credentialRepository
+                .findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE))
+                .forEach(CredentialMappingHelper::map));
+    }
+    
+    @Test
+    void credentialsFindAll_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> credentialRepository.findAll()
+                .forEach(CredentialMappingHelper::map));
+    }
+    
+    @Test
+    void addressesPage_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> addressRepository
+                .findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE))
+                .forEach(AddressMappingHelper::map));
+    }
+    
+    @Test
+    void addressesBatchGet_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> addressRepository
+                .findAllByAddressIdIn(IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toList()))
+                .forEach(AddressMappingHelper::map));
+    }
+    
+    @Test
+    void addressesFindAll_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> addressRepository.findAll()
+                .forEach(AddressMappingHelper::map));
+    }
+    
+    @Test
+    void verificationTokensPage_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> verificationTokenRepository
+                .findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE))
+                .forEach(VerificationTokenMappingHelper::map));
+    }
+    
+    @Test
+    void verificationTokensFindAll_shouldIssueConstantStatements() {
+        assertConstantStatementCount(() -> verificationTokenRepository.findAll()
+                .forEach(VerificationTokenMappingHelper::map));
+    }
+    
+    @Test
+    void singleLookups_shouldIssueOneStatement() {
+        seed(1);
+        final List<Long> counts = List.<Runnable>of(
+                () -> userRepository.findById(1).map(UserMappingHelper::map),
+                () -> userRepository.findViewByUsername("selimhorri").map(UserMappingHelper::map),
+                () -> credentialRepository.findViewByCredentialId(1).map(CredentialMappingHelper::map),
+                () -> credentialRepository.findByUsername("selimhorri").map(CredentialMappingHelper::map),
+                () -> addressRepository.findById(1).map(AddressMappingHelper::map),
+                () -> verificationTokenRepository.findViewByVerificationTokenId(1).map(VerificationTokenMappingHelper::map))
+                .stream()
+                .map(this::countStatements)
+                .collect(Collectors.toList());
+        assertEquals(List.of(1L, 1L, 1L, 1L, 1L, 1L), counts);
+    }
+    
+}
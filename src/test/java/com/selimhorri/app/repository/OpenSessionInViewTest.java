@@ -0,0 +1,93 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.helper.UserMappingHelper;
+
+/**
+ * With open-session-in-view the EntityManager outlives the service transaction and keeps its JDBC connection
+ * checked out while the response is rendered; with it off (the default in application.yml) the connection goes
+ * back to the pool as soon as the read transaction completes. {@code hikaricp.connections.usage} measures the
+ * difference in production.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OpenSessionInViewTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.hasResource(entityManagerFactory))
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+    }
+
+    private UserDto readInTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status ->
+                userRepository.findViewByUsername("selimhorri").map(UserMappingHelper::map).orElseThrow());
+    }
+
+    private boolean connectionHeldWhileRendering() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        return holder != null && holder.getEntityManager().unwrap(SessionImplementor.class)
+                .getJdbcCoordinator()
+                .getLogicalConnection()
+                .isPhysicallyConnected();
+    }
+
+    @Test
+    void withoutOpenSessionInView_connectionShouldBeReleasedBeforeRendering() {
+        UserDto userDto = readInTransaction();
+
+        assertEquals("selimhorri", userDto.getCredentialDto().getUsername());
+        assertFalse(connectionHeldWhileRendering());
+    }
+
+    @Test
+    void withOpenSessionInView_connectionShouldBeHeldUntilTheRequestCompletes() {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        WebRequest request = new ServletWebRequest(new MockHttpServletRequest());
+
+        interceptor.preHandle(request);
+        try {
+            UserDto userDto = readInTransaction();
+
+            assertEquals("selimhorri", userDto.getCredentialDto().getUsername());
+            assertTrue(connectionHeldWhileRendering());
+        }
+        finally {
+            interceptor.afterCompletion(request, null);
+        }
+        assertFalse(connectionHeldWhileRendering());
+    }
+
+}
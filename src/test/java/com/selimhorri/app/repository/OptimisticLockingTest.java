@@ -0,0 +1,50 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import com.selimhorri.app.domain.User;
+
+/**
+ * Every write bumps the row version, and a write based on an older version is refused.
+ */
+@DataJpaTest
+public class OptimisticLockingTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void update_shouldIncrementVersion() {
+        User user = userRepository.findById(1).orElseThrow();
+        final long before = user.getVersion();
+
+        user.setImageUrl("https://cdn/avatar.png");
+        userRepository.saveAndFlush(user);
+
+        assertEquals(before + 1, user.getVersion());
+    }
+
+    @Test
+    void update_shouldRejectStaleCopy() {
+        User current = userRepository.findById(2).orElseThrow();
+        testEntityManager.detach(current);
+        User stale = userRepository.findById(2).orElseThrow();
+        testEntityManager.detach(stale);
+
+        current.setFirstName("winner");
+        userRepository.saveAndFlush(current);
+
+        stale.setFirstName("loser");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userRepository.saveAndFlush(stale));
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.VerificationTokenDto;
+import com.selimhorri.app.helper.AddressMappingHelper;
+import com.selimhorri.app.helper.CredentialMappingHelper;
+import com.selimhorri.app.helper.KeysetPaginationHelper;
+import com.selimhorri.app.helper.UserMappingHelper;
+import com.selimhorri.app.helper.VerificationTokenMappingHelper;
+
+/**
+ * The read endpoints are served from constructor projections; each must map to exactly the DTO the entity maps to,
+ * without putting anything in the persistence context.
+ */
+@DataJpaTest
+public class ProjectionReadTest {
+
+    private static final int PAGE = 10;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CredentialRepository credentialRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+
+    @BeforeEach
+    void setUp() {
+        testEntityManager.clear();
+    }
+
+    private void assertNothingManaged() {
+        assertEquals(0, testEntityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount(),
+                "a projection loaded entities");
+    }
+
+    @Test
+    void userViews_shouldMapLikeTheEntity() {
+        UserDto byUsername = userRepository.findViewByUsername("selimhorri").map(UserMappingHelper::map).orElseThrow();
+        List<UserDto> page = userRepository.findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE)).stream()
+                .map(UserMappingHelper::map)
+                .collect(Collectors.toList());
+        assertNothingManaged();
+
+        assertEquals(UserMappingHelper.map(userRepository.findById(1).orElseThrow()), byUsername);
+        assertEquals(userRepository.findAllWithCredentialByIdIn(page.stream().map(UserDto::getUserId).collect(Collectors.toList()))
+                .stream()
+                .map(UserMappingHelper::map)
+                .sorted((a, b) -> a.getUserId().compareTo(b.getUserId()))
+                .collect(Collectors.toList()), page);
+    }
+
+    @Test
+    void credentialViews_shouldMapLikeTheEntity() {
+        CredentialDto byId = credentialRepository.findViewByCredentialId(1).map(CredentialMappingHelper::map).orElseThrow();
+        List<CredentialDto> page = credentialRepository.findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE)).stream()
+                .map(CredentialMappingHelper::map)
+                .collect(Collectors.toList());
+        assertNothingManaged();
+
+        assertEquals(CredentialMappingHelper.map(credentialRepository.findById(1).orElseThrow()), byId);
+        assertFalse(page.isEmpty());
+        page.forEach(credentialDto -> assertEquals(
+                CredentialMappingHelper.map(credentialRepository.findById(credentialDto.getCredentialId()).orElseThrow()),
+                credentialDto));
+        assertTrue(credentialRepository.findViewByCredentialId(-1).isEmpty());
+    }
+
+    @Test
+    void addressPage_shouldMapLikeTheEntity() {
+        List<AddressDto> page = addressRepository.findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE)).stream()
+                .map(AddressMappingHelper::map)
+                .collect(Collectors.toList());
+        assertNothingManaged();
+
+        assertFalse(page.isEmpty());
+        page.forEach(addressDto -> assertEquals(
+                AddressMappingHelper.map(addressRepository.findById(addressDto.getAddressId()).orElseThrow()),
+                addressDto));
+    }
+
+    @Test
+    void verificationTokenViews_shouldMapLikeTheEntity() {
+        VerificationTokenDto byId = verificationTokenRepository.findViewByVerificationTokenId(1)
+                .map(VerificationTokenMappingHelper::map)
+                .orElseThrow();
+        List<VerificationTokenDto> page = verificationTokenRepository.findViewPageAfter(0, KeysetPaginationHelper.firstRows(PAGE))
+                .stream()
+                .map(VerificationTokenMappingHelper::map)
+                .collect(Collectors.toList());
+        assertNothingManaged();
+
+        assertEquals(VerificationTokenMappingHelper.map(verificationTokenRepository.findById(1).orElseThrow()), byId);
+        assertFalse(page.isEmpty());
+        page.forEach(verificationTokenDto -> assertEquals(
+                VerificationTokenMappingHelper.map(verificationTokenRepository
+                        .findById(verificationTokenDto.getVerificationTokenId()).orElseThrow()),
+                verificationTokenDto));
+    }
+
+}
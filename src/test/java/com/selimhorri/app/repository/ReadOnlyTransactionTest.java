@@ -0,0 +1,84 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.domain.User;
+
+/**
+ * What the read-only service methods rely on: entities loaded in a read-only transaction are read-only in the
+ * persistence context (Hibernate keeps no snapshot to dirty-check) and nothing is flushed at commit.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReadOnlyTransactionTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    private String firstName(final int userId) {
+        return jdbcTemplate.queryForObject("SELECT first_name FROM users WHERE user_id = ?", String.class, userId);
+    }
+
+    @Test
+    void readOnlyTransaction_shouldKeepNoSnapshotAndNeverFlush() {
+        readOnly.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            User user = userRepository.findById(1).orElseThrow();
+
+            assertTrue(session.isDefaultReadOnly());
+            assertTrue(session.isReadOnly(user));
+            assertTrue(session.isReadOnly(user.getCredential()));
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+
+            user.setFirstName("changed in a read-only transaction");
+        });
+
+        assertEquals("selim", firstName(1));
+    }
+
+    @Test
+    void readWriteTransaction_shouldDirtyCheckLoadedEntities() {
+        readWrite.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            User user = userRepository.findById(2).orElseThrow();
+
+            assertFalse(session.isReadOnly(user));
+            assertEquals(FlushMode.AUTO, session.getHibernateFlushMode());
+            status.setRollbackOnly();
+        });
+    }
+
+}
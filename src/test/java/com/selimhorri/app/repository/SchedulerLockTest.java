@@ -0,0 +1,51 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import com.selimhorri.app.scheduler.LeaderLock;
+
+@DataJpaTest
+public class SchedulerLockTest {
+
+    private static final String LOCK_NAME = "verification-token-purge";
+    
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+    
+    @Test
+    void tryAcquire_shouldAllowOnlyOneHolderAtATime() {
+        LeaderLock first = new LeaderLock(schedulerLockRepository);
+        LeaderLock second = new LeaderLock(schedulerLockRepository);
+        
+        assertTrue(first.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+        assertFalse(second.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+        assertTrue(first.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+    }
+    
+    @Test
+    void release_shouldLetAnotherReplicaAcquire() {
+        LeaderLock first = new LeaderLock(schedulerLockRepository);
+        LeaderLock second = new LeaderLock(schedulerLockRepository);
+        
+        assertTrue(first.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+        first.release(LOCK_NAME);
+        
+        assertTrue(second.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+    }
+    
+    @Test
+    void tryAcquire_shouldTakeOverAnExpiredLease() {
+        LeaderLock first = new LeaderLock(schedulerLockRepository);
+        LeaderLock second = new LeaderLock(schedulerLockRepository);
+        
+        assertTrue(first.tryAcquire(LOCK_NAME, Duration.ofMinutes(-1)));
+        
+        assertTrue(second.tryAcquire(LOCK_NAME, Duration.ofMinutes(10)));
+    }
+}
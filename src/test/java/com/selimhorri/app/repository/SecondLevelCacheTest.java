@@ -0,0 +1,122 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.function.Function;
+
+import javax.cache.CacheManager;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.selimhorri.app.config.cache.SecondLevelCacheConfig;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.domain.Credential;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * With the second-level cache enabled, repeated reads of the same rows are answered from the regions; only the
+ * inverse {@code User.credential} side, which has no foreign key to read from the cache, still costs a keyed statement.
+ * Entries put by a session are not readable by that same session, so each read runs in a session of its own.
+ */
+@DataJpaTest(properties = "app.second-level-cache.enabled=true")
+@Import(SecondLevelCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CredentialRepository credentialRepository;
+
+    @Autowired
+    private MeterBinder secondLevelCacheMetrics;
+
+    @Autowired
+    private CacheManager secondLevelCacheManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+    }
+
+    private <T> T inNewSession(final Function<EntityManager, T> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return work.apply(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Test
+    void find_shouldBeAnsweredFromRegionsOnceWarm() {
+        inNewSession(entityManager -> entityManager.find(Credential.class, 1));
+        final long statements = statistics.getPrepareStatementCount();
+
+        String firstName = inNewSession(entityManager -> entityManager.find(Credential.class, 1).getUser().getFirstName());
+
+        assertEquals("selim", firstName);
+        assertEquals(statements + 1, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getDomainDataRegionStatistics(AppConstant.CacheRegions.CREDENTIALS).getHitCount() > 0);
+        assertTrue(statistics.getDomainDataRegionStatistics(AppConstant.CacheRegions.USERS).getHitCount() > 0);
+    }
+
+    @Test
+    void loadByUsername_shouldResolveNaturalIdFromCache() {
+        credentialRepository.loadByUsername("selimhorri").orElseThrow();
+        final long statements = statistics.getPrepareStatementCount();
+
+        Credential credential = credentialRepository.loadByUsername("selimhorri").orElseThrow();
+
+        assertEquals(1, credential.getCredentialId());
+        assertEquals(1, credential.getUser().getUserId());
+        assertEquals(statements + 1, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getNaturalIdCacheHitCount() > 0);
+    }
+
+    @Test
+    void loadByUsername_shouldBeEmptyForUnknownUsername() {
+        assertTrue(credentialRepository.loadByUsername("nobody").isEmpty());
+    }
+
+    @Test
+    void metrics_shouldExportRegionHitRatio() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        secondLevelCacheMetrics.bindTo(meterRegistry);
+
+        inNewSession(entityManager -> entityManager.find(Credential.class, 1));
+        inNewSession(entityManager -> entityManager.find(Credential.class, 1));
+
+        double ratio = meterRegistry.get("hibernate.second.level.cache.hit.ratio")
+                .tag("region", AppConstant.CacheRegions.CREDENTIALS)
+                .gauge()
+                .value();
+        assertEquals(0.5, ratio, 0.0001);
+    }
+
+    @Test
+    void regions_shouldStoreEntriesByReference() {
+        secondLevelCacheManager.getCacheNames().forEach(region -> assertFalse(secondLevelCacheManager.getCache(region)
+                .getConfiguration(CompleteConfiguration.class)
+                .isStoreByValue(), region));
+    }
+
+}
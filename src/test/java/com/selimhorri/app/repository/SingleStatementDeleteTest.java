@@ -0,0 +1,94 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.VerificationToken;
+
+/**
+ * Deletes are single statements; dependent rows go through the ON DELETE CASCADE foreign keys.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class SingleStatementDeleteTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private CredentialRepository credentialRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private AddressRepository addressRepository;
+    
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        testEntityManager.persist(VerificationToken.builder()
+                .token("token-to-cascade")
+                .expireDate(LocalDate.now().plusDays(1))
+                .credential(testEntityManager.find(Credential.class, 1))
+                .build());
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics.clear();
+    }
+    
+    @Test
+    void deleteByUserIdIn_shouldRemoveCredentialsAndTokensOnly() {
+        final int deleted = credentialRepository.deleteByUserIdIn(List.of(1, 2, 999));
+        
+        assertEquals(2, deleted);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(credentialRepository.findKeysByUserIdIn(List.of(1, 2)).isEmpty());
+        assertTrue(verificationTokenRepository.findCredentialIdByValidToken("token-to-cascade", LocalDate.now()).isEmpty());
+        assertTrue(userRepository.existsById(1));
+    }
+    
+    @Test
+    void findKeysByUserIdIn_shouldReadCacheKeysWithoutEntities() {
+        final var keys = credentialRepository.findKeysByUserIdIn(List.of(1));
+        
+        assertEquals(1, keys.size());
+        assertEquals(1, keys.get(0).getUserId());
+        assertEquals("selimhorri", keys.get(0).getUsername());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+    
+    @Test
+    void deleteByCredentialId_shouldReturnAffectedRows() {
+        assertEquals(1, credentialRepository.deleteByCredentialId(3));
+        assertEquals(0, credentialRepository.deleteByCredentialId(3));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+    
+    @Test
+    void deleteByAddressIdAndToken_shouldReturnAffectedRows() {
+        assertEquals(1, addressRepository.deleteByAddressId(1));
+        assertEquals(0, addressRepository.deleteByAddressId(1));
+        assertEquals(0, verificationTokenRepository.deleteByIdCustom(Integer.MAX_VALUE));
+    }
+}
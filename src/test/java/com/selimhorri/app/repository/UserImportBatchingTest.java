@@ -0,0 +1,79 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import com.selimhorri.app.config.sharding.ShardingConfig;
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.service.UserImportService;
+import com.selimhorri.app.service.impl.UserImportServiceImpl;
+
+/**
+ * Bulk import must go through JDBC batches: a handful of insert statements, not one per row.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({UserImportServiceImpl.class, ShardingConfig.class})
+public class UserImportBatchingTest {
+
+    private static final int USERS = 120;
+    
+    @Autowired
+    private UserImportService userImportService;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private AddressRepository addressRepository;
+    
+    @Test
+    void importAll_shouldBatchInserts() {
+        final List<UserDto> userDtos = IntStream.range(0, USERS)
+                .mapToObj(i -> UserDto.builder()
+                        .firstName("first" + i)
+                        .lastName("last" + i)
+                        .email("bulk" + i + "@example.com")
+                        .phone("+2160000" + i)
+                        .addressDtos(Set.of(AddressDto.builder()
+                                .fullAddress(i + " bulk street")
+                                .postalCode("1000")
+                                .city("Tunis")
+                                .build()))
+                        .build())
+                .collect(Collectors.toList());
+        final long usersBefore = userRepository.count();
+        final long addressesBefore = addressRepository.count();
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        final List<Integer> ids = userImportService.importAll(userDtos).getCollection().stream()
+                .map(UserDto::getUserId)
+                .collect(Collectors.toList());
+        
+        assertEquals(2L * USERS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() < 20,
+                () -> "expected batched inserts but got " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(USERS, ids.stream().distinct().count());
+        assertTrue(ids.stream().allMatch(id -> id > 4), "generated ids must not collide with seeded users");
+        assertEquals(usersBefore + USERS, userRepository.count());
+        assertEquals(addressesBefore + USERS, addressRepository.count());
+    }
+    
+}
@@ -0,0 +1,77 @@
+package com.selimhorri.app.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.VerificationToken;
+
+@DataJpaTest
+public class VerificationTokenLookupTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+    
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    private Credential credential;
+    
+    @BeforeEach
+    void setUp() {
+        credential = testEntityManager.find(Credential.class, 1);
+        testEntityManager.persist(VerificationToken.builder()
+                .token("valid-token")
+                .expireDate(LocalDate.now().plusDays(1))
+                .credential(credential)
+                .build());
+        testEntityManager.persist(VerificationToken.builder()
+                .token("expired-token")
+                .expireDate(LocalDate.now().minusDays(1))
+                .credential(credential)
+                .build());
+        testEntityManager.flush();
+    }
+    
+    @Test
+    void findCredentialIdByValidToken_shouldReturnCredentialIdForValidToken() {
+        assertEquals(Optional.of(1), verificationTokenRepository.findCredentialIdByValidToken("valid-token", LocalDate.now()));
+    }
+    
+    @Test
+    void findCredentialIdByValidToken_shouldReturnEmptyForExpiredOrUnknownToken() {
+        assertTrue(verificationTokenRepository.findCredentialIdByValidToken("expired-token", LocalDate.now()).isEmpty());
+        assertTrue(verificationTokenRepository.findCredentialIdByValidToken("unknown-token", LocalDate.now()).isEmpty());
+    }
+    
+    @Test
+    void save_shouldRejectDuplicateToken() {
+        assertThrows(DataIntegrityViolationException.class, () -> verificationTokenRepository.saveAndFlush(VerificationToken.builder()
+                .token("valid-token")
+                .expireDate(LocalDate.now().plusDays(1))
+                .credential(credential)
+                .build()));
+    }
+    
+    @Test
+    void deleteExpiredInIdRange_shouldOnlyDeleteExpiredTokensInsideTheRange() {
+        final LocalDate today = LocalDate.now();
+        final int min = verificationTokenRepository.findMinExpiredId(today).orElseThrow();
+        final int max = verificationTokenRepository.findMaxExpiredId(today).orElseThrow();
+        
+        final int deleted = verificationTokenRepository.deleteExpiredInIdRange(min, max + 1, today);
+        
+        assertTrue(deleted >= 1);
+        assertTrue(verificationTokenRepository.findMinExpiredId(today).isEmpty());
+        assertTrue(verificationTokenRepository.findCredentialIdByValidToken("valid-token", today).isPresent());
+    }
+}
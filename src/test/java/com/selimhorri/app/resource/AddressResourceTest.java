@@ -18,6 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.AddressDto;
 import com.selimhorri.app.dto.UserDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
@@ -58,7 +59,7 @@ public class AddressResourceTest {
     
     @Test
     void findAll_shouldReturnAllAddresses() throws Exception {
-        when(addressService.findAll()).thenReturn(List.of(addressDto));
+        when(addressService.findAll(isNull(), isNull())).thenReturn(new DtoCollectionResponse<>(List.of(addressDto)));
         
         mockMvc.perform(get("/api/address")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -66,7 +67,7 @@ public class AddressResourceTest {
                 .andExpect(jsonPath("$.collection[0].addressId").value(1))
                 .andExpect(jsonPath("$.collection[0].fullAddress").value("123 Main St, Apt 4B"));
         
-        verify(addressService, times(1)).findAll();
+        verify(addressService, times(1)).findAll(null, null);
     }
     
     @Test
@@ -111,7 +112,7 @@ public class AddressResourceTest {
     
     @Test
     void updateWithId_shouldUpdateAddress() throws Exception {
-        when(addressService.update(anyInt(), any(AddressDto.class))).thenReturn(addressDto);
+        when(addressService.update(anyInt(), any(AddressDto.class), isNull())).thenReturn(addressDto);
         
         mockMvc.perform(put("/api/address/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -119,7 +120,7 @@ public class AddressResourceTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.addressId").value(1));
         
-        verify(addressService, times(1)).update(eq(1), any(AddressDto.class));
+        verify(addressService, times(1)).update(eq(1), any(AddressDto.class), isNull());
     }
     
     @Test
@@ -134,4 +135,15 @@ public class AddressResourceTest {
         verify(addressService, times(1)).deleteById(1);
     }
     
-}
\ No newline at end of file
+    @Test
+    void patch_shouldAcceptMergePatch() throws Exception {
+        when(addressService.patch(eq(1), any(), isNull())).thenReturn(addressDto);
+        
+        mockMvc.perform(patch("/api/address/1")
+                .contentType(AppConstant.MERGE_PATCH_JSON_VALUE)
+                .content("{}"))
+                .andExpect(status().isOk());
+        
+        verify(addressService, times(1)).patch(eq(1), any(), isNull());
+    }
+}
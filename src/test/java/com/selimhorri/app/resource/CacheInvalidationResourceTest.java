@@ -0,0 +1,91 @@
+package com.selimhorri.app.resource;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.cache.CacheInvalidationMessage;
+import com.selimhorri.app.cache.CacheInvalidationMessage.EntityType;
+import com.selimhorri.app.cache.transport.HttpCacheInvalidationTransport;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheInvalidationResourceTest {
+
+    private MockMvc mockMvc;
+    private ObjectMapper objectMapper;
+    
+    @Mock
+    private HttpCacheInvalidationTransport httpCacheInvalidationTransport;
+    
+    @InjectMocks
+    private CacheInvalidationResource cacheInvalidationResource;
+    
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(cacheInvalidationResource).build();
+        objectMapper = new ObjectMapper();
+    }
+    
+    private static CacheInvalidationMessage message() {
+        return CacheInvalidationMessage.builder()
+                .origin("replica-a")
+                .version(42L)
+                .entityType(EntityType.CREDENTIAL)
+                .entityId(3)
+                .userId(3)
+                .usernames(List.of("johndoe"))
+                .build();
+    }
+    
+    @Test
+    void receive_shouldHandMessageToTransport() throws Exception {
+        CacheInvalidationMessage message = message();
+        when(httpCacheInvalidationTransport.isTrusted("s3cret")).thenReturn(true);
+        
+        mockMvc.perform(post(HttpCacheInvalidationTransport.PATH)
+                .header(HttpCacheInvalidationTransport.SECRET_HEADER, "s3cret")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(message)))
+                .andExpect(status().isAccepted());
+        
+        verify(httpCacheInvalidationTransport, times(1)).receive(eq(message));
+    }
+    
+    @Test
+    void receive_shouldRefuseMessageWithoutTheSharedSecret() throws Exception {
+        mockMvc.perform(post(HttpCacheInvalidationTransport.PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(message())))
+                .andExpect(status().isForbidden());
+        
+        verify(httpCacheInvalidationTransport, never()).receive(any());
+    }
+    
+    @Test
+    void receive_shouldRefuseMessageWithAWrongSecret() throws Exception {
+        when(httpCacheInvalidationTransport.isTrusted("guess")).thenReturn(false);
+        
+        mockMvc.perform(post(HttpCacheInvalidationTransport.PATH)
+                .header(HttpCacheInvalidationTransport.SECRET_HEADER, "guess")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(message())))
+                .andExpect(status().isForbidden());
+        
+        verify(httpCacheInvalidationTransport, never()).receive(any());
+    }
+    
+}
@@ -6,6 +6,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,17 +14,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.handler.GlobalExceptionHandler;
 import com.selimhorri.app.exception.wrapper.CredentialNotFoundException;
+import com.selimhorri.app.exception.wrapper.PasswordHashingUnavailableException;
+import com.selimhorri.app.exception.wrapper.PreconditionFailedException;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
 import com.selimhorri.app.exception.wrapper.UsernameAlreadyExistsException;
 import com.selimhorri.app.service.CredentialService;
@@ -68,7 +75,7 @@ public class CredentialResourceTest {
     
     @Test
     void findAll_shouldReturnAllCredentials() throws Exception {
-        when(credentialService.findAll()).thenReturn(List.of(credentialDto));
+        when(credentialService.findAll(isNull(), isNull())).thenReturn(new DtoCollectionResponse<>(List.of(credentialDto)));
         
         mockMvc.perform(get("/api/credentials")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -76,7 +83,7 @@ public class CredentialResourceTest {
                 .andExpect(jsonPath("$.collection[0].credentialId").value(1))
                 .andExpect(jsonPath("$.collection[0].username").value("johndoe"));
         
-        verify(credentialService, times(1)).findAll();
+        verify(credentialService, times(1)).findAll(null, null);
     }
     
     @Test
@@ -103,6 +110,30 @@ public class CredentialResourceTest {
         verify(credentialService, times(1)).findByUsername("unknown");
     }
     
+    @Test
+    void isUsernameAvailable_shouldReturnServiceAnswer() throws Exception {
+        when(credentialService.isUsernameAvailable("newuser")).thenReturn(true);
+        
+        mockMvc.perform(get("/api/credentials/username/newuser/available")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+        
+        verify(credentialService, times(1)).isUsernameAvailable("newuser");
+    }
+    
+    @Test
+    void save_shouldReturn503WhenPasswordHashingIsSaturated() throws Exception {
+        when(credentialService.save(any(CredentialDto.class)))
+            .thenThrow(new PasswordHashingUnavailableException("Password hashing is saturated, retry later"));
+        
+        mockMvc.perform(post("/api/credentials")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentialDto)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+    
     @Test
     void findById_shouldReturnCredentialWhenFound() throws Exception {
         when(credentialService.findById(anyInt())).thenReturn(credentialDto);
@@ -168,7 +199,7 @@ public class CredentialResourceTest {
     
     @Test
     void updateWithId_shouldUpdateCredential() throws Exception {
-        when(credentialService.update(anyInt(), any(CredentialDto.class))).thenReturn(credentialDto);
+        when(credentialService.update(anyInt(), any(CredentialDto.class), isNull())).thenReturn(credentialDto);
         
         mockMvc.perform(put("/api/credentials/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -176,9 +207,90 @@ public class CredentialResourceTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.credentialId").value(1));
         
-        verify(credentialService, times(1)).update(eq(1), any(CredentialDto.class));
+        verify(credentialService, times(1)).update(eq(1), any(CredentialDto.class), isNull());
     }
-    
+
+    @Test
+    void findById_shouldExposeVersionAsEntityTag() throws Exception {
+        credentialDto.setVersion(3L);
+        when(credentialService.findById(1)).thenReturn(credentialDto);
+
+        mockMvc.perform(get("/api/credentials/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.version").value(3));
+    }
+
+    @Test
+    void findById_shouldFallThroughToNotFoundWhenStateIsMissing() throws Exception {
+        when(credentialService.findStateById(99)).thenReturn(Optional.empty());
+        when(credentialService.findById(99)).thenThrow(new CredentialNotFoundException("Credential not found"));
+
+        mockMvc.perform(get("/api/credentials/99")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void updateWithId_shouldPassIfMatchVersionAndReturnNewEntityTag() throws Exception {
+        CredentialDto updated = objectMapper.readValue(objectMapper.writeValueAsString(credentialDto), CredentialDto.class);
+        updated.setVersion(4L);
+        when(credentialService.update(eq(1), any(CredentialDto.class), eq(3L))).thenReturn(updated);
+
+        mockMvc.perform(put("/api/credentials/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentialDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void updateWithId_shouldReturnPreconditionFailedWhenVersionIsStale() throws Exception {
+        when(credentialService.update(eq(1), any(CredentialDto.class), eq(2L)))
+                .thenThrow(new PreconditionFailedException("Entity was modified"));
+
+        mockMvc.perform(put("/api/credentials/1")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentialDto)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void patch_shouldRejectWeakEntityTagWithoutCallingService() throws Exception {
+        mockMvc.perform(patch("/api/credentials/1")
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .contentType(AppConstant.MERGE_PATCH_JSON_VALUE)
+                .content("{\"isEnabled\":false}"))
+                .andExpect(status().isPreconditionFailed());
+
+        verifyNoInteractions(credentialService);
+    }
+
+    @Test
+    void updateWithId_shouldReturnConflictOnConcurrentWrite() throws Exception {
+        when(credentialService.update(eq(1), any(CredentialDto.class), isNull()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Credential.class, 1));
+
+        mockMvc.perform(put("/api/credentials/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentialDto)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void updateWithId_shouldReturnConflictOnConcurrentWriteAfterIfMatchPassed() throws Exception {
+        when(credentialService.update(eq(1), any(CredentialDto.class), eq(3L)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Credential.class, 1));
+
+        mockMvc.perform(put("/api/credentials/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentialDto)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void deleteById_shouldDeleteCredential() throws Exception {
         doNothing().when(credentialService).deleteById(anyInt());
@@ -202,4 +314,16 @@ public class CredentialResourceTest {
         
         verify(credentialService, times(1)).deleteById(99);
     }
-}
\ No newline at end of file
+    
+    @Test
+    void patch_shouldAcceptMergePatch() throws Exception {
+        when(credentialService.patch(eq(1), any(), isNull())).thenReturn(credentialDto);
+        
+        mockMvc.perform(patch("/api/credentials/1")
+                .contentType(AppConstant.MERGE_PATCH_JSON_VALUE)
+                .content("{}"))
+                .andExpect(status().isOk());
+        
+        verify(credentialService, times(1)).patch(eq(1), any(), isNull());
+    }
+}
@@ -5,7 +5,11 @@ import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,13 +17,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.request.IdBatchRequest;
+import com.selimhorri.app.dto.response.BatchGetResponse;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
+import com.selimhorri.app.service.UserExportService;
+import com.selimhorri.app.service.UserImportService;
 import com.selimhorri.app.service.UserService;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +44,12 @@ public class UserResourceTest {
     @Mock
     private UserService userService;
     
+    @Mock
+    private UserExportService userExportService;
+    
+    @Mock
+    private UserImportService userImportService;
+    
     @InjectMocks
     private UserResource userResource;
     
@@ -51,14 +70,52 @@ public class UserResourceTest {
     
     @Test
     void findAll_shouldReturnUsers() throws Exception {
-        when(userService.findAll()).thenReturn(List.of(userDto));
+        when(userService.findAll(isNull(), isNull())).thenReturn(new DtoCollectionResponse<>(List.of(userDto)));
         
         mockMvc.perform(get("/api/users")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.collection[0].userId").value(1));
         
-        verify(userService, times(1)).findAll();
+        verify(userService, times(1)).findAll(null, null);
+    }
+    
+    @Test
+    void findAll_shouldPassCursorAndExposeNextCursor() throws Exception {
+        when(userService.findAll(1, 1)).thenReturn(DtoCollectionResponse.<UserDto>builder()
+                .collection(List.of(userDto))
+                .nextCursor(1)
+                .build());
+        
+        mockMvc.perform(get("/api/users")
+                .param("after", "1")
+                .param("limit", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.collection[0].userId").value(1))
+                .andExpect(jsonPath("$.nextCursor").value(1));
+        
+        verify(userService, times(1)).findAll(1, 1);
+    }
+    
+    @Test
+    void exportAll_shouldStreamNdjson() throws Exception {
+        when(userExportService.exportAll(any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"userId\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        
+        MvcResult mvcResult = mockMvc.perform(get("/api/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"userId\":1}\n"));
+        
+        verify(userExportService, times(1)).exportAll(any(OutputStream.class));
     }
     
     @Test
@@ -73,6 +130,91 @@ public class UserResourceTest {
         verify(userService, times(1)).findById(1);
     }
 
+    @Test
+    void findById_shouldSendValidatorsWithFullBody() throws Exception {
+        userDto.setVersion(3L);
+        userDto.setUpdatedAt(Instant.parse("2026-01-02T10:15:30.250Z"));
+        when(userService.findById(1)).thenReturn(userDto);
+        
+        mockMvc.perform(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Fri, 02 Jan 2026 10:15:30 GMT"))
+                .andExpect(jsonPath("$.version").value(3))
+                .andExpect(jsonPath("$.entityTag").doesNotExist())
+                .andExpect(jsonPath("$.embeddedVersion").doesNotExist());
+        
+        verify(userService, never()).findStateById(anyInt());
+    }
+    
+    @Test
+    void findById_shouldAnswerNotModifiedFromStateOnly() throws Exception {
+        userDto.setVersion(3L);
+        userDto.setCredentialDto(CredentialDto.builder().version(1L).build());
+        when(userService.findStateById(1)).thenReturn(Optional.of(userDto));
+        
+        mockMvc.perform(get("/api/users/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3.1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3.1\""))
+                .andExpect(content().string(""));
+        
+        verify(userService, never()).findById(anyInt());
+    }
+    
+    @Test
+    void findById_shouldSendFullBodyWhenEmbeddedCredentialChanged() throws Exception {
+        userDto.setVersion(3L);
+        userDto.setCredentialDto(CredentialDto.builder().version(2L).build());
+        when(userService.findStateById(1)).thenReturn(Optional.of(userDto));
+        when(userService.findById(1)).thenReturn(userDto);
+        
+        mockMvc.perform(get("/api/users/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3.1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3.2\""))
+                .andExpect(jsonPath("$.userId").value(1));
+    }
+    
+    @Test
+    void findByUsername_shouldAnswerNotModifiedSinceLastModified() throws Exception {
+        userDto.setUpdatedAt(Instant.parse("2026-01-02T10:15:30.250Z"));
+        when(userService.findStateByUsername("johndoe")).thenReturn(Optional.of(userDto));
+        
+        mockMvc.perform(get("/api/users/username/johndoe")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 02 Jan 2026 10:15:30 GMT"))
+                .andExpect(status().isNotModified());
+        
+        verify(userService, never()).findByUsername(anyString());
+    }
+    
+    @Test
+    void findAllById_shouldReturnFoundUsersAndMissingIds() throws Exception {
+        when(userService.findAllById(List.of(1, 7))).thenReturn(new BatchGetResponse<>(List.of(userDto), List.of(7)));
+        
+        mockMvc.perform(post("/api/users/batch-get")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new IdBatchRequest(List.of(1, 7)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].userId").value(1))
+                .andExpect(jsonPath("$.missingIds[0]").value(7));
+        
+        verify(userService, times(1)).findAllById(List.of(1, 7));
+    }
+
+    @Test
+    void importAll_shouldReturnImportedUsers() throws Exception {
+        when(userImportService.importAll(anyList())).thenReturn(new DtoCollectionResponse<>(List.of(userDto)));
+        
+        mockMvc.perform(post("/api/users/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(userDto))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.collection[0].userId").value(1));
+        
+        verify(userImportService, times(1)).importAll(List.of(userDto));
+    }
+
     @Test
     void findByUsername_shouldReturnUserWhenFound() throws Exception {
         when(userService.findByUsername(anyString())).thenReturn(userDto);
@@ -113,7 +255,7 @@ public class UserResourceTest {
     
     @Test
     void updateWithId_shouldUpdateUser() throws Exception {
-        when(userService.update(anyInt(), any(UserDto.class))).thenReturn(userDto);
+        when(userService.update(anyInt(), any(UserDto.class), isNull())).thenReturn(userDto);
         
         mockMvc.perform(put("/api/users/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -121,7 +263,7 @@ public class UserResourceTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.userId").value(1));
         
-        verify(userService, times(1)).update(eq(1), any(UserDto.class));
+        verify(userService, times(1)).update(eq(1), any(UserDto.class), isNull());
     }
     
     @Test
@@ -136,5 +278,39 @@ public class UserResourceTest {
         verify(userService, times(1)).deleteById(1);
     }
     
-
-}
\ No newline at end of file
+    @Test
+    void deleteAllById_shouldReturnDeletedCount() throws Exception {
+        when(userService.deleteAllById(List.of(1, 2, 7))).thenReturn(2);
+        
+        mockMvc.perform(delete("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new IdBatchRequest(List.of(1, 2, 7)))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+        
+        verify(userService, times(1)).deleteAllById(List.of(1, 2, 7));
+    }
+    
+    @Test
+    void patch_shouldAcceptMergePatch() throws Exception {
+        when(userService.patch(eq(1), any(), isNull())).thenReturn(userDto);
+        
+        mockMvc.perform(patch("/api/users/1")
+                .contentType(AppConstant.MERGE_PATCH_JSON_VALUE)
+                .content("{\"imageUrl\":\"https://cdn/avatar.png\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(1));
+        
+        verify(userService, times(1)).patch(eq(1), argThat(patch -> "https://cdn/avatar.png".equals(patch.get("imageUrl").asText())), isNull());
+    }
+    
+    @Test
+    void patch_shouldRejectPlainJson() throws Exception {
+        mockMvc.perform(patch("/api/users/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"imageUrl\":\"https://cdn/avatar.png\"}"))
+                .andExpect(status().isUnsupportedMediaType());
+        
+        verifyNoInteractions(userService);
+    }
+}
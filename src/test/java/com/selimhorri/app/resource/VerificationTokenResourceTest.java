@@ -20,6 +20,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.constant.AppConstant;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.VerificationTokenDto;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
@@ -63,7 +64,7 @@ public class VerificationTokenResourceTest {
     
     @Test
     void findAll_shouldReturnAllVerificationTokens() throws Exception {
-        when(verificationTokenService.findAll()).thenReturn(List.of(verificationTokenDto));
+        when(verificationTokenService.findAll(isNull(), isNull())).thenReturn(new DtoCollectionResponse<>(List.of(verificationTokenDto)));
         
         mockMvc.perform(get("/api/verificationTokens")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -71,7 +72,7 @@ public class VerificationTokenResourceTest {
                 .andExpect(jsonPath("$.collection[0].verificationTokenId").value(1))
                 .andExpect(jsonPath("$.collection[0].token").value("test-token"));
         
-        verify(verificationTokenService, times(1)).findAll();
+        verify(verificationTokenService, times(1)).findAll(null, null);
     }
     
     @Test
@@ -114,7 +115,7 @@ public class VerificationTokenResourceTest {
     
     @Test
     void updateWithId_shouldUpdateToken() throws Exception {
-        when(verificationTokenService.update(anyInt(), any(VerificationTokenDto.class))).thenReturn(verificationTokenDto);
+        when(verificationTokenService.update(anyInt(), any(VerificationTokenDto.class), isNull())).thenReturn(verificationTokenDto);
         
         mockMvc.perform(put("/api/verificationTokens/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -122,7 +123,7 @@ public class VerificationTokenResourceTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.verificationTokenId").value(1));
         
-        verify(verificationTokenService, times(1)).update(eq(1), any(VerificationTokenDto.class));
+        verify(verificationTokenService, times(1)).update(eq(1), any(VerificationTokenDto.class), isNull());
     }
     
     @Test
@@ -148,4 +149,38 @@ public class VerificationTokenResourceTest {
         
         verify(verificationTokenService, times(1)).deleteById(99);
     }
-}
\ No newline at end of file
+    
+    @Test
+    void validate_shouldReturnCredentialIdWhenTokenIsValid() throws Exception {
+        when(verificationTokenService.validate("test-token")).thenReturn(1);
+        
+        mockMvc.perform(get("/api/verificationTokens/validate/test-token")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+        
+        verify(verificationTokenService, times(1)).validate("test-token");
+    }
+    
+    @Test
+    void validate_shouldReturn404WhenTokenUnknownOrExpired() throws Exception {
+        when(verificationTokenService.validate(anyString()))
+            .thenThrow(new VerificationTokenNotFoundException("Token not found or expired"));
+        
+        mockMvc.perform(get("/api/verificationTokens/validate/stale-token")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+    
+    @Test
+    void patch_shouldAcceptMergePatch() throws Exception {
+        when(verificationTokenService.patch(eq(1), any(), isNull())).thenReturn(verificationTokenDto);
+        
+        mockMvc.perform(patch("/api/verificationTokens/1")
+                .contentType(AppConstant.MERGE_PATCH_JSON_VALUE)
+                .content("{}"))
+                .andExpect(status().isOk());
+        
+        verify(verificationTokenService, times(1)).patch(eq(1), any(), isNull());
+    }
+}
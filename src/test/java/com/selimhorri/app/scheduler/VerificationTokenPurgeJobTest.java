@@ -0,0 +1,138 @@
+package com.selimhorri.app.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class VerificationTokenPurgeJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2022, 1, 1);
+    
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    @Mock
+    private LeaderLock leaderLock;
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private VerificationTokenPurgeJob verificationTokenPurgeJob;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        verificationTokenPurgeJob = new VerificationTokenPurgeJob(verificationTokenRepository, leaderLock, 
+                ShardRouter.unsharded(), TransactionOperations.withoutTransaction(), outboxWriter, meterRegistry, 
+                1000, Duration.ZERO, Duration.ofMinutes(10));
+    }
+    
+    @Test
+    void purge_shouldDeleteInPrimaryKeyRanges() {
+        when(verificationTokenRepository.findMinExpiredId(TODAY)).thenReturn(Optional.of(1));
+        when(verificationTokenRepository.findMaxExpiredId(TODAY)).thenReturn(Optional.of(2500));
+        when(verificationTokenRepository.deleteExpiredInIdRange(anyInt(), anyInt(), eq(TODAY))).thenReturn(1000, 1000, 500);
+        when(leaderLock.tryAcquire(eq(VerificationTokenPurgeJob.LOCK_NAME), any(Duration.class))).thenReturn(true);
+        
+        long purged = verificationTokenPurgeJob.purge(TODAY);
+        
+        assertEquals(2500, purged);
+        InOrder inOrder = inOrder(verificationTokenRepository);
+        inOrder.verify(verificationTokenRepository).deleteExpiredInIdRange(1, 1001, TODAY);
+        inOrder.verify(verificationTokenRepository).deleteExpiredInIdRange(1001, 2001, TODAY);
+        inOrder.verify(verificationTokenRepository).deleteExpiredInIdRange(2001, 2501, TODAY);
+        assertEquals(2500, meterRegistry.counter("verification.tokens.purge.rows").count());
+        assertEquals(3, meterRegistry.timer("verification.tokens.purge.batch").count());
+        verify(verificationTokenRepository, never()).findExpiredKeysInIdRange(anyInt(), anyInt(), any());
+    }
+    
+    @Test
+    void purge_shouldPublishADeletedEventPerTokenWhenOutboxIsEnabled() {
+        when(outboxWriter.isEnabled()).thenReturn(true);
+        when(verificationTokenRepository.findMinExpiredId(TODAY)).thenReturn(Optional.of(1));
+        when(verificationTokenRepository.findMaxExpiredId(TODAY)).thenReturn(Optional.of(2));
+        when(verificationTokenRepository.findExpiredKeysInIdRange(1, 3, TODAY))
+                .thenReturn(List.of(tokenKey(1, 10), tokenKey(2, 20)));
+        when(verificationTokenRepository.deleteExpiredInIdRange(1, 3, TODAY)).thenReturn(2);
+        
+        assertEquals(2, verificationTokenPurgeJob.purge(TODAY));
+        verify(outboxWriter, times(1)).deleted(AggregateType.VERIFICATION_TOKEN, 1, 10);
+        verify(outboxWriter, times(1)).deleted(AggregateType.VERIFICATION_TOKEN, 2, 20);
+    }
+    
+    @Test
+    void purge_shouldDoNothingWhenNoTokenExpired() {
+        when(verificationTokenRepository.findMinExpiredId(TODAY)).thenReturn(Optional.empty());
+        
+        assertEquals(0, verificationTokenPurgeJob.purge(TODAY));
+        verify(verificationTokenRepository, never()).deleteExpiredInIdRange(anyInt(), anyInt(), any());
+    }
+    
+    @Test
+    void purge_shouldStopWhenLeaseIsLost() {
+        when(verificationTokenRepository.findMinExpiredId(TODAY)).thenReturn(Optional.of(1));
+        when(verificationTokenRepository.findMaxExpiredId(TODAY)).thenReturn(Optional.of(5000));
+        when(verificationTokenRepository.deleteExpiredInIdRange(anyInt(), anyInt(), eq(TODAY))).thenReturn(1000);
+        when(leaderLock.tryAcquire(eq(VerificationTokenPurgeJob.LOCK_NAME), any(Duration.class))).thenReturn(false);
+        
+        assertEquals(1000, verificationTokenPurgeJob.purge(TODAY));
+        verify(verificationTokenRepository, times(1)).deleteExpiredInIdRange(anyInt(), anyInt(), any());
+    }
+    
+    @Test
+    void run_shouldSkipWhenAnotherReplicaHoldsTheLock() {
+        when(leaderLock.tryAcquire(eq(VerificationTokenPurgeJob.LOCK_NAME), any(Duration.class))).thenReturn(false);
+        
+        verificationTokenPurgeJob.run();
+        
+        verifyNoInteractions(verificationTokenRepository);
+        verify(leaderLock, never()).release(anyString());
+    }
+    
+    @Test
+    void run_shouldReleaseTheLockEvenWhenPurgeFails() {
+        when(leaderLock.tryAcquire(eq(VerificationTokenPurgeJob.LOCK_NAME), any(Duration.class))).thenReturn(true);
+        when(verificationTokenRepository.findMinExpiredId(any())).thenThrow(new IllegalStateException("boom"));
+        
+        assertThrows(IllegalStateException.class, () -> verificationTokenPurgeJob.run());
+        verify(leaderLock, times(1)).release(VerificationTokenPurgeJob.LOCK_NAME);
+    }
+    
+    private static VerificationTokenKeyView tokenKey(final Integer verificationTokenId, final Integer userId) {
+        return new VerificationTokenKeyView() {
+            @Override
+            public Integer getVerificationTokenId() {
+                return verificationTokenId;
+            }
+            
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+        };
+    }
+}
@@ -12,8 +12,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Address;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.AddressDto;
@@ -21,6 +26,9 @@ import com.selimhorri.app.dto.UserDto;
 import com.selimhorri.app.exception.wrapper.AddressNotFoundException;
 import com.selimhorri.app.repository.AddressRepository;
 import com.selimhorri.app.service.impl.AddressServiceImpl;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.sharding.ShardRouter;
 
 @ExtendWith(MockitoExtension.class)
 public class AddressServiceTest {
@@ -28,6 +36,24 @@ public class AddressServiceTest {
     @Mock
     private AddressRepository addressRepository;
     
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    @Mock
+    private MicroBatchLoader<Integer, Address> addressBatchLoader;
+    
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+    
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    
     @InjectMocks
     private AddressServiceImpl addressService;
     
@@ -139,44 +165,54 @@ public class AddressServiceTest {
     }
     
     @Test
-    void findAll_shouldReturnListOfAddresses() {
-        when(addressRepository.findAll()).thenReturn(List.of(address));
+    void findById_shouldReturnAddressWhenFound() {
+        when(addressRepository.findById(1)).thenReturn(Optional.of(address));
         
-        List<AddressDto> result = addressService.findAll();
+        AddressDto result = addressService.findById(1);
         
-        assertEquals(1, result.size());
-        assertEquals(address.getAddressId(), result.get(0).getAddressId());
-        verify(addressRepository, times(1)).findAll();
+        assertNotNull(result);
+        assertEquals(address.getAddressId(), result.getAddressId());
+        assertEquals("123 Main St, Apt 4B", result.getFullAddress());
+        verify(addressRepository, times(1)).findById(1);
     }
     
     @Test
-    void findAll_shouldReturnEmptyListWhenNoAddresses() {
-        when(addressRepository.findAll()).thenReturn(List.of());
+    void findById_shouldThrowExceptionWhenNotFound() {
+        when(addressRepository.findById(99)).thenReturn(Optional.empty());
+        
+        assertThrows(AddressNotFoundException.class, () -> addressService.findById(99));
+        verify(addressRepository, times(1)).findById(99);
+    }
+    
+    @Test
+    void findById_shouldGoThroughBatchLoaderWhenEnabled() {
+        when(addressBatchLoader.isEnabled()).thenReturn(true);
+        when(addressBatchLoader.load(1)).thenReturn(Optional.of(address));
         
-        List<AddressDto> result = addressService.findAll();
+        AddressDto result = addressService.findById(1);
         
-        assertTrue(result.isEmpty());
-        verify(addressRepository, times(1)).findAll();
+        assertEquals(1, result.getAddressId());
+        verify(addressRepository, never()).findById(anyInt());
     }
     
     @Test
-    void findById_shouldReturnAddressWhenFound() {
+    void findById_shouldReadRecentlyWrittenAddressOutsideTheBatch() {
+        when(replicaLagGuard.pinIfRecentlyWritten(ReplicaLagGuard.address(1))).thenReturn(true);
         when(addressRepository.findById(1)).thenReturn(Optional.of(address));
         
         AddressDto result = addressService.findById(1);
         
-        assertNotNull(result);
-        assertEquals(address.getAddressId(), result.getAddressId());
-        assertEquals("123 Main St, Apt 4B", result.getFullAddress());
-        verify(addressRepository, times(1)).findById(1);
+        assertEquals(1, result.getAddressId());
+        verifyNoInteractions(addressBatchLoader);
     }
     
     @Test
-    void findById_shouldThrowExceptionWhenNotFound() {
-        when(addressRepository.findById(99)).thenReturn(Optional.empty());
+    void findStateById_shouldPinRecentlyWrittenAddressToThePrimary() {
+        when(addressRepository.findStateByAddressId(1)).thenReturn(Optional.empty());
         
-        assertThrows(AddressNotFoundException.class, () -> addressService.findById(99));
-        verify(addressRepository, times(1)).findById(99);
+        addressService.findStateById(1);
+        
+        verify(replicaLagGuard, times(1)).pinIfRecentlyWritten(ReplicaLagGuard.address(1));
     }
     
     @Test
@@ -272,10 +308,57 @@ public class AddressServiceTest {
     
     @Test
     void deleteById_shouldDeleteAddress() {
-        doNothing().when(addressRepository).deleteById(1);
+        when(addressRepository.deleteByAddressId(1)).thenReturn(1);
         
         addressService.deleteById(1);
         
-        verify(addressRepository, times(1)).deleteById(1);
+        verify(addressRepository, times(1)).deleteByAddressId(1);
+        verify(addressRepository, never()).findById(anyInt());
+        verify(userCacheInvalidator, times(1)).evictAddress(1);
+    }
+    
+    @Test
+    void deleteById_shouldThrowExceptionWhenAddressNotFound() {
+        when(addressRepository.deleteByAddressId(99)).thenReturn(0);
+        
+        assertThrows(AddressNotFoundException.class, () -> addressService.deleteById(99));
+    }
+    
+    @Test
+    void patch_shouldOnlyChangeSuppliedFields() throws Exception {
+        when(addressRepository.findById(1)).thenReturn(Optional.of(address));
+        when(addressRepository.save(any(Address.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        AddressDto result = addressService.patch(1, objectMapper.readTree("{\"postalCode\":\"54321\"}"), null);
+        
+        assertEquals("54321", result.getPostalCode());
+        assertEquals("New York", address.getCity());
+        assertEquals(1, address.getUser().getUserId());
+    }
+    
+    @Test
+    void patch_shouldSkipWriteWhenNothingChanged() throws Exception {
+        when(addressRepository.findById(1)).thenReturn(Optional.of(address));
+        
+        addressService.patch(1, objectMapper.readTree("{\"city\":\"New York\"}"), null);
+        
+        verify(addressRepository, never()).save(any(Address.class));
+    }
+    
+    @Test
+    void patch_shouldRejectChangingTheUser() throws Exception {
+        when(addressRepository.findById(1)).thenReturn(Optional.of(address));
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> addressService.patch(1, objectMapper.readTree("{\"user\":{\"userId\":2}}"), null));
+        verify(addressRepository, never()).save(any(Address.class));
+        verifyNoInteractions(outboxWriter);
+    }
+    
+    @Test
+    void patch_shouldThrowExceptionWhenAddressNotFound() throws Exception {
+        when(addressRepository.findById(99)).thenReturn(Optional.empty());
+        
+        assertThrows(AddressNotFoundException.class, () -> addressService.patch(99, objectMapper.readTree("{}"), null));
     }
-}
\ No newline at end of file
+}
@@ -10,22 +10,42 @@ import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.cache.UsernameBloomFilter;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
 import com.selimhorri.app.domain.RoleBasedAuthority;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
 import com.selimhorri.app.exception.wrapper.CredentialNotFoundException;
+import com.selimhorri.app.exception.wrapper.PasswordHashingUnavailableException;
+import com.selimhorri.app.exception.wrapper.PreconditionFailedException;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
 import com.selimhorri.app.exception.wrapper.UsernameAlreadyExistsException;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.CredentialKeyView;
+import com.selimhorri.app.repository.projection.VerificationTokenKeyView;
+import com.selimhorri.app.repository.projection.UserCredentialView;
 import com.selimhorri.app.service.impl.CredentialServiceImpl;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.sharding.ShardRouter;
 
 @ExtendWith(MockitoExtension.class)
 public class CredentialServiceTest {
@@ -33,12 +53,42 @@ public class CredentialServiceTest {
     @Mock
     private CredentialRepository credentialRepository;
     
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+    
     @Mock
     private UserRepository userRepository;
     
     @Mock
     private PasswordEncoder passwordEncoder;
     
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+    
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    // not loaded yet: every username is a possible hit, so lookups fall through to the repository
+    @Spy
+    private UsernameBloomFilter usernameBloomFilter = new UsernameBloomFilter(1000, 0.01);
+    
+    @Spy
+    private TransactionOperations transactionOperations = new TransactionOperations() {
+        @Override
+        public <T> T execute(final TransactionCallback<T> action) {
+            return action.doInTransaction(new SimpleTransactionStatus());
+        }
+    };
+    
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
     @InjectMocks
     private CredentialServiceImpl credentialService;
     
@@ -65,6 +115,14 @@ public class CredentialServiceTest {
         credential.setIsCredentialsNonExpired(true);
         credential.setUser(user);
     }
+
+    private static UserCredentialView view(final User user, final Credential credential) {
+        return new UserCredentialView(user.getUserId(), user.getVersion(), user.getUpdatedAt(), user.getFirstName(),
+                user.getLastName(), user.getImageUrl(), user.getEmail(), user.getPhone(), credential.getCredentialId(),
+                credential.getVersion(), credential.getUpdatedAt(), credential.getUsername(), credential.getPassword(),
+                credential.getRoleBasedAuthority(), credential.getIsEnabled(), credential.getIsAccountNonExpired(),
+                credential.getIsAccountNonLocked(), credential.getIsCredentialsNonExpired());
+    }
     
     // Builders para DTOs
     static class CredentialDtoBuilder {
@@ -181,63 +239,52 @@ public class CredentialServiceTest {
         }
     }
     
-    @Test
-    void findAll_shouldReturnListOfCredentials() {
-        when(credentialRepository.findAll()).thenReturn(List.of(credential));
-        
-        List<CredentialDto> result = credentialService.findAll();
-        
-        assertEquals(1, result.size());
-        assertEquals(credential.getCredentialId(), result.get(0).getCredentialId());
-        verify(credentialRepository, times(1)).findAll();
-    }
-    
-    @Test
-    void findAll_shouldReturnEmptyListWhenNoCredentials() {
-        when(credentialRepository.findAll()).thenReturn(List.of());
-        
-        List<CredentialDto> result = credentialService.findAll();
-        
-        assertTrue(result.isEmpty());
-        verify(credentialRepository, times(1)).findAll();
-    }
-    
     @Test
     void findById_shouldReturnCredentialWhenFound() {
-        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.findViewByCredentialId(1)).thenReturn(Optional.of(view(user, credential)));
         
         CredentialDto result = credentialService.findById(1);
         
         assertNotNull(result);
         assertEquals(credential.getCredentialId(), result.getCredentialId());
-        verify(credentialRepository, times(1)).findById(1);
+        assertEquals(user.getUserId(), result.getUserDto().getUserId());
+        verify(credentialRepository, times(1)).findViewByCredentialId(1);
     }
     
     @Test
     void findById_shouldThrowExceptionWhenNotFound() {
-        when(credentialRepository.findById(99)).thenReturn(Optional.empty());
+        when(credentialRepository.findViewByCredentialId(99)).thenReturn(Optional.empty());
         
         assertThrows(CredentialNotFoundException.class, () -> credentialService.findById(99));
-        verify(credentialRepository, times(1)).findById(99);
+        verify(credentialRepository, times(1)).findViewByCredentialId(99);
+    }
+    
+    @Test
+    void findStateById_shouldPinRecentlyWrittenCredentialToThePrimary() {
+        when(credentialRepository.findStateByCredentialId(1)).thenReturn(Optional.empty());
+        
+        credentialService.findStateById(1);
+        
+        verify(replicaLagGuard, times(1)).pinIfRecentlyWritten(ReplicaLagGuard.credential(1));
     }
     
     @Test
     void findByUsername_shouldReturnCredentialWhenFound() {
-        when(credentialRepository.findByUsername("johndoe")).thenReturn(Optional.of(credential));
+        when(credentialRepository.loadByUsername("johndoe")).thenReturn(Optional.of(credential));
         
         CredentialDto result = credentialService.findByUsername("johndoe");
         
         assertNotNull(result);
         assertEquals("johndoe", result.getUsername());
-        verify(credentialRepository, times(1)).findByUsername("johndoe");
+        verify(credentialRepository, times(1)).loadByUsername("johndoe");
     }
     
     @Test
     void findByUsername_shouldThrowExceptionWhenNotFound() {
-        when(credentialRepository.findByUsername("unknown")).thenReturn(Optional.empty());
+        when(credentialRepository.loadByUsername("unknown")).thenReturn(Optional.empty());
         
         assertThrows(UserObjectNotFoundException.class, () -> credentialService.findByUsername("unknown"));
-        verify(credentialRepository, times(1)).findByUsername("unknown");
+        verify(credentialRepository, times(1)).loadByUsername("unknown");
     }
     
     @Test
@@ -284,6 +331,114 @@ public class CredentialServiceTest {
         verify(credentialRepository, times(1)).existsByUsername("existinguser");
     }
     
+    @Test
+    void save_shouldHashPasswordBeforeOpeningTransaction() {
+        UserDto userDto = new UserDtoBuilder()
+                .withUserId(1)
+                .build();
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("newuser")
+                .withPassword("rawPassword")
+                .withUserDto(userDto)
+                .build();
+        
+        when(credentialRepository.existsByUsername("newuser")).thenReturn(false);
+        when(passwordEncoder.encode("rawPassword")).thenReturn("encodedPassword");
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(credentialRepository.existsByUserUserId(1)).thenReturn(false);
+        when(credentialRepository.save(any(Credential.class))).thenReturn(credential);
+        
+        credentialService.save(credentialDto);
+        
+        InOrder inOrder = inOrder(passwordEncoder, transactionOperations, credentialRepository);
+        inOrder.verify(passwordEncoder).encode("rawPassword");
+        inOrder.verify(transactionOperations).execute(any());
+        inOrder.verify(credentialRepository).save(any(Credential.class));
+    }
+    
+    @Test
+    void update_shouldNotTouchDatabaseWhenHashingIsSaturated() {
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withCredentialId(1)
+                .withPassword("newPassword")
+                .build();
+        when(passwordEncoder.encode("newPassword")).thenThrow(new PasswordHashingUnavailableException("saturated"));
+        
+        assertThrows(PasswordHashingUnavailableException.class, () -> credentialService.update(credentialDto));
+        verifyNoInteractions(credentialRepository, transactionOperations);
+    }
+    
+    @Test
+    void save_shouldSkipUsernameQueryWhenFilterRulesItOut() {
+        usernameBloomFilter.markReady();
+        UserDto userDto = new UserDtoBuilder()
+                .withUserId(1)
+                .build();
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("newuser")
+                .withPassword("rawPassword")
+                .withUserDto(userDto)
+                .build();
+        
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(credentialRepository.existsByUserUserId(1)).thenReturn(false);
+        when(passwordEncoder.encode("rawPassword")).thenReturn("encodedPassword");
+        when(credentialRepository.save(any(Credential.class))).thenReturn(credential);
+        
+        credentialService.save(credentialDto);
+        
+        verify(credentialRepository, never()).existsByUsername(anyString());
+        assertTrue(usernameBloomFilter.mightContain("johndoe"));
+    }
+    
+    @Test
+    void save_shouldReportDuplicateUsernameRejectedByUniqueIndex() {
+        usernameBloomFilter.markReady();
+        UserDto userDto = new UserDtoBuilder()
+                .withUserId(1)
+                .build();
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("takenelsewhere")
+                .withPassword("rawPassword")
+                .withUserDto(userDto)
+                .build();
+        
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(credentialRepository.existsByUserUserId(1)).thenReturn(false);
+        when(passwordEncoder.encode("rawPassword")).thenReturn("encodedPassword");
+        when(credentialRepository.save(any(Credential.class))).thenThrow(new DataIntegrityViolationException("uk_credentials_username"));
+        
+        assertThrows(UsernameAlreadyExistsException.class, () -> credentialService.save(credentialDto));
+        verifyNoInteractions(userCacheInvalidator);
+    }
+    
+    @Test
+    void isUsernameAvailable_shouldAnswerFromFilterWithoutDatabase() {
+        usernameBloomFilter.markReady();
+        
+        assertTrue(credentialService.isUsernameAvailable("freshname"));
+        verifyNoInteractions(credentialRepository);
+    }
+    
+    @Test
+    void isUsernameAvailable_shouldConfirmPossibleHitAgainstDatabase() {
+        usernameBloomFilter.put("johndoe");
+        usernameBloomFilter.markReady();
+        when(credentialRepository.existsByUsername("johndoe")).thenReturn(true);
+        
+        assertFalse(credentialService.isUsernameAvailable("johndoe"));
+        verify(credentialRepository, times(1)).existsByUsername("johndoe");
+    }
+    
+    @Test
+    void isUsernameAvailable_shouldLeaveAMissingUsernameToTheDatabase() {
+        usernameBloomFilter.markReady();
+        when(credentialRepository.existsByUsername(null)).thenReturn(false);
+        
+        assertTrue(credentialService.isUsernameAvailable(null));
+        verify(credentialRepository).existsByUsername(null);
+    }
+    
     @Test
     void save_shouldThrowExceptionWhenUserNotFound() {
         UserDto userDto = new UserDtoBuilder()
@@ -345,6 +500,8 @@ public class CredentialServiceTest {
         verify(credentialRepository, times(1)).findById(1);
         verify(passwordEncoder, times(1)).encode("newPassword");
         verify(credentialRepository, times(1)).save(any(Credential.class));
+        // both the old and the new username must be dropped from the caches
+        verify(userCacheInvalidator, times(1)).evictCredential(1, 1, "johndoe", "updateduser");
     }
     
     @Test
@@ -380,23 +537,199 @@ public class CredentialServiceTest {
         verify(passwordEncoder, times(1)).encode("newPassword");
         verify(credentialRepository, times(1)).save(any(Credential.class));
     }
-    
+
+    @Test
+    void updateWithId_shouldFlushSoTheNewVersionIsReturned() {
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("johndoe")
+                .withPassword("newPassword")
+                .build();
+        credential.setVersion(3L);
+
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(passwordEncoder.encode("newPassword")).thenReturn("newEncodedPassword");
+        when(credentialRepository.save(any(Credential.class))).thenReturn(credential);
+
+        CredentialDto result = credentialService.update(1, credentialDto, 3L);
+
+        assertEquals(3L, result.getVersion());
+        InOrder inOrder = inOrder(credentialRepository);
+        inOrder.verify(credentialRepository).save(credential);
+        inOrder.verify(credentialRepository).flush();
+    }
+
+    @Test
+    void updateWithId_shouldRejectStaleVersionWithoutSaving() {
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("updateduser")
+                .withPassword("newPassword")
+                .build();
+        credential.setVersion(4L);
+
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+
+        assertThrows(PreconditionFailedException.class, () -> credentialService.update(1, credentialDto, 3L));
+        verify(credentialRepository, never()).save(any(Credential.class));
+        verifyNoInteractions(userCacheInvalidator);
+    }
+
+    @Test
+    void updateWithId_shouldRejectUsernameTakenOnAnotherReplica() {
+        CredentialDto credentialDto = new CredentialDtoBuilder()
+                .withUsername("taken")
+                .withPassword("newPassword")
+                .build();
+        
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(passwordEncoder.encode("newPassword")).thenReturn("newEncodedPassword");
+        when(credentialRepository.save(any(Credential.class))).thenThrow(new DataIntegrityViolationException("uk_credentials_username"));
+        
+        assertThrows(UsernameAlreadyExistsException.class, () -> credentialService.update(1, credentialDto, null));
+        verifyNoInteractions(userCacheInvalidator, outboxWriter);
+    }
+
+    @Test
+    void patch_shouldRejectStaleVersionWithoutSaving() throws Exception {
+        credential.setVersion(4L);
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+
+        assertThrows(PreconditionFailedException.class,
+                () -> credentialService.patch(1, objectMapper.readTree("{\"isEnabled\":false}"), 3L));
+        verify(credentialRepository, never()).save(any(Credential.class));
+    }
+
     @Test
     void deleteById_shouldDeleteCredentialWhenFound() {
-        when(credentialRepository.existsById(1)).thenReturn(true);
-        doNothing().when(credentialRepository).deleteByCredentialId(1);
+        when(outboxWriter.isEnabled()).thenReturn(true);
+        when(credentialRepository.findKeysByCredentialId(1)).thenReturn(Optional.of(new CredentialKeyView() {
+            @Override
+            public Integer getCredentialId() {
+                return 1;
+            }
+            
+            @Override
+            public Integer getUserId() {
+                return 1;
+            }
+            
+            @Override
+            public String getUsername() {
+                return "johndoe";
+            }
+        }));
+        when(credentialRepository.deleteByCredentialId(1)).thenReturn(1);
+        
+        when(verificationTokenRepository.findKeysByCredentialIdIn(List.of(1))).thenReturn(List.of(tokenKey(7, 1)));
+        
+        credentialService.deleteById(1);
+        
+        verify(credentialRepository, never()).findById(anyInt());
+        verify(credentialRepository, times(1)).deleteByCredentialId(1);
+        verify(userCacheInvalidator, times(1)).evictCredential(1, 1, "johndoe");
+        // the token went with the credential through the cascade
+        verify(userCacheInvalidator, times(1)).evictVerificationToken(7);
+        verify(outboxWriter, times(1)).deleted(AggregateType.VERIFICATION_TOKEN, 7, 1);
+    }
+    
+    private static VerificationTokenKeyView tokenKey(final Integer verificationTokenId, final Integer userId) {
+        return new VerificationTokenKeyView() {
+            @Override
+            public Integer getVerificationTokenId() {
+                return verificationTokenId;
+            }
+            
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+        };
+    }
+    
+    @Test
+    void deleteById_shouldIssueASingleDeleteWhenNoKeysAreNeeded() {
+        when(credentialRepository.deleteByCredentialId(1)).thenReturn(1);
         
         credentialService.deleteById(1);
         
-        verify(credentialRepository, times(1)).existsById(1);
+        verify(credentialRepository, never()).findKeysByCredentialId(anyInt());
+        verifyNoInteractions(verificationTokenRepository);
         verify(credentialRepository, times(1)).deleteByCredentialId(1);
+        verify(userCacheInvalidator, times(1)).evictAllCredentials();
     }
     
     @Test
     void deleteById_shouldThrowExceptionWhenNotFound() {
-        when(credentialRepository.existsById(99)).thenReturn(false);
+        when(credentialRepository.deleteByCredentialId(99)).thenReturn(0);
         
         assertThrows(CredentialNotFoundException.class, () -> credentialService.deleteById(99));
-        verify(credentialRepository, times(1)).existsById(99);
+        verify(credentialRepository, times(1)).deleteByCredentialId(99);
+        verify(userCacheInvalidator, never()).evictAllCredentials();
+    }
+    
+    @Test
+    void patch_shouldOnlyChangeSuppliedFields() throws Exception {
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.save(any(Credential.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        CredentialDto result = credentialService.patch(1, objectMapper.readTree("{\"isAccountNonLocked\":false}"), null);
+        
+        assertFalse(result.getIsAccountNonLocked());
+        assertEquals("encodedPassword", credential.getPassword());
+        assertEquals("johndoe", credential.getUsername());
+        verifyNoInteractions(passwordEncoder);
+        verify(userCacheInvalidator, times(1)).evictCredential(1, 1, "johndoe", "johndoe");
+    }
+    
+    @Test
+    void patch_shouldEncodePasswordBeforeOpeningTheTransaction() throws Exception {
+        when(passwordEncoder.encode("newPassword")).thenReturn("newEncodedPassword");
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.save(any(Credential.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        credentialService.patch(1, objectMapper.readTree("{\"password\":\"newPassword\"}"), null);
+        
+        assertEquals("newEncodedPassword", credential.getPassword());
+        InOrder inOrder = inOrder(passwordEncoder, transactionOperations);
+        inOrder.verify(passwordEncoder).encode("newPassword");
+        inOrder.verify(transactionOperations).execute(any());
+    }
+    
+    @Test
+    void patch_shouldRejectTakenUsername() throws Exception {
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.existsByUsername("taken")).thenReturn(true);
+        
+        assertThrows(UsernameAlreadyExistsException.class, 
+                () -> credentialService.patch(1, objectMapper.readTree("{\"username\":\"taken\"}"), null));
+        verify(credentialRepository, never()).save(any(Credential.class));
+    }
+    
+    @Test
+    void patch_shouldRejectUsernameTakenOnAnotherReplica() throws Exception {
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        when(credentialRepository.save(any(Credential.class))).thenThrow(new DataIntegrityViolationException("uk_credentials_username"));
+        
+        assertThrows(UsernameAlreadyExistsException.class, 
+                () -> credentialService.patch(1, objectMapper.readTree("{\"username\":\"taken\"}"), null));
+        verifyNoInteractions(userCacheInvalidator, outboxWriter);
+    }
+    
+    @Test
+    void patch_shouldRejectRemovingThePassword() throws Exception {
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> credentialService.patch(1, objectMapper.readTree("{\"password\":null}"), null));
+        verify(credentialRepository, never()).save(any(Credential.class));
+    }
+    
+    @Test
+    void patch_shouldSkipWriteWhenNothingChanged() throws Exception {
+        when(credentialRepository.findById(1)).thenReturn(Optional.of(credential));
+        
+        credentialService.patch(1, objectMapper.readTree("{\"isEnabled\":true}"), null);
+        
+        verify(credentialRepository, never()).save(any(Credential.class));
+        verifyNoInteractions(userCacheInvalidator);
     }
-}
\ No newline at end of file
+}
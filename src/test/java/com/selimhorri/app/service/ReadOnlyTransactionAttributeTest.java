@@ -0,0 +1,71 @@
+package com.selimhorri.app.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+
+import com.selimhorri.app.service.impl.AddressServiceImpl;
+import com.selimhorri.app.service.impl.CredentialServiceImpl;
+import com.selimhorri.app.service.impl.UserExportServiceImpl;
+import com.selimhorri.app.service.impl.UserServiceImpl;
+import com.selimhorri.app.service.impl.VerificationTokenServiceImpl;
+
+/**
+ * Every query method of the entity services runs read-only (no dirty-checking snapshots, no flush, a read-only
+ * connection); everything else keeps a read-write transaction.
+ */
+public class ReadOnlyTransactionAttributeTest {
+
+    private static final Set<String> QUERIES = Set.of("findAll", "findById", "findAllById", "findByUsername",
+            "findStateById", "findStateByUsername", "isUsernameAvailable", "validate");
+
+    /**
+     * Answered from a cache or filter first; only a miss reaches a repository, which brings its own transaction.
+     */
+    private static final Set<String> CACHE_FIRST = Set.of("UserServiceImpl.findStateById",
+            "UserServiceImpl.findStateByUsername", "CredentialServiceImpl.isUsernameAvailable");
+
+    private final AnnotationTransactionAttributeSource attributeSource = new AnnotationTransactionAttributeSource();
+
+    @Test
+    void queryMethods_shouldBeReadOnly_andWritesReadWrite() {
+        for (Class<?> serviceClass : new Class<?>[] { UserServiceImpl.class, CredentialServiceImpl.class,
+                AddressServiceImpl.class, VerificationTokenServiceImpl.class }) {
+            Arrays.stream(serviceClass.getDeclaredMethods())
+                    .filter(method -> Modifier.isPublic(method.getModifiers()) && !method.isSynthetic())
+                    .forEach(method -> assertAttribute(serviceClass, method));
+        }
+    }
+
+    @Test
+    void export_shouldBeReadOnly() throws NoSuchMethodException {
+        TransactionAttribute attribute = attributeSource.getTransactionAttribute(
+                UserExportServiceImpl.class.getMethod("exportAll", OutputStream.class), UserExportServiceImpl.class);
+        assertNotNull(attribute);
+        assertTrue(attribute.isReadOnly());
+    }
+
+    private void assertAttribute(final Class<?> serviceClass, final Method method) {
+        String name = serviceClass.getSimpleName() + "." + method.getName();
+        TransactionAttribute attribute = attributeSource.getTransactionAttribute(method, serviceClass);
+        assertNotNull(attribute, name);
+
+        if (!QUERIES.contains(method.getName())) {
+            assertFalse(attribute.isReadOnly(), name);
+            return;
+        }
+        assertTrue(attribute.isReadOnly(), name);
+        assertEquals(CACHE_FIRST.contains(name) ? TransactionDefinition.PROPAGATION_SUPPORTS
+                : TransactionDefinition.PROPAGATION_REQUIRED, attribute.getPropagationBehavior(), name);
+    }
+
+}
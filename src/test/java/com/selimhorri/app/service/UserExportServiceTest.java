@@ -0,0 +1,103 @@
+package com.selimhorri.app.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.domain.Credential;
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.service.impl.UserExportServiceImpl;
+import com.selimhorri.app.sharding.ShardRouter;
+
+@ExtendWith(MockitoExtension.class)
+public class UserExportServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private EntityManager entityManager;
+    
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+    
+    @InjectMocks
+    private UserExportServiceImpl userExportService;
+    
+    private User firstUser;
+    private User secondUser;
+    
+    @BeforeEach
+    void setUp() {
+        firstUser = user(1, "johndoe");
+        secondUser = user(2, "janedoe");
+    }
+    
+    private static User user(final Integer userId, final String username) {
+        Credential credential = new Credential();
+        credential.setCredentialId(userId);
+        credential.setUsername(username);
+        credential.setRoleBasedAuthority(RoleBasedAuthority.ROLE_USER);
+        
+        User user = new User();
+        user.setUserId(userId);
+        user.setFirstName("First" + userId);
+        user.setLastName("Last" + userId);
+        user.setCredential(credential);
+        return user;
+    }
+    
+    @Test
+    void exportAll_shouldWriteOneJsonDocumentPerLine() throws Exception {
+        when(userRepository.streamAllWithCredential()).thenReturn(Stream.of(firstUser, secondUser));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        long exported = userExportService.exportAll(out);
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, exported);
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("userId").asInt());
+        assertEquals("janedoe", objectMapper.readTree(lines[1]).get("credential").get("username").asText());
+    }
+    
+    @Test
+    void exportAll_shouldDetachEveryWrittenUser() {
+        when(userRepository.streamAllWithCredential()).thenReturn(Stream.of(firstUser, secondUser));
+        
+        userExportService.exportAll(new ByteArrayOutputStream());
+        
+        verify(entityManager, times(1)).detach(firstUser);
+        verify(entityManager, times(1)).detach(secondUser);
+    }
+    
+    @Test
+    void exportAll_shouldWriteNothingWhenNoUsers() {
+        when(userRepository.streamAllWithCredential()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        long exported = userExportService.exportAll(out);
+        
+        assertEquals(0, exported);
+        assertTrue(out.toString(StandardCharsets.UTF_8).isBlank());
+    }
+}
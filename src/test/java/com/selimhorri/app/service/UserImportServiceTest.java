@@ -0,0 +1,124 @@
+package com.selimhorri.app.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.domain.Address;
+import com.selimhorri.app.domain.OutboxEvent.AggregateType;
+import com.selimhorri.app.domain.User;
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.service.impl.UserImportServiceImpl;
+import com.selimhorri.app.sharding.ShardRouter;
+
+@ExtendWith(MockitoExtension.class)
+public class UserImportServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+    
+    @Mock
+    private EntityManager entityManager;
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
+    private UserImportServiceImpl userImportService;
+    
+    @BeforeEach
+    void setUp() {
+        userImportService = new UserImportServiceImpl(entityManager, ShardRouter.unsharded(), outboxWriter, BATCH_SIZE);
+    }
+    
+    private static UserDto userDto(final int i, final AddressDto... addressDtos) {
+        return UserDto.builder()
+                .userId(100 + i)
+                .firstName("First" + i)
+                .lastName("Last" + i)
+                .email("user" + i + "@example.com")
+                .phone("123456789" + i)
+                .addressDtos(addressDtos.length == 0 ? null : Set.of(addressDtos))
+                .build();
+    }
+    
+    @Test
+    void importAll_shouldPersistUsersWithAddressesAndFlushPerBatch() {
+        final AtomicInteger ids = new AtomicInteger();
+        doAnswer(invocation -> {
+            Object entity = invocation.getArgument(0);
+            if (entity instanceof User)
+                ((User) entity).setUserId(ids.incrementAndGet());
+            return null;
+        }).when(entityManager).persist(any());
+        
+        DtoCollectionResponse<UserDto> result = userImportService.importAll(List.of(
+                userDto(1, AddressDto.builder().addressId(9).fullAddress("1 Main St").city("Tunis").build()),
+                userDto(2),
+                userDto(3)));
+        
+        ArgumentCaptor<Object> persisted = ArgumentCaptor.forClass(Object.class);
+        verify(entityManager, times(4)).persist(persisted.capture());
+        Address address = (Address) persisted.getAllValues().get(1);
+        assertNull(address.getAddressId());
+        assertSame(persisted.getAllValues().get(0), address.getUser());
+        // one flush when the first batch of two users is full, one for the remainder
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+        verify(outboxWriter, times(1)).created(AggregateType.USER, 1, 1, 0L);
+        verify(outboxWriter, times(1)).created(AggregateType.USER, 2, 2, 0L);
+        verify(outboxWriter, times(1)).created(AggregateType.USER, 3, 3, 0L);
+        verify(outboxWriter, times(1)).created(eq(AggregateType.ADDRESS), isNull(), eq(1), eq(0L));
+        assertEquals(List.of(1, 2, 3), result.getCollection().stream()
+                .map(UserDto::getUserId)
+                .collect(Collectors.toList()));
+    }
+    
+    @Test
+    void importAll_shouldDoNothingForEmptyInput() {
+        DtoCollectionResponse<UserDto> result = userImportService.importAll(Collections.emptyList());
+        
+        assertTrue(result.getCollection().isEmpty());
+        verifyNoInteractions(entityManager);
+    }
+    
+    @Test
+    void importAll_shouldRejectTooManyUsers() {
+        List<UserDto> userDtos = IntStream.rangeClosed(1, AppConstant.MAX_BULK_IMPORT_SIZE + 1)
+                .mapToObj(UserImportServiceTest::userDto)
+                .collect(Collectors.toList());
+        
+        assertThrows(IllegalArgumentException.class, () -> userImportService.importAll(userDtos));
+        verifyNoInteractions(entityManager);
+    }
+    
+    @Test
+    void importAll_shouldRejectUsersCarryingCredentials() {
+        UserDto withCredential = userDto(2);
+        withCredential.setCredentialDto(CredentialDto.builder().username("imported").password("secret").build());
+        List<UserDto> userDtos = List.of(userDto(1), withCredential);
+        
+        assertThrows(IllegalArgumentException.class, () -> userImportService.importAll(userDtos));
+        verifyNoInteractions(entityManager);
+    }
+    
+}
@@ -4,10 +4,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.persistence.EntityNotFoundException;
 
@@ -16,19 +20,38 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.batching.MicroBatchLoader;
+import com.selimhorri.app.cache.SingleFlight;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.constant.AppConstant;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.RoleBasedAuthority;
 import com.selimhorri.app.domain.User;
 import com.selimhorri.app.domain.VerificationToken;
 import com.selimhorri.app.dto.CredentialDto;
 import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.BatchGetResponse;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.exception.wrapper.UserObjectNotFoundException;
 import com.selimhorri.app.helper.UserMappingHelper;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.UserRepository;
+import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.CredentialKeyView;
+import com.selimhorri.app.repository.projection.UserCredentialView;
 import com.selimhorri.app.service.impl.UserServiceImpl;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.sharding.ShardRouter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
@@ -39,6 +62,30 @@ public class UserServiceTest {
     @Mock
     private CredentialRepository credentialRepository;
     
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+    
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+    
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(1), new SimpleMeterRegistry());
+    
+    @Mock
+    private MicroBatchLoader<Integer, User> userBatchLoader;
+    
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
     @InjectMocks
     private UserServiceImpl userService;
     
@@ -82,6 +129,14 @@ public class UserServiceTest {
         userWithoutCredential.setPhone("0987654321");
         userWithoutCredential.setCredential(null);
     }
+
+    private static UserCredentialView view(final User user, final Credential credential) {
+        return new UserCredentialView(user.getUserId(), user.getVersion(), user.getUpdatedAt(), user.getFirstName(),
+                user.getLastName(), user.getImageUrl(), user.getEmail(), user.getPhone(), credential.getCredentialId(),
+                credential.getVersion(), credential.getUpdatedAt(), credential.getUsername(), credential.getPassword(),
+                credential.getRoleBasedAuthority(), credential.getIsEnabled(), credential.getIsAccountNonExpired(),
+                credential.getIsAccountNonLocked(), credential.getIsCredentialsNonExpired());
+    }
     
     // Builders para DTOs (como clases internas estáticas)
     static class UserDtoBuilder {
@@ -206,24 +261,38 @@ public class UserServiceTest {
     }
     
     @Test
-    void findAll_shouldReturnListOfUsersWithCredentials() {
-        when(userRepository.findAll()).thenReturn(List.of(userWithCredential, userWithoutCredential));
+    void findAllPage_shouldReturnNextCursorWhenMoreRowsExist() {
+        User secondUser = new User();
+        secondUser.setUserId(5);
+        when(userRepository.findViewPageAfter(eq(0), any(Pageable.class)))
+                .thenReturn(List.of(view(userWithCredential, credential), view(secondUser, credential)));
         
-        List<UserDto> result = userService.findAll();
+        DtoCollectionResponse<UserDto> result = userService.findAll(null, 1);
         
-        assertEquals(1, result.size());
-        assertEquals(userWithCredential.getUserId(), result.get(0).getUserId());
-        verify(userRepository, times(1)).findAll();
+        assertEquals(1, result.getCollection().size());
+        assertEquals(1, result.getNextCursor());
+        verify(userRepository, times(1)).findViewPageAfter(0, PageRequest.of(0, 2));
     }
     
     @Test
-    void findAll_shouldReturnEmptyListWhenNoUsersWithCredentials() {
-        when(userRepository.findAll()).thenReturn(List.of(userWithoutCredential));
+    void findAllPage_shouldOmitNextCursorOnLastPage() {
+        when(userRepository.findViewPageAfter(eq(1), any(Pageable.class)))
+                .thenReturn(List.of(view(userWithCredential, credential)));
         
-        List<UserDto> result = userService.findAll();
+        DtoCollectionResponse<UserDto> result = userService.findAll(1, 10);
         
-        assertTrue(result.isEmpty());
-        verify(userRepository, times(1)).findAll();
+        assertEquals(1, result.getCollection().size());
+        assertNull(result.getNextCursor());
+    }
+    
+    @Test
+    void findAllPage_shouldCapLimitToMaxPageSize() {
+        when(userRepository.findViewPageAfter(eq(0), any(Pageable.class))).thenReturn(List.of());
+        
+        userService.findAll(null, 100_000);
+        
+        verify(userRepository, times(1))
+                .findViewPageAfter(0, PageRequest.of(0, AppConstant.MAX_PAGE_SIZE + 1));
     }
     
     @Test
@@ -254,24 +323,64 @@ public class UserServiceTest {
         verify(userRepository, times(1)).findById(2);
     }
     
+    @Test
+    void findById_shouldGoThroughBatchLoaderWhenEnabled() {
+        when(userBatchLoader.isEnabled()).thenReturn(true);
+        when(userBatchLoader.load(99)).thenReturn(Optional.empty());
+        
+        assertThrows(UserObjectNotFoundException.class, () -> userService.findById(99));
+        verify(userRepository, never()).findById(anyInt());
+    }
+    
+    @Test
+    void findAllById_shouldReturnFoundUsersInRequestOrderAndMissingIds() {
+        User other = new User();
+        other.setUserId(2);
+        other.setCredential(credential);
+        when(userRepository.findAllWithCredentialByIdIn(anyCollection())).thenReturn(List.of(userWithCredential, other));
+        
+        BatchGetResponse<UserDto> result = userService.findAllById(List.of(2, 9, 1, 2));
+        
+        assertEquals(List.of(2, 1), result.getFound().stream().map(UserDto::getUserId).collect(Collectors.toList()));
+        assertEquals(List.of(9), result.getMissingIds());
+        verify(userRepository, times(1)).findAllWithCredentialByIdIn(Set.of(1, 2, 9));
+    }
+    
+    @Test
+    void findAllById_shouldNotQueryForEmptyRequest() {
+        BatchGetResponse<UserDto> result = userService.findAllById(List.of());
+        
+        assertTrue(result.getFound().isEmpty());
+        assertTrue(result.getMissingIds().isEmpty());
+        verifyNoInteractions(userRepository);
+    }
+    
+    @Test
+    void findAllById_shouldRejectTooManyIds() {
+        List<Integer> ids = IntStream.rangeClosed(1, AppConstant.MAX_BATCH_GET_SIZE + 1).boxed().collect(Collectors.toList());
+        
+        assertThrows(IllegalArgumentException.class, () -> userService.findAllById(ids));
+        verifyNoInteractions(userRepository);
+    }
+    
     @Test
     void findByUsername_shouldReturnUserWithGivenUsername() {
-        when(userRepository.findByCredentialUsername("testuser")).thenReturn(Optional.of(userWithCredential));
+        when(userRepository.findViewByUsername("testuser")).thenReturn(Optional.of(view(userWithCredential, credential)));
         
         UserDto result = userService.findByUsername("testuser");
         
         assertNotNull(result);
         assertEquals(userWithCredential.getUserId(), result.getUserId());
         assertEquals("testuser", result.getCredentialDto().getUsername());
-        verify(userRepository, times(1)).findByCredentialUsername("testuser");
+        verify(userRepository, times(1)).findViewByUsername("testuser");
     }
     
     @Test
     void findByUsername_shouldThrowExceptionWhenUsernameNotFound() {
-        when(userRepository.findByCredentialUsername("unknown")).thenReturn(Optional.empty());
+        when(userRepository.findViewByUsername("unknown")).thenReturn(Optional.empty());
         
         assertThrows(UserObjectNotFoundException.class, () -> userService.findByUsername("unknown"));
-        verify(userRepository, times(1)).findByCredentialUsername("unknown");
+        verify(userRepository, times(1)).findViewByUsername("unknown");
     }
     
     @Test
@@ -370,31 +479,170 @@ public class UserServiceTest {
         verify(userRepository, times(1)).save(any(User.class));
     }
     
+    private static CredentialKeyView key(final Integer credentialId, final Integer userId, final String username) {
+        return new CredentialKeyView() {
+            @Override
+            public Integer getCredentialId() {
+                return credentialId;
+            }
+            
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+            
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+    
     @Test
     void deleteById_shouldDeleteUserCredentials() {
-        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
-        doNothing().when(credentialRepository).deleteByCredentialId(1);
+        when(outboxWriter.isEnabled()).thenReturn(true);
+        when(credentialRepository.findKeysByUserIdIn(List.of(1))).thenReturn(List.of(key(1, 1, "testuser")));
+        when(credentialRepository.deleteByUserIdIn(List.of(1))).thenReturn(1);
         
         userService.deleteById(1);
         
-        verify(userRepository, times(1)).findById(1);
-        verify(userRepository, times(1)).save(any(User.class));
-        verify(credentialRepository, times(1)).deleteByCredentialId(1);
+        verify(credentialRepository, times(1)).deleteByUserIdIn(List.of(1));
+        verify(userRepository, never()).findById(anyInt());
+        verify(userRepository, never()).save(any(User.class));
+        verify(userCacheInvalidator, times(1)).evictCredential(1, 1, "testuser");
     }
     
     @Test
     void deleteById_shouldThrowExceptionWhenUserNotFound() {
-        when(userRepository.findById(99)).thenReturn(Optional.empty());
+        when(credentialRepository.deleteByUserIdIn(List.of(99))).thenReturn(0);
         
-        assertThrows(EntityNotFoundException.class, () -> userService.deleteById(99));
-        verify(userRepository, times(1)).findById(99);
+        assertThrows(UserObjectNotFoundException.class, () -> userService.deleteById(99));
+        verify(userCacheInvalidator, never()).evictAllCredentials();
     }
     
     @Test
     void deleteById_shouldThrowExceptionWhenUserHasNoCredentials() {
-        when(userRepository.findById(2)).thenReturn(Optional.of(userWithoutCredential));
+        when(credentialRepository.deleteByUserIdIn(List.of(2))).thenReturn(0);
         
         assertThrows(UserObjectNotFoundException.class, () -> userService.deleteById(2));
-        verify(userRepository, times(1)).findById(2);
+        verify(credentialRepository, times(1)).deleteByUserIdIn(List.of(2));
+    }
+    
+    @Test
+    void deleteAllById_shouldDeleteDistinctIdsInOneStatement() {
+        final Set<Integer> distinctIds = Set.of(1, 2, 3);
+        when(outboxWriter.isEnabled()).thenReturn(true);
+        when(credentialRepository.findKeysByUserIdIn(argThat(ids -> ids.size() == 3 && ids.containsAll(distinctIds))))
+            .thenReturn(List.of(key(1, 1, "testuser"), key(3, 3, "other")));
+        when(credentialRepository.deleteByUserIdIn(argThat(ids -> ids.size() == 3 && ids.containsAll(distinctIds))))
+            .thenReturn(2);
+        
+        int deleted = userService.deleteAllById(List.of(1, 2, 3, 1));
+        
+        assertEquals(2, deleted);
+        verify(credentialRepository, times(1)).deleteByUserIdIn(anyCollection());
+        verify(userCacheInvalidator, times(1)).evictCredential(1, 1, "testuser");
+        verify(userCacheInvalidator, times(1)).evictCredential(3, 3, "other");
+    }
+    
+    @Test
+    void deleteAllById_shouldIssueASingleDeleteWhenNoKeysAreNeeded() {
+        when(credentialRepository.deleteByUserIdIn(argThat(ids -> ids.size() == 2 && ids.containsAll(Set.of(1, 2))))).thenReturn(2);
+        
+        assertEquals(2, userService.deleteAllById(List.of(1, 2)));
+        
+        verify(credentialRepository, never()).findKeysByUserIdIn(anyCollection());
+        verifyNoInteractions(verificationTokenRepository);
+        verify(userCacheInvalidator, times(1)).evictAllCredentials();
+    }
+    
+    @Test
+    void deleteAllById_shouldReturnZeroForEmptyRequest() {
+        assertEquals(0, userService.deleteAllById(List.of()));
+        verifyNoInteractions(credentialRepository);
+    }
+    
+    @Test
+    void deleteAllById_shouldRejectNullIds() {
+        assertThrows(IllegalArgumentException.class, () -> userService.deleteAllById(Collections.singletonList(null)));
+        verifyNoInteractions(credentialRepository);
+    }
+    
+    @Test
+    void deleteAllById_shouldRejectTooManyIds() {
+        final List<Integer> ids = IntStream.rangeClosed(1, AppConstant.MAX_BULK_DELETE_SIZE + 1).boxed().collect(Collectors.toList());
+        
+        assertThrows(IllegalArgumentException.class, () -> userService.deleteAllById(ids));
+        verifyNoInteractions(credentialRepository);
+    }
+    
+    @Test
+    void patch_shouldOnlyChangeSuppliedFields() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        UserDto result = userService.patch(1, objectMapper.readTree("{\"imageUrl\":\"https://cdn/avatar.png\"}"), null);
+        
+        assertEquals("https://cdn/avatar.png", result.getImageUrl());
+        assertEquals("John", userWithCredential.getFirstName());
+        assertEquals("1234567890", userWithCredential.getPhone());
+        verify(userRepository, times(1)).save(userWithCredential);
+        verify(userCacheInvalidator, times(1)).evictUser(1, "testuser");
+    }
+    
+    @Test
+    void patch_shouldRemoveFieldsSetToNull() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        userService.patch(1, objectMapper.readTree("{\"phone\":null}"), null);
+        
+        assertNull(userWithCredential.getPhone());
+        assertEquals("john.doe@example.com", userWithCredential.getEmail());
+    }
+    
+    @Test
+    void patch_shouldSkipWriteWhenNothingChanged() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        
+        UserDto result = userService.patch(1, objectMapper.readTree("{\"firstName\":\"John\",\"userId\":1}"), null);
+        
+        assertEquals("John", result.getFirstName());
+        verify(userRepository, never()).save(any(User.class));
+        verifyNoInteractions(userCacheInvalidator);
+    }
+    
+    @Test
+    void patch_shouldRejectChangesToNestedMembers() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> userService.patch(1, objectMapper.readTree("{\"credential\":{\"username\":\"renamed\"}}"), null));
+        assertThrows(IllegalArgumentException.class, 
+                () -> userService.patch(1, objectMapper.readTree("{\"firstName\":\"Jane\",\"userId\":2}"), null));
+        verify(userRepository, never()).save(any(User.class));
+        verifyNoInteractions(userCacheInvalidator, outboxWriter);
+    }
+    
+    @Test
+    void patch_shouldRejectNonObjectPatch() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        
+        assertThrows(IllegalArgumentException.class, () -> userService.patch(1, objectMapper.readTree("[1]"), null));
+        verify(userRepository, never()).save(any(User.class));
+    }
+    
+    @Test
+    void patch_shouldRejectUnknownFields() throws Exception {
+        when(userRepository.findById(1)).thenReturn(Optional.of(userWithCredential));
+        
+        assertThrows(IllegalArgumentException.class, () -> userService.patch(1, objectMapper.readTree("{\"nickname\":\"jd\"}"), null));
+    }
+    
+    @Test
+    void patch_shouldThrowExceptionWhenUserNotFound() throws Exception {
+        when(userRepository.findById(99)).thenReturn(Optional.empty());
+        
+        assertThrows(UserObjectNotFoundException.class, () -> userService.patch(99, objectMapper.readTree("{}"), null));
     }
-}
\ No newline at end of file
+}
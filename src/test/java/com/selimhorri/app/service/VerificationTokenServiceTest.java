@@ -13,8 +13,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
 import com.selimhorri.app.domain.Credential;
 import com.selimhorri.app.domain.VerificationToken;
 import com.selimhorri.app.dto.CredentialDto;
@@ -24,7 +28,11 @@ import com.selimhorri.app.exception.wrapper.VerificationTokenNotFoundException;
 import com.selimhorri.app.helper.VerificationTokenMappingHelper;
 import com.selimhorri.app.repository.CredentialRepository;
 import com.selimhorri.app.repository.VerificationTokenRepository;
+import com.selimhorri.app.repository.projection.VerificationTokenView;
 import com.selimhorri.app.service.impl.VerificationTokenServiceImpl;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.sharding.ShardRouter;
 
 @ExtendWith(MockitoExtension.class)
 public class VerificationTokenServiceTest {
@@ -35,6 +43,21 @@ public class VerificationTokenServiceTest {
     @Mock
     private CredentialRepository credentialRepository;
     
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+    
+    @Mock
+    private OutboxWriter outboxWriter;
+    
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+    
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    
     @InjectMocks
     private VerificationTokenServiceImpl verificationTokenService;
     
@@ -55,6 +78,15 @@ public class VerificationTokenServiceTest {
         verificationToken.setCredential(credential);
     }
     
+    private static VerificationTokenView view(final VerificationToken verificationToken) {
+        Credential credential = verificationToken.getCredential();
+        return new VerificationTokenView(verificationToken.getVerificationTokenId(), verificationToken.getVersion(),
+                verificationToken.getUpdatedAt(), verificationToken.getToken(), verificationToken.getExpireDate(),
+                credential.getCredentialId(), credential.getVersion(), credential.getUpdatedAt(), credential.getUsername(),
+                credential.getPassword(), credential.getRoleBasedAuthority(), credential.getIsEnabled(),
+                credential.getIsAccountNonExpired(), credential.getIsAccountNonLocked(), credential.getIsCredentialsNonExpired());
+    }
+    
     // Builders para DTOs
     static class VerificationTokenDtoBuilder {
         private Integer verificationTokenId;
@@ -114,45 +146,35 @@ public class VerificationTokenServiceTest {
         }
     }
     
-    @Test
-    void findAll_shouldReturnListOfVerificationTokens() {
-        when(verificationTokenRepository.findAll()).thenReturn(List.of(verificationToken));
-        
-        List<VerificationTokenDto> result = verificationTokenService.findAll();
-        
-        assertEquals(1, result.size());
-        assertEquals(verificationToken.getVerificationTokenId(), result.get(0).getVerificationTokenId());
-        verify(verificationTokenRepository, times(1)).findAll();
-    }
-    
-    @Test
-    void findAll_shouldReturnEmptyListWhenNoTokens() {
-        when(verificationTokenRepository.findAll()).thenReturn(List.of());
-        
-        List<VerificationTokenDto> result = verificationTokenService.findAll();
-        
-        assertTrue(result.isEmpty());
-        verify(verificationTokenRepository, times(1)).findAll();
-    }
-    
     @Test
     void findById_shouldReturnTokenWhenFound() {
-        when(verificationTokenRepository.findById(1)).thenReturn(Optional.of(verificationToken));
+        when(verificationTokenRepository.findViewByVerificationTokenId(1)).thenReturn(Optional.of(view(verificationToken)));
         
         VerificationTokenDto result = verificationTokenService.findById(1);
         
         assertNotNull(result);
         assertEquals(verificationToken.getVerificationTokenId(), result.getVerificationTokenId());
         assertEquals("test-token", result.getToken());
-        verify(verificationTokenRepository, times(1)).findById(1);
+        assertEquals("testuser", result.getCredentialDto().getUsername());
+        verify(verificationTokenRepository, times(1)).findViewByVerificationTokenId(1);
+        verify(replicaLagGuard, times(1)).pinIfRecentlyWritten(ReplicaLagGuard.verificationToken(1));
+    }
+    
+    @Test
+    void findStateById_shouldPinRecentlyWrittenTokenToThePrimary() {
+        when(verificationTokenRepository.findStateByVerificationTokenId(1)).thenReturn(Optional.empty());
+        
+        verificationTokenService.findStateById(1);
+        
+        verify(replicaLagGuard, times(1)).pinIfRecentlyWritten(ReplicaLagGuard.verificationToken(1));
     }
     
     @Test
     void findById_shouldThrowExceptionWhenNotFound() {
-        when(verificationTokenRepository.findById(99)).thenReturn(Optional.empty());
+        when(verificationTokenRepository.findViewByVerificationTokenId(99)).thenReturn(Optional.empty());
         
         assertThrows(VerificationTokenNotFoundException.class, () -> verificationTokenService.findById(99));
-        verify(verificationTokenRepository, times(1)).findById(99);
+        verify(verificationTokenRepository, times(1)).findViewByVerificationTokenId(99);
     }
     
     @Test
@@ -267,20 +289,58 @@ public class VerificationTokenServiceTest {
     
     @Test
     void deleteById_shouldDeleteTokenWhenExists() {
-        when(verificationTokenRepository.existsById(1)).thenReturn(true);
-        doNothing().when(verificationTokenRepository).deleteByIdCustom(1);
+        when(verificationTokenRepository.deleteByIdCustom(1)).thenReturn(1);
         
         verificationTokenService.deleteById(1);
         
-        verify(verificationTokenRepository, times(1)).existsById(1);
+        verify(verificationTokenRepository, never()).existsById(anyInt());
         verify(verificationTokenRepository, times(1)).deleteByIdCustom(1);
+        verify(userCacheInvalidator, times(1)).evictVerificationToken(1);
     }
     
     @Test
     void deleteById_shouldThrowExceptionWhenTokenNotFound() {
-        when(verificationTokenRepository.existsById(99)).thenReturn(false);
+        when(verificationTokenRepository.deleteByIdCustom(99)).thenReturn(0);
         
         assertThrows(VerificationTokenNotFoundException.class, () -> verificationTokenService.deleteById(99));
-        verify(verificationTokenRepository, times(1)).existsById(99);
+        verify(verificationTokenRepository, times(1)).deleteByIdCustom(99);
+    }
+    
+    @Test
+    void validate_shouldReturnCredentialIdWhenTokenIsValid() {
+        when(verificationTokenRepository.findCredentialIdByValidToken(eq("test-token"), any(LocalDate.class)))
+            .thenReturn(Optional.of(1));
+        
+        assertEquals(1, verificationTokenService.validate("test-token"));
+        verify(verificationTokenRepository, times(1)).findCredentialIdByValidToken("test-token", LocalDate.now());
+    }
+    
+    @Test
+    void validate_shouldThrowExceptionWhenTokenUnknownOrExpired() {
+        when(verificationTokenRepository.findCredentialIdByValidToken(anyString(), any(LocalDate.class)))
+            .thenReturn(Optional.empty());
+        
+        assertThrows(VerificationTokenNotFoundException.class, () -> verificationTokenService.validate("stale-token"));
+    }
+    
+    @Test
+    void patch_shouldOnlyChangeSuppliedFields() throws Exception {
+        when(verificationTokenRepository.findById(1)).thenReturn(Optional.of(verificationToken));
+        when(verificationTokenRepository.save(any(VerificationToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        VerificationTokenDto result = verificationTokenService.patch(1, objectMapper.readTree("{\"expireDate\":\"31-12-2030\"}"), null);
+        
+        assertEquals(LocalDate.of(2030, 12, 31), result.getExpireDate());
+        assertEquals("test-token", verificationToken.getToken());
+        assertSame(credential, verificationToken.getCredential());
+    }
+    
+    @Test
+    void patch_shouldSkipWriteWhenNothingChanged() throws Exception {
+        when(verificationTokenRepository.findById(1)).thenReturn(Optional.of(verificationToken));
+        
+        verificationTokenService.patch(1, objectMapper.readTree("{\"token\":\"test-token\"}"), null);
+        
+        verify(verificationTokenRepository, never()).save(any(VerificationToken.class));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.selimhorri.app.sharding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * H2 databases migrated the way {@link com.selimhorri.app.config.sharding.ShardingConfig} does, with the seed
+ * users 1 to 4: sharded over three, 1 and 4 belong to shard 1, 2 to shard 2 and 3 to shard 0.
+ */
+class ShardLayoutTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private static List<DataSource> databases(final int count) {
+        return IntStream.range(0, count)
+                .mapToObj(shard -> new DriverManagerDataSource(
+                        "jdbc:h2:mem:shard_layout_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static void migrate(final DataSource database, final int shard, final int shardCount, final String target) {
+        Flyway.configure()
+                .dataSource(database)
+                .placeholders(Map.of("shard_index", String.valueOf(shard), "shard_count", String.valueOf(shardCount)))
+                .target(target)
+                .load()
+                .migrate();
+    }
+
+    private static void migrateSharded(final List<DataSource> shards) {
+        for (int shard = 0; shard < shards.size(); shard++)
+            migrate(shards.get(shard), shard, shards.size(), "latest");
+    }
+
+    private static List<Integer> idsOn(final DataSource shard, final String query, final Object... args) {
+        return new JdbcTemplate(shard).queryForList(query, Integer.class, args);
+    }
+
+    private static List<Integer> layoutOf(final DataSource shard) {
+        return new JdbcTemplate(shard).queryForObject("SELECT shard_index, shard_count FROM shard_layout",
+                (rs, rowNum) -> List.of(rs.getInt("shard_index"), rs.getInt("shard_count")));
+    }
+
+    @Test
+    void check_shouldStampNewShards() {
+        List<DataSource> shards = databases(3);
+        migrateSharded(shards);
+
+        new ShardLayout(shards).check(false);
+
+        assertEquals(List.of(0, 3), layoutOf(shards.get(0)));
+        assertEquals(List.of(1, 3), layoutOf(shards.get(1)));
+        assertEquals(List.of(2, 3), layoutOf(shards.get(2)));
+        assertEquals(List.of(3), idsOn(shards.get(0), "SELECT user_id FROM users ORDER BY user_id"));
+        assertEquals(List.of(1, 4), idsOn(shards.get(1), "SELECT user_id FROM users ORDER BY user_id"));
+        assertEquals(List.of(2), idsOn(shards.get(2), "SELECT user_id FROM users ORDER BY user_id"));
+    }
+
+    @Test
+    void check_shouldRefuseAnExistingDatabaseTurnedSharded() {
+        List<DataSource> shards = databases(3);
+        // una base anterior a V19, con datos propios
+        migrate(shards.get(0), 0, 1, "18");
+        new JdbcTemplate(shards.get(0)).update("INSERT INTO users (user_id, first_name) VALUES (5, 'existing')");
+        migrateSharded(shards);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new ShardLayout(shards).check(false));
+
+        assertTrue(exception.getMessage().contains("app.sharding.rebalance"));
+        assertEquals(List.of(1, 2, 3, 4, 5), idsOn(shards.get(0), "SELECT user_id FROM users ORDER BY user_id"));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), idsOn(shards.get(0), "SELECT address_id FROM address ORDER BY address_id"));
+    }
+
+    @Test
+    void check_shouldMoveRowsToTheirShardsWhenRebalancing() {
+        List<DataSource> shards = databases(3);
+        migrate(shards.get(0), 0, 1, "latest");
+        new ShardLayout(shards.subList(0, 1)).check(false);
+        new JdbcTemplate(shards.get(0)).update("UPDATE users SET first_name = 'home' WHERE user_id = 1");
+        migrateSharded(shards);
+
+        new ShardLayout(shards).check(true);
+
+        assertEquals(List.of(3), idsOn(shards.get(0), "SELECT user_id FROM users ORDER BY user_id"));
+        assertEquals(List.of(1, 4), idsOn(shards.get(1), "SELECT user_id FROM users ORDER BY user_id"));
+        assertEquals(List.of(2), idsOn(shards.get(2), "SELECT user_id FROM users ORDER BY user_id"));
+        // la copia del shard de origen sustituye a la del seed
+        assertEquals("home", new JdbcTemplate(shards.get(1))
+                .queryForObject("SELECT first_name FROM users WHERE user_id = 1", String.class));
+        // la dirección 6 de user 1 no correspondía al shard 1: id nuevo, por encima de todos
+        assertEquals(List.of(1, 10), idsOn(shards.get(1), "SELECT address_id FROM address WHERE user_id = 1 ORDER BY address_id"));
+        assertEquals(List.of(2, 5), idsOn(shards.get(2), "SELECT address_id FROM address WHERE user_id = 2 ORDER BY address_id"));
+        assertEquals(List.of(1), idsOn(shards.get(1), "SELECT vt.verification_token_id FROM verification_tokens vt "
+                + "JOIN credentials c ON c.credential_id = vt.credential_id WHERE c.user_id = 1"));
+        assertEquals(Map.of("selimhorri", 1, "amineladjimi", 2, "omarderouiche", 0, "admin", 1),
+                new JdbcTemplate(shards.get(0)).query("SELECT username, shard_index FROM username_shards",
+                                (rs, rowNum) -> Map.entry(rs.getString("username"), rs.getInt("shard_index")))
+                        .stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        assertEquals(List.of(0, 3), layoutOf(shards.get(0)));
+        assertDoesNotThrow(() -> new ShardLayout(shards).check(false));
+    }
+
+    @Test
+    void check_shouldRefuseFewerShardsThanLaidOut() {
+        List<DataSource> shards = databases(3);
+        migrateSharded(shards);
+        new ShardLayout(shards).check(false);
+
+        assertThrows(IllegalStateException.class, () -> new ShardLayout(shards.subList(0, 1)).check(true));
+    }
+
+}
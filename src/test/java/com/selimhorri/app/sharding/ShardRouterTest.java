@@ -0,0 +1,171 @@
+package com.selimhorri.app.sharding;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.selimhorri.app.sharding.UsernameShardDirectory.Reservation;
+
+public class ShardRouterTest {
+
+    private final UsernameShardDirectory directory = mock(UsernameShardDirectory.class);
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new ShardRouter(3, directory, mock(PlatformTransactionManager.class), Runnable::run);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static void complete(final int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED)
+                synchronization.afterCommit();
+            synchronization.afterCompletion(status);
+        });
+    }
+
+    @Test
+    void shardOf_shouldFollowTheId() {
+        assertEquals(0, router.shardOf(3));
+        assertEquals(1, router.shardOf(7));
+        assertEquals(2, router.shardOf(-1));
+        assertEquals(ShardRouter.HOME_SHARD, router.shardOf(null));
+    }
+
+    @Test
+    void nextShard_shouldGoRoundRobin() {
+        assertEquals(List.of(0, 1, 2, 0), List.of(router.nextShard(), router.nextShard(), router.nextShard(),
+                router.nextShard()));
+    }
+
+    @Test
+    void bind_shouldHoldTheShardUntilTheTransactionCompletes() {
+        router.bindShardOf(5);
+        router.bindShardOf(8);
+
+        assertEquals(2, ShardRouter.currentShard());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertNull(ShardRouter.currentShard());
+    }
+
+    @Test
+    void bind_shouldRejectASecondShardInTheSameTransaction() {
+        router.bind(1);
+
+        assertThrows(IllegalStateException.class, () -> router.bind(2));
+    }
+
+    @Test
+    void bind_shouldRequireATransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThrows(IllegalStateException.class, () -> router.bind(1));
+        assertNull(ShardRouter.currentShard());
+    }
+
+    @Test
+    void bindShardOfUsername_shouldReportUnknownUsernames() {
+        when(directory.find("selimhorri")).thenReturn(Optional.of(1));
+        when(directory.find("nobody")).thenReturn(Optional.empty());
+
+        assertFalse(router.bindShardOfUsername("nobody"));
+        assertNull(ShardRouter.currentShard());
+        assertTrue(router.bindShardOfUsername("selimhorri"));
+        assertEquals(1, ShardRouter.currentShard());
+    }
+
+    @Test
+    void reserveUsername_shouldBeDroppedWhenTheTransactionRollsBack() {
+        when(directory.reserve("johndoe", 2)).thenReturn(Reservation.CLAIMED);
+
+        assertTrue(router.reserveUsername("johndoe", 2));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(directory).release("johndoe", 2);
+    }
+
+    @Test
+    void reserveUsername_shouldKeepAnEntryItDidNotWriteWhenTheTransactionRollsBack() {
+        when(directory.reserve("johndoe", 2)).thenReturn(Reservation.HELD);
+        when(directory.reserve("janedoe", 2)).thenReturn(Reservation.REFUSED);
+
+        assertTrue(router.reserveUsername("johndoe", 2));
+        assertFalse(router.reserveUsername("janedoe", 2));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(directory, never()).release(anyString(), anyInt());
+    }
+
+    @Test
+    void releaseUsername_shouldWaitForTheCommit() {
+        router.releaseUsername("johndoe", 2);
+        verify(directory, never()).release("johndoe", 2);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        verify(directory).release("johndoe", 2);
+    }
+
+    @Test
+    void scatter_shouldRunOncePerShardHoldingTheIds() {
+        Map<Integer, Collection<Integer>> idsByShard = new ConcurrentHashMap<>();
+
+        List<Integer> sizes = router.scatter(List.of(1, 2, 4, 7, 9), true, ids -> {
+            idsByShard.put(ShardRouter.currentShard(), ids);
+            return ids.size();
+        });
+
+        assertEquals(Map.of(0, List.of(9), 1, List.of(1, 4, 7), 2, List.of(2)), idsByShard);
+        assertEquals(5, sizes.stream().mapToInt(Integer::intValue).sum());
+        assertNull(ShardRouter.currentShard());
+    }
+
+    @Test
+    void scatterGather_shouldMergeEveryShardInOrder() {
+        List<Integer> gathered = router.scatterGather(() -> List.of(ShardRouter.currentShard() + 3,
+                ShardRouter.currentShard()), Comparator.naturalOrder());
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), gathered);
+    }
+
+    @Test
+    void unsharded_shouldRunEverythingInPlace() {
+        ShardRouter unsharded = ShardRouter.unsharded();
+        Set<Integer> ids = Set.of(1, 2, 3);
+        List<Collection<Integer>> seen = new ArrayList<>();
+
+        unsharded.bind(2);
+        unsharded.scatter(ids, false, seen::add);
+
+        assertFalse(unsharded.isEnabled());
+        assertNull(ShardRouter.currentShard());
+        assertSame(ids, seen.get(0));
+        assertEquals(List.of(ShardRouter.HOME_SHARD), unsharded.getShards());
+        assertTrue(unsharded.reserveUsername("selimhorri", 0));
+        assertEquals(Optional.of(ShardRouter.HOME_SHARD), unsharded.findShardOfUsername("anyone"));
+    }
+
+}
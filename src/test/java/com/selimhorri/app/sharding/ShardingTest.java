@@ -0,0 +1,348 @@
+package com.selimhorri.app.sharding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.cache.SingleFlight;
+import com.selimhorri.app.cache.UserCacheInvalidator;
+import com.selimhorri.app.cache.UsernameBloomFilter;
+import com.selimhorri.app.cache.transport.LoopbackCacheInvalidationTransport;
+import com.selimhorri.app.config.batching.MicroBatchingConfig;
+import com.selimhorri.app.config.sharding.ShardingConfig;
+import com.selimhorri.app.datasource.ReplicaLagGuard;
+import com.selimhorri.app.domain.RoleBasedAuthority;
+import com.selimhorri.app.dto.AddressDto;
+import com.selimhorri.app.dto.CredentialDto;
+import com.selimhorri.app.dto.UserDto;
+import com.selimhorri.app.dto.response.BatchGetResponse;
+import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.exception.wrapper.UsernameAlreadyExistsException;
+import com.selimhorri.app.outbox.OutboxWriter;
+import com.selimhorri.app.service.AddressService;
+import com.selimhorri.app.service.CredentialService;
+import com.selimhorri.app.service.UserImportService;
+import com.selimhorri.app.service.UserService;
+import com.selimhorri.app.service.impl.AddressServiceImpl;
+import com.selimhorri.app.service.impl.CredentialServiceImpl;
+import com.selimhorri.app.service.impl.UserImportServiceImpl;
+import com.selimhorri.app.service.impl.UserServiceImpl;
+import com.selimhorri.app.sharding.UsernameShardDirectory.Reservation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Three H2 databases as shards. Seed users 1 and 4 live on shard 1, user 2 on shard 2 and user 3 on shard 0.
+ */
+@DataJpaTest(properties = {
+        "app.sharding.enabled=true",
+        "app.outbox.enabled=true",
+        "spring.datasource.url=" + ShardingTest.SHARD_0_URL,
+        "app.sharding.shards[0].url=" + ShardingTest.SHARD_1_URL,
+        "app.sharding.shards[1].url=" + ShardingTest.SHARD_2_URL })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ShardingConfig.class, UserServiceImpl.class, CredentialServiceImpl.class, AddressServiceImpl.class,
+        MicroBatchingConfig.class, UserCacheInvalidator.class, UsernameBloomFilter.class,
+        LoopbackCacheInvalidationTransport.class, SingleFlight.class, ReplicaLagGuard.class, OutboxWriter.class,
+        UserImportServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ShardingTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:sharding_0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:sharding_1;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2_URL = "jdbc:h2:mem:sharding_2;DB_CLOSE_DELAY=-1";
+
+    private static final List<JdbcTemplate> SHARDS = List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL).stream()
+            .map(url -> new JdbcTemplate(new DriverManagerDataSource(url, "sa", "")))
+            .collect(Collectors.toUnmodifiableList());
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CredentialService credentialService;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private MeterBinder shardingMetrics;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static List<Integer> idsOn(final int shard, final String table, final String idColumn) {
+        return SHARDS.get(shard).queryForList(
+                String.format("SELECT %2$s FROM %1$s ORDER BY %2$s", table, idColumn), Integer.class);
+    }
+
+    private static boolean isOn(final int shard, final String table, final String idColumn, final Integer id) {
+        return idsOn(shard, table, idColumn).contains(id);
+    }
+
+    private UserDto newUserOnShard(final int shard) {
+        for (int attempt = 0; attempt < SHARDS.size(); attempt++) {
+            UserDto user = userService.save(UserDto.builder()
+                    .firstName("sharded")
+                    .lastName("user")
+                    .build());
+            if (Math.floorMod(user.getUserId(), SHARDS.size()) == shard)
+                return user;
+        }
+        throw new AssertionError("No user created on shard " + shard);
+    }
+
+    private CredentialDto newCredential(final UserDto user, final String username) {
+        return credentialService.save(CredentialDto.builder()
+                .username(username)
+                .password("secret")
+                .roleBasedAuthority(RoleBasedAuthority.ROLE_USER)
+                .isEnabled(true)
+                .isAccountNonExpired(true)
+                .isAccountNonLocked(true)
+                .isCredentialsNonExpired(true)
+                .userDto(UserDto.builder().userId(user.getUserId()).build())
+                .build());
+    }
+
+    @Test
+    void migrations_shouldKeepOnEachShardOnlyTheSeedRowsItOwns() {
+        assertTrue(idsOn(0, "users", "user_id").contains(3));
+        assertFalse(idsOn(0, "users", "user_id").contains(1));
+        assertTrue(idsOn(1, "users", "user_id").containsAll(List.of(1, 4)));
+        assertTrue(idsOn(2, "credentials", "credential_id").contains(2));
+        // la dirección 6 es del usuario 1 pero su id cae en el shard 0: no se conserva en ninguno
+        IntStream.range(0, SHARDS.size())
+                .forEach(shard -> assertFalse(isOn(shard, "address", "address_id", 6)));
+    }
+
+    @Test
+    void findById_shouldReadFromTheShardOfTheUser() {
+        assertEquals("selim", userService.findById(1).getFirstName());
+        assertEquals(2, userService.findById(2).getUserId());
+        assertEquals(3, userService.findById(3).getUserId());
+    }
+
+    @Test
+    void findByUsername_shouldFindTheShardThroughTheDirectory() {
+        assertEquals(2, userService.findByUsername("amineladjimi").getUserId());
+        assertEquals(3, credentialService.findByUsername("omarderouiche").getCredentialId());
+        assertEquals(2, SHARDS.get(ShardRouter.HOME_SHARD).queryForObject(
+                "SELECT shard_index FROM username_shards WHERE username = 'amineladjimi'", Integer.class));
+        assertFalse(userService.findStateByUsername("nobody-registered-this-name").isPresent());
+    }
+
+    @Test
+    void findAllPage_shouldMergeTheFirstPageOfEveryShard() {
+        DtoCollectionResponse<UserDto> page = userService.findAll(0, 2);
+
+        assertEquals(List.of(1, 2), page.getCollection().stream()
+                .map(UserDto::getUserId)
+                .collect(Collectors.toList()));
+        assertEquals(2, page.getNextCursor());
+        assertEquals(3, userService.findAll(2, 1).getCollection().iterator().next().getUserId());
+    }
+
+    @Test
+    void findAllById_shouldAskEveryShardHoldingTheIds() {
+        BatchGetResponse<UserDto> response = userService.findAllById(List.of(4, 3, 2, 1, 999));
+
+        assertEquals(List.of(4, 3, 2, 1), response.getFound().stream()
+                .map(UserDto::getUserId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(999), response.getMissingIds());
+    }
+
+    @Test
+    void save_shouldKeepAUserAndWhatHangsFromItOnOneShard() {
+        UserDto user = newUserOnShard(2);
+        CredentialDto credential = newCredential(user, "sharded-user-" + user.getUserId());
+        AddressDto address = addressService.save(AddressDto.builder()
+                .fullAddress("sidi bou said")
+                .postalCode("2026")
+                .city("sidi bou said")
+                .userDto(UserDto.builder().userId(user.getUserId()).build())
+                .build());
+
+        assertTrue(isOn(2, "users", "user_id", user.getUserId()));
+        assertTrue(isOn(2, "credentials", "credential_id", credential.getCredentialId()));
+        assertTrue(isOn(2, "address", "address_id", address.getAddressId()));
+        assertEquals(2, Math.floorMod(credential.getCredentialId(), SHARDS.size()));
+        assertEquals(2, Math.floorMod(address.getAddressId(), SHARDS.size()));
+        assertEquals(user.getUserId(), userService.findByUsername(credential.getUsername()).getUserId());
+    }
+
+    @Test
+    void save_shouldRejectAUsernameTakenOnAnotherShard() {
+        UserDto user = newUserOnShard(0);
+
+        assertThrows(UsernameAlreadyExistsException.class, () -> newCredential(user, "selimhorri"));
+        assertTrue(idsOn(0, "credentials", "user_id").stream().noneMatch(user.getUserId()::equals));
+    }
+
+    @Test
+    void deleteAllById_shouldDeleteOnEveryShardAndFreeTheUsernames() {
+        List<UserDto> users = List.of(newUserOnShard(0), newUserOnShard(1));
+        users.forEach(user -> newCredential(user, "to-delete-" + user.getUserId()));
+
+        assertEquals(2, userService.deleteAllById(users.stream()
+                .map(UserDto::getUserId)
+                .collect(Collectors.toList())));
+        users.forEach(user -> assertTrue(credentialService.isUsernameAvailable("to-delete-" + user.getUserId())));
+    }
+
+    @Test
+    void importAll_shouldSpreadTheUsersOverEveryShard() {
+        List<UserDto> imported = List.copyOf(userImportService.importAll(IntStream.range(0, 6)
+                        .mapToObj(i -> UserDto.builder()
+                                .firstName("imported" + i)
+                                .addressDtos(Set.of(AddressDto.builder().city("bulk" + i).build()))
+                                .build())
+                        .collect(Collectors.toList()))
+                .getCollection());
+
+        assertEquals(IntStream.range(0, 6).mapToObj(i -> "imported" + i).collect(Collectors.toList()),
+                imported.stream().map(UserDto::getFirstName).collect(Collectors.toList()));
+        assertEquals(Map.of(0, 2L, 1, 2L, 2, 2L), imported.stream()
+                .collect(Collectors.groupingBy(user -> Math.floorMod(user.getUserId(), SHARDS.size()), Collectors.counting())));
+        imported.forEach(user -> {
+            int shard = Math.floorMod(user.getUserId(), SHARDS.size());
+            assertTrue(isOn(shard, "users", "user_id", user.getUserId()));
+            assertEquals(1, SHARDS.get(shard).queryForObject("SELECT COUNT(*) FROM address WHERE user_id = ?",
+                    Integer.class, user.getUserId()));
+        });
+    }
+
+    @Test
+    void directory_shouldTakeOverAReservationAbandonedByACrashedSave() {
+        List<DataSource> shards = SHARDS.stream()
+                .map(JdbcTemplate::getDataSource)
+                .collect(Collectors.toList());
+        Instant now = Instant.now();
+        new UsernameShardDirectory(shards, Duration.ofMinutes(1), Clock.fixed(now, ZoneOffset.UTC))
+                .reserve("abandoned", 2);
+
+        UsernameShardDirectory soon = new UsernameShardDirectory(shards, Duration.ofMinutes(1),
+                Clock.fixed(now.plusSeconds(30), ZoneOffset.UTC));
+        UsernameShardDirectory later = new UsernameShardDirectory(shards, Duration.ofMinutes(1),
+                Clock.fixed(now.plusSeconds(90), ZoneOffset.UTC));
+        UsernameShardDirectory muchLater = new UsernameShardDirectory(shards, Duration.ofMinutes(1),
+                Clock.fixed(now.plus(Duration.ofDays(1)), ZoneOffset.UTC));
+
+        assertEquals(Reservation.REFUSED, soon.reserve("abandoned", 1));
+        assertEquals(1, later.find("selimhorri").orElseThrow());
+        // antigua pero con credencial en su shard: no está abandonada
+        assertEquals(Reservation.REFUSED, muchLater.reserve("selimhorri", 0));
+        assertEquals(Reservation.CLAIMED, later.reserve("abandoned", 1));
+        assertEquals(1, later.find("abandoned").orElseThrow());
+    }
+
+    @Test
+    void reserveUsername_shouldKeepTheEntryOfAConcurrentSaveWhenTheOtherRollsBack() {
+        TransactionTemplate winner = new TransactionTemplate(transactionManager);
+        TransactionTemplate loser = new TransactionTemplate(transactionManager);
+        loser.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        winner.executeWithoutResult(winnerStatus -> {
+            assertTrue(shardRouter.reserveUsername("contended", 1));
+            // la otra reserva llega mientras la primera sigue abierta, y su save falla
+            loser.executeWithoutResult(loserStatus -> {
+                assertTrue(shardRouter.reserveUsername("contended", 1));
+                loserStatus.setRollbackOnly();
+            });
+            assertEquals(Optional.of(1), shardRouter.findShardOfUsername("contended"));
+            assertFalse(shardRouter.reserveUsername("contended", 2));
+        });
+
+        assertEquals(Optional.of(1), shardRouter.findShardOfUsername("contended"));
+        shardRouter.releaseUsername("contended", 1);
+    }
+
+    @Test
+    void outbox_shouldKeepEachEventOnTheShardOfItsUser() {
+        UserDto user = newUserOnShard(2);
+        String events = "SELECT COUNT(*) FROM outbox_events WHERE aggregate_type = 'USER' AND aggregate_id = ?";
+
+        assertEquals(1, SHARDS.get(2).queryForObject(events, Integer.class, user.getUserId()));
+        assertEquals(0, SHARDS.get(0).queryForObject(events, Integer.class, user.getUserId()));
+        assertEquals(0, SHARDS.get(1).queryForObject(events, Integer.class, user.getUserId()));
+    }
+
+    @Test
+    void metrics_shouldBeExportedPerShard() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        shardingMetrics.bindTo(registry);
+        userService.findAll(null, null);
+
+        IntStream.range(0, SHARDS.size()).forEach(shard -> {
+            assertNotNull(registry.find("hikaricp.connections").tag("pool", "shard-" + shard).gauge());
+            assertTrue(registry.get("sharding.connections").tag("shard", String.valueOf(shard)).functionCounter()
+                    .count() > 0);
+        });
+    }
+
+}